@@ -0,0 +1,91 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationIndex;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.ohnlp.typesystem.type.syntax.BaseToken;
+import org.ohnlp.typesystem.type.textspan.Sentence;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries the {@link AnnotationCache} of a synthetic document for the tokens covered by and the sentences covering
+ * each sentence and token respectively, as well as retrieving (and rebuilding) the cached index itself. Equivalent
+ * {@link JCasUtil} queries are included as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotationCacheBenchmark {
+
+    private static final String CACHE_KEY = "benchmark";
+
+    // The number of times the synthetic sentences are repeated within the document
+    @Param({"1", "20"})
+    private int copies;
+
+    private JCas cas;
+    private List<Sentence> sentences;
+    private List<BaseToken> tokens;
+
+    @Setup
+    public void setup() throws Exception {
+        cas = SyntheticCorpus.createDocument(copies);
+        sentences = new ArrayList<>(JCasUtil.select(cas, Sentence.class));
+        tokens = new ArrayList<>(JCasUtil.select(cas, BaseToken.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        AnnotationCache.removeAnnotationCaches(cas);
+    }
+
+    @Benchmark
+    public AnnotationIndex getAnnotationCache() {
+        return AnnotationCache.getAnnotationCache(CACHE_KEY, cas);
+    }
+
+    @Benchmark
+    public AnnotationIndex rebuildAnnotationCache() {
+        AnnotationCache.removeAnnotationCache(CACHE_KEY);
+        return AnnotationCache.getAnnotationCache(CACHE_KEY, cas);
+    }
+
+    @Benchmark
+    public void getCovered(Blackhole bh) {
+        AnnotationIndex index = AnnotationCache.getAnnotationCache(CACHE_KEY, cas);
+        for (Sentence s : sentences) {
+            bh.consume(index.getCovered(s.getBegin(), s.getEnd(), BaseToken.class));
+        }
+    }
+
+    @Benchmark
+    public void getCovering(Blackhole bh) {
+        AnnotationIndex index = AnnotationCache.getAnnotationCache(CACHE_KEY, cas);
+        for (BaseToken t : tokens) {
+            bh.consume(index.getCovering(t.getBegin(), t.getEnd(), Sentence.class));
+        }
+    }
+
+    @Benchmark
+    public void selectCoveredBaseline(Blackhole bh) {
+        for (Sentence s : sentences) {
+            bh.consume(JCasUtil.selectCovered(cas, BaseToken.class, s));
+        }
+    }
+
+    @Benchmark
+    public void selectCoveringBaseline(Blackhole bh) {
+        for (BaseToken t : tokens) {
+            bh.consume(JCasUtil.selectCovering(cas, Sentence.class, t));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.extractors.context.ConTexTSentence;
+import edu.mayo.bsi.nlp2fhir.extractors.context.ConTexTSettings;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines the negation, temporality and experiencer of the concept of each sentence of the synthetic corpus using the
+ * bundled ConTexT rules, as done by {@link edu.mayo.bsi.nlp2fhir.extractors.ConTexTAssertionAnnotator}: each sentence
+ * is tagged once, then each event mention within it is resolved against the scopes of its triggers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConTexTBenchmark {
+
+    private ConTexTSettings settings;
+    private List<String[]> sentences;
+
+    @Setup
+    public void setup() throws Exception {
+        settings = new ConTexTSettings(ConTexTSettings.class.getResourceAsStream("/edu/mayo/advance/context/context_rules.txt"));
+        sentences = SyntheticCorpus.getSentences();
+    }
+
+    /**
+     * The per sentence work only, i.e. normalization, trigger tagging and the computation of trigger scopes
+     */
+    @Benchmark
+    public void prepareSentence(Blackhole bh) {
+        for (String[] sentence : sentences) {
+            bh.consume(settings.prepareSentence(sentence[0].toLowerCase() + " "));
+        }
+    }
+
+    /**
+     * The work done per sentence and mention, with one mention per sentence
+     */
+    @Benchmark
+    public void processMentions(Blackhole bh) {
+        for (String[] sentence : sentences) {
+            ConTexTSentence prepared = settings.prepareSentence(sentence[0].toLowerCase() + " ");
+            ConTexTSentence.Mention mention = prepared.findMention(sentence[1].toLowerCase());
+            if (mention == null) {
+                continue;
+            }
+            bh.consume(mention.getNegationContext());
+            bh.consume(mention.getTemporalityContext());
+            bh.consume(mention.getExperiencer());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import ca.uhn.fhir.parser.IParser;
+import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.ResourceProducers;
+import org.apache.uima.jcas.JCas;
+import org.hl7.fhir.Condition;
+import org.hl7.fhir.dstu3.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes a bundle of the conditions produced from a synthetic document to JSON via
+ * {@link ResourceProducers#FHIRPARSER}, as done when writing FHIR output, and via a compact (non pretty printing)
+ * parser
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FHIREncodingBenchmark {
+
+    private Bundle bundle;
+    private IParser compactParser;
+
+    @Setup
+    public void setup() throws Exception {
+        JCas cas = SyntheticCorpus.createDocument(1);
+        bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.COLLECTION);
+        for (Condition condition : SyntheticCorpus.addConditions(cas)) {
+            bundle.addEntry().setResource(ResourceProducers.parseResourceFromCasAnn(SyntheticCorpus.DOCUMENT_ID, condition));
+        }
+        compactParser = ResourceProducers.FHIRCONTEXT.newJsonParser();
+    }
+
+    @Benchmark
+    public String encodePretty() {
+        return ResourceProducers.FHIRPARSER.encodeResourceToString(bundle);
+    }
+
+    @Benchmark
+    public String encodeCompact() {
+        return compactParser.encodeResourceToString(bundle);
+    }
+}
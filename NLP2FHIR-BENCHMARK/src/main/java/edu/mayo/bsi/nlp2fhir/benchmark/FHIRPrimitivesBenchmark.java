@@ -0,0 +1,85 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.hl7.fhir.FHIRString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-call cost of creating FHIR primitives via reflection (as formerly done by
+ * {@link Util#instantiatePrimitiveWithValue}), via the now delegating {@link Util#instantiatePrimitiveWithValue} and
+ * via a {@link FHIRPrimitives} factory constant.<br>
+ * <br>
+ * Each invocation creates a batch of primitives, after which the CAS is reset so as to keep heap usage bounded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FHIRPrimitivesBenchmark {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private JCas cas;
+
+    @Setup(Level.Trial)
+    public void createCas() throws Exception {
+        cas = JCasFactory.createJCas();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCas() {
+        cas.reset();
+        cas.setDocumentText("The patient takes 1 tablet by mouth twice daily");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void reflection(Blackhole bh) throws Exception {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(createReflectively(cas, "tablet", 20, 26));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @SuppressWarnings("deprecation")
+    public void instantiatePrimitiveWithValue(Blackhole bh) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, "tablet", 20, 26));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void factoryConstant(Blackhole bh) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(FHIRPrimitives.STRING.create(cas, "tablet", 20, 26));
+        }
+    }
+
+    /**
+     * The reflective implementation formerly used by Util#instantiatePrimitiveWithValue
+     */
+    private static FHIRString createReflectively(JCas cas, String value, int begin, int end) throws Exception {
+        Constructor<FHIRString> constructor = FHIRString.class.getDeclaredConstructor(JCas.class);
+        constructor.setAccessible(true);
+        FHIRString primitive = constructor.newInstance(cas);
+        Method m = FHIRString.class.getDeclaredMethod("setValue", String.class);
+        m.setAccessible(true);
+        m.invoke(primitive, value);
+        primitive.setBegin(begin);
+        primitive.setEnd(end);
+        primitive.addToIndexes();
+        return primitive;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.RegexpStatements;
+import edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Parses the frequency and period of each synthetic MedXN frequency attribute, as done by
+ * {@link edu.mayo.bsi.nlp2fhir.transformers.MedExtractorsToFHIRMedications}, via {@link RegexpStatements#FREQPERIOD}
+ * and via its hand-written equivalent {@link FrequencyPeriodParser}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrequencyPeriodBenchmark {
+
+    private List<String> frequencies;
+
+    @Setup
+    public void setup() {
+        frequencies = SyntheticCorpus.getFrequencies();
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        for (String frequency : frequencies) {
+            Matcher m = RegexpStatements.FREQPERIOD.matcher(frequency);
+            bh.consume(m.find() ? m.toMatchResult() : null);
+        }
+    }
+
+    @Benchmark
+    public void parser(Blackhole bh) {
+        for (String frequency : frequencies) {
+            bh.consume(FrequencyPeriodParser.find(frequency));
+        }
+    }
+}
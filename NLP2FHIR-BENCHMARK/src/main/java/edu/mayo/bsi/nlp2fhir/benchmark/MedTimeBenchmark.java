@@ -0,0 +1,74 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.ohnlp.medtime.ae.MedTimeAnnotator;
+import org.ohnlp.medtime.ae.SentenceTokenIndex;
+import org.ohnlp.medtime.ae.TimexRuleSet;
+import org.ohnlp.medtime.resourcemanager.RuleManager;
+import org.ohnlp.medtime.type.MedTimex3;
+import org.ohnlp.typesystem.type.textspan.Sentence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the MedTime extraction rules of one timex type to each sentence of the synthetic corpus, as done by
+ * {@link MedTimeAnnotator#process(JCas)}.<br>
+ * <br>
+ * Rules are read from the MedTime resource directory of an NLP2FHIR installation, "resources/medtimeresources" relative
+ * to the working directory unless given otherwise via <code>-p resourceDir=...</code>. Tokens carry no part of speech,
+ * such that rules with part of speech constraints never match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedTimeBenchmark {
+
+    @Param({"DATE", "TIME", "DURATION", "SET"})
+    private String timexType;
+
+    @Param("resources/medtimeresources")
+    private String resourceDir;
+
+    private MedTimeAnnotator annotator;
+    private TimexRuleSet rules;
+    private JCas cas;
+    private List<Sentence> sentences;
+    private List<String> texts;
+    private List<SentenceTokenIndex> tokens;
+
+    @Setup
+    public void setup() throws Exception {
+        annotator = new MedTimeAnnotator();
+        annotator.initialize(UimaContextFactory.createUimaContext(
+                "Date", true, "Duration", true, "Time", true, "Set", true, "reportFormat", "i2b2", "Resource_dir", resourceDir
+        ));
+        rules = TimexRuleSet.forType(timexType, RuleManager.getInstance(), true);
+        cas = SyntheticCorpus.createDocument(1);
+        sentences = new ArrayList<>(JCasUtil.select(cas, Sentence.class));
+        texts = new ArrayList<>();
+        tokens = new ArrayList<>();
+        for (Sentence s : sentences) {
+            texts.add(s.getCoveredText().toLowerCase());
+            tokens.add(new SentenceTokenIndex(cas, s));
+        }
+    }
+
+    @Benchmark
+    public boolean findTimexes() {
+        boolean found = false;
+        for (int i = 0; i < sentences.size(); i++) {
+            found |= annotator.findTimexes(timexType, rules, sentences.get(i), texts.get(i), tokens.get(i), cas);
+        }
+        // Keep annotations from accumulating across invocations
+        cas.removeAllIncludingSubtypes(MedTimex3.type);
+        return found;
+    }
+}
@@ -0,0 +1,34 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.Util;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalizes numbers as written in clinical text (e.g. "1/2", "1,000", "twenty one") via {@link Util#normalizeNumber}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumberNormalizationBenchmark {
+
+    private List<String> numbers;
+
+    @Setup
+    public void setup() {
+        numbers = SyntheticCorpus.getNumbers();
+    }
+
+    @Benchmark
+    public void normalizeNumber(Blackhole bh) {
+        for (String number : numbers) {
+            bh.consume(Util.normalizeNumber(number));
+        }
+    }
+}
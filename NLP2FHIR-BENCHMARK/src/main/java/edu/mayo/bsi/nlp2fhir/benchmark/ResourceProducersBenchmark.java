@@ -0,0 +1,38 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.ResourceProducers;
+import org.apache.uima.jcas.JCas;
+import org.hl7.fhir.Condition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the coded FHIR type system conditions of a synthetic document into HAPI FHIR resources via
+ * {@link ResourceProducers#parseResourceFromCasAnn}, as done for every resource annotation on serialization
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceProducersBenchmark {
+
+    private List<Condition> conditions;
+
+    @Setup
+    public void setup() throws Exception {
+        JCas cas = SyntheticCorpus.createDocument(1);
+        conditions = SyntheticCorpus.addConditions(cas);
+    }
+
+    @Benchmark
+    public void parseResourceFromCasAnn(Blackhole bh) {
+        for (Condition condition : conditions) {
+            bh.consume(ResourceProducers.parseResourceFromCasAnn(SyntheticCorpus.DOCUMENT_ID, condition));
+        }
+    }
+}
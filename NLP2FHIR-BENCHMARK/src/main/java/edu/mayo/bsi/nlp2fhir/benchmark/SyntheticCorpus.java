@@ -0,0 +1,164 @@
+package edu.mayo.bsi.nlp2fhir.benchmark;
+
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import org.apache.ctakes.typesystem.type.structured.DocumentID;
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.hl7.fhir.CodeableConcept;
+import org.hl7.fhir.Coding;
+import org.hl7.fhir.Condition;
+import org.ohnlp.typesystem.type.syntax.BaseToken;
+import org.ohnlp.typesystem.type.textspan.Sentence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic clinical text bundled with the benchmarks, such that they run without access to clinical notes, UMLS or
+ * other terminology services
+ */
+public final class SyntheticCorpus {
+
+    public static final String DOCUMENT_ID = "synthetic-document";
+
+    private static final Pattern TOKENS = Pattern.compile("\\w+|[^\\w\\s]");
+
+    private static final List<String[]> SENTENCES = Collections.unmodifiableList(readSentences());
+    private static final List<String> FREQUENCIES = Collections.unmodifiableList(readLines("frequencies.txt"));
+    private static final List<String> NUMBERS = Collections.unmodifiableList(readLines("numbers.txt"));
+
+    private SyntheticCorpus() {
+    }
+
+    /**
+     * @return Clinical sentences, each as [sentence, a concept mentioned within the sentence]
+     */
+    public static List<String[]> getSentences() {
+        return SENTENCES;
+    }
+
+    /**
+     * @return Frequency expressions as found in MedXN frequency attributes, e.g. "twice daily"
+     */
+    public static List<String> getFrequencies() {
+        return FREQUENCIES;
+    }
+
+    /**
+     * @return Numbers as written in clinical text, e.g. "1/2" or "twenty one"
+     */
+    public static List<String> getNumbers() {
+        return NUMBERS;
+    }
+
+    /**
+     * Creates a document of all sentences, separated by line breaks, annotated with MedTime/MedXN sentences and
+     * tokens. Tokens are split on word boundaries and carry no part of speech.
+     *
+     * @param copies The number of times all sentences are repeated within the document
+     * @return The document
+     * @throws UIMAException If the CAS could not be created
+     */
+    public static JCas createDocument(int copies) throws UIMAException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            for (String[] sentence : SENTENCES) {
+                text.append(sentence[0]).append('\n');
+            }
+        }
+        JCas cas = JCasFactory.createJCas();
+        cas.setDocumentText(text.toString());
+        DocumentID id = new DocumentID(cas);
+        id.setDocumentID(DOCUMENT_ID);
+        id.addToIndexes();
+        int begin = 0;
+        while (begin < text.length()) {
+            int end = text.indexOf("\n", begin);
+            new Sentence(cas, begin, end).addToIndexes();
+            Matcher m = TOKENS.matcher(text).region(begin, end);
+            while (m.find()) {
+                new BaseToken(cas, m.start(), m.end()).addToIndexes();
+            }
+            begin = end + 1;
+        }
+        return cas;
+    }
+
+    /**
+     * Annotates the concept of each sentence within a document created by {@link #createDocument(int)} as a FHIR
+     * condition coded with a synthetic SNOMED CT code, as done by the problem list transformers
+     *
+     * @return The conditions, in document order
+     */
+    public static List<Condition> addConditions(JCas cas) {
+        List<Condition> ret = new ArrayList<>();
+        String text = cas.getDocumentText();
+        int sentenceBegin = 0;
+        for (int i = 0; sentenceBegin < text.length(); i++) {
+            String[] sentence = SENTENCES.get(i % SENTENCES.size());
+            int begin = sentenceBegin + sentence[0].toLowerCase().indexOf(sentence[1].toLowerCase());
+            int end = begin + sentence[1].length();
+            CodeableConcept concept = new CodeableConcept(cas, begin, end);
+            concept.setText(FHIRPrimitives.STRING.create(cas, sentence[1], begin, end));
+            concept.setCoding(new FSArray(cas, 1));
+            Coding coding = new Coding(cas, begin, end);
+            coding.setSystem(FHIRPrimitives.URI.create(cas, "http://snomed.info/sct", begin, end));
+            coding.setCode(FHIRPrimitives.CODE.create(cas, String.valueOf(100000000 + i % SENTENCES.size()), begin, end));
+            coding.setDisplay(FHIRPrimitives.STRING.create(cas, sentence[1], begin, end));
+            coding.addToIndexes();
+            concept.setCoding(0, coding);
+            concept.addToIndexes();
+            Condition condition = new Condition(cas, begin, end);
+            condition.setCode(concept);
+            condition.addToIndexes();
+            ret.add(condition);
+            sentenceBegin += sentence[0].length() + 1;
+        }
+        return ret;
+    }
+
+    private static List<String[]> readSentences() {
+        List<String[]> ret = new ArrayList<>();
+        for (String line : readLines("sentences.tsv")) {
+            String[] columns = line.split("\t");
+            if (columns.length != 2) {
+                throw new IllegalStateException("Expected sentence and concept, got " + line);
+            }
+            ret.add(columns);
+        }
+        return ret;
+    }
+
+    /**
+     * @return The non-empty lines of a bundled resource, excluding comments
+     */
+    private static List<String> readLines(String name) {
+        List<String> ret = new ArrayList<>();
+        InputStream in = SyntheticCorpus.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalStateException("Missing bundled resource " + name);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    ret.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ret;
+    }
+}
@@ -4,10 +4,14 @@ import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.BuildablePipeline;
 import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.tasks.DeserializationTask;
 import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.tasks.ResourceTask;
 import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.tasks.SerializationTask;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.PipelineMetrics;
+import edu.mayo.bsi.nlp2fhir.pipelines.serialization.SerializationPipelineBuilder;
+import edu.mayo.bsi.nlp2fhir.terminology.TerminologyService;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -43,8 +47,17 @@ public class CLI implements Runnable {
 
     @Option(order = 5, names = {"-N", "--no-fhir"}, negatable = true, description = "Remove FHIR Bundle output. FHIR Bundle output enabled by default.")
     boolean outputFhir = true;
-    @Option(order = 5, names = {"-X", "--output-xmi"}, description = "Add XMI output. No XMI output by default.")
+    @Option(order = 5, names = {"--fhir-stream"}, description = "Stream FHIR resources into each document's Bundle as they are produced instead of building the Bundle in memory. Bundle entries are then in production order.")
+    boolean fhirStream = false;
+    @Option(order = 5, names = {"--fhir-ndjson"}, description = "Write FHIR resources to one NDJSON file per resource type (FHIR bulk data style) instead of one file per resource.")
+    boolean fhirNdjson = false;
+    @Option(order = 5, names = {"--fhir-compact"}, description = "Write compact (non pretty printed) FHIR JSON.")
+    boolean fhirCompact = false;
+    @Option(order = 5, names = {"-X", "--output-xmi"}, arity = "0..1", fallbackValue = "xmi", paramLabel = "FORMAT", description = "Add CAS output, as [xmi|binary]: XMI, or compact UIMA compressed binary (.bcas, to a bcas output subdirectory) with an embedded type system.  -X alone selects xmi.  No CAS output by default.")
+    String xmiFormat = null;
     boolean outputXmi = false;
+    @Option(order = 5, names = {"--compress-cas"}, description = "GZIP compress CAS output (.gz).  Requires -X.")
+    boolean compressCas = false;
     
     //Anafora currently disabled since not fully tested
     //@Option(order = 5, names = {"-A", "--output-anafora"}, description = "Add Anafora output. No Anafora output by default.")
@@ -54,23 +67,55 @@ public class CLI implements Runnable {
     @Option(order = 5, names = {"-T", "--output-text"}, description = "Add Text output. No Text output by default.")
     boolean outputText = false;
 
-    @Option(order = 3, names={"-t", "--input-type"}, description = "Choose input type [comp|bundle|xmi|text] for FHIR Composition Resources, FHIR Bundle Resources, XMI, and text formats repsectively.  Default=[text]")
+    @Option(order = 3, names={"-t", "--input-type"}, description = "Choose input type [comp|bundle|xmi|text] for FHIR Composition Resources, FHIR Bundle Resources, saved CASes (XMI or binary, optionally GZIP compressed), and text formats repsectively.  Default=[text]")
     String inputType="text";
     int inputmode = 3;
 
     @Option(order = 4, names={"-r", "--resources"}, arity = "1..3", description="Specify which resources to produce with the following integers:\n 0. Medication List \n 1. Procedures and Conditions\n 2. Family Medical History \n Example usage: -r 0 1 \n Default: All Resources selected")
     int[] resourcesToProduce = new int[]{0, 1, 2};
 
+    @Option(order = 6, names = {"--threads"}, description = "Number of documents to process in parallel. Each thread holds its own copy of the pipeline's analysis engines.  Default: 1")
+    int threads = 1;
+
+    @Option(order = 6, names = {"--init-threads"}, description = "Number of analysis engines instantiated concurrently on startup, rather than one after another.  Default: sequential instantiation")
+    Integer initializationThreads = null;
+
+    @Option(order = 6, names = {"--defer"}, split = ",", description = "Analysis engines (by class name, comma separated) instantiated when they first process a document rather than on startup.  Requires --init-threads.")
+    String[] deferredComponents = new String[0];
+
+    @Option(order = 6, names = {"--section-threads"}, description = "Number of sections of a long document processed in parallel through the sentence-level NLP steps, which are then merged for document-level steps.  Each thread holds its own copy of those steps' analysis engines.  Default: documents processed whole")
+    Integer sectionThreads = null;
+
+    @Option(order = 7, names = {"--terminology-cache"}, description = "File in which UMLS/SNOMEDCT lookup results are persisted between runs.  Loaded on startup if present and written on exit.  Default: no persistence")
+    String terminologyCacheFile = null;
+
+    @Option(order = 7, names = {"--snomedct-closure"}, description = "SNOMED CT closure index file (see SnomedCTClosureIndexBuilder) used for hierarchy checks instead of UMLS database lookups.  Default: none")
+    String snomedCTClosureIndexFile = null;
+
+    @Option(order = 7, names = {"--resume"}, description = "Resume an interrupted run into the same output directory: skip documents recorded as completely written in the output's manifest.tsv, and append to existing NDJSON output.")
+    boolean resume = false;
+
+    @Option(order = 7, names = {"--count-annotations"}, description = "Add the number of annotations of each type created by each analysis engine to the pipeline metrics.  Counts all annotations between engines, which slows down documents with many annotations.")
+    boolean countAnnotations = false;
+
+    @Option(order = 8, names = {"--dry-run"}, description = "Print the analysis engines that would be run to produce the selected resources, and exit without processing any documents.")
+    boolean dryRun = false;
+
     @Option(order = 10, names="--cli-debug", description = "add debug output for parsing CLI arguments to stdout.")
     boolean debug = false;
 
 
     public CompletableFuture<Boolean> buildAndExecutePipeline() {
+        return buildPipeline().executePipeline();
+    }
+
+    private BuildablePipeline buildPipeline() {
         BuildablePipeline pipeline = new BuildablePipeline();
+        pipeline.setThreads(threads);
         cr.construct(pipeline);
         ae.construct(pipeline);
         cc.construct(pipeline);
-        return pipeline.executePipeline();
+        return pipeline;
     }
 
 
@@ -98,7 +143,32 @@ public class CLI implements Runnable {
                 System.out.println("ERROR: Invalid input type <" + inputType + "> entered.  Please view available options from --help menu.");
                 System.exit(1);
         }
-
+        if (threads < 1) {
+            System.out.println("ERROR: Invalid thread count <" + threads + "> entered.  Must be at least 1.");
+            System.exit(1);
+        }
+        if (xmiFormat != null) {
+            if (!xmiFormat.equalsIgnoreCase("xmi") && !xmiFormat.equalsIgnoreCase("binary")) {
+                System.out.println("ERROR: Invalid CAS output format <" + xmiFormat + "> entered.  Must be xmi or binary.");
+                System.exit(1);
+            }
+            outputXmi = true;
+        } else if (compressCas) {
+            System.out.println("ERROR: --compress-cas requires -X.");
+            System.exit(1);
+        }
+        if (initializationThreads != null && initializationThreads < 1) {
+            System.out.println("ERROR: Invalid initialization thread count <" + initializationThreads + "> entered.  Must be at least 1.");
+            System.exit(1);
+        }
+        if (sectionThreads != null && sectionThreads < 1) {
+            System.out.println("ERROR: Invalid section thread count <" + sectionThreads + "> entered.  Must be at least 1.");
+            System.exit(1);
+        }
+        if (initializationThreads == null && deferredComponents.length > 0) {
+            System.out.println("ERROR: --defer requires --init-threads.");
+            System.exit(1);
+        }
 
 
         System.out.println("Running NLP2FHIR using CLI");
@@ -108,29 +178,67 @@ public class CLI implements Runnable {
             System.out.println("Section Definition File: " + sectionDefinitionFile);
             System.out.println("Input mode: " + inputType + " - mode selected: " + inputmode);
             System.out.println("Resources Array (array should include only from 0 to 2): " + Arrays.toString(resourcesToProduce));
-            System.out.println("Output type: Fhir:" + outputFhir + " xmi:" + outputXmi + " anafora: " + outputAnafora + " knowtator: " + outputKnowtator + " text:" + outputText);
+            System.out.println("Threads: " + threads);
+            System.out.println("Initialization Threads: " + initializationThreads + " deferred: " + Arrays.toString(deferredComponents));
+            System.out.println("Section Threads: " + sectionThreads);
+            System.out.println("Count Annotations: " + countAnnotations);
+            System.out.println("Terminology Cache File: " + terminologyCacheFile);
+            System.out.println("SNOMED CT Closure Index File: " + snomedCTClosureIndexFile);
+            System.out.println("Resume: " + resume);
+            System.out.println("FHIR output: stream:" + fhirStream + " ndjson:" + fhirNdjson + " compact:" + fhirCompact);
+            System.out.println("Output type: Fhir:" + outputFhir + " xmi:" + outputXmi + " format:" + xmiFormat + " compressed:" + compressCas + " anafora: " + outputAnafora + " knowtator: " + outputKnowtator + " text:" + outputText);
         }
 
 
         System.setProperty("ctakes.umlsuser", umlsUserName);
         System.setProperty("ctakes.umlspw", umlsApiKey);
+        if (terminologyCacheFile != null) {
+            System.setProperty(TerminologyService.SNAPSHOT_PROPERTY, terminologyCacheFile);
+        }
         cr.getOptions().get("INPUT_DIRECTORY").get(0).setValue(inputDirectory);
         cr.getOptions().get("INPUT_TYPE").get(0).setSelectedIndices(new int[]{inputmode}); //input type 3 = text
         cr.getOptions().get("SECTION_DEFINITION_FILE").get(0).setValue(sectionDefinitionFile);
+        cr.getOptions().get("RESUME_MANIFEST").get(0).setValue(resume
+                ? new File(outputDirectory, SerializationPipelineBuilder.MANIFEST_FILE_NAME).getPath()
+                : null);
 
         ae.getOptions().get("RESOURCES_TO_PRODUCE").get(0).setSelectedIndices(resourcesToProduce); //TODO: add selection (currently produce all)
+        ae.getOptions().get("SNOMEDCT_CLOSURE_INDEX").get(0).setValue(snomedCTClosureIndexFile);
+        ae.getOptions().get("INITIALIZATION_THREADS").get(0).setValue(initializationThreads == null ? null : initializationThreads.toString());
+        ae.getOptions().get("DEFERRED_COMPONENTS").get(0).setValue(String.join(",", deferredComponents));
+        ae.getOptions().get("SECTION_THREADS").get(0).setValue(sectionThreads == null ? null : sectionThreads.toString());
+        ae.getOptions().get("COUNT_ANNOTATIONS").get(0).setValue(Boolean.toString(countAnnotations));
+
+        if (dryRun) {
+            System.out.print(ae.describePlan());
+            return;
+        }
 
         cc.getOptions().get("OUTPUT_DIR").get(0).setValue(outputDirectory);
 
         //following options (0 = output, 1 = do not output).  Multiple outputs can be selected
         cc.getOptions().get("OUTPUT_XMI").get(0).setSelectedIndices(new int[]{outputXmi ? 0:1}); //if outputXmi is True: 0 for output
+        cc.getOptions().get("OUTPUT_XMI").get(1).setSelectedIndices(new int[]{"binary".equalsIgnoreCase(xmiFormat) ? 1:0}); //0 = XMI, 1 = BINARY
+        cc.getOptions().get("OUTPUT_XMI").get(2).setSelectedIndices(new int[]{compressCas ? 1:0});
         cc.getOptions().get("OUTPUT_ANAFORA").get(0).setSelectedIndices(new int[]{outputAnafora ? 0:1});
         cc.getOptions().get("OUTPUT_KNOWTATOR").get(0).setSelectedIndices(new int[]{outputKnowtator ? 0:1});
         cc.getOptions().get("OUTPUT_TEXT").get(0).setSelectedIndices(new int[]{outputText ? 0:1});
         cc.getOptions().get("OUTPUT_FHIR_BUNDLE").get(0).setSelectedIndices(new int[]{outputFhir ? 0:1});
+        //FHIR output format options (0 = false, 1 = true), except pretty printing which is enabled by default (0 = true)
+        cc.getOptions().get("OUTPUT_FHIR_BUNDLE").get(1).setSelectedIndices(new int[]{fhirStream ? 1:0});
+        cc.getOptions().get("OUTPUT_FHIR_BUNDLE").get(2).setSelectedIndices(new int[]{fhirNdjson ? 1:0});
+        cc.getOptions().get("OUTPUT_FHIR_BUNDLE").get(3).setSelectedIndices(new int[]{fhirCompact ? 1:0});
 
 
-        CompletableFuture<Boolean> result = buildAndExecutePipeline();
+        BuildablePipeline pipeline;
+        try {
+            pipeline = buildPipeline();
+        } catch (IllegalArgumentException e) { // e.g. unknown --defer engines, only known once the pipeline is built
+            System.out.println("ERROR: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        CompletableFuture<Boolean> result = pipeline.executePipeline();
         Boolean ret = null;
         try {
             while (ret == null) {
@@ -139,8 +247,15 @@ public class CLI implements Runnable {
                 } catch (InterruptedException ignored) {
                 }
             }
+            System.out.println("Pipeline metrics:");
+            System.out.print(PipelineMetrics.formatSummary());
+            if (debug) {
+                System.out.println(TerminologyService.getInstance().getStatistics());
+            }
 
         } catch (ExecutionException e1) {
+            System.out.println("Pipeline metrics up to failure:");
+            System.out.print(PipelineMetrics.formatSummary());
             e1.printStackTrace();
             throw new RuntimeException(e1);
             // TODO handle this
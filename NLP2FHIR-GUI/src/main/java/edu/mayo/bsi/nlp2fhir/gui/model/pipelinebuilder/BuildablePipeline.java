@@ -13,14 +13,22 @@ import org.apache.uima.collection.CollectionReaderDescription;
 import org.apache.uima.fit.factory.AggregateBuilder;
 import org.apache.uima.fit.internal.ResourceManagerFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.resource.CasDefinition;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.metadata.MetaDataObject;
 import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.CasPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
@@ -36,9 +44,12 @@ public class BuildablePipeline {
     private ResourceTask resourceTask;
     private SerializationTask serializationTask;
 
+    private int threads;
+
     public BuildablePipeline() {
         this.cr = null;
         this.pipeline = new AggregateBuilder();
+        this.threads = 1;
     }
 
     public CollectionReaderDescription getCollectionReader() {
@@ -77,15 +88,34 @@ public class BuildablePipeline {
         this.serializationTask = serializationTask;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads The number of analysis engine replicas to process documents with, values above 1 will run the
+     *                pipeline via {@link #runPipeline(int, CollectionReaderDescription, AnalysisEngineDescription...)}
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        this.threads = threads;
+    }
+
     public CompletableFuture<Boolean> executePipeline() {
         final CompletableFuture<Boolean> future = new CompletableFuture<>();
         if (cr == null) {
             future.completeExceptionally(new IllegalArgumentException("Cannot run a pipeline without a collection reader!"));
         } else {
-            ExecutorService threadPool = Executors.newFixedThreadPool(1); // TODO have options to run multiple simultaneous pipelines
+            ExecutorService threadPool = Executors.newFixedThreadPool(1); // Document level parallelism handled by runPipeline
             threadPool.submit(() -> {
                 try {
-                    runPipeline(cr, pipeline.createAggregateDescription());
+                    if (threads > 1) {
+                        runPipeline(threads, cr, pipeline.createAggregateDescription());
+                    } else {
+                        runPipeline(cr, pipeline.createAggregateDescription());
+                    }
                     future.complete(true);
                 } catch (Throwable e) {
                     e.printStackTrace();
@@ -134,4 +164,129 @@ public class BuildablePipeline {
             aae.destroy();
         }
     }
+
+    /**
+     * Runs a pipeline with multiple {@link AnalysisEngine} replicas processing documents in parallel. <br>
+     * <br>
+     * All replicas share a single {@link ResourceManager} so that shared resources are only loaded once. The calling
+     * thread acts as the reader thread, populating CASes borrowed from a bounded {@link CasPool} and handing them
+     * off to a worker pool: once every pooled CAS is in flight the reader blocks until a worker releases one.
+     *
+     * @param threads    The number of analysis engine replicas/worker threads to use
+     * @param readerDesc The collection reader supplying documents
+     * @param descs      The analysis engines to run
+     */
+    public static void runPipeline(final int threads,
+                                   final CollectionReaderDescription readerDesc,
+                                   final AnalysisEngineDescription... descs) throws UIMAException, IOException {
+        ResourceManager resMgr = ResourceManagerFactory.newResourceManager();
+
+        // Create the components
+        final CollectionReader reader = UIMAFramework.produceCollectionReader(readerDesc, resMgr, null);
+
+        // Create AAE
+        final AnalysisEngineDescription aaeDesc = createEngineDescription(descs);
+
+        // Instantiate AAE replicas, all sharing the same resource manager
+        final List<AnalysisEngine> replicas = new ArrayList<>(threads);
+        final BlockingQueue<AnalysisEngine> idleReplicas = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) {
+            AnalysisEngine aae = UIMAFramework.produceAnalysisEngine(aaeDesc, resMgr, null);
+            replicas.add(aae);
+            idleReplicas.add(aae);
+        }
+
+        // Create CAS pool from merged metadata, two per thread so that the reader can stay ahead of the workers
+        List<MetaDataObject> metadata = new ArrayList<>();
+        metadata.add(reader.getMetaData());
+        metadata.add(replicas.get(0).getMetaData());
+        final CasPool casPool = new CasPool(threads * 2, new CasDefinition(metadata, resMgr), null);
+        CAS initCas = casPool.getCas(0);
+        reader.typeSystemInit(initCas.getTypeSystem());
+        casPool.releaseCas(initCas);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            // Process
+            while (reader.hasNext()) {
+                final CAS cas = casPool.getCas(0);
+                try {
+                    reader.getNext(cas);
+                } catch (Throwable e) {
+                    casPool.releaseCas(cas);
+                    throw e;
+                }
+                workers.execute(new DocumentTask(cas, casPool, idleReplicas));
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Wait for in-flight documents to complete
+            }
+
+            // Signal end of processing
+            for (AnalysisEngine aae : replicas) {
+                aae.collectionProcessComplete();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UIMAException(e);
+        } finally {
+            // Documents not yet picked up by a worker are dropped, return their CASes to the pool
+            for (Runnable task : workers.shutdownNow()) {
+                casPool.releaseCas(((DocumentTask) task).cas);
+            }
+            // Replicas must not be destroyed while workers are still processing documents with them
+            boolean interrupted = Thread.interrupted();
+            while (true) {
+                try {
+                    if (workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            // Destroy
+            for (AnalysisEngine aae : replicas) {
+                aae.destroy();
+            }
+            reader.destroy();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Processes a read document with the next idle replica, releasing its CAS once done
+     */
+    private static class DocumentTask implements Runnable {
+        private final CAS cas;
+        private final CasPool casPool;
+        private final BlockingQueue<AnalysisEngine> idleReplicas;
+
+        DocumentTask(CAS cas, CasPool casPool, BlockingQueue<AnalysisEngine> idleReplicas) {
+            this.cas = cas;
+            this.casPool = casPool;
+            this.idleReplicas = idleReplicas;
+        }
+
+        @Override
+        public void run() {
+            AnalysisEngine aae = null;
+            try {
+                aae = idleReplicas.take();
+                aae.process(cas);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Processing was aborted
+            } catch (Throwable e) {
+                e.printStackTrace(); // Don't stop processing due to error in a document
+            } finally {
+                if (aae != null) {
+                    idleReplicas.add(aae);
+                }
+                casPool.releaseCas(cas);
+            }
+        }
+    }
 }
@@ -22,6 +22,7 @@ public class DeserializationTask implements PipelineTask {
     private enum KEYS {
         INPUT_DIRECTORY,
         INPUT_TYPE,
+        RESUME_MANIFEST,
         SECTION_DEFINITION_DIR,
         SECTION_DEFINITION_FILE
     }
@@ -36,6 +37,8 @@ public class DeserializationTask implements PipelineTask {
                                 true,
                                 1,
                                 "COMPOSITION_RESOURCE", "BUNDLE_RESOURCE", "XMI", "TEXT")));
+        DESERIALIZATION_OPTIONS.put(KEYS.RESUME_MANIFEST.name(),
+                Collections.singletonList(new Option("Resume From Manifest File", false, 0)));
         DESERIALIZATION_OPTIONS_ABRIDGED = new LinkedHashMap<>(DESERIALIZATION_OPTIONS);
         DESERIALIZATION_OPTIONS.put(KEYS.SECTION_DEFINITION_DIR.name(),
                 Collections.singletonList(
@@ -87,13 +90,14 @@ public class DeserializationTask implements PipelineTask {
         } else {
             type = selected.get(0).toString();
         }
+        String manifest = getResumeManifest();
         switch (type) {
             case "COMPOSITION_RESOURCE": {
                 try {
                     pipeline.setCollectionReader(CollectionReaderFactory.createReaderDescription(
                             FHIRJSONCompositionResourceReader.class,
-                            FHIRJSONCompositionResourceReader.PARAM_INPUTDIR,
-                            inputDir));
+                            withManifest(manifest, FHIRJSONCompositionResourceReader.PARAM_MANIFEST,
+                                    FHIRJSONCompositionResourceReader.PARAM_INPUTDIR, inputDir)));
                     break;
                 } catch (ResourceInitializationException e) {
                     throw new RuntimeException(e);
@@ -107,8 +111,8 @@ public class DeserializationTask implements PipelineTask {
                 try {
                     pipeline.setCollectionReader(CollectionReaderFactory.createReaderDescription(
                             FHIRXMIFileSystemReader.class,
-                            FHIRXMIFileSystemReader.PARAM_INPUTDIR,
-                            inputDir));
+                            withManifest(manifest, FHIRXMIFileSystemReader.PARAM_MANIFEST,
+                                    FHIRXMIFileSystemReader.PARAM_INPUTDIR, inputDir)));
                     mustDefineSections = true;
                     break;
                 } catch (ResourceInitializationException e) {
@@ -119,8 +123,8 @@ public class DeserializationTask implements PipelineTask {
                 try {
                     pipeline.setCollectionReader(CollectionReaderFactory.createReaderDescription(
                             FHIRFileSystemReader.class,
-                            FHIRFileSystemReader.PARAM_INPUTDIR,
-                            inputDir));
+                            withManifest(manifest, FHIRFileSystemReader.PARAM_MANIFEST,
+                                    FHIRFileSystemReader.PARAM_INPUTDIR, inputDir)));
                     mustDefineSections = true;
                     break;
                 } catch (ResourceInitializationException e) {
@@ -138,6 +142,29 @@ public class DeserializationTask implements PipelineTask {
         }
     }
 
+    /**
+     * @return The given reader parameters, followed by the manifest parameter if resuming. The parameter is omitted
+     * otherwise, as undeclared parameters of legacy readers cannot be declared from null values.
+     */
+    private static Object[] withManifest(String manifest, String manifestParam, Object... params) {
+        if (manifest == null) {
+            return params;
+        }
+        Object[] ret = Arrays.copyOf(params, params.length + 2);
+        ret[params.length] = manifestParam;
+        ret[params.length + 1] = manifest;
+        return ret;
+    }
+
+    /**
+     * @return The output manifest of an interrupted run whose completed documents are to be skipped, or null if not
+     * resuming
+     */
+    public String getResumeManifest() {
+        String manifest = DESERIALIZATION_OPTIONS.get(KEYS.RESUME_MANIFEST.name()).get(0).getValue();
+        return manifest == null || manifest.trim().isEmpty() ? null : manifest.trim();
+    }
+
     @Override
     public String trackUpdateOption() {
         return "Input Type";
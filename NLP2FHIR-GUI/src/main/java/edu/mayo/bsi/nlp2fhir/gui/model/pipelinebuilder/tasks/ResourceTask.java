@@ -7,6 +7,7 @@ import edu.mayo.bsi.nlp2fhir.pipelines.SourceNLPSystem;
 import edu.mayo.bsi.nlp2fhir.pipelines.resources.ResourcePipelineBuilder;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import java.io.File;
 import java.util.*;
 import java.util.function.Function;
 
@@ -14,7 +15,12 @@ public class ResourceTask implements PipelineTask {
     private static HashMap<String, List<Option>> RESOURCE_OPTIONS;
 
     private enum KEYS {
-        RESOURCES_TO_PRODUCE
+        RESOURCES_TO_PRODUCE,
+        SNOMEDCT_CLOSURE_INDEX,
+        INITIALIZATION_THREADS,
+        DEFERRED_COMPONENTS,
+        SECTION_THREADS,
+        COUNT_ANNOTATIONS
     }
 
     public static final String PRODUCED_RESOURCE_OPTION_KEY = KEYS.RESOURCES_TO_PRODUCE.name();
@@ -48,6 +54,31 @@ public class ResourceTask implements PipelineTask {
                                     }
                                 }, "FamilyMemberHistory")
                         )));
+        RESOURCE_OPTIONS.put(KEYS.SNOMEDCT_CLOSURE_INDEX.name(),
+                Collections.singletonList(
+                        new Option("SNOMED CT Closure Index File",
+                                false,
+                                0)));
+        RESOURCE_OPTIONS.put(KEYS.INITIALIZATION_THREADS.name(),
+                Collections.singletonList(
+                        new Option("Engines Initialized Concurrently (blank for sequential)",
+                                false,
+                                0)));
+        RESOURCE_OPTIONS.put(KEYS.DEFERRED_COMPONENTS.name(),
+                Collections.singletonList(
+                        new Option("Engines Initialized on First Use (comma separated class names)",
+                                false,
+                                0)));
+        RESOURCE_OPTIONS.put(KEYS.SECTION_THREADS.name(),
+                Collections.singletonList(
+                        new Option("Sections Processed Concurrently per Document (blank to process documents whole)",
+                                false,
+                                0)));
+        RESOURCE_OPTIONS.put(KEYS.COUNT_ANNOTATIONS.name(),
+                Collections.singletonList(
+                        new Option("Count Annotations Created per Engine in Metrics (true/false)",
+                                false,
+                                0)));
     }
 
 
@@ -63,12 +94,42 @@ public class ResourceTask implements PipelineTask {
 
     @Override
     public void construct(BuildablePipeline pipeline) {
+        pipeline.getPipeline().add(createBuilder().build());
+        pipeline.setResourceTask(this);
+    }
+
+    /**
+     * @return A report of the analysis engines that would be run to produce the selected resources, see
+     * {@link ResourcePipelineBuilder#describePlan()}
+     */
+    public String describePlan() {
+        return createBuilder().describePlan();
+    }
+
+    private ResourcePipelineBuilder createBuilder() {
         ResourcePipelineBuilder builder = ResourcePipelineBuilder.newBuilder(false, SourceNLPSystem.CTAKES, SourceNLPSystem.MEDTIME, SourceNLPSystem.MEDXN);
+        String closureIndexPath = RESOURCE_OPTIONS.get(KEYS.SNOMEDCT_CLOSURE_INDEX.name()).get(0).getValue();
+        if (closureIndexPath != null && closureIndexPath.trim().length() > 0) {
+            builder.withSnomedCTClosureIndex(new File(closureIndexPath));
+        }
+        String initializationThreads = RESOURCE_OPTIONS.get(KEYS.INITIALIZATION_THREADS.name()).get(0).getValue();
+        if (initializationThreads != null && initializationThreads.trim().length() > 0) {
+            String deferred = RESOURCE_OPTIONS.get(KEYS.DEFERRED_COMPONENTS.name()).get(0).getValue();
+            builder.withConcurrentInitialization(Integer.parseInt(initializationThreads.trim()),
+                    deferred == null || deferred.trim().isEmpty() ? new String[0] : deferred.trim().split("\\s*,\\s*"));
+        }
+        String countAnnotations = RESOURCE_OPTIONS.get(KEYS.COUNT_ANNOTATIONS.name()).get(0).getValue();
+        if (countAnnotations != null && Boolean.parseBoolean(countAnnotations.trim())) {
+            builder.withInstrumentation(true, true);
+        }
+        String sectionThreads = RESOURCE_OPTIONS.get(KEYS.SECTION_THREADS.name()).get(0).getValue();
+        if (sectionThreads != null && sectionThreads.trim().length() > 0) {
+            builder.withSectionParallelism(Integer.parseInt(sectionThreads.trim()));
+        }
         for (Object o : RESOURCE_OPTIONS.get(KEYS.RESOURCES_TO_PRODUCE.name()).get(0).getSelected()) {
             ((Invocation)o).callable.apply(builder);
         }
-        pipeline.getPipeline().add(builder.build());
-        pipeline.setResourceTask(this);
+        return builder;
     }
 
     @Override
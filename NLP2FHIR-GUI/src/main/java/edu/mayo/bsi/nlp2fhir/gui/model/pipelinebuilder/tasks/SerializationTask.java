@@ -7,6 +7,7 @@ import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.BuildablePipeline;
 import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.PipelineTask;
 import edu.mayo.bsi.nlp2fhir.gui.model.pipelinebuilder.options.Option;
 import edu.mayo.bsi.nlp2fhir.pipelines.serialization.SerializationPipelineBuilder;
+import edu.mayo.bsi.nlp2fhir.postprocessors.CasFileFormat;
 
 import java.io.File;
 import java.util.*;
@@ -31,12 +32,19 @@ public class SerializationTask implements PipelineTask {
         SERIALIZATION_OPTIONS = new LinkedHashMap<>();
         SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_DIR.name(),
                 Collections.singletonList(new Option("Output Directory", true, 0)));
-        SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_XMI.name(),
-                Collections.singletonList(new Option("Create XMIs", true, 1, true, false)));
+        SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_XMI.name(), Arrays.asList(
+                new Option("Create XMIs", true, 1, true, false),
+                new Option("CAS Format", true, 1, "XMI", "BINARY"),
+                new Option("Compress CAS Files", true, 1, false, true)
+        ));
         SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_TEXT.name(),
                 Collections.singletonList(new Option("Create Text Documents", true, 1, true, false)));
-        SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_FHIR_BUNDLE.name(),
-                Collections.singletonList(new Option("Create FHIR JSON Resources", true, 1, true, false)));
+        SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_FHIR_BUNDLE.name(), Arrays.asList(
+                new Option("Create FHIR JSON Resources", true, 1, true, false),
+                new Option("Stream FHIR Bundles", true, 1, false, true),
+                new Option("Write FHIR Resources as NDJSON", true, 1, false, true),
+                new Option("Pretty Print FHIR JSON", true, 1, true, false)
+        ));
         SERIALIZATION_OPTIONS.put(KEYS.OUTPUT_ANAFORA.name(), Arrays.asList(
                 new Option("Create Anafora Project", true, 1, true, false),
                 new Option("Anafora Annotator Username", true, 0),
@@ -61,16 +69,27 @@ public class SerializationTask implements PipelineTask {
         pipeline.setSerializationTask(this);
         SerializationPipelineBuilder builder =
                 SerializationPipelineBuilder.newBuilder(
-                        new File(SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_DIR.name()).get(0).getValue()));
+                        new File(SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_DIR.name()).get(0).getValue()),
+                        pipeline.getDeserializationTask() != null
+                                && pipeline.getDeserializationTask().getResumeManifest() != null);
 
         if ((boolean) SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_XMI.name()).get(0).getSelected().get(0)) {
-            builder.addXMIOutput();
+            List<Option> casOptions = SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_XMI.name());
+            List<Object> format = casOptions.get(1).getSelected();
+            List<Object> compress = casOptions.get(2).getSelected();
+            builder.addXMIOutput(
+                    format.isEmpty() ? CasFileFormat.XMI : CasFileFormat.valueOf(format.get(0).toString()),
+                    !compress.isEmpty() && (boolean) compress.get(0));
         }
         if ((boolean) SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_TEXT.name()).get(0).getSelected().get(0)) {
             builder.addDocumentOutput();
         }
         if ((boolean) SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_FHIR_BUNDLE.name()).get(0).getSelected().get(0)) {
-            builder.addFHIRJSONOutput();
+            List<Option> fhirOptions = SERIALIZATION_OPTIONS.get(KEYS.OUTPUT_FHIR_BUNDLE.name());
+            builder.addFHIRJSONOutput(
+                    (boolean) fhirOptions.get(1).getSelected().get(0),
+                    (boolean) fhirOptions.get(2).getSelected().get(0),
+                    (boolean) fhirOptions.get(3).getSelected().get(0));
         }
         Set<String> producedResources = new HashSet<>();
         for (Object o : pipeline.getResourceTask().getOptions().get(ResourceTask.PRODUCED_RESOURCE_OPTION_KEY).get(0).getSelected()) {
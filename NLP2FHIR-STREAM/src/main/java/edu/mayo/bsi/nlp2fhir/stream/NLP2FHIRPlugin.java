@@ -1,12 +1,16 @@
 package edu.mayo.bsi.nlp2fhir.stream;
 
+import edu.mayo.bsi.nlp2fhir.performance.metrics.EngineMetrics;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.PipelineMetrics;
 import edu.mayo.bsi.nlp2fhir.pipelines.SourceNLPSystem;
 import edu.mayo.bsi.nlp2fhir.pipelines.resources.ResourcePipelineBuilder;
 import edu.mayo.bsi.uima.server.api.UIMAServer;
 import edu.mayo.bsi.uima.server.api.UIMAServerPlugin;
+import org.apache.uima.UIMAFramework;
 import org.apache.uima.fit.factory.AggregateBuilder;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Level;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
@@ -14,8 +18,19 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class NLP2FHIRPlugin implements UIMAServerPlugin {
+    /**
+     * The interval at which the pipeline metrics are logged, in seconds, or 0 to not log them
+     */
+    public static final String METRICS_LOG_INTERVAL_PROPERTY = "nlp2fhir.metrics.log.interval.seconds";
+
+    private ScheduledExecutorService metricsLogger;
+    private long loggedDocuments = 0;
+
     @Override
     public String getName() {
         return "nlp2fhir";
@@ -35,14 +50,44 @@ public class NLP2FHIRPlugin implements UIMAServerPlugin {
                     .newBuilder(SourceNLPSystem.CTAKES, SourceNLPSystem.MEDTIME, SourceNLPSystem.MEDXN)
                     .addMedicationListResources()
                     .addProblemListResources()
+                    .withConcurrentInitialization(Math.min(4, Runtime.getRuntime().availableProcessors()))
                     .build(), "_InitialView", "text"
             );
             server.registerStream("nlp2fhir", null, extractionPipeline.createAggregateDescription());
             server.registerSerializer("nlp2fhir", new NLP2FHIRResourceBundleSerializer());
+            server.registerSerializer("nlp2fhir-metrics", new PipelineMetricsSerializer());
+            scheduleMetricsLogging(Long.getLong(METRICS_LOG_INTERVAL_PROPERTY, 300));
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | MalformedURLException | ResourceInitializationException e) {
             e.printStackTrace();
         }
 
 
     }
+
+    private void scheduleMetricsLogging(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        metricsLogger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nlp2fhir-metrics-logger");
+            t.setDaemon(true);
+            return t;
+        });
+        metricsLogger.scheduleAtFixedRate(this::logMetrics, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Logs the pipeline metrics, if any documents were processed since they were last logged
+     */
+    private void logMetrics() {
+        long documents = 0;
+        for (EngineMetrics engine : PipelineMetrics.getEngines()) {
+            documents = Math.max(documents, engine.getDocuments() + engine.getErrors());
+        }
+        if (documents == loggedDocuments) {
+            return;
+        }
+        loggedDocuments = documents;
+        UIMAFramework.getLogger(NLP2FHIRPlugin.class).log(Level.INFO, "Pipeline metrics:\n" + PipelineMetrics.formatSummary());
+    }
 }
@@ -0,0 +1,18 @@
+package edu.mayo.bsi.nlp2fhir.stream;
+
+import edu.mayo.bsi.nlp2fhir.performance.metrics.PipelineMetrics;
+import edu.mayo.bsi.uima.server.api.UIMANLPResultSerializer;
+import org.apache.uima.cas.CAS;
+
+import java.io.Serializable;
+
+/**
+ * Returns the {@link PipelineMetrics} of this server, as JSON, alongside each processed document, such that clients
+ * can monitor the pipeline. The metrics include the document just processed.
+ */
+public class PipelineMetricsSerializer implements UIMANLPResultSerializer {
+    @Override
+    public Serializable serializeNLPResult(CAS casimpl) {
+        return PipelineMetrics.toJson();
+    }
+}
@@ -2,6 +2,7 @@ package edu.mayo.bsi.nlp2fhir.web.controllers;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
+import edu.mayo.bsi.nlp2fhir.web.metrics.PipelineMetricsBinder;
 import edu.mayo.bsi.nlp2fhir.web.pipeline.ProcessingRequest;
 
 import edu.mayo.bsi.uima.server.rest.models.ServerRequest;
@@ -19,13 +20,19 @@ import org.springframework.web.client.RestTemplate;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 @Controller
 public class PipelineController {
     private IParser FHIRPARSER = FhirContext.forDstu3().newJsonParser().setPrettyPrint(true);
+    private final PipelineMetricsBinder metrics;
+
+    public PipelineController(PipelineMetricsBinder metrics) {
+        this.metrics = metrics;
+    }
 
 
     @GetMapping(value = "/")
@@ -48,8 +55,12 @@ public class PipelineController {
         composition.setId("Composition/" + UUID.randomUUID());
         try {
             resp.setStatus(200);
-            ServerRequest request = new ServerRequest("nlp2fhir", null, FHIRPARSER.encodeResourceToString(composition), Collections.singleton("nlp2fhir"));
+            ServerRequest request = new ServerRequest("nlp2fhir", null, FHIRPARSER.encodeResourceToString(composition), new HashSet<>(Arrays.asList("nlp2fhir", "nlp2fhir-metrics")));
             ServerResponse response = new RestTemplate().postForObject("http://localhost:8081/", request, ServerResponse.class);
+            String snapshot = response.getContent().get("nlp2fhir-metrics");
+            if (snapshot != null) {
+                metrics.update(snapshot);
+            }
             resp.getWriter().append(response.getContent().get("nlp2fhir")).flush();
         } catch (Throwable e) {
             resp.setStatus(500);
@@ -0,0 +1,123 @@
+package edu.mayo.bsi.nlp2fhir.web.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the per engine metrics of the NLP2FHIR pipeline as actuator metrics. The pipeline runs within the UIMA server
+ * rather than this application, so metrics are those of the latest snapshot returned by the server's "nlp2fhir-metrics"
+ * serializer alongside a processed document, tagged by engine:
+ * <ul>
+ * <li>nlp2fhir.engine.documents, nlp2fhir.engine.errors: documents processed by and failed within the engine</li>
+ * <li>nlp2fhir.engine.time: time spent processing documents, nlp2fhir.engine.time.max: the longest time taken</li>
+ * <li>nlp2fhir.engine.latency: documents processed within at most the time given by tag "le", in milliseconds</li>
+ * <li>nlp2fhir.engine.characters: document characters processed</li>
+ * <li>nlp2fhir.engine.annotations: annotations created, tagged by type</li>
+ * <li>nlp2fhir.engine.counter: counters specific to the engine, e.g. relation candidates considered, tagged by name</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetricsBinder {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MeterRegistry registry;
+    private final Map<String, JsonNode> engines = new ConcurrentHashMap<>();
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    public PipelineMetricsBinder(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param json A metrics snapshot as returned by the UIMA server
+     * @throws IOException If the snapshot is not valid JSON
+     */
+    public void update(String json) throws IOException {
+        JsonNode snapshot = MAPPER.readTree(json);
+        JsonNode bounds = snapshot.path("latencyBoundsMillis");
+        for (JsonNode engine : snapshot.path("engines")) {
+            String name = engine.path("name").asText();
+            engines.put(name, engine);
+            if (registered.add(name)) {
+                register(name, bounds);
+            }
+            Iterator<String> types = engine.path("annotations").fieldNames();
+            while (types.hasNext()) {
+                String type = types.next();
+                if (registered.add(name + '\u0000' + type)) {
+                    FunctionCounter.builder("nlp2fhir.engine.annotations", this,
+                            b -> b.get(name).path("annotations").path(type).asDouble())
+                            .tags("engine", name, "type", type)
+                            .register(registry);
+                }
+            }
+            Iterator<String> counters = engine.path("counters").fieldNames();
+            while (counters.hasNext()) {
+                String counter = counters.next();
+                if (registered.add(name + '\u0001' + counter)) {
+                    FunctionCounter.builder("nlp2fhir.engine.counter", this,
+                            b -> b.get(name).path("counters").path(counter).asDouble())
+                            .tags("engine", name, "counter", counter)
+                            .register(registry);
+                }
+            }
+        }
+    }
+
+    private void register(String name, JsonNode bounds) {
+        FunctionCounter.builder("nlp2fhir.engine.documents", this, b -> b.get(name).path("documents").asDouble())
+                .tag("engine", name)
+                .register(registry);
+        FunctionCounter.builder("nlp2fhir.engine.errors", this, b -> b.get(name).path("errors").asDouble())
+                .tag("engine", name)
+                .register(registry);
+        FunctionCounter.builder("nlp2fhir.engine.characters", this, b -> b.get(name).path("characters").asDouble())
+                .tag("engine", name)
+                .register(registry);
+        FunctionTimer.builder("nlp2fhir.engine.time", this,
+                b -> b.get(name).path("documents").asLong(),
+                b -> b.get(name).path("totalNanos").asDouble(),
+                TimeUnit.NANOSECONDS)
+                .tag("engine", name)
+                .register(registry);
+        Gauge.builder("nlp2fhir.engine.time.max", this, b -> b.get(name).path("maxNanos").asDouble() / 1e6)
+                .tag("engine", name)
+                .baseUnit("milliseconds")
+                .register(registry);
+        for (int i = 0; i <= bounds.size(); i++) {
+            int bucket = i;
+            String le = i < bounds.size() ? bounds.get(i).asText() : "+Inf";
+            FunctionCounter.builder("nlp2fhir.engine.latency", this, b -> b.getCumulativeCount(name, bucket))
+                    .tags("engine", name, "le", le)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * @return The number of documents within the given latency bucket or any lower one
+     */
+    private double getCumulativeCount(String name, int bucket) {
+        JsonNode counts = engines.get(name).path("latencyCounts");
+        double ret = 0;
+        for (int i = 0; i <= bucket && i < counts.size(); i++) {
+            ret += counts.get(i).asDouble();
+        }
+        return ret;
+    }
+
+    private JsonNode get(String name) {
+        return engines.get(name);
+    }
+}
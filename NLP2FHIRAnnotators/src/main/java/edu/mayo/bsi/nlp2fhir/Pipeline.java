@@ -29,17 +29,12 @@ import org.ohnlp.medtagger.cr.FileSystemReader;
 import org.ohnlp.medtime.ae.MedTimeAnnotator;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Main class containing builders for aggregate pipelines for various tasks. Also contains a main method that
  * runs all current annotators
  */
 public class Pipeline {
-    private static final String PATH_TO_EVAL_TMP = "eval";
-
     public static void main(String[] args) throws UIMAException, IOException, ClassNotFoundException {
         // Check and Initialize Required Resources
         System.setProperty("vocab.src.dir", System.getProperty("user.dir"));
@@ -101,7 +96,7 @@ public class Pipeline {
         // - Evaluation
         pipelineBuilder.add(AnalysisEngineFactory.createEngineDescription(GoldStandardEvaluationAnalysisEngine.class,
                 GoldStandardEvaluationAnalysisEngine.KNOWTATOR_DEF, "fhir_annotation.pins",
-                GoldStandardEvaluationAnalysisEngine.EVAL_DIR, PATH_TO_EVAL_TMP));
+                GoldStandardEvaluationAnalysisEngine.RESULTS_FILE, "evaluation.results"));
         // - Output
         pipelineBuilder.add(AnalysisEngineFactory.createEngineDescription(XMIWriterPostProcessor.class,
                 XMIWriterPostProcessor.PARAM_OUTPUT_DIR, "out"
@@ -113,37 +108,7 @@ public class Pipeline {
         AnalysisEngineDescription pipeline = pipelineBuilder.createAggregateDescription();
         SimplePipeline.runPipeline(cr, pipeline);
 
-        // Perform Aggregation Tasks (Evaluation, Knowtator Generation)
-        // - Aggregate Evaluation Results
-        File f = new File(PATH_TO_EVAL_TMP);
-        if (!f.exists()) {
-            if (!f.mkdirs()) {
-                throw new RuntimeException("Could not initialize temp directory for evaluation!");
-            }
-        }
-        Map<String, ArrayList<Integer>> typeToValues = new HashMap<>(); // Stores evaluation results for aggregation, see GoldStandardEvaluationAnnotator for format
-        File[] evalFiles = f.listFiles(new FileUtil.ExtFilenameFilter("eval"));
-        if (evalFiles == null) {
-            throw new RuntimeException("Could not access evaluation files!");
-        }
-        for (File evalFile : evalFiles) {
-            String name = evalFile.getName().substring(0, evalFile.getName().length() - 5);
-            String type = name.split("-_-_-")[1];
-            if (!typeToValues.containsKey(type)) {
-                ArrayList<Integer> in = new ArrayList<>();
-                typeToValues.put(type, in);
-                for (int i = 0; i < 3; i++) {
-                    in.add(0);
-                }
-            }
-            BufferedReader reader = new BufferedReader(new FileReader(evalFile));
-            String line = reader.readLine();
-            String[] parsed = line.split("\\|");
-            ArrayList<Integer> aggregate = typeToValues.get(type);
-            for (int i = 0; i < 3; i++) {
-                aggregate.set(i, aggregate.get(i) + Integer.valueOf(parsed[i]));
-            }
-        }
+        // Perform Aggregation Tasks (Knowtator Generation), evaluation results are written by the evaluation engine
         // - Combine Knowtator annotations
         StringBuilder sB = new StringBuilder();
         File[] tmpFiles = new File("temp").listFiles(new FileUtil.ExtFilenameFilter("tmp"));
@@ -151,45 +116,17 @@ public class Pipeline {
             throw new RuntimeException("Could not access generated temp files!");
         }
         for (File tmp : tmpFiles) {
-            BufferedReader reader = new BufferedReader(new FileReader(tmp));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sB.append(line).append("\n");
+            try (BufferedReader reader = new BufferedReader(new FileReader(tmp))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sB.append(line).append("\n");
+                }
             }
-            reader.close();
         }
         File knowtator = new File("GeneratedKnowtator.txt");
-        FileWriter writer = new FileWriter(knowtator);
-        writer.write(sB.toString());
-        writer.flush();
-        writer.close();
-        // Output evaluation results
-        FileWriter resultsWriter = new FileWriter(new File("evaluation.results"));
-        ArrayList<String> keys = new ArrayList<>(typeToValues.keySet());
-        keys.sort(String::compareTo);
-        for (String s : keys) {
-            resultsWriter.write("===============================\n");
-            resultsWriter.write(s + "\n");
-            resultsWriter.write("===============================\n");
-            ArrayList<Integer> aggregate = typeToValues.get(s);
-            // NLP2FHIR
-            double truePositiveNLP2FHIR = aggregate.get(0);
-            double falsePositiveNLP2FHIR = aggregate.get(1);
-            double falseNegativeNLP2FHIR = aggregate.get(2);
-            double recallNLP2FHIR = truePositiveNLP2FHIR / (truePositiveNLP2FHIR + falseNegativeNLP2FHIR);
-            double precisionNLP2FHIR = truePositiveNLP2FHIR / (truePositiveNLP2FHIR + falsePositiveNLP2FHIR);
-            double f1NLP2FHIR = 2 * ((precisionNLP2FHIR * recallNLP2FHIR) / (precisionNLP2FHIR + recallNLP2FHIR));
-            resultsWriter.write("NLP2FHIR Results:\n");
-            resultsWriter.write("- Recall: " + recallNLP2FHIR + "\n");
-            resultsWriter.write("- Precision: " + precisionNLP2FHIR + "\n");
-            resultsWriter.write("- F1-Score: " + f1NLP2FHIR + "\n");
-            resultsWriter.write("- True Positives: " + truePositiveNLP2FHIR + "\n");
-            resultsWriter.write("- False Positives: " + falsePositiveNLP2FHIR + "\n");
-            resultsWriter.write("- False Negatives: " + falseNegativeNLP2FHIR + "\n");
-            resultsWriter.write("\n");
-            resultsWriter.flush();
+        try (FileWriter writer = new FileWriter(knowtator)) {
+            writer.write(sB.toString());
         }
-        resultsWriter.close();
     }
 
 }
@@ -21,6 +21,8 @@ public class RegexpStatements {
      * - 9: period length 2 (if range in the form "x-y hours/days/etc), otherwise append to match 5 for period length" <br>
      * - 10: time period unit (e.g. hours, days, seconds, etc) <br>
      * - 11: special -lys that can be seen as a frequency even while standalone
+     *
+     * @see edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser
      */
     public static Pattern FREQPERIOD = Pattern.compile(
             // Header Numeric or numeric range or the word "every"
@@ -42,6 +44,8 @@ public class RegexpStatements {
      * <br>
      * Group 1: present if "every other" is the header (period = 2 weeks) <br>
      * Group 2: comma, space, or dash separated list of days <br>
+     *
+     * @see edu.mayo.bsi.nlp2fhir.transformers.timing.TimingPhraseParser
      */
     public static Pattern PERIOD_WEEKDAYS = Pattern.compile("(?:on|every (other)?)((?:[, -]+?(?:and )?[montuewdhfrisa]{3,6}days?)+)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
 
@@ -55,11 +59,15 @@ public class RegexpStatements {
      * <br>
      * Group 1: before, after, at, during, every, with
      * Group 2: breakfast, lunch, dinner, meal(s)
+     *
+     * @see edu.mayo.bsi.nlp2fhir.transformers.timing.TimingPhraseParser
      */
     public static Pattern TIMING_EVENTS = Pattern.compile("(before|after|at|during|every|with|on)(?: )+(breakfast|lunch|dinner|meals?|sleep|bedtime|waking)");
 
     /**
      * A regular expression that identifies times of day (morning, afternoon, evening, night)
+     *
+     * @see edu.mayo.bsi.nlp2fhir.transformers.timing.TimingPhraseParser
      */
     public static Pattern TIME_OF_DAY = Pattern.compile("(?:at|in the|every|during the)(?: )+(morning|afternoon|evening|night)");
 
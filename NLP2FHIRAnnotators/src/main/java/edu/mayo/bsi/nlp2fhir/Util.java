@@ -1,14 +1,13 @@
 package edu.mayo.bsi.nlp2fhir;
 
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.hl7.fhir.Element;
 import org.hl7.fhir.UnitsOfTime;
 import org.sqlite.SQLiteConfig;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.*;
 import java.util.*;
 
@@ -65,104 +64,16 @@ public class Util {
         return null;
     }
 
+    /**
+     * Normalizes a number written in text (e.g. "1,000", "1/2" or "twenty one") into its string representation
+     *
+     * @param input The number as written in text
+     * @return The normalized number, without a fraction if integral
+     * @throws NumberFormatException If input does not contain a number
+     * @see NumberNormalizer#parse(CharSequence, int, int) for callers requiring the numeric value
+     */
     public static String normalizeNumber(String input) {
-        // Process divisions
-        if (input.contains("/")) {
-            String[] split = input.split("/");
-            double[] values = new double[split.length];
-            for (int i = 0; i < values.length; i++) {
-                values[i] = Double.valueOf(normalizeNumber(split[i]));
-            }
-            double val = values[0];
-            for (int i = 1; i < split.length; i++) {
-                val /= values[i]; // TODO this is naive/doesn't respect order of operations (should NOT be a concern, but for completeness)
-            }
-            return val + "";
-        }
-        // Process numeric
-        input = input.replaceAll(",", ""); // Remove grouping separators
-        if (input.matches("[0-9]+")) { // Direct parse
-            return Integer.valueOf(input) + "";
-        }
-        if (input.matches("[0-9]+(.[0-9]+)?")) {
-            return Double.valueOf(input) + "";
-        }
-        // Process text
-        int sum = 0;
-        String[] split = input.toLowerCase().split("[ -]");
-        // Arrive at final number via summation
-        for (String s : split) {
-            if (s.equalsIgnoreCase("and")) {
-                continue;
-            }
-            if (s.equalsIgnoreCase("twenty")) { // Annoying special case
-                sum += 20;
-                continue;
-            }
-            String prefix = s.substring(0, 3);
-            int temp = 0;
-            switch (prefix) {
-                case "zer":
-                    temp += 0;
-                    break;
-                case "one":
-                case "onc":
-                    temp += 1;
-                    break;
-                case "two":
-                case "twi":
-                    temp += 2;
-                    break;
-                case "thr":
-                case "thi":
-                    temp += 3;
-                    break;
-                case "fou":
-                    temp += 4;
-                    break;
-                case "fiv":
-                case "fif":
-                    temp += 5;
-                    break;
-                case "six":
-                    temp += 6;
-                    break;
-                case "sev":
-                    temp += 7;
-                    break;
-                case "eig":
-                    temp += 8;
-                    break;
-                case "nin":
-                    temp += 9;
-                    break;
-                case "ten":
-                    temp += 10;
-                    break;
-                case "ele":
-                    temp += 11;
-                    break;
-                case "twe":
-                    temp += 12;
-                    break;
-            }
-            if (s.endsWith("teen")) temp += 10;
-            if (s.endsWith("ty")) temp *= 10;
-            if (temp != -1) sum += temp;
-            if (s.equals("hundred")) {
-                if (sum == 0) sum += 100;
-                else sum *= 100;
-            }
-            if (s.equals("thousand")) {
-                if (sum == 0) sum += 1000;
-                else sum *= 1000;
-            }
-            if (s.equals("million")) {
-                if (sum == 0) sum += 1000000;
-                else sum *= 1000000;
-            }
-        }
-        return sum + "";
+        return NumberNormalizer.toString(NumberNormalizer.parse(input));
     }
 
     public static String getHL7EventTimingCode(int operator, String mainEvent) {
@@ -227,23 +138,12 @@ public class Util {
      * @param value The value of
      * @param <T>   Primitive type
      * @return The instantiated primitive with the value
+     * @deprecated Use the {@link FHIRPrimitives} factory for the primitive type instead, which does not require a
+     * per-class lookup
      */
-    @SuppressWarnings("JavaReflectionMemberAccess")
+    @Deprecated
     public static <T extends Element> T instantiatePrimitiveWithValue(Class<T> clazz, JCas cas, String value, int begin, int end) {
-        try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor(JCas.class);
-            constructor.setAccessible(true);
-            T primitive = constructor.newInstance(cas);
-            Method m = clazz.getDeclaredMethod("setValue", String.class);
-            m.setAccessible(true);
-            m.invoke(primitive, value);
-            primitive.setBegin(begin);
-            primitive.setEnd(end);
-            primitive.addToIndexes();
-            return primitive;
-        } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException | InstantiationException e) {
-            throw new IllegalArgumentException("Attempted to instantiate primitive type that was not a primitive");
-        }
+        return FHIRPrimitives.create(clazz, cas, value, begin, end);
     }
 
     public static double convertUCUMToHours(UnitsOfTime unit) {
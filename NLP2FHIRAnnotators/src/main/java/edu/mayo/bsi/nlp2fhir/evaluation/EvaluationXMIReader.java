@@ -1,12 +1,11 @@
 package edu.mayo.bsi.nlp2fhir.evaluation;
 
-import com.googlecode.clearnlp.io.FileExtFilter;
+import edu.mayo.bsi.nlp2fhir.postprocessors.CasFileFormat;
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
-import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.fit.component.JCasCollectionReader_ImplBase;
 import org.apache.uima.fit.component.ViewCreatorAnnotator;
@@ -16,10 +15,8 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.*;
-import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -53,12 +50,13 @@ public class EvaluationXMIReader extends JCasCollectionReader_ImplBase {
     @Override
     public void initialize(UimaContext context) throws ResourceInitializationException {
         super.initialize(context);
-        extractedFileSet = extractedDir.listFiles(new FileExtFilter("xmi"));
+        extractedFileSet = extractedDir.listFiles(f -> CasFileFormat.forFile(f) != null);
         goldNameToFileMap = new HashMap<>();
-        File[] goldFiles = goldDir.listFiles(new FileExtFilter("xmi"));
+        File[] goldFiles = goldDir.listFiles(f -> CasFileFormat.forFile(f) != null);
         if (goldFiles != null) {
+            // By document name, such that e.g. binary extracted CASes are matched with XMI gold standards
             for (File f : goldFiles) {
-                goldNameToFileMap.put(f.getName(), f);
+                goldNameToFileMap.put(CasFileFormat.getDocumentName(f), f);
             }
         }
     }
@@ -66,23 +64,19 @@ public class EvaluationXMIReader extends JCasCollectionReader_ImplBase {
     @Override
     public void getNext(JCas jCas) throws IOException, CollectionException {
         File nextFile = extractedFileSet[currIdx++];
-        File goldFile = goldNameToFileMap.get(nextFile.getName());
+        File goldFile = goldNameToFileMap.get(CasFileFormat.getDocumentName(nextFile));
         if (goldFile == null) {
             UIMAFramework.getLogger(EvaluationXMIReader.class).log(Level.SEVERE, "No gold standard for " + nextFile.getName() + " found, results will be affected");
         }
-        try (FileInputStream inputStream = new FileInputStream(nextFile)) {
-            XmiCasDeserializer.deserialize(inputStream, jCas.getCas(), false);
-        } catch (SAXException e) {
-            throw new CollectionException(e);
-        }
+        CasFileFormat.read(nextFile, jCas.getCas(), false);
         if (goldFile != null) {
-            try (FileInputStream goldInputStream = new FileInputStream(goldFile)) {
+            try {
                 JCas goldView = ViewCreatorAnnotator.createViewSafely(jCas, "Gold Standard");
                 goldView.setDocumentText(jCas.getDocumentText());
                 CAS goldLoadView = CasCreationUtils.createCas(Collections.singletonList(getMetaData()));
-                XmiCasDeserializer.deserialize(goldInputStream, goldLoadView, false, null, 0);
+                CasFileFormat.read(goldFile, goldLoadView, false);
                 new CasCopier(goldLoadView, jCas.getCas()).copyCasView(goldLoadView, "Gold Standard", false);
-            } catch (SAXException | AnalysisEngineProcessException | ResourceInitializationException e) {
+            } catch (AnalysisEngineProcessException | ResourceInitializationException e) {
                 throw new CollectionException(e);
             }
         }
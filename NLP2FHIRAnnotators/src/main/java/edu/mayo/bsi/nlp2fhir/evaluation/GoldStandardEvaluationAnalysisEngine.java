@@ -1,12 +1,14 @@
 package edu.mayo.bsi.nlp2fhir.evaluation;
 
+import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationAccumulator;
+import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import edu.mayo.bsi.nlp2fhir.evaluation.types.*;
 import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.RegexpStatements;
 import edu.mayo.bsi.nlp2fhir.knowtator.KnowtatorPINSCompiler;
 import edu.mayo.bsi.nlp2fhir.knowtator.model.KnowtatorAnnotationDef;
-import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationIndex;
 import edu.mayo.bsi.nlp2fhir.evaluation.types.*;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -21,7 +23,6 @@ import org.hl7.fhir.*;
 import org.ohnlp.typesystem.type.textspan.Paragraph;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
@@ -38,23 +39,32 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
     private static final Pattern SECTION_START_PATTERN = Pattern.compile("\\[start section id=\"20104\"]");
     private static final Pattern SECTION_END_PATTERN = Pattern.compile("\\[end section id=\"20104\"]");
     public static final String KNOWTATOR_DEF = "ANN_FILE";
-    public static final String EVAL_DIR = "EVAL_DIR";
+    public static final String RESULTS_FILE = "RESULTS_FILE";
+    public static final String DEBUG_FILE = "DEBUG_FILE";
     @ConfigurationParameter(
             name = "ANN_FILE"
     )
     private File knowtatorFile;
     @ConfigurationParameter(
-            name = "EVAL_DIR",
-            defaultValue = "eval"
+            name = "RESULTS_FILE",
+            defaultValue = "evaluation.results"
+    )
+    private File resultsFile;
+    @ConfigurationParameter(
+            name = "DEBUG_FILE",
+            defaultValue = "eval_debug.txt"
     )
-    private File evalDir;
+    private File debugFile;
     private Map<String, Collection<KnowtatorAnnotationDef>> knowtatorDefsByDocument;
+    private List<EvaluationTask<?>> tasks;
+    private EvaluationAccumulator results;
 
     @Override
     public void initialize(UimaContext context) throws ResourceInitializationException {
         super.initialize(context);
-        if (!evalDir.exists()) {
-            if (!evalDir.mkdirs()) {
+        File parent = resultsFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            if (!parent.mkdirs()) {
                 throw new ResourceInitializationException();
             }
         }
@@ -63,6 +73,40 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
         } catch (IOException e) {
             e.printStackTrace();
         }
+        tasks = Arrays.asList(
+                // ----- MEDICATIONS -----
+                new MedicationCodeableConceptEvaluator(),
+                new MedicationFormEvaluator(),
+                new IngredientNumeratorValueEvaluator(),
+                new IngredientNumeratorUnitEvaluator(),
+                new IngredientDenominatorValueEvaluator(),
+                new IngredientDenominatorUnitEvaluator(),
+                // ----- TIMINGS -----
+                new TimingDurationValueEvaluator(),
+                new TimingDurationUnitEvaluator(),
+                new TimingFrequencyEvaluator(),
+                new TimingFrequencyMaxEvaluator(),
+                new TimingPeriodValueEvaluator(),
+                new TimingPeriodMaxEvaluator(),
+                new TimingPeriodUnitEvaluator(),
+                // ----- DOSAGE -----
+                new DosageQuantityEvaluator(),
+                new DosageQuantityUnitEvaluator(),
+                new DosageRouteEvaluator(),
+                new DosageAsNeededBooleanEvaluator(),
+                new DosageWhenEvaluator(),
+                new DosageAdditionalInstructionsEvaluator(),
+                new DosageAsNeededCodeableConceptEvaluator(),
+                new DosageMethodEvaluator(),
+                new DosageReasonCodeEvaluator(),
+                new DosageSiteEvaluator(),
+                new DosageTimingCodeEvaluator()
+        );
+        try {
+            results = EvaluationAccumulator.acquire(resultsFile, debugFile);
+        } catch (IOException e) {
+            throw new ResourceInitializationException(e);
+        }
     }
 
     @Override
@@ -102,35 +146,11 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
         }
 
         // - Create a lookup index
-        AnnotationCache.AnnotationTree annCache = AnnotationCache.getAnnotationCache(docID, jCas);
+        AnnotationIndex annCache = AnnotationCache.getAnnotationCache(docID, jCas);
         // - Run evaluation MedicationStatement
-        // ----- MEDICATIONS ----- TODO don't really need to reinstantiate all this many times
-        new MedicationCodeableConceptEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new MedicationFormEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new IngredientNumeratorValueEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new IngredientNumeratorUnitEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new IngredientDenominatorValueEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new IngredientDenominatorUnitEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        // ----- TIMINGS -----
-        new TimingDurationValueEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingDurationUnitEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingFrequencyEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingFrequencyMaxEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingPeriodValueEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingPeriodMaxEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new TimingPeriodUnitEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        // ----- DOSAGE -----
-        new DosageQuantityEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageQuantityUnitEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageRouteEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageAsNeededBooleanEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageWhenEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageAdditionalInstructionsEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageAsNeededCodeableConceptEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageMethodEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageReasonCodeEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageSiteEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
-        new DosageTimingCodeEvaluator(evalDir).evaluate(docID, ranges, typeToAnns, annCache);
+        for (EvaluationTask<?> task : tasks) {
+            task.evaluate(docID, ranges, typeToAnns, annCache, results);
+        }
         // - Declare statistics variables TODO: get rid of the remainder duplicate code
         int truePositiveNLP2FHIR = 0;
         int falsePositiveNLP2FHIR = 0;
@@ -173,25 +193,8 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 falseNegativeNLP2FHIR++;
             }
         }
-        // -- Write out results
-        File out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
         // -- Cleanup
         truePositiveNLP2FHIR = 0;
         falsePositiveNLP2FHIR = 0;
@@ -234,25 +237,8 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 falseNegativeNLP2FHIR++;
             }
         }
-        // -- Write out results
-        out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
         // -- Cleanup
         truePositiveNLP2FHIR = 0;
         falsePositiveNLP2FHIR = 0;
@@ -295,25 +281,8 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 falseNegativeNLP2FHIR++;
             }
         }
-        // -- Write out results
-        out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
         // -- Cleanup
         truePositiveNLP2FHIR = 0;
         falsePositiveNLP2FHIR = 0;
@@ -356,25 +325,8 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 falseNegativeNLP2FHIR++;
             }
         }
-        // -- Write out results
-        out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
         // -- Cleanup
         truePositiveNLP2FHIR = 0;
         falsePositiveNLP2FHIR = 0;
@@ -432,25 +384,8 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 falseNegativeNLP2FHIR++;
             }
         }
-        // -- Write out results
-        out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
         // -- Cleanup
         truePositiveNLP2FHIR = 0;
         falsePositiveNLP2FHIR = 0;
@@ -488,28 +423,12 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
                 }
             }
         }
-        // -- Write out results
-        out = new File(evalDir, docID + "-_-_-" + type + ".eval");
-        writer = null;
-        try {
-            writer = new FileWriter(out);
-                      writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
+        // -- Add results
+        results.add(type, truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
+        AnnotationCache.removeAnnotationCaches(jCas);
     }
 
-    private <T extends Annotation> Collection<T> getInterestedAnnotations(List<Segment> segments, AnnotationCache.AnnotationTree annCache, Class<T> clazz) {
+    private <T extends Annotation> Collection<T> getInterestedAnnotations(List<Segment> segments, AnnotationIndex annCache, Class<T> clazz) {
         Collection<T> ret = new LinkedHashSet<>(); // Preserve ordering
         for (Segment s : segments) {
             ret.addAll(annCache.getCollisions(s.start, s.end, clazz));
@@ -529,6 +448,11 @@ public class GoldStandardEvaluationAnalysisEngine extends JCasAnnotator_ImplBase
 
     @Override
     public void collectionProcessComplete() throws AnalysisEngineProcessException {
-        super.collectionProcessComplete(); // TODO
+        super.collectionProcessComplete();
+        try {
+            results.release(); // Writes the report once all replicas are complete
+        } catch (IOException e) {
+            throw new AnalysisEngineProcessException(e);
+        }
     }
 }
@@ -4,6 +4,7 @@ import edu.mayo.bsi.nlp2fhir.evaluation.api.ResourceEvaluationTask;
 import edu.mayo.bsi.nlp2fhir.evaluation.evaluators.DeepSearchResourceEvaluator;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.ResourceEvaluationTask;
 import edu.mayo.bsi.nlp2fhir.evaluation.evaluators.DeepSearchResourceEvaluator;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CASException;
@@ -89,6 +90,8 @@ public class SHARPNGoldStandardAnalysisEngine extends JCasAnnotator_ImplBase {
         for (ResourceEvaluationTask<?> evaluation : evaluations) {
             evaluation.evaluate(goldView, resultView);
         }
+        AnnotationCache.removeAnnotationCaches(goldView);
+        AnnotationCache.removeAnnotationCaches(resultView);
     }
 
     @Override
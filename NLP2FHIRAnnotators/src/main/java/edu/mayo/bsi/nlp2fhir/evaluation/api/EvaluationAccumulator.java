@@ -0,0 +1,223 @@
+package edu.mayo.bsi.nlp2fhir.evaluation.api;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates true positive, false positive and false negative counts per evaluated type in memory, such that
+ * evaluation results need not be written out per document and re-aggregated afterwards.<br>
+ * <br>
+ * Accumulators are shared by all analysis engine replicas writing to the same results file: each replica
+ * {@link #acquire(File, File) acquires} the accumulator on initialization and {@link #release() releases} it on
+ * collection process completion, whereupon the last replica to do so writes the final report. Counts are held in
+ * {@link LongAdder}s, such that concurrent replicas do not contend on a single counter. Debug messages from all
+ * replicas are written to a single debug log by a background thread.
+ */
+public final class EvaluationAccumulator {
+
+    private static final ConcurrentHashMap<String, EvaluationAccumulator> ACCUMULATORS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final File resultsFile;
+    private final ConcurrentHashMap<String, Counts> countsByType;
+    private final AsyncLineWriter debugWriter;
+    // Guarded by ACCUMULATORS
+    private int references;
+
+    private EvaluationAccumulator(String key, File resultsFile, File debugFile) throws IOException {
+        this.key = key;
+        this.resultsFile = resultsFile;
+        this.countsByType = new ConcurrentHashMap<>();
+        this.debugWriter = new AsyncLineWriter(new BufferedWriter(new FileWriter(debugFile)), "evaluation-debug-writer");
+        this.references = 0;
+    }
+
+    /**
+     * Retrieves the accumulator for the given results file, creating it if no other replica currently holds it
+     *
+     * @param resultsFile The file the final report is written to
+     * @param debugFile   The file debug messages are written to, used only if the accumulator is created
+     * @return The accumulator
+     * @throws IOException If the debug file could not be opened
+     */
+    public static EvaluationAccumulator acquire(File resultsFile, File debugFile) throws IOException {
+        String key = resultsFile.getAbsolutePath();
+        synchronized (ACCUMULATORS) {
+            EvaluationAccumulator ret = ACCUMULATORS.get(key);
+            if (ret == null) {
+                ret = new EvaluationAccumulator(key, resultsFile, debugFile);
+                ACCUMULATORS.put(key, ret);
+            }
+            ret.references++;
+            return ret;
+        }
+    }
+
+    /**
+     * Releases this accumulator. When released by all replicas that acquired it, the final report is written and the
+     * debug log closed.
+     *
+     * @throws IOException If the report could not be written
+     */
+    public void release() throws IOException {
+        synchronized (ACCUMULATORS) {
+            if (--references > 0) {
+                return;
+            }
+            ACCUMULATORS.remove(key, this);
+        }
+        try {
+            writeReport();
+        } finally {
+            debugWriter.close();
+        }
+    }
+
+    /**
+     * Adds the results of evaluating a single document
+     *
+     * @param type           The evaluated type
+     * @param truePositives  The number of true positives within the document
+     * @param falsePositives The number of false positives within the document
+     * @param falseNegatives The number of false negatives within the document
+     */
+    public void add(String type, int truePositives, int falsePositives, int falseNegatives) {
+        Counts counts = countsByType.computeIfAbsent(type, k -> new Counts());
+        counts.truePositives.add(truePositives);
+        counts.falsePositives.add(falsePositives);
+        counts.falseNegatives.add(falseNegatives);
+    }
+
+    /**
+     * Queues a message for the debug log
+     *
+     * @param message The message, without trailing line break
+     */
+    public void debug(String message) {
+        debugWriter.writeLine(message);
+    }
+
+    /**
+     * @return The accumulated [true positive, false positive, false negative] counts of type, or all zeros if it was
+     * never evaluated
+     */
+    public long[] getCounts(String type) {
+        Counts counts = countsByType.get(type);
+        if (counts == null) {
+            return new long[3];
+        }
+        return new long[]{counts.truePositives.sum(), counts.falsePositives.sum(), counts.falseNegatives.sum()};
+    }
+
+    private void writeReport() throws IOException {
+        List<String> types = new ArrayList<>(countsByType.keySet());
+        types.sort(String::compareTo);
+        try (Writer resultsWriter = new BufferedWriter(new FileWriter(resultsFile))) {
+            for (String s : types) {
+                long[] counts = getCounts(s);
+                double truePositiveNLP2FHIR = counts[0];
+                double falsePositiveNLP2FHIR = counts[1];
+                double falseNegativeNLP2FHIR = counts[2];
+                double recallNLP2FHIR = truePositiveNLP2FHIR / (truePositiveNLP2FHIR + falseNegativeNLP2FHIR);
+                double precisionNLP2FHIR = truePositiveNLP2FHIR / (truePositiveNLP2FHIR + falsePositiveNLP2FHIR);
+                double f1NLP2FHIR = 2 * ((precisionNLP2FHIR * recallNLP2FHIR) / (precisionNLP2FHIR + recallNLP2FHIR));
+                resultsWriter.write("===============================\n");
+                resultsWriter.write(s + "\n");
+                resultsWriter.write("===============================\n");
+                resultsWriter.write("NLP2FHIR Results:\n");
+                resultsWriter.write("- Recall: " + recallNLP2FHIR + "\n");
+                resultsWriter.write("- Precision: " + precisionNLP2FHIR + "\n");
+                resultsWriter.write("- F1-Score: " + f1NLP2FHIR + "\n");
+                resultsWriter.write("- True Positives: " + truePositiveNLP2FHIR + "\n");
+                resultsWriter.write("- False Positives: " + falsePositiveNLP2FHIR + "\n");
+                resultsWriter.write("- False Negatives: " + falseNegativeNLP2FHIR + "\n");
+                resultsWriter.write("\n");
+            }
+        }
+    }
+
+    private static class Counts {
+        private final LongAdder truePositives = new LongAdder();
+        private final LongAdder falsePositives = new LongAdder();
+        private final LongAdder falseNegatives = new LongAdder();
+    }
+
+    /**
+     * Writes lines to an underlying writer on a dedicated thread, such that callers never block on I/O (unless the
+     * queue of pending lines is full). The underlying writer is flushed whenever no lines are pending.
+     */
+    private static class AsyncLineWriter implements Closeable {
+        private static final int MAX_PENDING_LINES = 65536;
+        // Marks the end of input, compared by identity
+        private static final String END = new String("");
+
+        private final BlockingQueue<String> pending;
+        private final Thread thread;
+        private volatile IOException failure;
+
+        AsyncLineWriter(Writer out, String name) {
+            this.pending = new LinkedBlockingQueue<>(MAX_PENDING_LINES);
+            this.thread = new Thread(() -> drain(out), name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void writeLine(String line) {
+            if (failure != null) {
+                return; // Already reported, drop further output
+            }
+            try {
+                pending.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drain(Writer out) {
+            try (Writer writer = out) {
+                String line;
+                while ((line = pending.take()) != END) {
+                    writer.write(line);
+                    writer.write('\n');
+                    if (pending.isEmpty()) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+                e.printStackTrace();
+                pending.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Writes all pending lines and closes the underlying writer
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (failure == null) {
+                    pending.put(END);
+                }
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -1,15 +1,10 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.api;
 
-import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationIndex;
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.GoldStandardEvaluationAnalysisEngine;
-import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
 import org.apache.uima.jcas.tcas.Annotation;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -19,28 +14,20 @@ import java.util.*;
 public abstract class EvaluationTask<ANN_TYPE extends Annotation> {
 
     private final String type;
-    private final File evalDir;
-    private static final File EVAL_DEBUG = new File("eval_debug.txt");
-    private static BufferedWriter DEBUG_WRITER;
-
-    static {
-        try {
-            DEBUG_WRITER = new BufferedWriter(new FileWriter(EVAL_DEBUG));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
 
     /**
      * @param type The knowtator type to check against
-     * @param evalDir The temporary evaluation directory
      */
-    public EvaluationTask(String type, File evalDir) {
+    public EvaluationTask(String type) {
         this.type = type;
-        this.evalDir = evalDir;
     }
 
-    public void evaluate(String docID, List<GoldStandardEvaluationAnalysisEngine.Segment> ranges, Map<String, Collection<KnowtatorAnnotation>> typeToAnns, AnnotationCache.AnnotationTree annCache) {
+    /**
+     * Evaluates a single document, adding its counts to the given accumulator under {@link #getResultType()}
+     *
+     * @param results The accumulator to add the results to
+     */
+    public void evaluate(String docID, List<GoldStandardEvaluationAnalysisEngine.Segment> ranges, Map<String, Collection<KnowtatorAnnotation>> typeToAnns, AnnotationIndex annCache, EvaluationAccumulator results) {
         // Set up variables
         int truePositiveNLP2FHIR = 0;
         int falsePositiveNLP2FHIR = 0;
@@ -62,11 +49,7 @@ public abstract class EvaluationTask<ANN_TYPE extends Annotation> {
                     }
                 }
                 if (!flag) {
-                    try {
-                        DEBUG_WRITER.append("False Positive Found: " + type + (getSuffix() == null ? "" : "_" + getSuffix()) + " in " + docID + " with value " + t.getCoveredText() + "\n");
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    results.debug("False Positive Found: " + getResultType() + " in " + docID + " with value " + t.getCoveredText());
                     falsePositiveNLP2FHIR++;
                 }
             }
@@ -83,36 +66,17 @@ public abstract class EvaluationTask<ANN_TYPE extends Annotation> {
             }
             if (!flag) {
                 falseNegativeNLP2FHIR++;
-                try {
-                    DEBUG_WRITER.append("False Negative Found: " + type + (getSuffix() == null ? "" : "_" + getSuffix()) + " in " + docID + " with value " + ann.getStandardText() + "\n");
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                results.debug("False Negative Found: " + getResultType() + " in " + docID + " with value " + ann.getStandardText());
             }
         }
-        // -- Write out results
-        File out = new File(evalDir, docID + "-_-_-" + type + (getSuffix() == null ? "" : "_" + getSuffix()) + ".eval");
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(out);
-            writer.write(truePositiveNLP2FHIR + "|" + falsePositiveNLP2FHIR + "|" + falseNegativeNLP2FHIR);
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-        try {
-            DEBUG_WRITER.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        results.add(getResultType(), truePositiveNLP2FHIR, falsePositiveNLP2FHIR, falseNegativeNLP2FHIR);
+    }
+
+    /**
+     * @return The type results are reported under, i.e. the knowtator type with {@link #getSuffix()} appended if present
+     */
+    public String getResultType() {
+        return type + (getSuffix() == null ? "" : "_" + getSuffix());
     }
 
     /**
@@ -140,7 +104,7 @@ public abstract class EvaluationTask<ANN_TYPE extends Annotation> {
 
     public abstract Class<ANN_TYPE> getAnnotationClass();
 
-    private <T extends Annotation> Collection<T> getInterestedAnnotations(List<GoldStandardEvaluationAnalysisEngine.Segment> segments, AnnotationCache.AnnotationTree annCache, Class<T> clazz) {
+    private <T extends Annotation> Collection<T> getInterestedAnnotations(List<GoldStandardEvaluationAnalysisEngine.Segment> segments, AnnotationIndex annCache, Class<T> clazz) {
         Collection<T> ret = new LinkedHashSet<>(); // Preserve ordering
         for (GoldStandardEvaluationAnalysisEngine.Segment s : segments) {
             ret.addAll(annCache.getCollisions(s.start, s.end, clazz));
@@ -0,0 +1,112 @@
+package edu.mayo.bsi.nlp2fhir.evaluation.evaluators;
+
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.jcas.cas.FSArray;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+/**
+ * An evaluation path (e.g. MedicationStatement.dosage.timing) resolved once into a chain of getter
+ * {@link MethodHandle}s, such that values can be repeatedly retrieved from resources without reflective lookups or
+ * invocations.<br>
+ * <br>
+ * Each path element after the root names a feature of the previous element's type. Where a feature is an
+ * {@link FSArray}, the remainder of the path is applied to every element of the array, and all values found are
+ * returned.
+ */
+public final class CompiledPath {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final String path;
+    private final MethodHandle[] getters;
+
+    private CompiledPath(String path, MethodHandle[] getters) {
+        this.path = path;
+        this.getters = getters;
+    }
+
+    /**
+     * @param rootClass The class of the object the path is evaluated against
+     * @param path      The path, whose first element denotes the root object itself
+     * @return The compiled path
+     * @throws IllegalArgumentException If an element of the path does not name a feature with a public getter
+     */
+    public static CompiledPath compile(Class<?> rootClass, String path) {
+        String[] pathArr = path.split("\\.");
+        MethodHandle[] getters = new MethodHandle[pathArr.length - 1];
+        Class<?> currClass = rootClass;
+        for (int i = 1; i < pathArr.length; i++) { // Skip over root path element since we already have that object
+            String methodName = "get" + pathArr[i].substring(0, 1).toUpperCase() + (pathArr[i].length() > 1 ? pathArr[i].substring(1) : "");
+            try {
+                Method m = currClass.getMethod(methodName);
+                if (FSArray.class.isAssignableFrom(m.getReturnType())) {
+                    currClass = currClass.getMethod(methodName, int.class).getReturnType();
+                } else {
+                    currClass = m.getReturnType();
+                }
+                getters[i - 1] = MethodHandles.publicLookup().unreflect(m).asType(GETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Element " + pathArr[i] + " of evaluation path " + path + " is not accessible", e);
+            }
+        }
+        return new CompiledPath(path, getters);
+    }
+
+    /**
+     * Appends all values found at this path to out. Null values are omitted.
+     *
+     * @param root The object to evaluate the path against
+     * @param out  The collection to append values to
+     */
+    public void collect(Object root, Collection<Object> out) {
+        try {
+            collect(root, 0, out);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException("Failed to evaluate " + path, t);
+        }
+    }
+
+    private void collect(Object source, int depth, Collection<Object> out) throws Throwable {
+        if (source == null) {
+            return;
+        }
+        if (depth == getters.length) {
+            if (source instanceof FSArray) {
+                FSArray arr = (FSArray) source;
+                for (int i = 0; i < arr.size(); i++) {
+                    FeatureStructure fs = arr.get(i);
+                    if (fs != null) {
+                        out.add(fs);
+                    }
+                }
+            } else {
+                out.add(source);
+            }
+            return;
+        }
+        MethodHandle getter = getters[depth];
+        if (source instanceof FSArray) {
+            FSArray arr = (FSArray) source;
+            for (int i = 0; i < arr.size(); i++) {
+                Object fs = arr.get(i);
+                if (fs != null) {
+                    collect((Object) getter.invokeExact(fs), depth + 1, out);
+                }
+            }
+        } else {
+            collect((Object) getter.invokeExact(source), depth + 1, out);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
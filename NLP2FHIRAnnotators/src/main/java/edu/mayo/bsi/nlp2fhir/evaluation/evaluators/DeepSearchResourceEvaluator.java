@@ -2,33 +2,48 @@ package edu.mayo.bsi.nlp2fhir.evaluation.evaluators;
 
 import edu.mayo.bsi.nlp2fhir.evaluation.api.ResourceEvaluationTask;
 import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
-import edu.mayo.bsi.nlp2fhir.evaluation.SHARPNGoldStandardAnalysisEngine;
-import edu.mayo.bsi.nlp2fhir.evaluation.api.ResourceEvaluationTask;
-import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationCache;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationIndex;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
-import org.apache.log4j.Logger;
-import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
-import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.jcas.tcas.Annotation;
-import org.hl7.fhir.DomainResource;
 import org.hl7.fhir.Resource;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DeepSearchResourceEvaluator<T extends Resource> implements ResourceEvaluationTask<T> {
 
+    /**
+     * Value and position comparisons between collections whose sizes multiply to at most this are done pairwise
+     * instead of via a hash set or interval index
+     */
+    private static final int PAIRWISE_LIMIT = 16;
+
     private List<String> evaluationPaths;
     private Set<String> valueChecks;
     /**
-     * A mapping of paths to the call stacks
+     * Compiled paths, indexed by path number
+     */
+    private CompiledPath[] paths;
+    /**
+     * Whether the path with the given number is compared by value (as opposed to position)
      */
-    private Map<String, List<Method>> callStacks;
+    private boolean[] valuePaths;
+    /**
+     * Path numbers of {@link #identifiers} and {@link #evaluationPaths}, respectively
+     */
+    private int[] identifierPaths;
+    private int[] evaluatedPaths;
+    /**
+     * The path number of the first identifier compared by value, used to hash join gold standard resources on, or -1
+     * if none
+     */
+    private int joinPath;
+    /**
+     * Buffer path values are collected into
+     */
+    private final ArrayList<Object> buffer = new ArrayList<>();
     /**
      * Path->True Positive Count
      */
@@ -56,16 +71,41 @@ public class DeepSearchResourceEvaluator<T extends Resource> implements Resource
      * @param resourceClass The class of the FHIR resource to evaluate
      * @param paths         A list of paths to evaluate
      * @param valueChecks   A set of paths to compare values for (as opposed to position)
+     * @throws IllegalArgumentException If a path is not resolvable against the resource class
      */
     public DeepSearchResourceEvaluator(Class<T> resourceClass, List<String> identifiers, List<String> paths, Set<String> valueChecks) {
         this.resourceClass = resourceClass;
         this.evaluationPaths = paths;
         this.valueChecks = valueChecks;
-        this.callStacks = new HashMap<>();
         this.truePosMap = new HashMap<>();
         this.falsePosMap = new HashMap<>();
         this.falseNegMap = new HashMap<>();
         this.identifiers = identifiers;
+        // Compile each distinct path once
+        Map<String, Integer> pathNumbers = new LinkedHashMap<>();
+        this.identifierPaths = number(identifiers, pathNumbers);
+        this.evaluatedPaths = number(paths, pathNumbers);
+        this.paths = new CompiledPath[pathNumbers.size()];
+        this.valuePaths = new boolean[pathNumbers.size()];
+        for (Map.Entry<String, Integer> e : pathNumbers.entrySet()) {
+            this.paths[e.getValue()] = CompiledPath.compile(resourceClass, e.getKey());
+            this.valuePaths[e.getValue()] = valueChecks.contains(e.getKey());
+        }
+        this.joinPath = -1;
+        for (int path : identifierPaths) {
+            if (valuePaths[path]) {
+                joinPath = path;
+                break;
+            }
+        }
+    }
+
+    private static int[] number(List<String> paths, Map<String, Integer> pathNumbers) {
+        int[] ret = new int[paths.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = pathNumbers.computeIfAbsent(paths.get(i), k -> pathNumbers.size());
+        }
+        return ret;
     }
 
     @Override
@@ -76,219 +116,105 @@ public class DeepSearchResourceEvaluator<T extends Resource> implements Resource
     //TODO these evaluations short circuit after a single element matches in coll, maybe check all elements and increment/decrement counts as appropriate?
     public void evaluate(JCas goldView, JCas baseView) {
         // Create an annotation cache of the gold view
-        AnnotationCache.AnnotationTree baseAnnCache = AnnotationCache.getAnnotationCache(JCasUtil.selectSingle(baseView, DocumentID.class).getDocumentID() + "_base", baseView);
-        AnnotationCache.AnnotationTree goldAnnCache = AnnotationCache.getAnnotationCache(JCasUtil.selectSingle(goldView, DocumentID.class).getDocumentID() + "_gold", goldView);
+        AnnotationIndex baseAnnCache = AnnotationCache.getAnnotationCache(JCasUtil.selectSingle(baseView, DocumentID.class).getDocumentID() + "_base", baseView);
+        AnnotationIndex goldAnnCache = AnnotationCache.getAnnotationCache(JCasUtil.selectSingle(goldView, DocumentID.class).getDocumentID() + "_gold", goldView);
         String pathRoot = getResourceClass().getSimpleName();
+        // Path values of each resource, retrieved at most once per document
+        Map<T, ResourceValues> extractedValues = new HashMap<>();
+        Map<T, ResourceValues> goldValues = new HashMap<>();
+        // Gold standard resources by (upper case) value of the join identifier
+        Map<String, Set<T>> goldByIdentifier = null;
+        if (joinPath >= 0) {
+            goldByIdentifier = new HashMap<>();
+            for (T goldResource : JCasUtil.select(goldView, getResourceClass())) {
+                ResourceValues gold = goldValues.computeIfAbsent(goldResource, ResourceValues::new);
+                for (String key : gold.keys(joinPath)) {
+                    goldByIdentifier.computeIfAbsent(key, k -> new HashSet<>()).add(goldResource);
+                }
+            }
+        }
         // Check true/false positives on extraction
         for (T extractedResource : JCasUtil.select(baseView, getResourceClass())) {
             Collection<T> goldResources = goldAnnCache.getCollisions(extractedResource.getBegin(), extractedResource.getEnd(), getResourceClass());
-//            Collection<T> goldResources = JCasUtil.selectAt(goldView, getResourceClass(), extractedResource.getBegin(), extractedResource.getEnd());
-            T goldResource = null;
             if (goldResources.size() == 0) { // No match/failed to extract
                 falsePosMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
                 for (String path : identifiers) {
                     falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
                 }
                 continue;
-            } else {
-                boolean matchingResource = false;
-                for (T resource : goldResources) {
-                    boolean matchesAll = true;
-                    goldResource = resource;
-                    for (String path : identifiers) { // Has to be nested here as we need to check all as a group
-                        List<Method> pathStack = callStacks.computeIfAbsent(path, this::constructCallStack);
-                        if (pathStack == null) {
-                            throw new AssertionError("No call stack for " + path + " despite being defined");
-                        }
-                        Collection<Object> extractedColl = runCallStackRecurs(extractedResource, new LinkedList<>(pathStack));
-                        Collection<Object> goldColl = runCallStackRecurs(goldResource, new LinkedList<>(pathStack));
-                        if (extractedColl.isEmpty() && goldColl.isEmpty()) {
-                            throw new IllegalArgumentException("Cannot use " + path + " as an identifier when it is possible to be empty in gold standard");
-                        }
-                        if (extractedColl.isEmpty()) {
-                            matchesAll = false;
-                            break;
-                        }
-                        if (valueChecks.contains(path)) { // Value check, so a direct string comparison TODO O(n^2) find a better way to do this
-                            boolean truePos = false;
-                            for (Object extracted : extractedColl) {
-                                for (Object gold : goldColl) {
-                                    if (extracted.toString().toUpperCase().equals(gold.toString().toUpperCase())) {
-                                        truePos = true;
-                                        break;
-                                    }
-                                }
-                                if (truePos) {
-                                    break;
-                                }
-                            }
-                            if (!truePos) {
-                                matchesAll = false;
-                                break;
-                            }
-                        } else { // Position check TODO O(n^2) find a better way to do this
-                            boolean truePos = false;
-                            for (Object extracted : extractedColl) {
-                                for (Object gold : goldColl) {
-                                    Annotation extractedAnn = (Annotation) extracted;
-                                    Annotation goldAnn = (Annotation) gold;
-                                    if (collides(extractedAnn, goldAnn)) {
-                                        truePos = true;
-                                        break;
-                                    }
-                                }
-                                if (truePos) {
-                                    break;
-                                }
-                            }
-                            if (!truePos) {
-                                matchesAll = false;
-                                break;
-                            }
-                        }
-                    }
-                    if (matchesAll) {
-                        matchingResource = true;
-                        break;
-                    }
+            }
+            ResourceValues extracted = extractedValues.computeIfAbsent(extractedResource, ResourceValues::new);
+            // Restrict position matches to those sharing a join identifier value, if any
+            Set<T> joined = null;
+            if (goldByIdentifier != null && extracted.size(joinPath) > 0) {
+                joined = new HashSet<>();
+                for (String key : extracted.keys(joinPath)) {
+                    joined.addAll(goldByIdentifier.getOrDefault(key, Collections.emptySet()));
                 }
-                if (matchingResource) {
-                    truePosMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
-                } else {
-                    falsePosMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
-                    for (String path : identifiers) {
-                        falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-                    }
-                    continue; // TODO double check correctness
+            }
+            ResourceValues gold = null;
+            for (T resource : goldResources) {
+                if (joined != null && !joined.contains(resource)) {
+                    continue;
+                }
+                ResourceValues candidate = goldValues.computeIfAbsent(resource, ResourceValues::new);
+                if (matchesIdentifiers(extracted, candidate)) {
+                    gold = candidate;
+                    break;
                 }
             }
-            for (String path : evaluationPaths) {
-                // For each path associated with the extracted resource
-                List<Method> pathStack = callStacks.computeIfAbsent(path, this::constructCallStack);
-                if (pathStack == null) {
-                    throw new AssertionError("No call stack for " + path + " despite being defined");
+            if (gold != null) {
+                truePosMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
+            } else {
+                falsePosMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
+                for (String path : identifiers) {
+                    falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
                 }
-                Collection<Object> extractedColl = runCallStackRecurs(extractedResource, new LinkedList<>(pathStack));
-                Collection<Object> goldColl = runCallStackRecurs(goldResource, new LinkedList<>(pathStack));
-                if (extractedColl.isEmpty() && goldColl.isEmpty()) {
+                continue; // TODO double check correctness
+            }
+            for (int path : evaluatedPaths) {
+                // For each path associated with the extracted resource
+                if (extracted.size(path) == 0 && gold.size(path) == 0) {
                     continue; // Both empty, so neither a true positive or a false positive
                 }
-                if (goldColl.isEmpty()) { // implies extracted not empty
-                    falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
+                if (gold.size(path) == 0) { // implies extracted not empty
+                    falsePosMap.computeIfAbsent(paths[path].toString(), k -> new AtomicInteger(0)).incrementAndGet();
                     continue;
                 }
-                if (extractedColl.isEmpty()) { // Implies gold not empty
+                if (extracted.size(path) == 0) { // Implies gold not empty
                     continue; // We catch false negatives in a later check
                 }
-                if (valueChecks.contains(path)) { // Value check, so a direct string comparison TODO O(n^2) find a better way to do this
-                    boolean truePos = false;
-                    for (Object extracted : extractedColl) {
-                        for (Object gold : goldColl) {
-                            if (extracted.toString().toUpperCase().equals(gold.toString().toUpperCase())) {
-                                truePos = true;
-                                break;
-                            }
-                        }
-                        if (truePos) {
-                            break;
-                        }
-                    }
-                    if (truePos) {
-                        truePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-                    } else {
-                        falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-                    }
-                } else { // Position check TODO O(n^2) find a better way to do this
-                    boolean truePos = false;
-                    for (Object extracted : extractedColl) {
-                        for (Object gold : goldColl) {
-                            Annotation extractedAnn = (Annotation) extracted;
-                            Annotation goldAnn = (Annotation) gold;
-                            if (collides(extractedAnn, goldAnn)) {
-                                truePos = true;
-                                break;
-                            }
-                        }
-                        if (truePos) {
-                            break;
-                        }
-                    }
-                    if (truePos) {
-                        truePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-                    } else {
-                        falsePosMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-                    }
+                if (matches(extracted, gold, path)) {
+                    truePosMap.computeIfAbsent(paths[path].toString(), k -> new AtomicInteger(0)).incrementAndGet();
+                } else {
+                    falsePosMap.computeIfAbsent(paths[path].toString(), k -> new AtomicInteger(0)).incrementAndGet();
                 }
             }
         }
         // Check false negatives
         for (T goldResource : JCasUtil.select(goldView, getResourceClass())) {
             Collection<T> extractedResources = baseAnnCache.getCollisions(goldResource.getBegin(), goldResource.getEnd(), getResourceClass());
-//            Collection<T> extractedResources = JCasUtil.selectAt(baseView, getResourceClass(), goldResource.getBegin(), goldResource.getEnd());
             if (extractedResources.size() == 0) { // No match/failed to extract
                 falseNegMap.computeIfAbsent(pathRoot, k -> new AtomicInteger(0)).incrementAndGet();
                 for (String path : identifiers) {
                     falseNegMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
                 }
-                continue; // TODO
-//                for (String path : evaluationPaths) {
-//                    // For each path associated with the extracted resource
-//                    List<Method> pathStack = callStacks.computeIfAbsent(path, this::constructCallStack);
-//                    if (pathStack == null) {
-//                        throw new AssertionError("No call stack for " + path + " despite being defined");
-//                    }
-//                    Collection<Object> gold = runCallStackRecurs(goldResource, new LinkedList<>(pathStack));
-//                    if (gold.isEmpty()) {
-//                        continue; // Both empty, so neither a true positive or a false positive
-//                    }
-//                    falseNegMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
-//                }
-            } else {
-                for (String path : evaluationPaths) { // For each path associated with the extracted resource
-                    boolean foundMatchForGold = false;
-                    for (T extractedResource : extractedResources) { // Check all matching gold standard resources for that same object
-                        List<Method> pathStack = callStacks.computeIfAbsent(path, this::constructCallStack);
-                        if (pathStack == null) {
-                            throw new AssertionError("No call stack for " + path + " despite being defined");
-                        }
-                        Collection<Object> extractedColl = runCallStackRecurs(extractedResource, new LinkedList<>(pathStack));
-                        Collection<Object> goldColl = runCallStackRecurs(goldResource, new LinkedList<>(pathStack));
-                        if (extractedColl.isEmpty() && goldColl.isEmpty()) {
-                            foundMatchForGold = true; // Both empty, so it matches
-                            continue; // Both empty, so ignore
-                        }
-                        if (valueChecks.contains(path)) { // Value check, so a direct string comparison TODO O(n^2) find a better way to do this
-                            for (Object gold : goldColl) {
-                                for (Object extracted : extractedColl) {
-                                    if (extracted.toString().toUpperCase().equals(gold.toString().toUpperCase())) {
-                                        foundMatchForGold = true;
-                                        break;
-                                    }
-                                }
-                                if (foundMatchForGold) {
-                                    break;
-                                }
-                            }
-                        } else { // Position check TODO O(n^2) find a better way to do this
-                            for (Object gold : goldColl) {
-                                for (Object extracted : extractedColl) {
-                                    Annotation extractedAnn = (Annotation) extracted;
-                                    Annotation goldAnn = (Annotation) gold;
-                                    if (collides(extractedAnn, goldAnn)) {
-                                        foundMatchForGold = true;
-                                        break;
-                                    }
-                                }
-                                if (foundMatchForGold) {
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    if (!foundMatchForGold) {
-                        falseNegMap.computeIfAbsent(path, k -> new AtomicInteger(0)).incrementAndGet();
+                continue; // TODO evaluation paths of unmatched gold standard resources are not counted as false negatives
+            }
+            ResourceValues gold = goldValues.computeIfAbsent(goldResource, ResourceValues::new);
+            for (int path : evaluatedPaths) { // For each path associated with the extracted resource
+                boolean foundMatchForGold = false;
+                for (T extractedResource : extractedResources) { // Check all matching gold standard resources for that same object
+                    ResourceValues extracted = extractedValues.computeIfAbsent(extractedResource, ResourceValues::new);
+                    if ((extracted.size(path) == 0 && gold.size(path) == 0) // Both empty, so it matches
+                            || matches(extracted, gold, path)) {
+                        foundMatchForGold = true;
+                        break;
                     }
                 }
+                if (!foundMatchForGold) {
+                    falseNegMap.computeIfAbsent(paths[path].toString(), k -> new AtomicInteger(0)).incrementAndGet();
+                }
             }
             // We aren't interested in true positives because we already processed them earlier
         }
@@ -310,57 +236,71 @@ public class DeepSearchResourceEvaluator<T extends Resource> implements Resource
         return ret;
     }
 
-    private List<Method> constructCallStack(String path) {
-        LinkedList<Method> ret = new LinkedList<>();
-        String[] pathArr = path.split("\\.");
-        Class<?> currClass = getResourceClass();
-        for (int i = 1; i < pathArr.length; i++) { // Skip over root path element since we already have that object
-            try {
-                String methodName = "get" + pathArr[i].substring(0, 1).toUpperCase() + (pathArr[i].length() > 1 ? pathArr[i].substring(1) : "");
-                Method m = currClass.getDeclaredMethod(methodName);
-                m.setAccessible(true);
-                if (FSArray.class.isAssignableFrom(m.getReturnType())) {
-                    currClass = currClass.getDeclaredMethod(methodName, int.class).getReturnType();
-                } else {
-                    currClass = m.getReturnType();
+    /**
+     * @return Whether all identifiers of the extracted resource match those of the gold standard resource
+     */
+    private boolean matchesIdentifiers(ResourceValues extracted, ResourceValues gold) {
+        for (int path : identifierPaths) { // Has to be checked here as we need to check all as a group
+            if (extracted.size(path) == 0) {
+                if (gold.size(path) == 0) {
+                    throw new IllegalArgumentException("Cannot use " + paths[path] + " as an identifier when it is possible to be empty in gold standard");
                 }
-                ret.addLast(m);
-            } catch (NoSuchMethodException e) {
-                throw new AssertionError(e); //We assert that this was validated during configuration
+                return false;
+            }
+            if (!matches(extracted, gold, path)) {
+                return false;
             }
         }
-        return ret;
+        return true;
     }
 
-    private Collection<Object> runCallStackRecurs(Object source, LinkedList<Method> stack) {
-        if (source == null) {
-            return new LinkedList<>();
-        }
-        if (stack.size() == 0) {
-            if (source instanceof FSArray) {
-                return Arrays.asList(((FSArray) source).toArray());
-            } else {
-                return Collections.singleton(source);
+    /**
+     * @return Whether any extracted value at the given path matches any gold standard value, either by case insensitive
+     * string comparison for value checks, or by {@link #collides(Annotation, Annotation)} otherwise
+     */
+    private boolean matches(ResourceValues extracted, ResourceValues gold, int path) {
+        if (valuePaths[path]) {
+            String[] extractedKeys = extracted.keys(path);
+            String[] goldKeys = gold.keys(path);
+            if (extractedKeys.length * goldKeys.length <= PAIRWISE_LIMIT) {
+                for (String extractedKey : extractedKeys) {
+                    for (String goldKey : goldKeys) {
+                        if (extractedKey.equals(goldKey)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
             }
-        }
-        Method getter = stack.removeFirst();
-        if (source instanceof FSArray) {
-            Collection<Object> ret = new LinkedList<>();
-            for (FeatureStructure fs : ((FSArray) source).toArray()) {
-                LinkedList<Method> runStack = new LinkedList<>(stack); // Make a copy because each branch will be popping off the stack
-                try {
-                    ret.addAll(runCallStackRecurs(getter.invoke(fs), runStack));
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw new RuntimeException();
+            Set<String> goldKeySet = gold.keySet(path);
+            for (String extractedKey : extractedKeys) {
+                if (goldKeySet.contains(extractedKey)) {
+                    return true;
                 }
             }
-            return ret;
+            return false;
         } else {
-            try {
-                return runCallStackRecurs(getter.invoke(source), stack);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException(e);
+            Annotation[] extractedAnns = extracted.annotations(path);
+            Annotation[] goldAnns = gold.annotations(path);
+            if (extractedAnns.length * goldAnns.length <= PAIRWISE_LIMIT) {
+                for (Annotation extractedAnn : extractedAnns) {
+                    for (Annotation goldAnn : goldAnns) {
+                        if (collides(extractedAnn, goldAnn)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+            // The collisions of a gold annotation within an index of extracted annotations are exactly the extracted
+            // annotations that collide with it
+            AnnotationIndex extractedIndex = extracted.index(path);
+            for (Annotation goldAnn : goldAnns) {
+                if (!extractedIndex.getCollisions(goldAnn.getBegin(), goldAnn.getEnd(), Annotation.class).isEmpty()) {
+                    return true;
+                }
             }
+            return false;
         }
     }
 
@@ -368,5 +308,72 @@ public class DeepSearchResourceEvaluator<T extends Resource> implements Resource
         return ann1.getBegin() <= ann2.getBegin() && ann1.getEnd() > ann2.getBegin() || (ann1.getBegin() >= ann2.getBegin())
                 && ann1.getBegin() <= ann2.getEnd();
     }
-}
 
+    /**
+     * The values found at each path of a single resource, each retrieved on first use. Values of value checked paths
+     * are held as upper case strings, those of position checked paths as annotations.
+     */
+    private final class ResourceValues {
+        private final T resource;
+        private final String[][] keys;
+        private final Annotation[][] annotations;
+        private final Set<String>[] keySets;
+        private final AnnotationIndex[] indexes;
+
+        @SuppressWarnings("unchecked")
+        ResourceValues(T resource) {
+            this.resource = resource;
+            this.keys = new String[paths.length][];
+            this.annotations = new Annotation[paths.length][];
+            this.keySets = new Set[paths.length];
+            this.indexes = new AnnotationIndex[paths.length];
+        }
+
+        int size(int path) {
+            return valuePaths[path] ? keys(path).length : annotations(path).length;
+        }
+
+        String[] keys(int path) {
+            if (keys[path] == null) {
+                collect(path);
+                String[] ret = new String[buffer.size()];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = buffer.get(i).toString().toUpperCase();
+                }
+                keys[path] = ret;
+            }
+            return keys[path];
+        }
+
+        Annotation[] annotations(int path) {
+            if (annotations[path] == null) {
+                collect(path);
+                Annotation[] ret = new Annotation[buffer.size()];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = (Annotation) buffer.get(i);
+                }
+                annotations[path] = ret;
+            }
+            return annotations[path];
+        }
+
+        Set<String> keySet(int path) {
+            if (keySets[path] == null) {
+                keySets[path] = new HashSet<>(Arrays.asList(keys(path)));
+            }
+            return keySets[path];
+        }
+
+        AnnotationIndex index(int path) {
+            if (indexes[path] == null) {
+                indexes[path] = new AnnotationIndex(Arrays.asList(annotations(path)));
+            }
+            return indexes[path];
+        }
+
+        private void collect(int path) {
+            buffer.clear();
+            paths[path].collect(resource, buffer);
+        }
+    }
+}
@@ -5,14 +5,9 @@ import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.apache.uima.cas.FeatureStructure;
 import org.hl7.fhir.DosageInstruction;
 
-import java.io.File;
-
 public class DosageAdditionalInstructionsEvaluator extends EvaluationTask<DosageInstruction> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageAdditionalInstructionsEvaluator(File evalDir) {
-        super("Dosage.additionalInstructions", evalDir);
+    public DosageAdditionalInstructionsEvaluator() {
+        super("Dosage.additionalInstructions");
     }
 
     @Override
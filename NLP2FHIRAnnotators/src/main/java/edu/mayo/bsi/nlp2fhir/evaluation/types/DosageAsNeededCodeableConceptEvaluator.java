@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.CodeableConcept;
 
-import java.io.File;
-
 public class DosageAsNeededCodeableConceptEvaluator extends EvaluationTask<CodeableConcept> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageAsNeededCodeableConceptEvaluator(File evalDir) {
-        super("Dosage.asNeededCodeableConcept", evalDir);
+    public DosageAsNeededCodeableConceptEvaluator() {
+        super("Dosage.asNeededCodeableConcept");
     }
 
     @Override
@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.CodeableConcept;
 
-import java.io.File;
-
 public class DosageMethodEvaluator extends EvaluationTask<CodeableConcept> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageMethodEvaluator(File evalDir) {
-        super("Dosage.method", evalDir);
+    public DosageMethodEvaluator() {
+        super("Dosage.method");
     }
 
     @Override
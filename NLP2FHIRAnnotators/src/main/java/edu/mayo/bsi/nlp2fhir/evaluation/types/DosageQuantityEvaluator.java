@@ -1,18 +1,13 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.types;
 
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.DosageInstruction;
 
-import java.io.File;
-
 public class DosageQuantityEvaluator extends EvaluationTask<DosageInstruction> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageQuantityEvaluator(File evalDir) {
-        super("Dosage.dose.quantity.value", evalDir);
+    public DosageQuantityEvaluator() {
+        super("Dosage.dose.quantity.value");
     }
 
     @Override
@@ -22,10 +17,9 @@ public class DosageQuantityEvaluator extends EvaluationTask<DosageInstruction> {
         }
         String extractedVal = ann.getDoseSimpleQuantity().getValue().getValue();
         String goldVal = gold.getStandardText();
-        goldVal = Util.normalizeNumber(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
         try {
             double extractedDouble = Double.valueOf(extractedVal);
-            double goldDouble = Double.valueOf(goldVal);
+            double goldDouble = NumberNormalizer.parse(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
             return extractedDouble == goldDouble;
         } catch (NumberFormatException e) {
             return extractedVal.equalsIgnoreCase(goldVal);
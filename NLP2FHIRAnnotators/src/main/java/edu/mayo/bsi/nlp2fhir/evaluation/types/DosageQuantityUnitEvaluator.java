@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.DosageInstruction;
 
-import java.io.File;
-
 public class DosageQuantityUnitEvaluator extends EvaluationTask<DosageInstruction> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageQuantityUnitEvaluator(File evalDir) {
-        super("Dosage.dose.quantity.unit", evalDir);
+    public DosageQuantityUnitEvaluator() {
+        super("Dosage.dose.quantity.unit");
     }
 
     @Override
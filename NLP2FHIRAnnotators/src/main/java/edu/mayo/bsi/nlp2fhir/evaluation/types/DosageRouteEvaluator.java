@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.DosageInstruction;
 
-import java.io.File;
-
 public class DosageRouteEvaluator extends EvaluationTask<DosageInstruction> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageRouteEvaluator(File evalDir) {
-        super("Dosage.route", evalDir);
+    public DosageRouteEvaluator() {
+        super("Dosage.route");
     }
 
     @Override
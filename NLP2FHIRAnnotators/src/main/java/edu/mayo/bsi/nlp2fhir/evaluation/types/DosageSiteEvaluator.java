@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.CodeableConcept;
 
-import java.io.File;
-
 public class DosageSiteEvaluator extends EvaluationTask<CodeableConcept> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageSiteEvaluator(File evalDir) {
-        super("Dosage.site", evalDir);
+    public DosageSiteEvaluator() {
+        super("Dosage.site");
     }
 
     @Override
@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.CodeableConcept;
 
-import java.io.File;
-
 public class DosageTimingCodeEvaluator extends EvaluationTask<CodeableConcept> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageTimingCodeEvaluator(File evalDir) {
-        super("Dosage.Timing.code", evalDir);
+    public DosageTimingCodeEvaluator() {
+        super("Dosage.Timing.code");
     }
 
     @Override
@@ -5,14 +5,9 @@ import edu.mayo.bsi.nlp2fhir.Util;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.EventTiming;
 
-import java.io.File;
-
 public class DosageWhenEvaluator extends EvaluationTask<EventTiming> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public DosageWhenEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.when", evalDir);
+    public DosageWhenEvaluator() {
+        super("Dosage.Timing.repeat.when");
     }
 
     @Override
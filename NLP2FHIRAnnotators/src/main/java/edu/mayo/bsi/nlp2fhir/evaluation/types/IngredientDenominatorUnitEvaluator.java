@@ -4,15 +4,10 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.Ratio;
 
-import java.io.File;
-
 // TODO don't use ratio
 public class IngredientDenominatorUnitEvaluator extends EvaluationTask<Ratio> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public IngredientDenominatorUnitEvaluator(File evalDir) {
-        super("Medication.ingredient.amount.denumerator.quantity.unit", evalDir);
+    public IngredientDenominatorUnitEvaluator() {
+        super("Medication.ingredient.amount.denumerator.quantity.unit");
     }
 
     @Override
@@ -4,15 +4,10 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.Ratio;
 
-import java.io.File;
-
 // TODO don't use ratio
 public class IngredientNumeratorUnitEvaluator extends EvaluationTask<Ratio> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public IngredientNumeratorUnitEvaluator(File evalDir) {
-        super("Medication.ingredient.amount.numerator.quantity.unit", evalDir);
+    public IngredientNumeratorUnitEvaluator() {
+        super("Medication.ingredient.amount.numerator.quantity.unit");
     }
 
     @Override
@@ -4,15 +4,10 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.Ratio;
 
-import java.io.File;
-
 // TODO: reimplement this using something other than ratio as it can also be used elsewhere
 public class IngredientNumeratorValueEvaluator extends EvaluationTask<Ratio> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public IngredientNumeratorValueEvaluator(File evalDir) {
-        super("Medication.ingredient.amount.numerator.quantity.value", evalDir);
+    public IngredientNumeratorValueEvaluator() {
+        super("Medication.ingredient.amount.numerator.quantity.value");
     }
 
     @Override
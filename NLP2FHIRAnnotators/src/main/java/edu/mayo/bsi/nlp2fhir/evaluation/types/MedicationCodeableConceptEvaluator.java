@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.MedicationStatement;
 
-import java.io.File;
-
 public class MedicationCodeableConceptEvaluator extends EvaluationTask<MedicationStatement> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public MedicationCodeableConceptEvaluator(File evalDir) {
-        super("MedicationStatement.medicationCodeableConcept", evalDir);
+    public MedicationCodeableConceptEvaluator() {
+        super("MedicationStatement.medicationCodeableConcept");
     }
 
     @Override
@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.MedicationProduct;
 
-import java.io.File;
-
 public class MedicationFormEvaluator extends EvaluationTask<MedicationProduct> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public MedicationFormEvaluator(File evalDir) {
-        super("Medication.form", evalDir);
+    public MedicationFormEvaluator() {
+        super("Medication.form");
     }
 
     @Override
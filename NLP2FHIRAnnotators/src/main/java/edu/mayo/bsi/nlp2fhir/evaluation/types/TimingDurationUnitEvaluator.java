@@ -5,14 +5,9 @@ import edu.mayo.bsi.nlp2fhir.Util;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 public class TimingDurationUnitEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingDurationUnitEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.durationUnit", evalDir);
+    public TimingDurationUnitEvaluator() {
+        super("Dosage.Timing.repeat.durationUnit");
     }
 
     @Override
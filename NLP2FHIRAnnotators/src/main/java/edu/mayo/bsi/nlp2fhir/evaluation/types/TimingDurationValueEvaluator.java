@@ -1,19 +1,14 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.types;
 
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 // TODO gold standard duration values are not standardized
 public class TimingDurationValueEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingDurationValueEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.duration", evalDir);
+    public TimingDurationValueEvaluator() {
+        super("Dosage.Timing.repeat.duration");
     }
 
     @Override
@@ -26,7 +21,7 @@ public class TimingDurationValueEvaluator extends EvaluationTask<TimingRepeat> {
             String goldVal = gold.getStandardText();
             try {
                 double extractedDouble = Double.valueOf(extractedVal);
-                double goldDouble = Double.valueOf(Util.normalizeNumber(goldVal)); // TODO evaluation-side normalization of gold standard
+                double goldDouble = NumberNormalizer.parse(goldVal); // TODO evaluation-side normalization of gold standard
                 return extractedDouble == goldDouble;
             } catch (Exception e) {
                 return extractedVal.equalsIgnoreCase(goldVal);
@@ -36,7 +31,7 @@ public class TimingDurationValueEvaluator extends EvaluationTask<TimingRepeat> {
             String goldVal = gold.getStandardText();
             try {
                 double extractedDouble = Double.valueOf(extractedVal);
-                double goldDouble = Double.valueOf(Util.normalizeNumber(goldVal));// TODO evaluation-side normalization of gold standard
+                double goldDouble = NumberNormalizer.parse(goldVal);// TODO evaluation-side normalization of gold standard
                 return extractedDouble == goldDouble;
             } catch (Exception e) {
                 return extractedVal.equalsIgnoreCase(goldVal);
@@ -1,18 +1,13 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.types;
 
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 public class TimingFrequencyMaxEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingFrequencyMaxEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.frequencyMax", evalDir);
+    public TimingFrequencyMaxEvaluator() {
+        super("Dosage.Timing.repeat.frequencyMax");
     }
 
     @Override
@@ -24,7 +19,7 @@ public class TimingFrequencyMaxEvaluator extends EvaluationTask<TimingRepeat> {
         String goldVal = gold.getStandardText();
         try {
             double extractedDouble = Double.valueOf(extractedVal);
-            double goldDouble = Double.valueOf(Util.normalizeNumber(goldVal)); // TODO evaluation side normalization of gold standard
+            double goldDouble = NumberNormalizer.parse(goldVal); // TODO evaluation side normalization of gold standard
             return extractedDouble == goldDouble;
         } catch (NumberFormatException e) {
             return extractedVal.equalsIgnoreCase(goldVal);
@@ -1,18 +1,13 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.types;
 
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 public class TimingPeriodMaxEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingPeriodMaxEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.periodMax", evalDir);
+    public TimingPeriodMaxEvaluator() {
+        super("Dosage.Timing.repeat.periodMax");
     }
 
     @Override
@@ -24,8 +19,7 @@ public class TimingPeriodMaxEvaluator extends EvaluationTask<TimingRepeat> {
         String goldVal = gold.getStandardText();
         try {
             double extractedDouble = Double.valueOf(extractedVal);
-            goldVal = Util.normalizeNumber(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
-            double goldDouble = Double.valueOf(goldVal);
+            double goldDouble = NumberNormalizer.parse(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
             return extractedDouble == goldDouble;
         } catch (Exception e) {
             return extractedVal.equalsIgnoreCase(goldVal);
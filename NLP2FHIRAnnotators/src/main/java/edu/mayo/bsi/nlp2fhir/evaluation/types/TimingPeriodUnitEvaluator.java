@@ -4,14 +4,9 @@ import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 public class TimingPeriodUnitEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingPeriodUnitEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.period%2Bunit", evalDir);
+    public TimingPeriodUnitEvaluator() {
+        super("Dosage.Timing.repeat.period%2Bunit");
     }
 
     @Override
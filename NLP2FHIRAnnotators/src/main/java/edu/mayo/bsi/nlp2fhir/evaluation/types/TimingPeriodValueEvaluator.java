@@ -1,18 +1,13 @@
 package edu.mayo.bsi.nlp2fhir.evaluation.types;
 
 import edu.mayo.bsi.nlp2fhir.KnowtatorAnnotation;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.evaluation.api.EvaluationTask;
 import org.hl7.fhir.TimingRepeat;
 
-import java.io.File;
-
 public class TimingPeriodValueEvaluator extends EvaluationTask<TimingRepeat> {
-    /**
-     * @param evalDir The temporary evaluation directory
-     */
-    public TimingPeriodValueEvaluator(File evalDir) {
-        super("Dosage.Timing.repeat.period%2Bunit", evalDir);
+    public TimingPeriodValueEvaluator() {
+        super("Dosage.Timing.repeat.period%2Bunit");
     }
 
     @Override
@@ -24,8 +19,7 @@ public class TimingPeriodValueEvaluator extends EvaluationTask<TimingRepeat> {
         String goldVal = gold.getStandardText().split(",")[0];
         try {
             double extractedDouble = Double.valueOf(extractedVal);
-            goldVal = Util.normalizeNumber(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
-            double goldDouble = Double.valueOf(goldVal);
+            double goldDouble = NumberNormalizer.parse(goldVal); // TODO gold standard annotation is not normalized, so we normalize here
             return extractedDouble == goldDouble;
         } catch (Exception e) {
             return extractedVal.equalsIgnoreCase(goldVal);
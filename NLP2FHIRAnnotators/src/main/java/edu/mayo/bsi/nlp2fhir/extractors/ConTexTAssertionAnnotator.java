@@ -1,5 +1,6 @@
 package edu.mayo.bsi.nlp2fhir.extractors;
 
+import edu.mayo.bsi.nlp2fhir.extractors.context.ConTexTSentence;
 import edu.mayo.bsi.nlp2fhir.extractors.context.ConTexTSettings;
 import org.apache.ctakes.typesystem.type.textsem.EventMention;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
@@ -48,22 +49,19 @@ public class ConTexTAssertionAnnotator extends JCasAnnotator_ImplBase {
                 nes.add(cm);
             }
             if (nes.size() == 0) continue;
+            //modified by Sunghwan (06-17-2014) to solve the "post" context word at the end of the sentence (eg, Amputation. No)
+            //won't work if negation word is in the different sentence
+            ConTexTSentence sentence = conText.prepareSentence(senPlusOne.toLowerCase() + " ");
 
             for (EventMention ne : nes) {
-                String tagged = null;
-                //modified by Sunghwan (06-17-2014) to solve the "post" context word at the end of the sentence (eg, Amputation. No)
-                //won't work if negation word is in the different sentence
-                tagged = conText.preProcessSentence(senPlusOne.toLowerCase() + " ", ne.getCoveredText().toLowerCase());
+                ConTexTSentence.Mention mention = sentence.findMention(ne.getCoveredText().toLowerCase());
                 //String tagged = conText.preProcessSentence(sent.getCoveredText().toLowerCase(), ne.getCoveredText().toLowerCase());
-                if (tagged == null)
+                if (mention == null)
                     continue;
 
-                //tokenizing the sentence in words
-                String[] words = tagged.split("[,;\\s]+");
-
-                String neg = conText.applyNegEx(words);
-                String tmp = conText.applyTemporality(words);
-                String subj = conText.applyExperiencer(words);
+                String neg = mention.getNegationContext();
+                String tmp = mention.getTemporalityContext();
+                String subj = mention.getExperiencer();
                 //		System.out.println(" subj " + subj);
                 if (neg.equals(ConTexTSettings.NegationContext.Negated.name())) {
                     ne.setPolarity(-1);
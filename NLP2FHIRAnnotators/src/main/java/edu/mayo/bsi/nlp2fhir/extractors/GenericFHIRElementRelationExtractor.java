@@ -2,9 +2,14 @@ package edu.mayo.bsi.nlp2fhir.extractors;
 
 import edu.mayo.bsi.nlp2fhir.extractors.features.*;
 import edu.mayo.bsi.nlp2fhir.nlp.GenericRelation;
-import org.apache.uima.UIMAException;
-import org.apache.uima.UIMAFramework;
+import edu.mayo.bsi.nlp2fhir.nlp.Section;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.EngineMetrics;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.MetricsProbe;
+import edu.mayo.bsi.nlp2fhir.performance.structs.AnnotationIndex;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.uima.UimaContext;
+import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
@@ -19,9 +24,43 @@ import org.cleartk.ml.jar.JarClassifierBuilder;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Extracts generic relations between two annotation types by classifying candidate argument pairs.<br>
+ * <br>
+ * Candidate pairs are limited to arguments sharing a {@link CandidateScope scope} (by default, the whole document),
+ * and optionally to arguments separated by at most a given number of tokens. Candidates are retrieved per argument from
+ * interval indexes built once per document, such that pairs outside the scope are never enumerated.<br>
+ * <br>
+ * The number of argument pairs possible, considered as candidates, and skipped on feature extraction failure, as well as
+ * the time spent classifying, are recorded as counters within the engine's metrics when instrumented (see
+ * {@link MetricsProbe}), and are available per instance via their getters.
+ */
 public class GenericFHIRElementRelationExtractor extends CleartkAnnotator<Boolean> {
 
+    /**
+     * The span within which both arguments of a candidate pair must lie
+     */
+    public enum CandidateScope {
+        DOCUMENT(null),
+        SENTENCE(Sentence.class),
+        SECTION(Section.class);
+
+        private final Class<? extends Annotation> spanClass;
+
+        CandidateScope(Class<? extends Annotation> spanClass) {
+            this.spanClass = spanClass;
+        }
+
+        /**
+         * @return The annotation type delimiting this scope, or null if the scope is the whole document
+         */
+        public Class<? extends Annotation> getSpanClass() {
+            return spanClass;
+        }
+    }
+
     private Class<? extends Annotation> baseClass;
     private Class<? extends Annotation> associationClazz;
     public static final String RELATION_NAME_PARAM = "REL_NAME";
@@ -42,9 +81,31 @@ public class GenericFHIRElementRelationExtractor extends CleartkAnnotator<Boolea
             description = "The class of the second argument in the relation"
     )
     private String arg2clazz;
+    public static final String CANDIDATE_SCOPE_PARAM = "CANDIDATE_SCOPE";
+    @ConfigurationParameter(
+            name = "CANDIDATE_SCOPE",
+            description = "The span both arguments of a candidate pair must lie within, one of DOCUMENT, SENTENCE or SECTION",
+            mandatory = false,
+            defaultValue = "DOCUMENT"
+    )
+    private String candidateScopeName;
+    public static final String MAX_TOKEN_DISTANCE_PARAM = "MAX_TOKEN_DISTANCE";
+    @ConfigurationParameter(
+            name = "MAX_TOKEN_DISTANCE",
+            description = "The maximum number of tokens between the arguments of a candidate pair, or -1 for no limit",
+            mandatory = false,
+            defaultValue = "-1"
+    )
+    private int maxTokenDistance;
 
+    private CandidateScope candidateScope;
+    private List<FeatureExtractor<Annotation, Annotation>> featureExtractors;
     private int posInstances;
     private int negInstances;
+    private long possiblePairs;
+    private long candidatePairs;
+    private long failedPairs;
+    private long classificationNanos;
 
     @SuppressWarnings("unchecked")
     public void initialize(UimaContext context) throws ResourceInitializationException {
@@ -52,12 +113,24 @@ public class GenericFHIRElementRelationExtractor extends CleartkAnnotator<Boolea
         try {
             baseClass = (Class<? extends Annotation>) Class.forName(arg1clazz);
             associationClazz = (Class<? extends Annotation>) Class.forName(arg2clazz);
-        } catch (ClassNotFoundException | ClassCastException e) {
+            candidateScope = CandidateScope.valueOf(candidateScopeName.toUpperCase());
+        } catch (ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
             throw new ResourceInitializationException(e);
         }
+        featureExtractors = Arrays.asList(
+                new TokenFeatureExtractor(),
+                new PartOfSpeechFeatureExtractor(),
+                new PhraseChunkingFeatureExtractor(),
+                new CTakesNamedEntityFeatureExtractor(),
+                new DependencyTreeFeatureExtractor(),
+                new DependencyPathFeatureExtractor()
+        );
         posInstances = 0;
         negInstances = 0;
-
+        possiblePairs = 0;
+        candidatePairs = 0;
+        failedPairs = 0;
+        classificationNanos = 0;
     }
 
     @Override
@@ -74,55 +147,106 @@ public class GenericFHIRElementRelationExtractor extends CleartkAnnotator<Boolea
             }
         }
 
-        for (Annotation ann1 : JCasUtil.select(cas, baseClass)) {
-            for (Annotation ann2 : JCasUtil.select(cas, associationClazz)) {
-                List<Feature> features = new LinkedList<>();
-                boolean continueExec = true;
-                for (FeatureExtractor<Annotation, Annotation> extractor : getFeatureExtractors()) {
-                    try {
-                        features.addAll(extractor.extract(cas, ann1, ann2));
-                    } catch (Exception e) {
-                        continueExec = false; // TODO log
+        Collection<? extends Annotation> baseAnns = JCasUtil.select(cas, baseClass);
+        List<? extends Annotation> associationAnns = new ArrayList<>(JCasUtil.select(cas, associationClazz));
+        if (baseAnns.isEmpty() || associationAnns.isEmpty()) {
+            return;
+        }
+        CandidateIndex candidates = new CandidateIndex(cas, associationAnns);
+        long pairs = 0;
+        long candidateCount = 0;
+        long failed = 0;
+        long nanos = 0;
+        try {
+            for (Annotation ann1 : baseAnns) {
+                pairs += associationAnns.size();
+                for (Annotation ann2 : candidates.getCandidates(ann1)) {
+                    candidateCount++;
+                    List<Feature> features = new ArrayList<>();
+                    boolean continueExec = true;
+                    for (FeatureExtractor<Annotation, Annotation> extractor : featureExtractors) {
+                        try {
+                            features.addAll(extractor.extract(cas, ann1, ann2));
+                        } catch (Exception e) {
+                            continueExec = false; // TODO log
+                        }
                     }
-                }
-                if (!continueExec) {
-                    continue;
-                }
-                if (isTraining()) {
-                    boolean isRelation = rels.getOrDefault(ann1, new HashSet<>()).contains(ann2);
-                    this.dataWriter.write(new Instance<>(isRelation, features));
-                    if (isRelation) {
-                        posInstances++;
-                    } else {
-                        negInstances++;
+                    if (!continueExec) {
+                        failed++;
+                        continue;
                     }
-                } else {
-                    if (this.classifier.classify(features)) {
-                        GenericRelation rel = new GenericRelation(cas);
-                        rel.setArg1(ann1);
-                        rel.setArg2(ann2);
-                        rel.setRelationType(relationType.toUpperCase());
-                        rel.addToIndexes();
+                    if (isTraining()) {
+                        boolean isRelation = rels.getOrDefault(ann1, Collections.emptySet()).contains(ann2);
+                        this.dataWriter.write(new Instance<>(isRelation, features));
+                        if (isRelation) {
+                            posInstances++;
+                        } else {
+                            negInstances++;
+                        }
+                    } else {
+                        long start = System.nanoTime();
+                        boolean isRelation = this.classifier.classify(features);
+                        nanos += System.nanoTime() - start;
+                        if (isRelation) {
+                            GenericRelation rel = new GenericRelation(cas);
+                            rel.setArg1(ann1);
+                            rel.setArg2(ann2);
+                            rel.setRelationType(relationType.toUpperCase());
+                            rel.addToIndexes();
+                        }
                     }
                 }
             }
+        } finally {
+            FeatureContext.release(cas);
+        }
+        possiblePairs += pairs;
+        candidatePairs += candidateCount;
+        failedPairs += failed;
+        classificationNanos += nanos;
+        EngineMetrics metrics = MetricsProbe.getCurrentEngine(cas);
+        if (metrics != null) {
+            metrics.recordCounter("possiblePairs", pairs);
+            metrics.recordCounter("candidatePairs", candidateCount);
+            metrics.recordCounter("failedPairs", failed);
+            metrics.recordCounter("classificationNanos", nanos);
         }
     }
 
-    private List<FeatureExtractor<Annotation, Annotation>> getFeatureExtractors() {
-        return Arrays.asList(
-                new TokenFeatureExtractor(),
-                new PartOfSpeechFeatureExtractor(),
-                new PhraseChunkingFeatureExtractor(),
-                new CTakesNamedEntityFeatureExtractor(),
-                new DependencyTreeFeatureExtractor(),
-                new DependencyPathFeatureExtractor()
-        );
+    /**
+     * @return The number of argument pairs within the documents processed by this instance, regardless of scope
+     */
+    public long getPossiblePairs() {
+        return possiblePairs;
+    }
+
+    /**
+     * @return The number of argument pairs considered as candidates by this instance
+     */
+    public long getCandidatePairs() {
+        return candidatePairs;
+    }
+
+    /**
+     * @return The number of candidate pairs this instance skipped as feature extraction failed
+     */
+    public long getFailedPairs() {
+        return failedPairs;
+    }
+
+    /**
+     * @return The time this instance spent classifying candidate pairs, in nanoseconds
+     */
+    public long getClassificationNanos() {
+        return classificationNanos;
     }
 
     @Override
     public void collectionProcessComplete() throws AnalysisEngineProcessException {
         super.collectionProcessComplete();
+        UIMAFramework.getLogger(GenericFHIRElementRelationExtractor.class).log(Level.INFO, relationType + ": "
+                + candidatePairs + " of " + possiblePairs + " argument pairs considered within " + candidateScope
+                + " scope (" + failedPairs + " skipped on feature extraction failure), " + TimeUnit.NANOSECONDS.toMillis(classificationNanos) + "ms spent classifying");
         if (this.isTraining()) {
             UIMAFramework.getLogger(GenericFHIRElementRelationExtractor.class).log(Level.INFO, relationType + ": " + posInstances + " true relations, " + negInstances + " false relations");
             try {
@@ -132,4 +256,118 @@ public class GenericFHIRElementRelationExtractor extends CleartkAnnotator<Boolea
             }
         }
     }
+
+    /**
+     * Retrieves the second arguments eligible for pairing with a given first argument within a single document
+     */
+    private class CandidateIndex {
+        private final List<? extends Annotation> all;
+        private final AnnotationIndex arguments;
+        private final AnnotationIndex scopes;
+        private final int[] tokenBegins;
+        private final int[] tokenEnds;
+        private final int documentLength;
+
+        CandidateIndex(JCas cas, List<? extends Annotation> associationAnns) {
+            this.all = associationAnns;
+            this.arguments = new AnnotationIndex(associationAnns);
+            Class<? extends Annotation> spanClass = candidateScope.getSpanClass();
+            this.scopes = spanClass == null ? null : new AnnotationIndex(JCasUtil.select(cas, spanClass));
+            if (maxTokenDistance >= 0) {
+                Collection<BaseToken> tokens = JCasUtil.select(cas, BaseToken.class);
+                this.tokenBegins = new int[tokens.size()];
+                this.tokenEnds = new int[tokens.size()];
+                int i = 0;
+                for (BaseToken token : tokens) {
+                    tokenBegins[i] = token.getBegin();
+                    tokenEnds[i++] = token.getEnd();
+                }
+                Arrays.sort(tokenEnds); // Already sorted unless tokens overlap
+            } else {
+                this.tokenBegins = null;
+                this.tokenEnds = null;
+            }
+            this.documentLength = cas.getDocumentText() == null ? 0 : cas.getDocumentText().length();
+        }
+
+        /**
+         * @return The second arguments eligible for pairing with ann1, in index order
+         */
+        Collection<? extends Annotation> getCandidates(Annotation ann1) {
+            if (scopes == null && tokenBegins == null) {
+                return all;
+            }
+            Collection<? extends Annotation> candidates;
+            if (scopes != null) {
+                List<Annotation> covering = scopes.getCovering(ann1.getBegin(), ann1.getEnd(), Annotation.class);
+                if (covering.isEmpty()) {
+                    return Collections.emptyList();
+                } else if (covering.size() == 1) {
+                    Annotation scope = covering.get(0);
+                    candidates = arguments.getCovered(scope.getBegin(), scope.getEnd(), associationClazz);
+                } else {
+                    // Overlapping scopes, retain index order and drop duplicates
+                    Set<Annotation> merged = new LinkedHashSet<>();
+                    for (Annotation scope : covering) {
+                        merged.addAll(arguments.getCovered(scope.getBegin(), scope.getEnd(), associationClazz));
+                    }
+                    candidates = merged;
+                }
+            } else {
+                // Offsets of the tokens maxTokenDistance + 1 tokens before and after ann1: arguments beyond these
+                // cannot lie within the maximum distance, those within are checked exactly below
+                int first = upperBound(tokenEnds, ann1.getBegin()) - (maxTokenDistance + 1);
+                int last = lowerBound(tokenBegins, ann1.getEnd()) - 1 + (maxTokenDistance + 1);
+                int windowStart = first <= 0 ? 0 : tokenBegins[first];
+                int windowEnd = last >= tokenBegins.length ? documentLength : tokenEnds[last];
+                candidates = arguments.getCollisions(windowStart, windowEnd, associationClazz);
+            }
+            if (tokenBegins == null) {
+                return candidates;
+            }
+            List<Annotation> ret = new ArrayList<>(candidates.size());
+            for (Annotation ann2 : candidates) {
+                if (getTokensBetween(ann1, ann2) <= maxTokenDistance) {
+                    ret.add(ann2);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * @return The number of tokens lying entirely between the two annotations, or 0 if they overlap
+         */
+        private int getTokensBetween(Annotation ann1, Annotation ann2) {
+            int gapStart = Math.min(ann1.getEnd(), ann2.getEnd());
+            int gapEnd = Math.max(ann1.getBegin(), ann2.getBegin());
+            if (gapEnd <= gapStart) {
+                return 0;
+            }
+            return Math.max(0, upperBound(tokenEnds, gapEnd) - lowerBound(tokenBegins, gapStart));
+        }
+    }
+
+    /**
+     * @return The first index of the sorted array whose value is at or after offset
+     */
+    private static int lowerBound(int[] sorted, int offset) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The first index of the sorted array whose value is after offset
+     */
+    private static int upperBound(int[] sorted, int offset) {
+        return lowerBound(sorted, offset + 1);
+    }
 }
@@ -13,15 +13,22 @@ import org.apache.uima.resource.ResourceInitializationException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
- * Exceedingly simplistic section detector that simply looks at beginning of lines
+ * Exceedingly simplistic section detector that simply looks at beginning of lines<br>
+ * <br>
+ * Lines starting with a section name (case-insensitively, ignoring leading whitespace) begin a section, unless their
+ * first two characters are not capitalized. Section names are held in a prefix trie, such that each line is matched
+ * against all names in a single pass over its characters. Where several names match a line, the first of these in
+ * the iteration order of the name to code map wins, as when names were matched one after another.
  */
 public class SectionExtractor extends JCasAnnotator_ImplBase {
-    private Map<String, String> startToCodeMap;
+    private HeaderTrie headers;
 
     public static final String SECTION_DEFINITION_PARAM = "SECTION_DEFINITION";
     @ConfigurationParameter(
@@ -34,12 +41,17 @@ public class SectionExtractor extends JCasAnnotator_ImplBase {
     public void initialize(UimaContext context) throws ResourceInitializationException {
         super.initialize(context);
         try {
-            startToCodeMap = new HashMap<>();
+            Map<String, String> startToCodeMap = new HashMap<>();
             List<String> entries = Files.readAllLines(new File((String) context.getConfigParameterValue(SECTION_DEFINITION_PARAM)).toPath());
             for (String entry : entries) {
                 String[] parsed = entry.split("\t");
                 startToCodeMap.put(parsed[0].toLowerCase(), parsed[1].trim());
             }
+            headers = new HeaderTrie();
+            int rank = 0;
+            for (Map.Entry<String, String> e : startToCodeMap.entrySet()) {
+                headers.add(e.getKey(), e.getValue(), rank++);
+            }
         } catch (IOException e) {
             throw new ResourceInitializationException(e);
         }
@@ -48,37 +60,26 @@ public class SectionExtractor extends JCasAnnotator_ImplBase {
     @Override
     public void process(JCas cas) throws AnalysisEngineProcessException {
         String documentText = cas.getDocumentText();
+        boolean asciiLowerCase = isAsciiLowerCaseContextFree(Locale.getDefault());
         int currStart = 0;
-        int currOffset = 0;
         String currSectionMap = null;
-        String[] arr = documentText.split("\n");
-        for (int i = 0 ; i < arr.length; i++) { // Split into newlines
-            String s = arr[i];
-            for (String text : startToCodeMap.keySet()) {
-                if (s.trim().length() > 1) {
-                    String firstchar = s.trim().substring(0, 2);
-                    if (!firstchar.equals(firstchar.toUpperCase())) {
-                        continue; // Skip uncapitalized headers TODO
-                    }
-                } else {
-                    continue;
-                }
-                if (s.trim().toLowerCase().startsWith(text)) {
-                    if (currSectionMap != null) {
-                        Section sec = new Section(cas, currStart, Math.min(documentText.length(), currStart + currOffset));
-                        sec.setId(currSectionMap);
-                        sec.addToIndexes();
-                    }
-                    currStart = currStart + currOffset;
-                    currOffset = 0;
-                    currSectionMap = startToCodeMap.get(text);
-                    break;
-                }
+        int lineStart = 0;
+        while (lineStart < documentText.length()) {
+            int lineEnd = documentText.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = documentText.length();
             }
-            currOffset += s.length();
-            if (i < arr.length - 1) {
-                currOffset += 1;
+            String code = matchHeader(documentText, lineStart, lineEnd, asciiLowerCase);
+            if (code != null) {
+                if (currSectionMap != null) {
+                    Section sec = new Section(cas, currStart, lineStart);
+                    sec.setId(currSectionMap);
+                    sec.addToIndexes();
+                }
+                currStart = lineStart;
+                currSectionMap = code;
             }
+            lineStart = lineEnd + 1;
         }
         if (currSectionMap != null) {
             Section sec = new Section(cas, currStart, documentText.length());
@@ -86,4 +87,127 @@ public class SectionExtractor extends JCasAnnotator_ImplBase {
             sec.addToIndexes();
         }
     }
+
+    /**
+     * @return The code of the section begun by the given line, or null if the line is not a section header
+     */
+    private String matchHeader(String text, int lineStart, int lineEnd, boolean asciiLowerCase) {
+        // Bounds of the line as trimmed by String#trim
+        int begin = lineStart;
+        int end = lineEnd;
+        while (begin < end && text.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - begin < 2 || !isCapitalized(text, begin)) {
+            return null; // Skip uncapitalized headers TODO
+        }
+        HeaderTrie.Node match = null;
+        HeaderTrie.Node node = headers.root;
+        for (int i = begin; node != null; i++) {
+            if (node.code != null && (match == null || node.rank < match.rank)) {
+                match = node;
+            }
+            if (i == end) {
+                break;
+            }
+            char c = text.charAt(i);
+            if (c >= 0x80 || !asciiLowerCase) {
+                // Lower casing may depend on context or change lengths, so match the line as lower cased as a whole
+                return headers.match(text.substring(begin, end).toLowerCase());
+            }
+            node = node.get(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return match == null ? null : match.code;
+    }
+
+    /**
+     * @return Whether the two characters at begin are unchanged when upper cased
+     */
+    private static boolean isCapitalized(String text, int begin) {
+        char first = text.charAt(begin);
+        char second = text.charAt(begin + 1);
+        if (first < 0x80 && second < 0x80) {
+            return !(first >= 'a' && first <= 'z') && !(second >= 'a' && second <= 'z');
+        }
+        String firstchar = text.substring(begin, begin + 2);
+        return firstchar.equals(firstchar.toUpperCase());
+    }
+
+    /**
+     * @return Whether {@link String#toLowerCase()} lower cases ASCII letters independently of their context in the given
+     * locale, as it does in all but the Turkish, Azerbaijani and Lithuanian locales
+     */
+    private static boolean isAsciiLowerCaseContextFree(Locale locale) {
+        String language = locale.getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+
+    /**
+     * A prefix trie over lower cased section names, each with the code of its section and its rank among all names
+     */
+    private static class HeaderTrie {
+        private final Node root = new Node();
+
+        void add(String name, String code, int rank) {
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.getOrAdd(name.charAt(i));
+            }
+            node.code = code;
+            node.rank = rank;
+        }
+
+        /**
+         * @return The code of the lowest ranked name the given lower cased line starts with, or null if none
+         */
+        String match(String line) {
+            Node match = null;
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                if (node.code != null && (match == null || node.rank < match.rank)) {
+                    match = node;
+                }
+                if (i == line.length()) {
+                    break;
+                }
+                node = node.get(line.charAt(i));
+            }
+            return match == null ? null : match.code;
+        }
+
+        private static class Node {
+            // Sorted, such that children are found by binary search
+            private char[] labels = new char[0];
+            private Node[] children = new Node[0];
+            private String code;
+            private int rank;
+
+            Node get(char c) {
+                int i = Arrays.binarySearch(labels, c);
+                return i < 0 ? null : children[i];
+            }
+
+            Node getOrAdd(char c) {
+                int i = Arrays.binarySearch(labels, c);
+                if (i >= 0) {
+                    return children[i];
+                }
+                i = -i - 1;
+                char[] newLabels = new char[labels.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(labels, 0, newLabels, 0, i);
+                System.arraycopy(children, 0, newChildren, 0, i);
+                newLabels[i] = c;
+                newChildren[i] = new Node();
+                System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+                System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+                labels = newLabels;
+                children = newChildren;
+                return newChildren[i];
+            }
+        }
+    }
 }
@@ -1,20 +1,20 @@
 package edu.mayo.bsi.nlp2fhir.extractors;
 
-import edu.mayo.bsi.nlp.vts.SNOMEDCT;
 import edu.mayo.bsi.nlp.vts.UMLS;
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndex;
+import edu.mayo.bsi.nlp2fhir.terminology.TerminologyService;
 import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.textsem.AnatomicalSiteMention;
 import org.apache.ctakes.typesystem.type.textsem.EntityMention;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
-import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
-import org.apache.uima.resource.ResourceInitializationException;
 import org.hl7.fhir.*;
 
 import java.sql.*;
@@ -27,11 +27,10 @@ import java.util.Map;
  */
 public class SnomedCTDictionaryLookupExtractor extends JCasAnnotator_ImplBase {
 
+    private final TerminologyService terminology = TerminologyService.getInstance();
 
-    @Override
-    public void initialize(UimaContext context) throws ResourceInitializationException {
-        super.initialize(context);
-    }
+    @ExternalResource(key = SnomedCTClosureIndex.RESOURCE_KEY, mandatory = false)
+    private SnomedCTClosureIndex closureIndex;
 
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
@@ -67,14 +66,14 @@ public class SnomedCTDictionaryLookupExtractor extends JCasAnnotator_ImplBase {
                     String code = c.getCode(); // Vocab specific
                     String term = c.getPreferredText();
                     String rootItem = "419492006"; // As defined in http://hl7.org/fhir/ValueSet/additional-instruction-codes
-                    if (code == null || term == null || !SNOMEDCT.isChild(code, rootItem)) {
+                    if (code == null || term == null || !terminology.isChild(code, rootItem, closureIndex)) {
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
-                                hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -91,15 +90,15 @@ public class SnomedCTDictionaryLookupExtractor extends JCasAnnotator_ImplBase {
                     // We have found a SNOMEDCT code/term within our defined hierarchy
                     CodeableConcept additionalInstructions = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
                     additionalInstructions.addToIndexes();
-                    additionalInstructions.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                    additionalInstructions.setText(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                     Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                     coding.addToIndexes();
-                    coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                    coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
                     Code fhirCode = new Code(jCas, mention.getBegin(), mention.getEnd());
                     fhirCode.addToIndexes();
                     fhirCode.setValue(code);
                     coding.setCode(fhirCode);
-                    coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                    coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                     additionalInstructions.setCoding(new FSArray(jCas, 1));
                     additionalInstructions.setCoding(0, coding);
                     DosageInstruction di;
@@ -136,14 +135,14 @@ public class SnomedCTDictionaryLookupExtractor extends JCasAnnotator_ImplBase {
                     String code = c.getCode(); // Vocab specific
                     String term = c.getPreferredText();
                     String rootItem = "422096002"; // As defined in http://hl7.org/fhir/ValueSet/administration-method-codes
-                    if (code == null || term == null || !SNOMEDCT.isChild(code, rootItem)) {
+                    if (code == null || term == null || !terminology.isChild(code, rootItem, closureIndex)) {
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
-                                hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -160,15 +159,15 @@ public class SnomedCTDictionaryLookupExtractor extends JCasAnnotator_ImplBase {
                     // We have found a SNOMEDCT code/term within our defined hierarchy
                     CodeableConcept method = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
                     method.addToIndexes();
-                    method.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                    method.setText(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                     Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                     coding.addToIndexes();
-                    coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                    coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
                     Code fhirCode = new Code(jCas, mention.getBegin(), mention.getEnd());
                     fhirCode.addToIndexes();
                     fhirCode.setValue(code);
                     coding.setCode(fhirCode);
-                    coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                    coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                     method.setCoding(new FSArray(jCas, 1));
                     method.setCoding(0, coding);
                     DosageInstruction di;
@@ -0,0 +1,278 @@
+package edu.mayo.bsi.nlp2fhir.extractors.context;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A sentence prepared for ConText processing by {@link ConTexTSettings#prepareSentence(String)}: holds the words of
+ * the sentence with its triggers tagged, and the negation, temporality and experiencer scopes of these triggers, all
+ * computed once per sentence. The context of each concept within the sentence is then resolved against these scopes
+ * by {@link #findMention(String)}, without tagging the sentence again.<br>
+ * <br>
+ * Resolution follows {@link ConTexTSettings#preProcessSentence(String, String)} and
+ * {@link ConTexTSettings#applyNegEx(String[])} and its siblings, which replace the concept by a single concept tag
+ * before tagging: the words of the concept count as one word towards the window of a trigger, and triggers
+ * overlapping the concept are dropped. Unlike there, the sentence is tagged as a whole, so that a trigger overlapping the
+ * concept is dropped entirely rather than leaving any shorter trigger within the rest of it to match. Concepts for which
+ * the inserted concept tag changes the triggers matching next to them, i.e. concepts not separated from the surrounding
+ * text by whitespace or punctuation, or for which another alternative negation trigger would be chosen, are still
+ * resolved by tagging the sentence with the concept replaced.
+ */
+public class ConTexTSentence {
+    private final ConTexTSettings settings;
+    private final String text;
+    private final BitSet candidateTriggers;
+    // Offsets within text of each word of the tagged sentence, and whether the word is a trigger tag
+    private final int[] wordBegins;
+    private final int[] wordEnds;
+    private final boolean[] tags;
+    // The word count of the untagged sentence and of each alternative trigger that tagged it, and the one chosen
+    private final int wordCount;
+    private final List<Alternative> alternatives;
+    private final int selectedAlternative;
+    private final List<Scope> negation;
+    private final List<Scope> temporality;
+    private final List<Scope> experiencer;
+
+    ConTexTSentence(ConTexTSettings settings, String text, BitSet candidateTriggers, int[] wordBegins, int[] wordEnds,
+                    boolean[] tags, int wordCount, List<Alternative> alternatives, int selectedAlternative,
+                    List<Scope> negation, List<Scope> temporality, List<Scope> experiencer) {
+        this.settings = settings;
+        this.text = text;
+        this.candidateTriggers = candidateTriggers;
+        this.wordBegins = wordBegins;
+        this.wordEnds = wordEnds;
+        this.tags = tags;
+        this.wordCount = wordCount;
+        this.alternatives = alternatives;
+        this.selectedAlternative = selectedAlternative;
+        this.negation = negation;
+        this.temporality = temporality;
+        this.experiencer = experiencer;
+    }
+
+    /**
+     * @return The normalized (lowercased, single spaced) sentence text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @param concept The concept text. As with {@link ConTexTSettings#preProcessSentence(String, String)}, its first
+     *                occurrence within the sentence is used.
+     * @return The mention of the concept within the sentence, or null if the concept does not occur in the sentence
+     */
+    public Mention findMention(String concept) {
+        String normalized = ConTexTSettings.normalizeConcept(concept);
+        int begin = text.indexOf(normalized);
+        if (begin == -1) {
+            return null;
+        }
+        return new Mention(begin, begin + normalized.length());
+    }
+
+    /**
+     * @return Whether the text at [begin, end) is separated from the surrounding text such that replacing it by a
+     * concept tag does not change the triggers matching around it
+     */
+    private boolean isDelimited(int begin, int end) {
+        return begin < end && !isDelimiter(text.charAt(begin)) && !isDelimiter(text.charAt(end - 1))
+                && (begin == 0 || isSpace(text.charAt(begin - 1)))
+                && (end == text.length() || isDelimiter(text.charAt(end)) && text.charAt(end) != ':');
+    }
+
+    /**
+     * Word counts, as compared between alternative triggers, treat only spaces as separators. Replacing the text at
+     * [begin, end) by a concept tag separates it from any adjacent characters, adding a word for each such character
+     * that the alternative trigger did not replace by its tag.
+     *
+     * @return Whether the same alternative trigger is chosen with the text at [begin, end) replaced by a concept tag
+     */
+    private boolean selectsSameAlternative(int begin, int end) {
+        int selected = -1;
+        int selectedWordCount = wordCount + getAddedWords(null, begin, end);
+        for (int i = 0; i < alternatives.size(); i++) {
+            Alternative alternative = alternatives.get(i);
+            int count = alternative.wordCount + getAddedWords(alternative.replaced, begin, end);
+            if (ConTexTSettings.isPreferred(count, alternative.prePostTag, selectedWordCount)) {
+                selected = i;
+                selectedWordCount = count;
+            }
+        }
+        return selected == selectedAlternative;
+    }
+
+    private int getAddedWords(BitSet replaced, int begin, int end) {
+        int ret = 0;
+        if (begin > 0 && text.charAt(begin - 1) != ' ' && (replaced == null || !replaced.get(begin - 1))) {
+            ret++;
+        }
+        if (end < text.length() && text.charAt(end) != ' ' && (replaced == null || !replaced.get(end))) {
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * @return Whether c is matched by <code>[\s\.\:;\,]</code>, which trigger patterns match around phrases
+     */
+    private static boolean isDelimiter(char c) {
+        return isSpace(c) || c == '.' || c == ':' || c == ';' || c == ',';
+    }
+
+    /**
+     * @return Whether c is matched by <code>\s</code>
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * The scope of a single trigger, in words of the tagged sentence
+     */
+    static final class Scope {
+        private final int trigger;
+        private final boolean forward;
+        // The word ending the scope, i.e. the closest terminating trigger, or the first word past the sentence
+        private final int limit;
+        private final int maxDistance;
+        private final String context;
+        // Whether the scope contains a concept tag already present in the sentence, which applies to any concept
+        private final boolean conceptTag;
+
+        Scope(int trigger, boolean forward, int limit, int maxDistance, String context, boolean conceptTag) {
+            this.trigger = trigger;
+            this.forward = forward;
+            this.limit = limit;
+            this.maxDistance = maxDistance;
+            this.context = context;
+            this.conceptTag = conceptTag;
+        }
+    }
+
+    /**
+     * The sentence as tagged by one of the alternative negation triggers
+     */
+    static final class Alternative {
+        private final int wordCount;
+        private final boolean prePostTag;
+        private final BitSet replaced;
+
+        Alternative(int wordCount, boolean prePostTag, BitSet replaced) {
+            this.wordCount = wordCount;
+            this.prePostTag = prePostTag;
+            this.replaced = replaced;
+        }
+    }
+
+    /**
+     * The occurrence of a concept within the sentence
+     */
+    public final class Mention {
+        // The words of the sentence tagged with the mention replaced, if it is not delimited
+        private final String[] words;
+        // The words overlapping the mention, which is empty (last < first) if the mention only spans delimiters
+        private final int first;
+        private final int last;
+        // The part of a word before or after the mention, which the concept tag splits off into a word of its own
+        private final boolean prefix;
+        private final boolean suffix;
+
+        private Mention(int begin, int end) {
+            words = isDelimited(begin, end) && selectsSameAlternative(begin, end) ? null
+                    : settings.getWords(settings.preProcessSentence(text, candidateTriggers, begin, end));
+            first = firstWordEndingAfter(begin);
+            last = Math.max(firstWordBeginningAt(end) - 1, first - 1);
+            prefix = first <= last && !tags[first] && wordBegins[first] < begin;
+            suffix = first <= last && !tags[last] && wordEnds[last] > end;
+        }
+
+        /**
+         * @return The {@link ConTexTSettings.NegationContext} name of the mention
+         */
+        public String getNegationContext() {
+            if (words != null) {
+                return settings.applyNegEx(words);
+            }
+            return resolve(negation, ConTexTSettings.NegationContext.Affirmed.name());
+        }
+
+        /**
+         * @return The {@link ConTexTSettings.TemporalityContext} name of the mention
+         */
+        public String getTemporalityContext() {
+            if (words != null) {
+                return settings.applyTemporality(words);
+            }
+            return resolve(temporality, ConTexTSettings.TemporalityContext.Recent.name());
+        }
+
+        /**
+         * @return The experiencer of the mention, either "Patient" or "Other"
+         */
+        public String getExperiencer() {
+            if (words != null) {
+                return settings.applyExperiencer(words);
+            }
+            return resolve(experiencer, "Patient");
+        }
+
+        /**
+         * @return The context of the first trigger whose scope contains the mention or another concept tag
+         */
+        private String resolve(List<Scope> scopes, String defaultContext) {
+            for (Scope scope : scopes) {
+                if (scope.trigger >= first && scope.trigger <= last) {
+                    continue;
+                }
+                if (scope.conceptTag || contains(scope)) {
+                    return scope.context;
+                }
+            }
+            return defaultContext;
+        }
+
+        private boolean contains(Scope scope) {
+            if (scope.forward) {
+                // The concept tag takes the place of the first word of the mention, or follows the split off prefix
+                return scope.trigger < first && scope.limit >= first
+                        && first + (prefix ? 1 : 0) - scope.trigger <= scope.maxDistance;
+            }
+            // The words following the mention move closer by the number of words it spans, less the concept tag
+            return scope.trigger > last && scope.limit <= last
+                    && scope.trigger + (suffix ? 1 : 0) - last <= scope.maxDistance;
+        }
+    }
+
+    /**
+     * @return The index of the first word ending after offset, or the number of words if there is none
+     */
+    private int firstWordEndingAfter(int offset) {
+        return firstAbove(wordEnds, offset);
+    }
+
+    /**
+     * @return The index of the first word beginning at or after offset, or the number of words if there is none
+     */
+    private int firstWordBeginningAt(int offset) {
+        return firstAbove(wordBegins, offset - 1);
+    }
+
+    /**
+     * @return The index of the first of the ascending offsets greater than offset
+     */
+    private static int firstAbove(int[] offsets, int offset) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
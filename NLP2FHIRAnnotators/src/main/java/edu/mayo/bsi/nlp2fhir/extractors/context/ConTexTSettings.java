@@ -1,11 +1,20 @@
 package edu.mayo.bsi.nlp2fhir.extractors.context;
 
+import edu.mayo.bsi.nlp2fhir.performance.AhoCorasickAutomaton;
+import edu.mayo.bsi.nlp2fhir.performance.RegexLiteralAnchors;
+
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.Vector;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,14 +56,39 @@ public class ConTexTSettings {
     private Pattern regexHistEnd;
     private Pattern regexHistExpEnd;
 
-    private Pattern regexTime;
-    private Pattern regexTimeFor;
-    private Pattern regexTimeSince;
+    //time
+    private static final Pattern regexTime = Pattern.compile("((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
+            "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
+            "(([1-9]?[0-9])[ |-](?:months?|years?) of)");//pattern to recognize expressions of >14 days
+    private static final Pattern regexTimeFor = Pattern.compile("(?:for|over) the [lp]ast (((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
+            "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
+            "(([1-9]?[0-9])[ |-](?:months?|years?|mos?|yrs?) of))");//other pattern to recognize expressions of >14 days
+    private static final Pattern regexTimeSince = Pattern.compile("since (?:(?:the )?last)? ((([2-9]|[1-9][0-9]) weeks (?:ago)?)|" +
+            "(([1-9]?[0-9])? (?:months?|years?) ago)|" +
+            "(jan(?:uary)?|feb(?:ruary)?|mar(?:ch)?|apr(?:il)?|may|june?|july?|aug(?:ust)?|sep(?:tember)?|oct(?:ober)?|nov(?:ember)?|dec(?:ember)?|spring|summer|fall|winter))");
 
     //originally this pattern recognized UMLS concepts, but for this application
     //it will recognize the input concepts
-    private static final String regExUmlsTag = "\\[\\d+\\]";
+    private static final Pattern regExUmlsTag = Pattern.compile("\\[\\d+\\]");
+
+    private static final Pattern MULTIPLE_SPACES = Pattern.compile(" +");
+    private static final Pattern WORD_DELIMITERS = Pattern.compile("[,;\\s]+");
+
+    private static final Set<String> NEG_TRIGGERS = new HashSet<>(Arrays.asList(
+            "<NEG_PRE>", "<POSS_PRE>", "<NEG_POST>", "<POSS_POST>", "<NEG_END>"));
+    private static final Set<String> HIST_TERMINATORS = new HashSet<>(Arrays.asList(
+            "<HIST_END>", "<HIST_EXP_END>", "<HIST_PRE>", "<HIST_1W>"));
 
+    // Characters that tags inserted into the sentence are made up of, see #getTriggerAnchor(String)
+    private static final String TAG_CHARACTERS = " []<>_ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    // Triggers whose tagged sentences compete with one another, followed by those applied in sequence
+    private final List<Trigger> alternativeTriggers = new ArrayList<>();
+    private final List<Trigger> sequentialTriggers = new ArrayList<>();
+    private final Set<String> triggerTags = new HashSet<>();
+    private AhoCorasickAutomaton anchorMatcher;
+    private int[][] triggersByAnchor;
+    private BitSet unanchoredTriggers;
 
     /**
      * Initialization regex (load parameters)
@@ -173,6 +207,187 @@ public class ConTexTSettings {
         if (regex_HIST_EXP_END.length() > 0)
             regexHistExpEnd = Pattern.compile(regex_HIST_EXP_END.substring(1));
 
+        addTrigger(alternativeTriggers, regexPseudo, " <NEG_PSEUDO> ");
+        addTrigger(alternativeTriggers, regexNegPre, " <NEG_PRE> ");
+        addTrigger(alternativeTriggers, regexPossPre, " <POSS_PRE> ");
+        addTrigger(alternativeTriggers, regexNegPost, " <NEG_POST> ");
+        addTrigger(alternativeTriggers, regexPossPost, " <POSS_POST> ");
+        addTrigger(sequentialTriggers, regexNegEnd, " <NEG_END> ");
+        addTrigger(sequentialTriggers, regexExpPre, " <EXP_PRE> ");
+        addTrigger(sequentialTriggers, regexExpEnd, " <EXP_END> ");
+        addTrigger(sequentialTriggers, regexHypoPre, " <HYPO_PRE> ");
+        addTrigger(sequentialTriggers, regexHypoEnd, " <HYPO_END> ");
+        addTrigger(sequentialTriggers, regexHistPre, " <HIST_PRE> ");
+        addTrigger(sequentialTriggers, regexHist1w, " <HIST_1W> ");
+        addTrigger(sequentialTriggers, regexHistEnd, " <HIST_END> ");
+        addTrigger(sequentialTriggers, regexHypoExpEnd, " <HYPO_EXP_END> ");
+        addTrigger(sequentialTriggers, regexHistExpEnd, " <HIST_EXP_END> ");
+        addTrigger(sequentialTriggers, regexTimeFor, " <TIME_PRE> ");
+        addTrigger(sequentialTriggers, regexTime, " <TIME_PRE> ");
+        addTrigger(sequentialTriggers, regexTimeSince, " <TIME_POST> ");
+        buildAnchorMatcher();
+    }
+
+    private void addTrigger(List<Trigger> triggers, Pattern pattern, String tag) {
+        if (pattern != null) {
+            triggers.add(new Trigger(alternativeTriggers.size() + sequentialTriggers.size(), pattern, tag));
+            triggerTags.add(tag.trim());
+        }
+    }
+
+    /**
+     * Combines the literal anchors of all trigger patterns into a single automaton, so that the triggers that can
+     * possibly occur within a sentence are found in one pass over it
+     */
+    private void buildAnchorMatcher() {
+        List<Trigger> all = new ArrayList<>(alternativeTriggers);
+        all.addAll(sequentialTriggers);
+        unanchoredTriggers = new BitSet(all.size());
+        Map<String, List<Integer>> anchorToTriggers = new LinkedHashMap<>();
+        for (Trigger trigger : all) {
+            Set<String> anchors = RegexLiteralAnchors.extract(trigger.pattern, false);
+            List<String> usable = anchors == null ? null : new ArrayList<>();
+            for (String anchor : anchors == null ? Collections.<String>emptySet() : anchors) {
+                String usableAnchor = getTriggerAnchor(anchor);
+                if (usableAnchor == null) {
+                    usable = null;
+                    break;
+                }
+                usable.add(usableAnchor);
+            }
+            if (usable == null) {
+                unanchoredTriggers.set(trigger.id);
+                continue;
+            }
+            for (String anchor : usable) {
+                anchorToTriggers.computeIfAbsent(anchor, k -> new ArrayList<>()).add(trigger.id);
+            }
+        }
+        List<String> anchors = new ArrayList<>(anchorToTriggers.keySet());
+        triggersByAnchor = new int[anchors.size()][];
+        for (int i = 0; i < anchors.size(); i++) {
+            List<Integer> ids = anchorToTriggers.get(anchors.get(i));
+            triggersByAnchor[i] = new int[ids.size()];
+            for (int j = 0; j < ids.size(); j++) {
+                triggersByAnchor[i][j] = ids.get(j);
+            }
+        }
+        anchorMatcher = new AhoCorasickAutomaton(anchors);
+    }
+
+    /**
+     * Anchors are only usable if they cannot be created by tagging, i.e. if they can not overlap the concept tag or
+     * any trigger tag inserted into the sentence. In that case a trigger can only match a tagged sentence if one of its
+     * anchors occurs within the untagged sentence.
+     *
+     * @param anchor A literal that any match of a trigger pattern must contain
+     * @return The longest substring of anchor that does not contain any tag characters, or null if there is none
+     */
+    private static String getTriggerAnchor(String anchor) {
+        String ret = null;
+        int start = 0;
+        for (int i = 0; i <= anchor.length(); i++) {
+            if (i == anchor.length() || TAG_CHARACTERS.indexOf(anchor.charAt(i)) >= 0) {
+                if (i > start && (ret == null || i - start > ret.length())) {
+                    ret = anchor.substring(start, i);
+                }
+                start = i + 1;
+            }
+        }
+        return ret == null || ret.equals("0") ? null : ret; // "0" occurs within the concept tag itself
+    }
+
+    /**
+     * @param text The text to scan
+     * @return The ids of all triggers that can possibly match text, or any tagged version of it
+     */
+    private BitSet findCandidateTriggers(CharSequence text) {
+        BitSet anchorsFound = new BitSet();
+        anchorMatcher.findAll(text, anchorsFound);
+        BitSet ret = (BitSet) unanchoredTriggers.clone();
+        for (int i = anchorsFound.nextSetBit(0); i >= 0; i = anchorsFound.nextSetBit(i + 1)) {
+            for (int id : triggersByAnchor[i]) {
+                ret.set(id);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Tags the triggers within a sentence and computes their scopes, once per sentence, such that the context of any
+     * number of concepts within the sentence can then be resolved by {@link ConTexTSentence#findMention(String)}
+     *
+     * @param sent The sentence text
+     * @return The normalized sentence along with the scopes of the triggers it contains
+     */
+    public ConTexTSentence prepareSentence(String sent) {
+        String normalized = normalizeSentence(sent);
+        BitSet candidates = findCandidateTriggers(normalized);
+        TaggedText untagged = TaggedText.withOffsets(normalized);
+        List<TaggedText> alternatives = new ArrayList<>();
+        TaggedText selected = tagAlternativeTriggers(untagged, candidates, alternatives);
+        TaggedText tagged = tagSequentialTriggers(selected, candidates);
+        // Split the same way as getWords(String), retaining the offsets of each word within the normalized sentence
+        List<String> words = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        Matcher delimiters = WORD_DELIMITERS.matcher(tagged.text);
+        int pos = 0;
+        while (delimiters.find()) {
+            words.add(tagged.text.substring(pos, delimiters.start()));
+            spans.add(tagged.getSpan(pos, delimiters.start()));
+            pos = delimiters.end();
+        }
+        words.add(tagged.text.substring(pos));
+        spans.add(tagged.getSpan(pos, tagged.text.length()));
+        while (!words.isEmpty() && words.get(words.size() - 1).isEmpty()) {
+            words.remove(words.size() - 1);
+            spans.remove(spans.size() - 1);
+        }
+        String[] wordArr = words.toArray(new String[0]);
+        int[] wordBegins = new int[wordArr.length];
+        int[] wordEnds = new int[wordArr.length];
+        boolean[] tags = new boolean[wordArr.length];
+        // The number of concept tags among the words preceding each word
+        int[] conceptTags = new int[wordArr.length + 1];
+        for (int i = 0; i < wordArr.length; i++) {
+            wordBegins[i] = spans.get(i)[0];
+            wordEnds[i] = spans.get(i)[1];
+            tags[i] = triggerTags.contains(wordArr[i]);
+            conceptTags[i + 1] = conceptTags[i] + (regExUmlsTag.matcher(wordArr[i]).matches() ? 1 : 0);
+        }
+        // Keep the alternatives that tagged anything, any others being equivalent to the untagged sentence
+        List<ConTexTSentence.Alternative> taggedAlternatives = new ArrayList<>();
+        int selectedAlternative = -1;
+        for (TaggedText alternative : alternatives) {
+            if (alternative == untagged) {
+                continue;
+            }
+            if (alternative == selected) {
+                selectedAlternative = taggedAlternatives.size();
+            }
+            taggedAlternatives.add(new ConTexTSentence.Alternative(countWords(alternative.text),
+                    hasPrePostTag(alternative.text), alternative.replaced));
+        }
+        return new ConTexTSentence(this, normalized, candidates, wordBegins, wordEnds, tags, countWords(normalized),
+                taggedAlternatives, selectedAlternative, getNegationScopes(wordArr, conceptTags),
+                getTemporalityScopes(wordArr, conceptTags), getExperiencerScopes(wordArr, conceptTags));
+    }
+
+    /**
+     * Lowercases a sentence and collapses runs of spaces, prefixing it by a space
+     */
+    private static String normalizeSentence(String sent) {
+        //modified by Sunghwan to use "\n" in context (06-17-2014) (eg, PAD NO\n)
+        //String sentenceTagged = " " + sent.replaceAll("\\s+", " ").toLowerCase();
+        return " " + MULTIPLE_SPACES.matcher(sent).replaceAll(" ").toLowerCase();
+    }
+
+    /**
+     * Lowercases a concept and collapses runs of spaces, such that it can be found within a normalized sentence
+     */
+    static String normalizeConcept(String concept) {
+        //String umlsConcept = concept.replaceAll("\\s+", " ").toLowerCase();
+        return MULTIPLE_SPACES.matcher(concept).replaceAll(" ").toLowerCase();
     }
 
     /**
@@ -193,119 +408,12 @@ public class ConTexTSettings {
             sentenceTagged = sentenceTagged.substring(0, sbegin + conceptIndex) + tag + sentenceTagged.substring(sbegin + conceptIndex + concept.length() + 1);
         if (sentenceTagged.equals(cSen))
             return null;
-        sentenceTagged = sentenceTagged.replaceAll("-", " ");
+        sentenceTagged = sentenceTagged.replace('-', ' ');
         //sentenceTagged =  sentenceTagged.replaceAll("\\s+", " ");
-        sentenceTagged = sentenceTagged.replaceAll(" +", " ");
-        Vector<String> taggedSentences = new Vector<>();
-        //replacing negation phrases with corresponding tags
-
-        //negation phrases
-        if (regexPseudo != null) {
-            Matcher m0 = regexPseudo.matcher(sentenceTagged);
-            //	sentenceTagged = m0.replaceAll(" <NEG_PSEUDO> ");
-            taggedSentences.add(m0.replaceAll(" <NEG_PSEUDO> "));
-        }
-        if (regexNegPre != null) {
-            Matcher m1 = regexNegPre.matcher(sentenceTagged);
-            //	sentenceTagged = m1.replaceAll(" <NEG_PRE> ");
-            taggedSentences.add(m1.replaceAll(" <NEG_PRE> "));
-        }
-        if (regexPossPre != null) {
-            Matcher m2 = regexPossPre.matcher(sentenceTagged);
-            //	sentenceTagged = m2.replaceAll(" <POSS_PRE> ");
-            taggedSentences.add(m2.replaceAll(" <POSS_PRE> "));
-
-        }
-        if (regexNegPost != null) {
-            Matcher m3 = regexNegPost.matcher(sentenceTagged);
-            //	sentenceTagged = m3.replaceAll(" <NEG_POST> ");
-            taggedSentences.add(m3.replaceAll(" <NEG_POST> "));
-        }
-        if (regexPossPost != null) {
-            Matcher m4 = regexPossPost.matcher(sentenceTagged);
-            //	sentenceTagged = m4.replaceAll(" <POSS_POST> ");
-            taggedSentences.add(m4.replaceAll(" <POSS_POST> "));
-        }
-
-        for (int i = 0; i < taggedSentences.size(); i++) {
-            String sen = taggedSentences.get(i);
-            String[] words1 = sen.split(" +"); //bug fix
-            String[] words = sentenceTagged.split(" +"); //bug fix
-            if (words1.length < words.length) sentenceTagged = sen;
-            if (words1.length == words.length && (sen.indexOf("PRE") > 0 || sen.contains("POST")))
-                sentenceTagged = sen;
-        }
-        if (regexNegEnd != null) {
-            Matcher m5 = regexNegEnd.matcher(sentenceTagged);
-            sentenceTagged = m5.replaceAll(" <NEG_END> ");
-            //	taggedSentences.add(m5.replaceAll(" <NEG_END> "));
-        }
-
-
-        //experiencer phrases
-        if (regexExpPre != null) {
-            Matcher m6 = regexExpPre.matcher(sentenceTagged);
-            sentenceTagged = m6.replaceAll(" <EXP_PRE> ");
-        }
-        if (regexExpEnd != null) {
-            Matcher m14 = regexExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m14.replaceAll(" <EXP_END> ");
-        }
-
-        //hypothesis
-        if (regexHypoPre != null) {
-            Matcher m7 = regexHypoPre.matcher(sentenceTagged);
-            sentenceTagged = m7.replaceAll(" <HYPO_PRE> ");
-        }
-        if (regexHypoEnd != null) {
-            Matcher m10 = regexHypoEnd.matcher(sentenceTagged);
-            sentenceTagged = m10.replaceAll(" <HYPO_END> ");
-        }
-
-        //temporality
-        if (regexHistPre != null) {
-            Matcher m8 = regexHistPre.matcher(sentenceTagged);
-            sentenceTagged = m8.replaceAll(" <HIST_PRE> ");
-        }
-        if (regexHist1w != null) {
-            Matcher m9 = regexHist1w.matcher(sentenceTagged);
-            sentenceTagged = m9.replaceAll(" <HIST_1W> ");
-        }
-        if (regexHistEnd != null) {
-            Matcher m12 = regexHistEnd.matcher(sentenceTagged);
-            sentenceTagged = m12.replaceAll(" <HIST_END> ");
-        }
-
-        // mixed
-        if (regexHypoExpEnd != null) {
-            Matcher m11 = regexHypoExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m11.replaceAll(" <HYPO_EXP_END> ");
-        }
-        if (regexHistExpEnd != null) {
-            Matcher m13 = regexHistExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m13.replaceAll(" <HIST_EXP_END> ");
-        }
-
-        //time
-        regexTime = Pattern.compile("((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
-                "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
-                "(([1-9]?[0-9])[ |-](?:months?|years?) of)");//pattern to recognize expressions of >14 days
-        regexTimeFor = Pattern.compile("(?:for|over) the [lp]ast (((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
-                "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
-                "(([1-9]?[0-9])[ |-](?:months?|years?|mos?|yrs?) of))");//other pattern to recognize expressions of >14 days
-        regexTimeSince = Pattern.compile("since (?:(?:the )?last)? ((([2-9]|[1-9][0-9]) weeks (?:ago)?)|" +
-                "(([1-9]?[0-9])? (?:months?|years?) ago)|" +
-                "(jan(?:uary)?|feb(?:ruary)?|mar(?:ch)?|apr(?:il)?|may|june?|july?|aug(?:ust)?|sep(?:tember)?|oct(?:ober)?|nov(?:ember)?|dec(?:ember)?|spring|summer|fall|winter))");
-        Matcher mTime = regexTimeFor.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_PRE> ");
-        mTime = regexTime.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_PRE> ");
-        mTime = regexTimeSince.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_POST> ");
-        return sentenceTagged;
+        sentenceTagged = MULTIPLE_SPACES.matcher(sentenceTagged).replaceAll(" ");
+        return tagTriggers(new TaggedText(sentenceTagged), findCandidateTriggers(sentenceTagged)).text;
     }
 
-
     /**
      * Pre-processing on the sentence (replace concepts and negation terms by keywords)
      *
@@ -314,135 +422,185 @@ public class ConTexTSettings {
      * @throws Exception
      */
     public String preProcessSentence(String sent, String concept) {
-        //modified by Sunghwan to use "\n" in context (06-17-2014) (eg, PAD NO\n)
-        //String sentenceTagged = " " + sent.replaceAll("\\s+", " ").toLowerCase();
-        String sentenceTagged = " " + sent.replaceAll(" +", " ").toLowerCase();
-
-        int lastOffset = 0;
-        int charOffset = 0;
-
-        String tag = "";
-        //String umlsConcept = concept.replaceAll("\\s+", " ").toLowerCase();
-        String umlsConcept = concept.replaceAll(" +", " ").toLowerCase();
-        tag = " [0] ";
-
-        int conceptIndex = sentenceTagged.indexOf(umlsConcept);
-        if (conceptIndex != -1) {
-            charOffset = conceptIndex;
-            sentenceTagged = sentenceTagged.substring(0, charOffset) + tag + sentenceTagged.substring(charOffset + umlsConcept.length());
-            lastOffset = charOffset + tag.length();
-        } else
+        String normalized = normalizeSentence(sent);
+        String umlsConcept = normalizeConcept(concept);
+        int conceptIndex = normalized.indexOf(umlsConcept);
+        if (conceptIndex == -1) {
             return null;
+        }
+        return preProcessSentence(normalized, findCandidateTriggers(normalized), conceptIndex, conceptIndex + umlsConcept.length());
+    }
 
-        Vector<String> taggedSentences = new Vector<String>();
-        //replacing negation phrases with corresponding tags
+    /**
+     * Pre-processing on a normalized sentence as done by {@link #preProcessSentence(String, String)}, for a concept
+     * occurring at [conceptBegin, conceptEnd)
+     */
+    String preProcessSentence(String normalized, BitSet candidates, int conceptBegin, int conceptEnd) {
+        String sentenceTagged = normalized.substring(0, conceptBegin) + " [0] " + normalized.substring(conceptEnd);
+        return tagTriggers(new TaggedText(sentenceTagged), candidates).text;
+    }
 
-        //negation phrases
-        if (regexPseudo != null) {
-            Matcher m0 = regexPseudo.matcher(sentenceTagged);
-            //	sentenceTagged = m0.replaceAll(" <NEG_PSEUDO> ");
-            taggedSentences.add(m0.replaceAll(" <NEG_PSEUDO> "));
-        }
-        if (regexNegPre != null) {
-            Matcher m1 = regexNegPre.matcher(sentenceTagged);
-            //	sentenceTagged = m1.replaceAll(" <NEG_PRE> ");
-            taggedSentences.add(m1.replaceAll(" <NEG_PRE> "));
-        }
-        if (regexPossPre != null) {
-            Matcher m2 = regexPossPre.matcher(sentenceTagged);
-            //	sentenceTagged = m2.replaceAll(" <POSS_PRE> ");
-            taggedSentences.add(m2.replaceAll(" <POSS_PRE> "));
-        }
-        if (regexNegPost != null) {
-            Matcher m3 = regexNegPost.matcher(sentenceTagged);
-            //	sentenceTagged = m3.replaceAll(" <NEG_POST> ");
-            taggedSentences.add(m3.replaceAll(" <NEG_POST> "));
-        }
-        if (regexPossPost != null) {
-            Matcher m4 = regexPossPost.matcher(sentenceTagged);
-            //	sentenceTagged = m4.replaceAll(" <POSS_POST> ");
-            taggedSentences.add(m4.replaceAll(" <POSS_POST> "));
-        }
+    /**
+     * Replaces trigger phrases with their corresponding tags. Triggers not contained in candidates are known not to
+     * match and are skipped.
+     */
+    private TaggedText tagTriggers(TaggedText sentenceTagged, BitSet candidates) {
+        return tagSequentialTriggers(tagAlternativeTriggers(sentenceTagged, candidates, null), candidates);
+    }
 
-        for (int i = 0; i < taggedSentences.size(); i++) {
-            String sen = taggedSentences.get(i);
-            System.out.println(sen);
-            String[] words1 = sen.split(" +"); //bug fix
-            String[] words = sentenceTagged.split(" +"); //bug fix
-            if (words1.length < words.length) sentenceTagged = sen;
-            if (words1.length == words.length && (sen.indexOf("PRE") > 0 || sen.indexOf("POST") >= 0))
-                sentenceTagged = sen;
-        }
-        if (regexNegEnd != null) {
-            Matcher m5 = regexNegEnd.matcher(sentenceTagged);
-            sentenceTagged = m5.replaceAll(" <NEG_END> ");
-            //	taggedSentences.add(m5.replaceAll(" <NEG_END> "));
+    /**
+     * @param alternatives If not null, receives the sentence as tagged by each of the alternative triggers
+     * @return The sentence as tagged by the alternative trigger that is preferred
+     */
+    private TaggedText tagAlternativeTriggers(TaggedText sentenceTagged, BitSet candidates, List<TaggedText> alternatives) {
+        //negation phrases: each is applied to the same sentence, and the one tagging the most is kept
+        int wordCount = countWords(sentenceTagged.text);
+        TaggedText selected = sentenceTagged;
+        int selectedWordCount = wordCount;
+        for (Trigger trigger : alternativeTriggers) {
+            TaggedText sen = sentenceTagged;
+            int senWordCount = wordCount;
+            if (candidates.get(trigger.id)) {
+                sen = sentenceTagged.replaceAll(trigger);
+                senWordCount = countWords(sen.text);
+            }
+            if (alternatives != null) {
+                alternatives.add(sen);
+            }
+            if (isPreferred(senWordCount, hasPrePostTag(sen.text), selectedWordCount)) {
+                selected = sen;
+                selectedWordCount = senWordCount;
+            }
         }
+        return selected;
+    }
 
+    /**
+     * @return Whether a sentence tagged by an alternative trigger is preferred over the one selected before it, i.e.
+     * whether it has fewer words, or as many words and contains a pre or post trigger tag
+     */
+    static boolean isPreferred(int wordCount, boolean prePostTag, int selectedWordCount) {
+        return wordCount < selectedWordCount || wordCount == selectedWordCount && prePostTag;
+    }
 
-        //experiencer phrases
-        if (regexExpPre != null) {
-            Matcher m6 = regexExpPre.matcher(sentenceTagged);
-            sentenceTagged = m6.replaceAll(" <EXP_PRE> ");
-        }
-        if (regexExpEnd != null) {
-            Matcher m14 = regexExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m14.replaceAll(" <EXP_END> ");
-        }
+    private static boolean hasPrePostTag(String tagged) {
+        return tagged.indexOf("PRE") > 0 || tagged.contains("POST");
+    }
 
-        //hypothesis
-        if (regexHypoPre != null) {
-            Matcher m7 = regexHypoPre.matcher(sentenceTagged);
-            sentenceTagged = m7.replaceAll(" <HYPO_PRE> ");
-        }
-        if (regexHypoEnd != null) {
-            Matcher m10 = regexHypoEnd.matcher(sentenceTagged);
-            sentenceTagged = m10.replaceAll(" <HYPO_END> ");
+    private TaggedText tagSequentialTriggers(TaggedText sentenceTagged, BitSet candidates) {
+        //termination, experiencer, hypothesis, temporality, mixed, and time phrases
+        for (Trigger trigger : sequentialTriggers) {
+            if (candidates.get(trigger.id)) {
+                sentenceTagged = sentenceTagged.replaceAll(trigger);
+            }
         }
+        return sentenceTagged;
+    }
 
-        //temporality
-        if (regexHistPre != null) {
-            Matcher m8 = regexHistPre.matcher(sentenceTagged);
-            sentenceTagged = m8.replaceAll(" <HIST_PRE> ");
+    /**
+     * @return The equivalent of <code>text.split(" +").length</code>
+     */
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = text.charAt(i) == ' ';
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
         }
-        if (regexHist1w != null) {
-            Matcher m9 = regexHist1w.matcher(sentenceTagged);
-            sentenceTagged = m9.replaceAll(" <HIST_1W> ");
+        if (words == 0) {
+            return text.indexOf(' ') < 0 ? 1 : 0;
         }
-        if (regexHistEnd != null) {
-            Matcher m12 = regexHistEnd.matcher(sentenceTagged);
-            sentenceTagged = m12.replaceAll(" <HIST_END> ");
+        return text.charAt(0) == ' ' ? words + 1 : words;
+    }
+
+    /**
+     * Scopes of the negation and possibility triggers within words, as used by {@link #applyNegEx(String[])}
+     */
+    private List<ConTexTSentence.Scope> getNegationScopes(String[] words, int[] conceptTags) {
+        List<ConTexTSentence.Scope> ret = new ArrayList<>();
+        for (int m = 0; m < words.length; m++) {
+            if (words[m].equals("<NEG_PRE>") || words[m].equals("<POSS_PRE>")) {
+                String context = (words[m].equals("<NEG_PRE>") ? NegationContext.Negated : NegationContext.Possible).name();
+                ret.add(getForwardScope(words, conceptTags, m, NEG_TRIGGERS, MAX_WINDOW - 1, context));
+            } else if (words[m].equals("<NEG_POST>") || words[m].equals("<POSS_POST>")) {
+                String context = (words[m].equals("<NEG_POST>") ? NegationContext.Negated : NegationContext.Possible).name();
+                ret.add(getBackwardScope(words, conceptTags, m, NEG_TRIGGERS, MAX_WINDOW - 1, context));
+            }
         }
+        return ret;
+    }
 
-        // mixed
-        if (regexHypoExpEnd != null) {
-            Matcher m11 = regexHypoExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m11.replaceAll(" <HYPO_EXP_END> ");
+    /**
+     * Scopes of the hypothetical and historical triggers within words, as used by {@link #applyTemporality(String[])}
+     */
+    private List<ConTexTSentence.Scope> getTemporalityScopes(String[] words, int[] conceptTags) {
+        List<ConTexTSentence.Scope> ret = new ArrayList<>();
+        for (int mm = 0; mm < words.length; mm++) {
+            if (words[mm].equals("<HYPO_PRE>")) {
+                ret.add(getForwardScope(words, conceptTags, mm, Collections.<String>emptySet(), Integer.MAX_VALUE,
+                        TemporalityContext.Hypothetical.name()));
+            } else if (words[mm].equals("<HIST_PRE>") || words[mm].equals("<TIME_PRE>")) {
+                ret.add(getForwardScope(words, conceptTags, mm, HIST_TERMINATORS, Integer.MAX_VALUE,
+                        TemporalityContext.Historical.name()));
+            } else if (words[mm].equals("<TIME_POST>")) {
+                ret.add(getBackwardScope(words, conceptTags, mm, HIST_TERMINATORS, Integer.MAX_VALUE,
+                        TemporalityContext.Historical.name()));
+            }
         }
-        if (regexHistExpEnd != null) {
-            Matcher m13 = regexHistExpEnd.matcher(sentenceTagged);
-            sentenceTagged = m13.replaceAll(" <HIST_EXP_END> ");
+        return ret;
+    }
+
+    /**
+     * Scopes of the experiencer triggers within words, as used by {@link #applyExperiencer(String[])}
+     */
+    private List<ConTexTSentence.Scope> getExperiencerScopes(String[] words, int[] conceptTags) {
+        List<ConTexTSentence.Scope> ret = new ArrayList<>();
+        for (int mm = 0; mm < words.length; mm++) {
+            if (words[mm].equals("<EXP_PRE>")) {
+                ret.add(getForwardScope(words, conceptTags, mm, Collections.<String>emptySet(), Integer.MAX_VALUE, "Other"));
+            }
         }
+        return ret;
+    }
 
-        //time
-        regexTime = Pattern.compile("((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
-                "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
-                "(([1-9]?[0-9])[ |-](?:months?|years?) of)");//pattern to recognize expressions of >14 days
-        regexTimeFor = Pattern.compile("(?:for|over) the [lp]ast (((1[4-9]|[1-9]?[2-9][0-9])[ |-]days? of)|" +
-                "(([2-9]|[1-9][0-9])[ |-]weeks? of)|" +
-                "(([1-9]?[0-9])[ |-](?:months?|years?|mos?|yrs?) of))");//other pattern to recognize expressions of >14 days
-        regexTimeSince = Pattern.compile("since (?:(?:the )?last)? ((([2-9]|[1-9][0-9]) weeks (?:ago)?)|" +
-                "(([1-9]?[0-9])? (?:months?|years?) ago)|" +
-                "(jan(?:uary)?|feb(?:ruary)?|mar(?:ch)?|apr(?:il)?|may|june?|july?|aug(?:ust)?|sep(?:tember)?|oct(?:ober)?|nov(?:ember)?|dec(?:ember)?|spring|summer|fall|winter))");
-        Matcher mTime = regexTimeFor.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_PRE> ");
-        mTime = regexTime.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_PRE> ");
-        mTime = regexTimeSince.matcher(sentenceTagged);
-        sentenceTagged = mTime.replaceAll(" <TIME_POST> ");
-        System.out.println(" sentenceTagged : " + sentenceTagged);
+    /**
+     * @return The scope of the trigger at index m, extending over at most maxDistance words following it up to the
+     * first of the terminators
+     */
+    private static ConTexTSentence.Scope getForwardScope(String[] words, int[] conceptTags, int m, Set<String> terminators,
+                                                         int maxDistance, String context) {
+        int limit = m + 1;
+        while (limit < words.length && !terminators.contains(words[limit])) {
+            limit++;
+        }
+        int end = limit - m > maxDistance ? m + 1 + maxDistance : limit;
+        return new ConTexTSentence.Scope(m, true, limit, maxDistance, context, conceptTags[end] > conceptTags[m + 1]);
+    }
 
-        return sentenceTagged;
+    /**
+     * @return The scope of the trigger at index m, extending over at most maxDistance words preceding it up to the
+     * first of the terminators
+     */
+    private static ConTexTSentence.Scope getBackwardScope(String[] words, int[] conceptTags, int m, Set<String> terminators,
+                                                          int maxDistance, String context) {
+        int limit = m - 1;
+        while (limit >= 0 && !terminators.contains(words[limit])) {
+            limit--;
+        }
+        int begin = m - limit > maxDistance ? m - maxDistance : limit + 1;
+        return new ConTexTSentence.Scope(m, false, limit, maxDistance, context, conceptTags[m] > conceptTags[begin]);
+    }
+
+    /**
+     * @param tagged A tagged sentence
+     * @return The words of the sentence
+     */
+    public String[] getWords(String tagged) {
+        //tokenizing the sentence in words
+        return WORD_DELIMITERS.split(tagged);
     }
 
     /**
@@ -459,8 +617,7 @@ public class ConTexTSettings {
         if (tagged == null)
             return null;
 
-        //tokenizing the sentence in words
-        String[] words = tagged.split("[,;\\s]+");
+        String[] words = getWords(tagged);
 
         String ne = applyNegEx(words);
         String tmp = applyTemporality(words);
@@ -491,13 +648,13 @@ public class ConTexTSettings {
                 m++;
             }
             //IF word is a pre- concept negation or possible...
-            else if (words[m].matches("<NEG_PRE>|<POSS_PRE>")) {
+            else if ((words[m].equals("<NEG_PRE>") || words[m].equals("<POSS_PRE>"))) {
                 //find window (default is six words after the negation phrase)
 
                 int maxWindow = MAX_WINDOW;
                 if (words.length < m + maxWindow) maxWindow = words.length - m;
                 for (int o = 1; o < maxWindow; o++) {
-                    if (words[m + o].matches("<NEG_PRE>|<POSS_PRE>|<NEG_POST>|<POSS_POST>|<NEG_END>"))
+                    if (NEG_TRIGGERS.contains(words[m + o]))
                         break;
                     else window.add(words[m + o]);
                 }
@@ -511,7 +668,7 @@ public class ConTexTSettings {
 
                 //check if there are concepts in the window
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         //int index = Integer.parseInt(umlsWord.replaceAll("\\[|\\]",""));
                         //mappingResults.get(index).setNegationContext(currentNegationContext.name());
@@ -522,12 +679,12 @@ public class ConTexTSettings {
                 m++;
             }
             //IF word a post- concept negation or possible
-            else if (words[m].matches("<NEG_POST>|<POSS_POST>")) {
+            else if ((words[m].equals("<NEG_POST>") || words[m].equals("<POSS_POST>"))) {
                 //find window (default is six words before the negation phrase)
                 int maxWindow = MAX_WINDOW;
                 if (m < maxWindow) maxWindow = m;
                 for (int o = 1; o < maxWindow; o++) {
-                    if (words[m - o].matches("<NEG_PRE>|<POSS_PRE>|<NEG_POST>|<POSS_POST>|<NEG_END>"))
+                    if (NEG_TRIGGERS.contains(words[m - o]))
                         break;
                     else
                         window.add(words[m - o]);
@@ -542,7 +699,7 @@ public class ConTexTSettings {
 
                 //check if there are concepts in the window
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         //int index = Integer.parseInt(umlsWord.replaceAll("\\[|\\]",""));
                         //mappingResults.get(index).setNegationContext(currentNegationContext.name());
@@ -586,7 +743,7 @@ public class ConTexTSettings {
                 }
                 //check if there are concepts in the window
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         return TemporalityContext.Hypothetical.name();
                     }
@@ -595,17 +752,17 @@ public class ConTexTSettings {
                 mm++;
             }
             //IF word a pre- historical trigger term
-            else if (words[mm].matches("<HIST_PRE>|<TIME_PRE>")) {
+            else if ((words[mm].equals("<HIST_PRE>") || words[mm].equals("<TIME_PRE>"))) {
 
                 //expands window until end of sentence, termination term, or other negation/possible trigger term
                 for (int o = 1; (mm + o) < words.length; o++) {
-                    if (words[mm + o].matches("<HIST_END>|<HIST_EXP_END>|<HIST_PRE>|<HIST_1W>")) {
+                    if (HIST_TERMINATORS.contains(words[mm + o])) {
                         break;//window decreased to right after other negation or conjunction
                     } else window.add(words[mm + o]);
                 }
                 //check if there are concepts in the window
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         return TemporalityContext.Historical.name();
                     }
@@ -618,13 +775,13 @@ public class ConTexTSettings {
 
                 //expands window until end of sentence, termination term, or other negation/possible trigger term
                 for (int o = 1; (mm - o) >= 0; o++) {
-                    if (words[mm - o].matches("<HIST_END>|<HIST_EXP_END>|<HIST_PRE>|<HIST_1W>")) {
+                    if (HIST_TERMINATORS.contains(words[mm - o])) {
                         break;//window decreased to right after other negation or conjunction
                     } else window.add(words[mm - o]);
                 }
                 //check if there are concepts in the window
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         return TemporalityContext.Historical.name();
                     }
@@ -659,7 +816,7 @@ public class ConTexTSettings {
                     } else window.add(words[mm + o]);
                 }
                 for (int w = 0; w < window.size(); w++) {
-                    if (window.get(w).matches(regExUmlsTag)) {
+                    if (regExUmlsTag.matcher(window.get(w)).matches()) {
                         String umlsWord = window.get(w);
                         return "Other";
                     }
@@ -670,4 +827,100 @@ public class ConTexTSettings {
         }
         return "Patient";
     }
+
+    /**
+     * A (partially) tagged sentence, optionally along with the offsets within the untagged sentence that each of its
+     * characters originates from
+     */
+    private static final class TaggedText {
+        private final String text;
+        // The offsets spanned by each character, i.e. by the entire trigger match for characters of inserted tags
+        private final int[] begins;
+        private final int[] ends;
+        // The offsets of all characters replaced by tags
+        private final BitSet replaced;
+
+        private TaggedText(String text) {
+            this(text, null, null, null);
+        }
+
+        private TaggedText(String text, int[] begins, int[] ends, BitSet replaced) {
+            this.text = text;
+            this.begins = begins;
+            this.ends = ends;
+            this.replaced = replaced;
+        }
+
+        private static TaggedText withOffsets(String text) {
+            int[] begins = new int[text.length()];
+            int[] ends = new int[text.length()];
+            for (int i = 0; i < text.length(); i++) {
+                begins[i] = i;
+                ends[i] = i + 1;
+            }
+            return new TaggedText(text, begins, ends, new BitSet());
+        }
+
+        /**
+         * @return The equivalent of <code>text.replaceAll(trigger.pattern, trigger.tag)</code>
+         */
+        private TaggedText replaceAll(Trigger trigger) {
+            Matcher m = trigger.pattern.matcher(text);
+            if (!m.find()) {
+                return this;
+            }
+            if (begins == null) {
+                return new TaggedText(m.replaceAll(trigger.tag));
+            }
+            List<int[]> matches = new ArrayList<>();
+            int length = text.length();
+            do {
+                matches.add(new int[]{m.start(), m.end()});
+                length += trigger.tag.length() - (m.end() - m.start());
+            } while (m.find());
+            StringBuilder sb = new StringBuilder(length);
+            int[] replacedBegins = new int[length];
+            int[] replacedEnds = new int[length];
+            BitSet replacedOffsets = (BitSet) replaced.clone();
+            int last = 0;
+            for (int[] match : matches) {
+                System.arraycopy(begins, last, replacedBegins, sb.length(), match[0] - last);
+                System.arraycopy(ends, last, replacedEnds, sb.length(), match[0] - last);
+                sb.append(text, last, match[0]);
+                Arrays.fill(replacedBegins, sb.length(), sb.length() + trigger.tag.length(), begins[match[0]]);
+                Arrays.fill(replacedEnds, sb.length(), sb.length() + trigger.tag.length(), ends[match[1] - 1]);
+                sb.append(trigger.tag);
+                replacedOffsets.set(begins[match[0]], ends[match[1] - 1]);
+                last = match[1];
+            }
+            System.arraycopy(begins, last, replacedBegins, sb.length(), text.length() - last);
+            System.arraycopy(ends, last, replacedEnds, sb.length(), text.length() - last);
+            sb.append(text, last, text.length());
+            return new TaggedText(sb.toString(), replacedBegins, replacedEnds, replacedOffsets);
+        }
+
+        /**
+         * @return The offsets spanned by the characters in [start, end), or an empty span at the offset of start if
+         * there are none
+         */
+        private int[] getSpan(int start, int end) {
+            if (start == end) {
+                int offset = start == 0 ? 0 : ends[start - 1];
+                return new int[]{offset, offset};
+            }
+            return new int[]{begins[start], ends[end - 1]};
+        }
+    }
+
+    private static final class Trigger {
+        private final int id;
+        private final Pattern pattern;
+        private final String tag;
+
+        private Trigger(int id, Pattern pattern, String tag) {
+            this.id = id;
+            this.pattern = pattern;
+            this.tag = tag;
+        }
+    }
 }
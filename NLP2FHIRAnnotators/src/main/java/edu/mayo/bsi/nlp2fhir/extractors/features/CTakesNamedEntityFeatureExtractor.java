@@ -53,9 +53,10 @@ public class CTakesNamedEntityFeatureExtractor implements FeatureExtractor<Annot
     public List<Feature> extract(JCas jCas, Annotation arg1, Annotation arg2)
             throws AnalysisEngineProcessException {
 
+        FeatureContext context = FeatureContext.get(jCas);
         List<Feature> features = new ArrayList<>();
-        features.addAll(this.mention1FeaturesExtractor.extract(jCas, arg1));
-        features.addAll(this.mention2FeaturesExtractor.extract(jCas, arg2));
+        features.addAll(context.getMentionFeatures("NamedEntity.mention1", arg1, m -> this.mention1FeaturesExtractor.extract(jCas, m)));
+        features.addAll(context.getMentionFeatures("NamedEntity.mention2", arg2, m -> this.mention2FeaturesExtractor.extract(jCas, m)));
         features.addAll(this.nEntityMentionsBetween.extract(jCas, arg1, arg2));
 
         // entity type of both mentions, concatenated
@@ -19,11 +19,12 @@ public class DependencyPathFeatureExtractor implements FeatureExtractor<Annotati
 
         List<Feature> features = new ArrayList<Feature>();
 
-        ConllDependencyNode node1 = DependencyParseUtils.findAnnotationHead(jCas, arg1);
-        ConllDependencyNode node2 = DependencyParseUtils.findAnnotationHead(jCas, arg2);
+        FeatureContext context = FeatureContext.get(jCas);
+        ConllDependencyNode node1 = context.getHead(jCas, arg1);
+        ConllDependencyNode node2 = context.getHead(jCas, arg2);
         if (node1 == null || node2 == null) { return features; }
 
-        List<LinkedList<ConllDependencyNode>> paths = DependencyParseUtils.getPathsToCommonAncestor(node1, node2);
+        List<LinkedList<ConllDependencyNode>> paths = context.getPathsToCommonAncestor(node1, node2);
         LinkedList<ConllDependencyNode> path1 = paths.get(0);
         LinkedList<ConllDependencyNode> path2 = paths.get(1);
 
@@ -31,7 +32,7 @@ public class DependencyPathFeatureExtractor implements FeatureExtractor<Annotati
         features.add(new Feature("DEPENDENCY_PATH_MAX_DISTANCE_TO_COMMON_ANCESTOR", Math.max(path1.size(), path2.size())));
         features.add(new Feature("DEPENDENCY_PATH_MIN_DISTANCE_TO_COMMON_ANCESTOR", Math.min(path1.size(), path2.size())));
 
-        LinkedList<ConllDependencyNode> node1ToNode2Path = DependencyParseUtils.getPathBetweenNodes(node1, node2);
+        LinkedList<ConllDependencyNode> node1ToNode2Path = context.getPathBetweenNodes(node1, node2, paths);
         features.add(new Feature("DEPENDENCY_PATH", DependencyParseUtils.pathToString(node1ToNode2Path)));
 
         return features;
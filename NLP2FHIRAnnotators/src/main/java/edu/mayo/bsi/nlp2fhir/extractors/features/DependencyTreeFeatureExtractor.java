@@ -1,6 +1,5 @@
 package edu.mayo.bsi.nlp2fhir.extractors.features;
 
-import org.apache.ctakes.relationextractor.ae.features.DependencyParseUtils;
 import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -17,15 +16,16 @@ public class DependencyTreeFeatureExtractor implements FeatureExtractor<Annotati
     public List<Feature> extract(JCas jCas, Annotation arg1,
                                  Annotation arg2) throws AnalysisEngineProcessException {
 
+        FeatureContext context = FeatureContext.get(jCas);
         List<Feature> features = new ArrayList<Feature>();
-        features.addAll(extractForNode(jCas, arg1, "MENTION1"));
-        features.addAll(extractForNode(jCas, arg2, "MENTION2"));
+        features.addAll(context.getMentionFeatures("DependencyTree.MENTION1", arg1, m -> extractForNode(jCas, m, "MENTION1")));
+        features.addAll(context.getMentionFeatures("DependencyTree.MENTION2", arg2, m -> extractForNode(jCas, m, "MENTION2")));
         return features;
     }
 
     public static List<Feature> extractForNode(JCas jCas, Annotation mention, String ftrPrefix) {
         List<Feature> features = new ArrayList<Feature>();
-        ConllDependencyNode mentionHeadNode = DependencyParseUtils.findAnnotationHead(jCas, mention);
+        ConllDependencyNode mentionHeadNode = FeatureContext.get(jCas).getHead(jCas, mention);
 
         if (mentionHeadNode != null) {
             ConllDependencyNode dependsOn = mentionHeadNode.getHead();
@@ -0,0 +1,196 @@
+package edu.mayo.bsi.nlp2fhir.extractors.features;
+
+import org.apache.ctakes.relationextractor.ae.features.DependencyParseUtils;
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.ctakes.typesystem.type.syntax.TerminalTreebankNode;
+import org.apache.ctakes.typesystem.type.syntax.TreebankNode;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cleartk.ml.Feature;
+
+import java.util.*;
+
+/**
+ * Memoizes the per-annotation results relation feature extractors would otherwise recompute for every candidate pair
+ * an annotation participates in: dependency heads and their chains of ancestors, phrase heads, and features that depend
+ * on only one argument of a pair (e.g. covered tokens and their parts of speech).<br>
+ * <br>
+ * A context is shared by all extractors operating on the same CAS, and is discarded once the CAS is reset, i.e. when
+ * it holds a different document text. As memoized annotations reference their CAS, a context would otherwise be
+ * retained for as long as the CAS: callers should {@link #release(JCas) release} it once done with a document.
+ * Memoized results are derived from the syntactic layers (tokens, dependency and treebank nodes), which must therefore
+ * be complete before any features are extracted. A context is not safe for use by multiple threads, as a CAS is only
+ * ever processed by one thread at a time.
+ */
+public final class FeatureContext {
+
+    private static final Map<JCas, FeatureContext> CONTEXTS = new WeakHashMap<>();
+
+    private final String documentText;
+    private final Map<Annotation, ConllDependencyNode> heads;
+    private final Map<ConllDependencyNode, List<ConllDependencyNode>> ancestors;
+    private final Map<TreebankNode, TerminalTreebankNode> phraseHeads;
+    private final Map<String, Map<Annotation, List<Feature>>> mentionFeatures;
+
+    private FeatureContext(JCas cas) {
+        this.documentText = cas.getDocumentText();
+        this.heads = new HashMap<>();
+        this.ancestors = new HashMap<>();
+        this.phraseHeads = new HashMap<>();
+        this.mentionFeatures = new HashMap<>();
+    }
+
+    /**
+     * @param cas The CAS features are extracted from
+     * @return The context for the document currently held by cas
+     */
+    public static FeatureContext get(JCas cas) {
+        synchronized (CONTEXTS) {
+            FeatureContext ret = CONTEXTS.get(cas);
+            if (ret == null || ret.documentText != cas.getDocumentText()) { // Absent or stale, CAS has since been reset
+                ret = new FeatureContext(cas);
+                CONTEXTS.put(cas, ret);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Discards the context of the given CAS, if any
+     */
+    public static void release(JCas cas) {
+        synchronized (CONTEXTS) {
+            CONTEXTS.remove(cas);
+        }
+    }
+
+    /**
+     * @param cas The CAS this context was retrieved for
+     * @return The dependency node heading ann, as per {@link DependencyParseUtils#findAnnotationHead(JCas, Annotation)}
+     */
+    public ConllDependencyNode getHead(JCas cas, Annotation ann) {
+        if (heads.containsKey(ann)) {
+            return heads.get(ann);
+        }
+        ConllDependencyNode ret = DependencyParseUtils.findAnnotationHead(cas, ann);
+        heads.put(ann, ret);
+        return ret;
+    }
+
+    /**
+     * @return The chain of nodes from node up to the head of its sentence, excluding the root node of the dependency
+     * tree (i.e. the node without a head), as do the paths computed by {@link DependencyParseUtils}
+     */
+    public List<ConllDependencyNode> getAncestors(ConllDependencyNode node) {
+        List<ConllDependencyNode> ret = ancestors.get(node);
+        if (ret == null) {
+            ConllDependencyNode head = node.getHead();
+            if (head == null) {
+                ret = Collections.emptyList();
+            } else {
+                List<ConllDependencyNode> chain = new ArrayList<>();
+                chain.add(node);
+                chain.addAll(getAncestors(head));
+                ret = Collections.unmodifiableList(chain);
+            }
+            ancestors.put(node, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the paths from two nodes to their nearest common ancestor, equivalent to
+     * {@link DependencyParseUtils#getPathsToCommonAncestor(ConllDependencyNode, ConllDependencyNode)}, from memoized
+     * chains of ancestors
+     *
+     * @return The path from node1 and the path from node2, each including the common ancestor. If the nodes do not
+     * share an ancestor below the root of their trees, each path extends up to the head of its sentence.
+     */
+    public List<LinkedList<ConllDependencyNode>> getPathsToCommonAncestor(ConllDependencyNode node1, ConllDependencyNode node2) {
+        List<ConllDependencyNode> chain1 = getAncestors(node1);
+        List<ConllDependencyNode> chain2 = getAncestors(node2);
+        // Chains end in the heads of their sentences: strip the shared suffix, then restore its lowest node as the
+        // common ancestor
+        int shared = 0;
+        while (shared < chain1.size() && shared < chain2.size()
+                && chain1.get(chain1.size() - 1 - shared) == chain2.get(chain2.size() - 1 - shared)) {
+            shared++;
+        }
+        int end1 = chain1.size() - (shared > 0 ? shared - 1 : 0);
+        int end2 = chain2.size() - (shared > 0 ? shared - 1 : 0);
+        return Arrays.asList(new LinkedList<>(chain1.subList(0, end1)), new LinkedList<>(chain2.subList(0, end2)));
+    }
+
+    /**
+     * Computes the path between two nodes, equivalent to
+     * {@link DependencyParseUtils#getPathBetweenNodes(ConllDependencyNode, ConllDependencyNode)}, from the paths to
+     * their common ancestor
+     *
+     * @param paths The paths as returned by {@link #getPathsToCommonAncestor(ConllDependencyNode, ConllDependencyNode)}
+     * @return The path from node1 to node2, or an empty path if both are the same node
+     */
+    public LinkedList<ConllDependencyNode> getPathBetweenNodes(ConllDependencyNode node1, ConllDependencyNode node2,
+                                                               List<LinkedList<ConllDependencyNode>> paths) {
+        LinkedList<ConllDependencyNode> ret = new LinkedList<>();
+        if (node1 == node2) {
+            return ret;
+        }
+        LinkedList<ConllDependencyNode> path1 = paths.get(0);
+        LinkedList<ConllDependencyNode> path2 = paths.get(1);
+        ret.addAll(path1.subList(0, Math.max(0, path1.size() - 1)));
+        Iterator<ConllDependencyNode> it = path2.descendingIterator();
+        while (it.hasNext()) {
+            ret.add(it.next());
+        }
+        return ret;
+    }
+
+    /**
+     * @param cas The CAS this context was retrieved for
+     * @return The terminal node heading phrase node, or null if node is not a phrase or its head is not found
+     */
+    public TerminalTreebankNode getPhraseHead(JCas cas, TreebankNode node) {
+        if (phraseHeads.containsKey(node)) {
+            return phraseHeads.get(node);
+        }
+        TerminalTreebankNode ret = null;
+        if (node.getHeadIndex() > 0 && node.getNodeType().endsWith("P") && !node.getNodeType().equals("NNP")) {
+            int headIndex = node.getHeadIndex();
+            for (TerminalTreebankNode ttb : JCasUtil.selectCovered(cas, TerminalTreebankNode.class, node)) {
+                if (ttb.getIndex() == headIndex) {
+                    ret = ttb;
+                    break;
+                }
+            }
+        }
+        phraseHeads.put(node, ret);
+        return ret;
+    }
+
+    /**
+     * Retrieves features that depend on a single argument only, extracting them on first request
+     *
+     * @param key       Identifies the extractor and argument position the features are extracted for, e.g. "arg1"
+     *                  features of a given extractor
+     * @param mention   The argument
+     * @param extractor Extracts the features if not already memoized
+     * @return The features, which must not be modified
+     * @throws AnalysisEngineProcessException If extraction fails, in which case nothing is memoized
+     */
+    public List<Feature> getMentionFeatures(String key, Annotation mention, MentionFeatureExtractor extractor)
+            throws AnalysisEngineProcessException {
+        Map<Annotation, List<Feature>> memo = mentionFeatures.computeIfAbsent(key, k -> new HashMap<>());
+        List<Feature> ret = memo.get(mention);
+        if (ret == null) {
+            ret = Collections.unmodifiableList(new ArrayList<>(extractor.extract(mention)));
+            memo.put(mention, ret);
+        }
+        return ret;
+    }
+
+    public interface MentionFeatureExtractor {
+        List<Feature> extract(Annotation mention) throws AnalysisEngineProcessException;
+    }
+}
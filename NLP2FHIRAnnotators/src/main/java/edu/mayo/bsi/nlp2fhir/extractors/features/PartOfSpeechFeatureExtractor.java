@@ -26,9 +26,10 @@ public class PartOfSpeechFeatureExtractor implements FeatureExtractor<Annotation
     }
 
     public List<Feature> extract(JCas jCas, Annotation arg1, Annotation arg2) throws AnalysisEngineProcessException {
+        FeatureContext context = FeatureContext.get(jCas);
         List<Feature> features = new ArrayList();
-        features.addAll(this.mention1FeaturesExtractor.extract(jCas, arg1));
-        features.addAll(this.mention2FeaturesExtractor.extract(jCas, arg2));
+        features.addAll(context.getMentionFeatures("PartOfSpeech.mention1", arg1, m -> this.mention1FeaturesExtractor.extract(jCas, m)));
+        features.addAll(context.getMentionFeatures("PartOfSpeech.mention2", arg2, m -> this.mention2FeaturesExtractor.extract(jCas, m)));
         return features;
     }
 }
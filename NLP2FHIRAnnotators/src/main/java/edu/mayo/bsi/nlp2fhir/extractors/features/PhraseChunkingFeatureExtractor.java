@@ -13,17 +13,13 @@ import java.util.List;
 
 public class PhraseChunkingFeatureExtractor implements FeatureExtractor<Annotation, Annotation> {
     List<TerminalTreebankNode> extractPhraseHeadByTreenode(JCas jCas, List<TreebankNode> treenodesList) {
+        FeatureContext context = FeatureContext.get(jCas);
         List<TerminalTreebankNode> rTNodeList = new ArrayList<>();
         // get head index from phrase
         for(TreebankNode tb : treenodesList) {
-            if(tb.getHeadIndex() > 0 && tb.getNodeType().endsWith("P") && !tb.getNodeType().equals("NNP")) {
-                int headIndex = tb.getHeadIndex();
-                for(TerminalTreebankNode ttb : JCasUtil.selectCovered(jCas, TerminalTreebankNode.class, tb)) {
-                    if(ttb.getIndex() == headIndex) {
-                        addPhraseHead(rTNodeList, ttb);
-                        break;
-                    }
-                }
+            TerminalTreebankNode ttb = context.getPhraseHead(jCas, tb);
+            if(ttb != null) {
+                addPhraseHead(rTNodeList, ttb);
             }
         }
         return rTNodeList;
@@ -55,6 +51,7 @@ public class PhraseChunkingFeatureExtractor implements FeatureExtractor<Annotati
                                  Annotation arg2) throws AnalysisEngineProcessException {
 
 
+        FeatureContext context = FeatureContext.get(jCas);
         List<Feature> features = new ArrayList<>();
 
         // Extract features between
@@ -75,8 +72,17 @@ public class PhraseChunkingFeatureExtractor implements FeatureExtractor<Annotati
             }
         }
 
+        features.addAll(context.getMentionFeatures("PhraseChunking.before", arg1, m -> extractBefore(jCas, m)));
+        features.addAll(context.getMentionFeatures("PhraseChunking.after", arg2, m -> extractAfter(jCas, m)));
+
+        return features;
+    }
+
+    private List<Feature> extractBefore(JCas jCas, Annotation arg1) {
+        List<Feature> features = new ArrayList<>();
+
         // Extract feature before M1
-        headList = this.extractPhraseHeadByTreenode(jCas, JCasUtil.selectPreceding(jCas, TreebankNode.class, arg1, 20));
+        List<TerminalTreebankNode> headList = this.extractPhraseHeadByTreenode(jCas, JCasUtil.selectPreceding(jCas, TreebankNode.class, arg1, 20));
 
         boolean isFirst = false;
         for (int i=headList.size()-1;i>=0;i--) {
@@ -92,11 +98,16 @@ public class PhraseChunkingFeatureExtractor implements FeatureExtractor<Annotati
             }
         }
 
-        // Extract feature after M2
-        headList = this.extractPhraseHeadByTreenode(jCas, JCasUtil.selectFollowing(jCas, TreebankNode.class, arg2, 20));
+        return features;
+    }
 
+    private List<Feature> extractAfter(JCas jCas, Annotation arg2) {
+        List<Feature> features = new ArrayList<>();
 
-        isFirst = false;
+        // Extract feature after M2
+        List<TerminalTreebankNode> headList = this.extractPhraseHeadByTreenode(jCas, JCasUtil.selectFollowing(jCas, TreebankNode.class, arg2, 20));
+
+        boolean isFirst = false;
         for (TerminalTreebankNode node : headList) {
             if (node.getBegin() > arg2.getEnd()) {
                 if (!isFirst) {
@@ -7,7 +7,7 @@ import org.apache.uima.jcas.tcas.Annotation;
 import org.cleartk.ml.Feature;
 import org.cleartk.ml.feature.extractor.*;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 @SuppressWarnings("unchecked")
@@ -36,9 +36,10 @@ public class TokenFeatureExtractor implements FeatureExtractor<Annotation, Annot
 
     @Override
     public List<Feature> extract(JCas cas, Annotation arg1, Annotation arg2) throws AnalysisEngineProcessException {
-        List<Feature> feats = new LinkedList<>();
-        feats.addAll(arg1FeatureExtractor.extract(cas, arg1));
-        feats.addAll(arg2FeatureExtractor.extract(cas, arg2));
+        FeatureContext context = FeatureContext.get(cas);
+        List<Feature> feats = new ArrayList<>();
+        feats.addAll(context.getMentionFeatures("Token.arg1", arg1, m -> arg1FeatureExtractor.extract(cas, m)));
+        feats.addAll(context.getMentionFeatures("Token.arg2", arg2, m -> arg2FeatureExtractor.extract(cas, m)));
         feats.addAll(tokensBetween.extractBetween(cas, arg1, arg2));
         feats.addAll(numTokensBetween.extract(cas, arg1, arg2));
         return feats;
@@ -0,0 +1,122 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multi-pattern literal string matcher: finds which of a fixed set of keywords occur in a text in a single pass over
+ * that text, regardless of the number of keywords
+ */
+public final class AhoCorasickAutomaton {
+
+    // Per-state transitions, stored as parallel sorted arrays
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    // Keyword indices ending at each state, including those reachable via failure links
+    private final int[][] outputs;
+
+    public AhoCorasickAutomaton(List<String> keywords) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        out.add(new ArrayList<>());
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = trie.get(state).get(keyword.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    out.add(new ArrayList<>());
+                    trie.get(state).put(keyword.charAt(i), next);
+                }
+                state = next;
+            }
+            out.get(state).add(k);
+        }
+        int size = trie.size();
+        edgeChars = new char[size][];
+        edgeTargets = new int[size][];
+        failure = new int[size];
+        outputs = new int[size][];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> e : edges.entrySet()) {
+                edgeChars[state][i] = e.getKey();
+                edgeTargets[state][i] = e.getValue();
+                i++;
+            }
+        }
+        // Breadth-first construction of failure links, merging outputs along the way
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        outputs[0] = toArray(out.get(0));
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> merged = out.get(state);
+            for (int o : outputs[failure[state]]) {
+                merged.add(o);
+            }
+            outputs[state] = toArray(merged);
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int f = failure[state];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = failure[f];
+                }
+                failure[child] = next < 0 ? 0 : next;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Marks every keyword occurring within text
+     *
+     * @param text  The text to scan
+     * @param found Receives the indices (in construction order) of all keywords found
+     */
+    public void findAll(CharSequence text, BitSet found) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int o : outputs[state]) {
+                found.set(o);
+            }
+        }
+    }
+
+    private int transition(int state, char c) {
+        int idx = Arrays.binarySearch(edgeChars[state], c);
+        return idx < 0 ? -1 : edgeTargets[state][idx];
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] ret = new int[values.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = values.get(i);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,24 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import org.apache.uima.jcas.JCas;
+import org.hl7.fhir.Element;
+
+/**
+ * Creates FHIR primitive types (i.e. {@link Element}s holding a single string value) of a given type
+ *
+ * @param <T> The primitive type produced
+ * @see FHIRPrimitives
+ */
+@FunctionalInterface
+public interface FHIRPrimitiveFactory<T extends Element> {
+    /**
+     * Creates a primitive and adds it to the CAS indexes
+     *
+     * @param cas   The CAS to create the primitive in
+     * @param value The value of the primitive
+     * @param begin The begin offset of the primitive
+     * @param end   The end offset of the primitive
+     * @return The created primitive
+     */
+    T create(JCas cas, String value, int begin, int end);
+}
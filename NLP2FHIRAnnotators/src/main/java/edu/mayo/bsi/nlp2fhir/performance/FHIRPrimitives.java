@@ -0,0 +1,131 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import org.apache.uima.jcas.JCas;
+import org.hl7.fhir.Boolean;
+import org.hl7.fhir.Code;
+import org.hl7.fhir.Decimal;
+import org.hl7.fhir.Element;
+import org.hl7.fhir.FHIRString;
+import org.hl7.fhir.Integer;
+import org.hl7.fhir.UnitsOfTime;
+import org.hl7.fhir.Uri;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Factories for FHIR primitive types within the UIMA type system.<br>
+ * <br>
+ * Factories for the primitives used by the bundled transformers and readers are available as constants, and call the
+ * generated JCas constructors and setters directly. Factories for any other primitive type are obtained via
+ * {@link #forClass(Class)}, which resolves the type's constructor and setter once as {@link MethodHandle}s and caches
+ * them per class, such that no reflective lookup happens when creating primitives.
+ */
+public final class FHIRPrimitives {
+
+    public static final FHIRPrimitiveFactory<FHIRString> STRING = of(FHIRString::new, FHIRString::setValue);
+    public static final FHIRPrimitiveFactory<Code> CODE = of(Code::new, Code::setValue);
+    public static final FHIRPrimitiveFactory<Uri> URI = of(Uri::new, Uri::setValue);
+    public static final FHIRPrimitiveFactory<Boolean> BOOLEAN = of(Boolean::new, Boolean::setValue);
+    public static final FHIRPrimitiveFactory<Integer> INTEGER = of(Integer::new, Integer::setValue);
+    public static final FHIRPrimitiveFactory<Decimal> DECIMAL = of(Decimal::new, Decimal::setValue);
+    public static final FHIRPrimitiveFactory<UnitsOfTime> UNITS_OF_TIME = of(UnitsOfTime::new, UnitsOfTime::setValue);
+
+    private static final ClassValue<FHIRPrimitiveFactory<?>> FACTORIES = new ClassValue<FHIRPrimitiveFactory<?>>() {
+        @Override
+        protected FHIRPrimitiveFactory<?> computeValue(Class<?> type) {
+            if (type.equals(FHIRString.class)) {
+                return STRING;
+            } else if (type.equals(Code.class)) {
+                return CODE;
+            } else if (type.equals(Uri.class)) {
+                return URI;
+            } else if (type.equals(Boolean.class)) {
+                return BOOLEAN;
+            } else if (type.equals(Integer.class)) {
+                return INTEGER;
+            } else if (type.equals(Decimal.class)) {
+                return DECIMAL;
+            } else if (type.equals(UnitsOfTime.class)) {
+                return UNITS_OF_TIME;
+            } else {
+                return resolve(type.asSubclass(Element.class));
+            }
+        }
+    };
+
+    private FHIRPrimitives() {
+    }
+
+    /**
+     * @param constructor The JCas constructor of the primitive type
+     * @param setter      The setter for the primitive's value
+     * @return A factory creating primitives via the given constructor and setter
+     */
+    public static <T extends Element> FHIRPrimitiveFactory<T> of(Function<JCas, T> constructor, BiConsumer<T, String> setter) {
+        return (cas, value, begin, end) -> {
+            T primitive = constructor.apply(cas);
+            setter.accept(primitive, value);
+            primitive.setBegin(begin);
+            primitive.setEnd(end);
+            primitive.addToIndexes();
+            return primitive;
+        };
+    }
+
+    /**
+     * @param clazz The primitive type, which must declare a public JCas constructor and setValue(String) method
+     * @return The (cached) factory for the given primitive type
+     * @throws IllegalArgumentException If clazz is not a primitive type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Element> FHIRPrimitiveFactory<T> forClass(Class<T> clazz) {
+        return (FHIRPrimitiveFactory<T>) FACTORIES.get(clazz);
+    }
+
+    /**
+     * Convenience method for creating a primitive of a type not known at compile time. Where it is, the corresponding
+     * factory constant should be used instead.
+     *
+     * @see #forClass(Class)
+     */
+    public static <T extends Element> T create(Class<T> clazz, JCas cas, String value, int begin, int end) {
+        return forClass(clazz).create(cas, value, begin, end);
+    }
+
+    /**
+     * Resolves a method handle based factory for a primitive type, used by {@link #forClass(Class)} for types without a
+     * factory constant
+     */
+    static FHIRPrimitiveFactory<?> resolve(Class<? extends Element> clazz) {
+        MethodHandle constructor;
+        MethodHandle setter;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class, JCas.class))
+                    .asType(MethodType.methodType(Element.class, JCas.class));
+            setter = lookup.findVirtual(clazz, "setValue", MethodType.methodType(void.class, String.class))
+                    .asType(MethodType.methodType(void.class, Element.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Attempted to instantiate primitive type that was not a primitive", e);
+        }
+        return (FHIRPrimitiveFactory<Element>) (cas, value, begin, end) -> {
+            Element primitive;
+            try {
+                primitive = (Element) constructor.invokeExact(cas);
+                setter.invokeExact(primitive, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            primitive.setBegin(begin);
+            primitive.setEnd(end);
+            primitive.addToIndexes();
+            return primitive;
+        };
+    }
+}
@@ -0,0 +1,269 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import java.math.BigDecimal;
+
+/**
+ * Normalizes numbers as written in clinical text (e.g. "2", "1,000", "2.5", "1/2", "1 1/2", "twice", "twenty-one" or
+ * "one hundred and fifty") into their numeric value.<br>
+ * <br>
+ * Text is scanned in place within the given range: digits are accumulated directly and number words are looked up in a
+ * small character trie, such that no intermediate strings are created. Within a range, tokens are separated by spaces,
+ * dashes and commas, and:
+ * <ul>
+ * <li>Numeric tokens consist of digits with optional grouping commas, an optional decimal fraction, and an optional
+ * "/" followed by a denominator, e.g. "1,000", "0.5", ".5" or "3/4". A numeric token may only follow another number as
+ * the fraction of a mixed number, i.e. a fraction following an integer and separated from it by spaces, such that
+ * "1 1/2" is 1.5. Any other sequence of numbers, e.g. "1-2" or "2 3", is not a number</li>
+ * <li>Number words below a hundred are added to the current group, "hundred" multiplies the current group, and
+ * "thousand", "million" and "billion" close the current group, e.g. "one thousand two hundred and five" is 1205</li>
+ * <li>Unknown words (e.g. "and", "a", or units such as "mg") are skipped</li>
+ * <li>A "/" that is not part of a numeric token divides the value preceding it by the value following it, e.g.
+ * "one/two" is 0.5</li>
+ * </ul>
+ */
+public final class NumberNormalizer {
+
+    private static final byte NONE = 0;
+    private static final byte ADD = 1;
+    private static final byte HUNDRED = 2;
+    private static final byte SCALE = 3;
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // Mantissas up to this value, divided by a power of ten up to 1e22, are converted without rounding errors
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // Trie over the letters a-z: the child of node n for letter l is CHILDREN[n * ALPHABET + l], node 0 being the root
+    // and 0 denoting an absent child
+    private static final int ALPHABET = 26;
+    private static final int MAX_NODES = 256;
+    private static final int[] CHILDREN = new int[MAX_NODES * ALPHABET];
+    private static final double[] VALUES = new double[MAX_NODES];
+    private static final byte[] KINDS = new byte[MAX_NODES];
+
+    static {
+        String[] units = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+                "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen"};
+        String[] tens = {"twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"};
+        int nodes = 1;
+        for (int i = 0; i < units.length; i++) {
+            nodes = add(units[i], i, ADD, nodes);
+        }
+        for (int i = 0; i < tens.length; i++) {
+            nodes = add(tens[i], (i + 2) * 10, ADD, nodes);
+        }
+        nodes = add("fourty", 40, ADD, nodes);
+        nodes = add("once", 1, ADD, nodes);
+        nodes = add("twice", 2, ADD, nodes);
+        nodes = add("thrice", 3, ADD, nodes);
+        nodes = add("hundred", 100, HUNDRED, nodes);
+        nodes = add("thousand", 1e3, SCALE, nodes);
+        nodes = add("million", 1e6, SCALE, nodes);
+        add("billion", 1e9, SCALE, nodes);
+    }
+
+    private NumberNormalizer() {
+    }
+
+    /**
+     * Adds a lower case word to the trie
+     *
+     * @param nodes The number of nodes currently in the trie
+     * @return The number of nodes in the trie after adding word
+     */
+    private static int add(String word, double value, byte kind, int nodes) {
+        int node = 0;
+        for (int i = 0; i < word.length(); i++) {
+            int slot = node * ALPHABET + word.charAt(i) - 'a';
+            if (CHILDREN[slot] == 0) {
+                CHILDREN[slot] = nodes++;
+            }
+            node = CHILDREN[slot];
+        }
+        VALUES[node] = value;
+        KINDS[node] = kind;
+        return nodes;
+    }
+
+    /**
+     * @param text The text to normalize in its entirety
+     * @return The value of the number in text
+     * @throws NumberFormatException If text does not contain a number
+     * @see #parse(CharSequence, int, int)
+     */
+    public static double parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * @param text  The text containing the number
+     * @param begin The begin offset of the number within text, inclusive
+     * @param end   The end offset of the number within text, exclusive
+     * @return The value of the number within the given range
+     * @throws NumberFormatException If the range does not contain a number, or a division lacks an operand
+     */
+    public static double parse(CharSequence text, int begin, int end) {
+        double result = Double.NaN;
+        boolean found = false;
+        double total = 0;
+        double group = 0;
+        // The end of the integer token that may be followed by the fraction of a mixed number, or -1
+        int wholeEnd = -1;
+        int p = begin;
+        while (true) {
+            if (p == end || text.charAt(p) == '/') {
+                // End of the text or of a division operand
+                if (!found) {
+                    throw new NumberFormatException("Not a number: \"" + text.subSequence(begin, end) + "\"");
+                }
+                double value = total + group;
+                result = Double.isNaN(result) ? value : result / value;
+                if (p == end) {
+                    return result;
+                }
+                found = false;
+                total = 0;
+                group = 0;
+                wholeEnd = -1;
+                p++;
+                continue;
+            }
+            char c = text.charAt(p);
+            if (isDigit(c) || c == '.' && p + 1 < end && isDigit(text.charAt(p + 1))) {
+                int numberEnd = decimalEnd(text, p, end);
+                double value = decimalValue(text, p, numberEnd);
+                boolean integer = c != '.' && !contains(text, p, numberEnd, '.');
+                boolean fraction = false;
+                if (numberEnd + 1 < end && text.charAt(numberEnd) == '/' && isDigit(text.charAt(numberEnd + 1))) {
+                    int denominatorEnd = decimalEnd(text, numberEnd + 1, end);
+                    value /= decimalValue(text, numberEnd + 1, denominatorEnd);
+                    numberEnd = denominatorEnd;
+                    integer = false;
+                    fraction = true;
+                }
+                if (found && !(fraction && wholeEnd >= 0 && isSpaces(text, wholeEnd, p))) {
+                    throw new NumberFormatException("Not a number: \"" + text.subSequence(begin, end) + "\"");
+                }
+                wholeEnd = found || !integer ? -1 : numberEnd;
+                group += value;
+                found = true;
+                p = numberEnd;
+            } else if (isLetter(c)) {
+                int node = 0;
+                while (p < end && isLetter(c = text.charAt(p))) {
+                    if (node >= 0) {
+                        node = CHILDREN[node * ALPHABET + (c | 0x20) - 'a'];
+                        if (node == 0) {
+                            node = -1; // Unknown word, skip the rest of it
+                        }
+                    }
+                    p++;
+                }
+                byte kind = node > 0 ? KINDS[node] : NONE;
+                if (kind == ADD) {
+                    group += VALUES[node];
+                } else if (kind == HUNDRED) {
+                    group = (group == 0 ? 1 : group) * VALUES[node];
+                } else if (kind == SCALE) {
+                    total += (group == 0 ? 1 : group) * VALUES[node];
+                    group = 0;
+                }
+                if (kind != NONE) {
+                    found = true;
+                    wholeEnd = -1;
+                }
+            } else {
+                p++;
+            }
+        }
+    }
+
+    /**
+     * Formats a normalized value the way it is written as a FHIR integer or decimal, i.e. without a fraction if the
+     * value is integral, and without an exponent such that {@link #parse(CharSequence)} reads it back
+     *
+     * @param value The value to format
+     * @return The formatted value
+     */
+    public static String toString(double value) {
+        if (value == Math.rint(value) && Math.abs(value) <= MAX_EXACT_MANTISSA) {
+            return Long.toString((long) value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * @return The end of the decimal number at p, consisting of digits, grouping commas and at most one decimal point,
+     * where each comma or decimal point is followed by a digit. The number may start with its decimal point.
+     */
+    private static int decimalEnd(CharSequence text, int p, int end) {
+        int i = p;
+        boolean fraction = false;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                i++;
+            } else if (!fraction && (c == ',' || c == '.') && i + 1 < end && isDigit(text.charAt(i + 1))) {
+                fraction = c == '.';
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return The value of the decimal number between p and end, as delimited by {@link #decimalEnd(CharSequence, int, int)}
+     */
+    private static double decimalValue(CharSequence text, int p, int end) {
+        long mantissa = 0;
+        int fractionDigits = -1;
+        for (int i = p; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                fractionDigits = 0;
+            } else if (c != ',') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+                    // Too many digits to be converted exactly, which clinical text should not contain
+                    return Double.parseDouble(text.subSequence(p, end).toString().replace(",", ""));
+                }
+            }
+        }
+        return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    }
+
+    private static boolean contains(CharSequence text, int p, int end, char c) {
+        for (int i = p; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSpaces(CharSequence text, int p, int end) {
+        for (int i = p; i < end; i++) {
+            if (text.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        char lower = (char) (c | 0x20);
+        return lower >= 'a' && lower <= 'z';
+    }
+}
@@ -0,0 +1,358 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts literal anchors from a regular expression: a set of strings such that any text matched by the expression
+ * must contain at least one of them. Used to skip rules that cannot possibly match a sentence without running the
+ * (often heavily backtracking) rule pattern itself.<br>
+ * <br>
+ * Extraction is conservative: any construct that is not understood results in no anchors, in which case the rule
+ * must always be run.
+ */
+public final class RegexLiteralAnchors {
+
+    private final String re;
+    private int pos;
+
+    private RegexLiteralAnchors(String re) {
+        this.re = re;
+        this.pos = 0;
+    }
+
+    /**
+     * @param p              The pattern to extract anchors from
+     * @param lowerCaseInput Whether text matched against this pattern is lowercased beforehand
+     * @return A set of anchor strings, one of which must occur in any match of p, or null if no anchors could be
+     * determined
+     */
+    public static Set<String> extract(Pattern p, boolean lowerCaseInput) {
+        int flags = p.flags();
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return null;
+        }
+        boolean caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
+        if (caseInsensitive && !lowerCaseInput) {
+            return null;
+        }
+        Set<String> anchors;
+        if ((flags & Pattern.LITERAL) != 0) {
+            anchors = Collections.singleton(p.pattern());
+        } else {
+            try {
+                RegexLiteralAnchors parser = new RegexLiteralAnchors(p.pattern());
+                anchors = parser.parseAlternation();
+                if (parser.pos != parser.re.length()) {
+                    return null;
+                }
+            } catch (UnsupportedOperationException e) {
+                return null;
+            }
+        }
+        if (anchors == null) {
+            return null;
+        }
+        Set<String> ret = new LinkedHashSet<>();
+        for (String anchor : anchors) {
+            if (anchor.isEmpty()) {
+                return null;
+            }
+            ret.add(caseInsensitive ? anchor.toLowerCase() : anchor);
+        }
+        return ret;
+    }
+
+    private Set<String> parseAlternation() {
+        Set<String> ret = new LinkedHashSet<>();
+        boolean anchored = true;
+        while (true) {
+            Set<String> alt = parseSequence();
+            if (alt == null) {
+                anchored = false;
+            } else if (anchored) {
+                ret.addAll(alt);
+            }
+            if (pos < re.length() && re.charAt(pos) == '|') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return anchored ? ret : null;
+    }
+
+    private Set<String> parseSequence() {
+        Set<String> best = null;
+        StringBuilder run = new StringBuilder();
+        while (pos < re.length() && re.charAt(pos) != '|' && re.charAt(pos) != ')') {
+            Atom atom = parseAtom();
+            int min = parseQuantifierMin();
+            if (atom.literal != null && min == -1) {
+                run.append(atom.literal.charValue());
+                continue;
+            }
+            if (atom.literal != null && min > 0) {
+                run.append(atom.literal.charValue());
+            }
+            best = better(best, flush(run));
+            if (atom.group != null && (min == -1 || min > 0)) {
+                best = better(best, atom.group);
+            }
+        }
+        return better(best, flush(run));
+    }
+
+    private Atom parseAtom() {
+        char c = re.charAt(pos++);
+        switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                skipCharacterClass();
+                return Atom.OTHER;
+            case '.':
+            case '^':
+            case '$':
+                return Atom.OTHER;
+            case '\\':
+                return parseEscape();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw new UnsupportedOperationException("Dangling quantifier at " + (pos - 1));
+            default:
+                return new Atom(c, null);
+        }
+    }
+
+    private Atom parseGroup() {
+        boolean zeroWidth = false;
+        if (peek() == '?') {
+            pos++;
+            char type = re.charAt(pos++);
+            switch (type) {
+                case ':':
+                case '>':
+                    break;
+                case '=':
+                case '!':
+                    zeroWidth = true;
+                    break;
+                case '<':
+                    if (peek() == '=' || peek() == '!') {
+                        pos++;
+                        zeroWidth = true;
+                    } else {
+                        // Named group
+                        int close = re.indexOf('>', pos);
+                        if (close < 0) {
+                            throw new UnsupportedOperationException("Unterminated group name");
+                        }
+                        pos = close + 1;
+                    }
+                    break;
+                default:
+                    // Inline flags alter matching semantics of the remaining expression
+                    throw new UnsupportedOperationException("Inline flags are not supported");
+            }
+        }
+        Set<String> inner = parseAlternation();
+        if (peek() != ')') {
+            throw new UnsupportedOperationException("Unterminated group");
+        }
+        pos++;
+        return zeroWidth ? Atom.OTHER : new Atom(null, inner);
+    }
+
+    private Atom parseEscape() {
+        if (pos >= re.length()) {
+            throw new UnsupportedOperationException("Trailing escape");
+        }
+        char e = re.charAt(pos++);
+        switch (e) {
+            case 't':
+                return new Atom('\t', null);
+            case 'n':
+                return new Atom('\n', null);
+            case 'r':
+                return new Atom('\r', null);
+            case 'f':
+                return new Atom('\f', null);
+            case 'a':
+                return new Atom('\u0007', null);
+            case 'e':
+                return new Atom('\u001B', null);
+            case 'd':
+            case 'D':
+            case 's':
+            case 'S':
+            case 'w':
+            case 'W':
+            case 'b':
+            case 'B':
+            case 'A':
+            case 'G':
+            case 'Z':
+            case 'z':
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+            case 'R':
+                return Atom.OTHER;
+            case 'p':
+            case 'P':
+                if (peek() == '{') {
+                    int close = re.indexOf('}', pos);
+                    if (close < 0) {
+                        throw new UnsupportedOperationException("Unterminated character property");
+                    }
+                    pos = close + 1;
+                } else {
+                    pos++;
+                }
+                return Atom.OTHER;
+            case 'k':
+                int close = re.indexOf('>', pos);
+                if (close < 0) {
+                    throw new UnsupportedOperationException("Unterminated named back reference");
+                }
+                pos = close + 1;
+                return Atom.OTHER;
+            default:
+                if (e >= '1' && e <= '9') {
+                    // Back reference, consume remaining digits
+                    while (pos < re.length() && Character.isDigit(re.charAt(pos))) {
+                        pos++;
+                    }
+                    return Atom.OTHER;
+                }
+                if (Character.isLetterOrDigit(e)) {
+                    // \Q..\E, octal, hex, unicode and control escapes
+                    throw new UnsupportedOperationException("Unsupported escape \\" + e);
+                }
+                return new Atom(e, null);
+        }
+    }
+
+    private void skipCharacterClass() {
+        int depth = 1;
+        if (peek() == '^') {
+            pos++;
+        }
+        if (peek() == ']') {
+            pos++;
+        }
+        while (pos < re.length() && depth > 0) {
+            char c = re.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+        }
+        if (depth > 0) {
+            throw new UnsupportedOperationException("Unterminated character class");
+        }
+    }
+
+    /**
+     * @return -1 if no quantifier follows, otherwise the minimum number of repetitions the quantifier allows
+     */
+    private int parseQuantifierMin() {
+        if (pos >= re.length()) {
+            return -1;
+        }
+        int min;
+        char c = re.charAt(pos);
+        switch (c) {
+            case '?':
+            case '*':
+                min = 0;
+                pos++;
+                break;
+            case '+':
+                min = 1;
+                pos++;
+                break;
+            case '{':
+                int close = re.indexOf('}', pos);
+                if (close < 0) {
+                    throw new UnsupportedOperationException("Unterminated quantifier");
+                }
+                String bounds = re.substring(pos + 1, close);
+                int comma = bounds.indexOf(',');
+                try {
+                    min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedOperationException("Malformed quantifier " + bounds);
+                }
+                pos = close + 1;
+                break;
+            default:
+                return -1;
+        }
+        // Reluctant/possessive modifiers do not change the minimum
+        if (pos < re.length() && (re.charAt(pos) == '?' || re.charAt(pos) == '+')) {
+            pos++;
+        }
+        return min;
+    }
+
+    private char peek() {
+        return pos < re.length() ? re.charAt(pos) : '\0';
+    }
+
+    private static Set<String> flush(StringBuilder run) {
+        if (run.length() == 0) {
+            return null;
+        }
+        Set<String> ret = Collections.singleton(run.toString());
+        run.setLength(0);
+        return ret;
+    }
+
+    /**
+     * Picks the more selective of two anchor sets, preferring the longer shortest anchor and then fewer anchors
+     */
+    private static Set<String> better(Set<String> a, Set<String> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        int minA = minLength(a);
+        int minB = minLength(b);
+        if (minA != minB) {
+            return minA > minB ? a : b;
+        }
+        return a.size() <= b.size() ? a : b;
+    }
+
+    private static int minLength(Set<String> anchors) {
+        int min = Integer.MAX_VALUE;
+        for (String anchor : anchors) {
+            min = Math.min(min, anchor.length());
+        }
+        return min;
+    }
+
+    private static final class Atom {
+        private static final Atom OTHER = new Atom(null, null);
+
+        private final Character literal;
+        private final Set<String> group;
+
+        private Atom(Character literal, Set<String> group) {
+            this.literal = literal;
+            this.group = group;
+        }
+    }
+}
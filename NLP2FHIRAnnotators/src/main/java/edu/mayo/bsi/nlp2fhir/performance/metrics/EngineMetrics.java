@@ -0,0 +1,205 @@
+package edu.mayo.bsi.nlp2fhir.performance.metrics;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing, throughput and output of a single analysis engine, accumulated over all documents it processed and all
+ * replicas of the engine. Safe for concurrent updates.
+ *
+ * @see PipelineMetrics
+ */
+public final class EngineMetrics {
+
+    /**
+     * Upper bounds of the per-document latency histogram buckets, in milliseconds. Latencies exceeding the last bound
+     * fall into an additional overflow bucket.
+     */
+    public static final long[] LATENCY_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private final String name;
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray latencyCounts = new AtomicLongArray(LATENCY_BOUNDS_MILLIS.length + 1);
+    private final ConcurrentHashMap<String, LongAdder> annotations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    EngineMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a document processed successfully
+     *
+     * @param nanos      The time the engine took to process the document
+     * @param characters The length of the document text
+     */
+    public void recordDocument(long nanos, int characters) {
+        documents.increment();
+        this.characters.add(characters);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS_MILLIS.length && millis >= LATENCY_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        latencyCounts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Records a document on which the engine failed
+     */
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * @param type  The fully qualified name of the annotation type
+     * @param count The net number of annotations of exactly this type the engine added to a document
+     */
+    public void recordAnnotations(String type, long count) {
+        annotations.computeIfAbsent(type, k -> new LongAdder()).add(count);
+    }
+
+    /**
+     * Adds to a counter specific to the engine, e.g. the number of candidates it considered. Engines obtain their
+     * metrics via {@link MetricsProbe#getCurrentEngine(org.apache.uima.jcas.JCas)}.
+     *
+     * @param counter The name of the counter
+     * @param amount  The amount to add
+     */
+    public void recordCounter(String counter, long amount) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(amount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getCharacters() {
+        return characters.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return The mean time spent per successfully processed document, in milliseconds
+     */
+    public double getMeanMillis() {
+        long documents = getDocuments();
+        return documents == 0 ? 0 : getTotalNanos() / 1e6 / documents;
+    }
+
+    /**
+     * @return The number of document characters processed per second of time spent within this engine
+     */
+    public double getCharactersPerSecond() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : getCharacters() / (nanos / 1e9);
+    }
+
+    /**
+     * @return The number of documents within each latency bucket, see {@link #LATENCY_BOUNDS_MILLIS}
+     */
+    public long[] getLatencyCounts() {
+        long[] ret = new long[latencyCounts.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = latencyCounts.get(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Estimates a latency quantile from the histogram, as the upper bound of the bucket containing it (or the maximum
+     * latency, if lower)
+     *
+     * @param quantile The quantile, e.g. 0.95
+     * @return The estimated latency in milliseconds, or 0 if no documents were processed
+     */
+    public double getLatencyQuantileMillis(double quantile) {
+        long[] counts = getLatencyCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double maxMillis = getMaxNanos() / 1e6;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < LATENCY_BOUNDS_MILLIS.length ? Math.min(LATENCY_BOUNDS_MILLIS[i], maxMillis) : maxMillis;
+            }
+        }
+        return maxMillis;
+    }
+
+    /**
+     * @return The net number of annotations added per fully qualified type name, in descending order of count
+     */
+    public Map<String, Long> getAnnotationCounts() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : annotations.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue().sum()));
+        }
+        entries.sort((e1, e2) -> e1.getValue().equals(e2.getValue()) ? e1.getKey().compareTo(e2.getKey()) : Long.compare(e2.getValue(), e1.getValue()));
+        Map<String, Long> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> e : entries) {
+            ret.put(e.getKey(), e.getValue());
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @return The engine specific counters, by name in alphabetical order
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> ret = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            ret.put(e.getKey(), e.getValue().sum());
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @return The total net number of annotations added
+     */
+    public long getTotalAnnotations() {
+        long ret = 0;
+        for (LongAdder count : annotations.values()) {
+            ret += count.sum();
+        }
+        return ret;
+    }
+}
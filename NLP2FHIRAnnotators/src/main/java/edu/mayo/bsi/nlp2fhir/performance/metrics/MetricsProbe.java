@@ -0,0 +1,277 @@
+package edu.mayo.bsi.nlp2fhir.performance.metrics;
+
+import edu.mayo.bsi.nlp2fhir.pipelines.ConcurrentInitializationAnnotator;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+
+import java.util.*;
+
+/**
+ * Measures the analysis engine run between two probes within a fixed flow: the probe preceding an engine notes the
+ * time, and the probe following it records the elapsed time and the document length within the
+ * {@link PipelineMetrics} of the engine. Documents on which an engine fails are recorded as errors when the CAS is next
+ * seen by a probe, or when the collection completes.<br>
+ * <br>
+ * Probes may also record the number of annotations of each type added by each engine. As this counts the annotations
+ * of every type present at every probe, it is disabled by default. Counts taken after an engine serve as the baseline
+ * of the next, such that the CAS is counted once per probe.<br>
+ * <br>
+ * Probes are inserted between the components of a pipeline via {@link #instrument(AnalysisEngineDescription, boolean)}.
+ */
+public class MetricsProbe extends JCasAnnotator_ImplBase {
+
+    public static final String PARAM_ENDING_ENGINE = "ENDING_ENGINE";
+    public static final String PARAM_STARTING_ENGINE = "STARTING_ENGINE";
+    public static final String PARAM_COUNT_ANNOTATIONS = "COUNT_ANNOTATIONS";
+
+    private static final Map<JCas, ProbeState> STATES = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<TypeSystem, List<CountedType>> COUNTED_TYPES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @ConfigurationParameter(
+            name = PARAM_ENDING_ENGINE,
+            description = "The name of the engine run before this probe, if any",
+            mandatory = false,
+            defaultValue = ""
+    )
+    private String endingEngine;
+
+    @ConfigurationParameter(
+            name = PARAM_STARTING_ENGINE,
+            description = "The name of the engine run after this probe, if any",
+            mandatory = false,
+            defaultValue = ""
+    )
+    private String startingEngine;
+
+    @ConfigurationParameter(
+            name = PARAM_COUNT_ANNOTATIONS,
+            description = "Whether to record the number of annotations added per type",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean countAnnotations;
+
+    @Override
+    public void process(JCas jCas) throws AnalysisEngineProcessException {
+        ProbeState state = STATES.get(jCas);
+        if (state != null && state.engine != null && !state.engine.equals(endingEngine)) {
+            // The engine pending on this CAS failed, and the CAS has since been reused for another document
+            PipelineMetrics.getEngine(state.engine).recordError();
+            state.engine = null;
+        }
+        long[] counts = null;
+        if (!endingEngine.isEmpty() && state != null && state.engine != null) {
+            long elapsed = System.nanoTime() - state.start;
+            String text = jCas.getDocumentText();
+            EngineMetrics metrics = PipelineMetrics.getEngine(endingEngine);
+            metrics.recordDocument(elapsed, text == null ? 0 : text.length());
+            if (countAnnotations && state.counts != null) {
+                counts = countAnnotations(jCas, state.types);
+                for (int i = 0; i < counts.length; i++) {
+                    long added = counts[i] - state.counts[i];
+                    if (added != 0) {
+                        metrics.recordAnnotations(state.types.get(i).name, added);
+                    }
+                }
+            }
+            state.engine = null;
+        }
+        if (startingEngine.isEmpty()) {
+            if (state != null) {
+                STATES.remove(jCas);
+            }
+            return;
+        }
+        if (state == null) {
+            state = new ProbeState();
+            STATES.put(jCas, state);
+        }
+        state.engine = startingEngine;
+        if (countAnnotations) {
+            List<CountedType> types = getCountedTypes(jCas.getTypeSystem());
+            // The counts after the previous engine are those before the next, unless the type system changed
+            state.counts = counts != null && types == state.types ? counts : countAnnotations(jCas, types);
+            state.types = types;
+        } else {
+            state.types = null;
+            state.counts = null;
+        }
+        // Last, such that counting is not attributed to the engine
+        state.start = System.nanoTime();
+    }
+
+    /**
+     * @param jCas The CAS an engine is processing
+     * @return The metrics of the instrumented engine currently processing the CAS, e.g. to record counters specific to
+     * the engine within, or null if the engine is not instrumented
+     */
+    public static EngineMetrics getCurrentEngine(JCas jCas) {
+        ProbeState state = STATES.get(jCas);
+        String engine = state == null ? null : state.engine;
+        return engine == null ? null : PipelineMetrics.getEngine(engine);
+    }
+
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+        super.collectionProcessComplete();
+        synchronized (STATES) {
+            for (ProbeState state : STATES.values()) {
+                if (state.engine != null) {
+                    PipelineMetrics.getEngine(state.engine).recordError();
+                    state.engine = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of annotations of exactly each of the given types
+     */
+    private static long[] countAnnotations(JCas jCas, List<CountedType> types) {
+        long[] sizes = new long[types.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = jCas.getAnnotationIndex(jCas.getTypeSystem().getType(types.get(i).name)).size();
+        }
+        long[] ret = new long[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            ret[i] = sizes[i];
+            for (int subtype : types.get(i).directSubtypes) {
+                ret[i] -= sizes[subtype];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The annotation types of a type system, each with the positions of its direct subtypes. Types are held by
+     * name, as types reference their type system and would otherwise prevent it from being collected.
+     */
+    private static List<CountedType> getCountedTypes(TypeSystem ts) {
+        List<CountedType> ret = COUNTED_TYPES.get(ts);
+        if (ret != null) {
+            return ret;
+        }
+        Type annotation = ts.getType(CAS.TYPE_NAME_ANNOTATION);
+        List<Type> types = new ArrayList<>();
+        Iterator<Type> it = ts.getTypeIterator();
+        while (it.hasNext()) {
+            Type type = it.next();
+            if (ts.subsumes(annotation, type)) {
+                types.add(type);
+            }
+        }
+        Map<Type, Integer> positions = new HashMap<>();
+        for (int i = 0; i < types.size(); i++) {
+            positions.put(types.get(i), i);
+        }
+        ret = new ArrayList<>(types.size());
+        for (Type type : types) {
+            List<Type> subtypes = ts.getDirectSubtypes(type);
+            int[] directSubtypes = new int[subtypes.size()];
+            for (int i = 0; i < directSubtypes.length; i++) {
+                directSubtypes[i] = positions.get(subtypes.get(i));
+            }
+            ret.add(new CountedType(type.getName(), directSubtypes));
+        }
+        ret = Collections.unmodifiableList(ret);
+        COUNTED_TYPES.put(ts, ret);
+        return ret;
+    }
+
+    /**
+     * Instruments a pipeline without counting annotations, see {@link #instrument(AnalysisEngineDescription, boolean)}
+     */
+    public static AnalysisEngineDescription instrument(AnalysisEngineDescription pipeline) throws ResourceInitializationException {
+        return instrument(pipeline, false);
+    }
+
+    /**
+     * Inserts probes before, between and after the components of a pipeline, such that each component is measured
+     * within the {@link PipelineMetrics} under its (simple) implementation class name. Names of components implemented
+     * by the same class are suffixed by their occurrence, e.g. "XMIWriterPostProcessor#2". Nested fixed flow
+     * aggregates are flattened as by {@link ConcurrentInitializationAnnotator#getComponents(AnalysisEngineDescription)};
+     * other pipelines are measured as a whole.
+     *
+     * @param pipeline         The pipeline to instrument
+     * @param countAnnotations Whether to record the number of annotations of each type added by each component
+     * @return The instrumented pipeline
+     * @throws ResourceInitializationException If the descriptions of components could not be resolved
+     */
+    public static AnalysisEngineDescription instrument(AnalysisEngineDescription pipeline, boolean countAnnotations)
+            throws ResourceInitializationException {
+        Map<String, ResourceSpecifier> components = ConcurrentInitializationAnnotator.getComponents(pipeline);
+        if (components != null) {
+            for (ResourceSpecifier spec : components.values()) {
+                if (!(spec instanceof AnalysisEngineDescription)) {
+                    components = null;
+                    break;
+                }
+            }
+        }
+        if (components == null) {
+            components = Collections.singletonMap(getName(pipeline), pipeline);
+        }
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (ResourceSpecifier spec : components.values()) {
+            occurrences.merge(getName((AnalysisEngineDescription) spec), 1, Integer::sum);
+        }
+        Map<String, Integer> seen = new HashMap<>();
+        AggregateBuilder ret = new AggregateBuilder();
+        String previous = "";
+        int i = 0;
+        for (Map.Entry<String, ResourceSpecifier> e : components.entrySet()) {
+            String name = getName((AnalysisEngineDescription) e.getValue());
+            if (occurrences.get(name) > 1) {
+                name = name + "#" + seen.merge(name, 1, Integer::sum);
+            }
+            ret.add("MetricsProbe-" + i++, createProbe(previous, name, countAnnotations));
+            ret.add(e.getKey(), (AnalysisEngineDescription) e.getValue());
+            previous = name;
+        }
+        ret.add("MetricsProbe-" + i, createProbe(previous, "", countAnnotations));
+        return ret.createAggregateDescription();
+    }
+
+    private static AnalysisEngineDescription createProbe(String endingEngine, String startingEngine,
+                                                         boolean countAnnotations) throws ResourceInitializationException {
+        return AnalysisEngineFactory.createEngineDescription(MetricsProbe.class,
+                PARAM_ENDING_ENGINE, endingEngine,
+                PARAM_STARTING_ENGINE, startingEngine,
+                PARAM_COUNT_ANNOTATIONS, countAnnotations);
+    }
+
+    private static String getName(AnalysisEngineDescription desc) {
+        String name = desc.isPrimitive() ? desc.getAnnotatorImplementationName() : desc.getMetaData().getName();
+        if (name == null || name.isEmpty()) {
+            return "Aggregate";
+        }
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static class ProbeState {
+        private String engine;
+        private long start;
+        private List<CountedType> types;
+        private long[] counts;
+    }
+
+    private static class CountedType {
+        private final String name;
+        private final int[] directSubtypes;
+
+        CountedType(String name, int[] directSubtypes) {
+            this.name = name;
+            this.directSubtypes = directSubtypes;
+        }
+    }
+}
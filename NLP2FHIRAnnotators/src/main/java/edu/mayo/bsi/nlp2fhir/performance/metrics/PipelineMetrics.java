@@ -0,0 +1,204 @@
+package edu.mayo.bsi.nlp2fhir.performance.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the {@link EngineMetrics} of all instrumented analysis engines within this JVM, by engine name, in the order
+ * engines were first seen. Engines are instrumented by the pipeline builders via {@link MetricsProbe#instrument}.
+ */
+public final class PipelineMetrics {
+
+    private static final ConcurrentHashMap<String, EngineMetrics> ENGINES = new ConcurrentHashMap<>();
+    private static final List<EngineMetrics> ORDERED = new CopyOnWriteArrayList<>();
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * @return The metrics of the named engine, created if absent
+     */
+    public static EngineMetrics getEngine(String name) {
+        EngineMetrics ret = ENGINES.get(name);
+        if (ret == null) {
+            synchronized (ORDERED) {
+                ret = ENGINES.get(name);
+                if (ret == null) {
+                    ret = new EngineMetrics(name);
+                    ORDERED.add(ret);
+                    ENGINES.put(name, ret);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The metrics of all engines, in the order they were first seen
+     */
+    public static List<EngineMetrics> getEngines() {
+        return Collections.unmodifiableList(new ArrayList<>(ORDERED));
+    }
+
+    /**
+     * Discards all metrics collected so far
+     */
+    public static void reset() {
+        synchronized (ORDERED) {
+            ORDERED.clear();
+            ENGINES.clear();
+        }
+    }
+
+    /**
+     * @return Whether any engine has processed (or failed on) a document
+     */
+    public static boolean isEmpty() {
+        for (EngineMetrics engine : ORDERED) {
+            if (engine.getDocuments() > 0 || engine.getErrors() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A human readable table of the metrics of all engines, followed by the annotations each engine created and
+     * the counters specific to engines
+     */
+    public static String formatSummary() {
+        List<EngineMetrics> engines = getEngines();
+        int nameWidth = "Engine".length();
+        for (EngineMetrics engine : engines) {
+            nameWidth = Math.max(nameWidth, engine.getName().length());
+        }
+        String rowFormat = "%-" + nameWidth + "s %8s %7s %10s %10s %10s %10s %10s %10s %12s %12s\n";
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(rowFormat, "Engine", "Docs", "Errors", "Total s", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Chars/s", "Annotations"));
+        long totalNanos = 0;
+        for (EngineMetrics engine : engines) {
+            totalNanos += engine.getTotalNanos();
+            sb.append(String.format(rowFormat,
+                    engine.getName(),
+                    engine.getDocuments(),
+                    engine.getErrors(),
+                    String.format("%.1f", engine.getTotalNanos() / 1e9),
+                    String.format("%.1f", engine.getMeanMillis()),
+                    String.format("%.0f", engine.getLatencyQuantileMillis(0.5)),
+                    String.format("%.0f", engine.getLatencyQuantileMillis(0.95)),
+                    String.format("%.0f", engine.getLatencyQuantileMillis(0.99)),
+                    String.format("%.0f", engine.getMaxNanos() / 1e6),
+                    String.format("%.0f", engine.getCharactersPerSecond()),
+                    engine.getTotalAnnotations()));
+        }
+        sb.append(String.format("Total time within engines: %.1fs\n", totalNanos / 1e9));
+        boolean counted = false;
+        for (EngineMetrics engine : engines) {
+            Map<String, Long> counts = engine.getAnnotationCounts();
+            if (counts.isEmpty()) {
+                continue;
+            }
+            if (!counted) { // Only if annotations were counted, see MetricsProbe
+                sb.append("Annotations created per type:\n");
+                counted = true;
+            }
+            sb.append("  ").append(engine.getName()).append(':');
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                sb.append(' ').append(e.getKey().substring(e.getKey().lastIndexOf('.') + 1)).append('=').append(e.getValue());
+            }
+            sb.append('\n');
+        }
+        boolean hasCounters = false;
+        for (EngineMetrics engine : engines) {
+            Map<String, Long> counters = engine.getCounters();
+            if (counters.isEmpty()) {
+                continue;
+            }
+            if (!hasCounters) {
+                sb.append("Engine counters:\n");
+                hasCounters = true;
+            }
+            sb.append("  ").append(engine.getName()).append(':');
+            for (Map.Entry<String, Long> e : counters.entrySet()) {
+                sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Serializes the metrics of all engines, e.g. for consumption by other processes:
+     * <pre>
+     * {"latencyBoundsMillis": [1, 2, ...],
+     *  "engines": [{"name": ..., "documents": ..., "errors": ..., "characters": ..., "totalNanos": ..., "maxNanos": ...,
+     *               "latencyCounts": [...], "annotations": {"type": count, ...}, "counters": {"name": value, ...}},
+     *              ...]}
+     * </pre>
+     *
+     * @return The metrics as JSON
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"latencyBoundsMillis\":[");
+        for (int i = 0; i < EngineMetrics.LATENCY_BOUNDS_MILLIS.length; i++) {
+            sb.append(i > 0 ? "," : "").append(EngineMetrics.LATENCY_BOUNDS_MILLIS[i]);
+        }
+        sb.append("],\"engines\":[");
+        boolean first = true;
+        for (EngineMetrics engine : getEngines()) {
+            sb.append(first ? "" : ",");
+            first = false;
+            sb.append("{\"name\":");
+            appendJsonString(sb, engine.getName());
+            sb.append(",\"documents\":").append(engine.getDocuments());
+            sb.append(",\"errors\":").append(engine.getErrors());
+            sb.append(",\"characters\":").append(engine.getCharacters());
+            sb.append(",\"totalNanos\":").append(engine.getTotalNanos());
+            sb.append(",\"maxNanos\":").append(engine.getMaxNanos());
+            sb.append(",\"latencyCounts\":[");
+            long[] counts = engine.getLatencyCounts();
+            for (int i = 0; i < counts.length; i++) {
+                sb.append(i > 0 ? "," : "").append(counts[i]);
+            }
+            sb.append("],\"annotations\":{");
+            boolean firstType = true;
+            for (Map.Entry<String, Long> e : engine.getAnnotationCounts().entrySet()) {
+                sb.append(firstType ? "" : ",");
+                firstType = false;
+                appendJsonString(sb, e.getKey());
+                sb.append(':').append(e.getValue());
+            }
+            sb.append("},\"counters\":{");
+            boolean firstCounter = true;
+            for (Map.Entry<String, Long> e : engine.getCounters().entrySet()) {
+                sb.append(firstCounter ? "" : ",");
+                firstCounter = false;
+                appendJsonString(sb, e.getKey());
+                sb.append(':').append(e.getValue());
+            }
+            sb.append("}}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
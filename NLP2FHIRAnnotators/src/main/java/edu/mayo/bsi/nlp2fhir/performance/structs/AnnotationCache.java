@@ -5,228 +5,162 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.tcas.Annotation;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Serves as an annotation cache which keeps track of annotation begin/ends in a given document so as to achieve
  * O(klogn) instead of O(n^2) collision checking
  * <p>
+ * Each entry is built exactly once: the first thread requesting a key builds the index, while concurrent requests for
+ * the same key block on its future rather than polling. Entries built from a CAS are scoped to that CAS and the
+ * document it held at the time, so a pooled CAS that has since been reset will not be served a stale index. At most
+ * {@value #MAX_ENTRIES_PROPERTY} (default {@value #DEFAULT_MAX_ENTRIES}) entries are retained, evicting the oldest
+ * first; callers should nonetheless release entries via {@link #removeAnnotationCaches(JCas)} once a CAS is done.
+ * <p>
  * Adapted from LayeredLanguageIR project
  *
  * @author Andrew Wen
+ * @see AnnotationIndex
  */
 public class AnnotationCache {
 
-    // Cache as a static variable across index generations where possible
-    public static ConcurrentHashMap<String, AtomicBoolean> ANN_CACHE_LOCKS = new ConcurrentHashMap<>();
-    public static ConcurrentHashMap<String, AnnotationCache.AnnotationTree> ANN_CACHE = new ConcurrentHashMap<>();
-
+    public static final String MAX_ENTRIES_PROPERTY = "nlp2fhir.annotationcache.max.entries";
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private static final int MAX_ENTRIES = Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES);
+    private static final ConcurrentHashMap<String, Entry> ANN_CACHE = new ConcurrentHashMap<>();
+    // Insertion order, for eviction
+    private static final ConcurrentLinkedQueue<Entry> ENTRIES = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong RESIDENT_ANNOTATIONS = new AtomicLong();
+
+    public static AnnotationIndex getAnnotationCache(String meta, JCas cas) {
+        return getAnnotationCache(meta, cas, () -> {
+            FSIterator<TOP> it = cas.getJFSIndexRepository().getAllIndexedFS(Annotation.type);
+            Collection<Annotation> anns = new ArrayList<>();
+            while (it.hasNext()) {
+                anns.add((Annotation) it.next());
+            }
+            return anns;
+        });
+    }
 
-    public static AnnotationTree getAnnotationCache(String meta, JCas cas) {
-        FSIterator<TOP> it = cas.getJFSIndexRepository().getAllIndexedFS(Annotation.type);
-        Collection<Annotation> anns = new LinkedList<>();
-        while (it.hasNext()) {
-            anns.add((Annotation) it.next());
-        }
-        return getAnnotationCache(meta, cas.getDocumentText().length(), anns);
+    public static AnnotationIndex getAnnotationCache(String meta, Collection<Annotation> items) {
+        return getAnnotationCache(meta, null, () -> items);
     }
 
-    public static AnnotationTree getAnnotationCache(String meta, int docLength, Collection<Annotation> items) {
-        ANN_CACHE_LOCKS.putIfAbsent(meta, new AtomicBoolean(false));
-        final AtomicBoolean lock = ANN_CACHE_LOCKS.get(meta);
-        if (!ANN_CACHE.containsKey(meta)) {
-            if (ANN_CACHE.putIfAbsent(meta, new AnnotationNode(0, docLength))
-                    == null) { // Successful Lock Acquisition
-                AnnotationTree currCache = ANN_CACHE.get(meta);
-                for (Annotation ann : items) {
-                    currCache.insert(ann);
-                }
-                synchronized (lock) {
-                    lock.set(true);
-                    lock.notifyAll();
+    private static AnnotationIndex getAnnotationCache(String meta, JCas cas, Supplier<Collection<Annotation>> items) {
+        while (true) {
+            Entry existing = ANN_CACHE.get(meta);
+            if (existing != null && !existing.isFor(cas)) { // Stale, CAS has moved on to a different document
+                remove(existing);
+                existing = null;
+            }
+            if (existing == null) {
+                Entry created = new Entry(meta, cas);
+                existing = ANN_CACHE.putIfAbsent(meta, created);
+                if (existing == null) {
+                    return build(created, items);
                 }
-                return currCache;
-            } else {
-                synchronized (lock) {
-                    while (!lock.get()) {
-                        try {
-                            lock.wait(100);
-                        } catch (InterruptedException ignored) {
-                        }
-                    }
+                if (!existing.isFor(cas)) {
+                    continue;
                 }
-                return ANN_CACHE.get(meta);
             }
-        } else {
-            synchronized (lock) {
-                while (!lock.get()) {
-                    try {
-                        lock.wait(100);
-                    } catch (InterruptedException ignored) {
-                    }
-                }
+            try {
+                return existing.index.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
             }
-            return ANN_CACHE.get(meta);
         }
     }
 
-    public static void removeAnnotationCache(String meta) {
-        final AtomicBoolean lock = ANN_CACHE_LOCKS.get(meta);
-        synchronized (lock) {
-            while (!lock.get()) {
-                try {
-                    lock.wait(100);
-                } catch (InterruptedException ignored) {
-                }
-            }
-            lock.set(false);
-            lock.notifyAll();
+    private static AnnotationIndex build(Entry entry, Supplier<Collection<Annotation>> items) {
+        AnnotationIndex index;
+        try {
+            index = new AnnotationIndex(items.get());
+        } catch (RuntimeException | Error e) {
+            ANN_CACHE.remove(entry.key, entry);
+            entry.index.completeExceptionally(e);
+            throw e;
         }
-        ANN_CACHE.remove(meta);
-        ANN_CACHE_LOCKS.remove(meta);
-    }
-
-    public static abstract class AnnotationTree {
-        public abstract void insert(Annotation ann);
-
-        public abstract void remove(Annotation ann); // Shouldn't be necessary but implement it just in case
-
-        /**
-         * @return a list of T constrained by the given bounds
-         */
-        public abstract <T extends Annotation> Collection<T> getCovering(int start, int end, Class<T> clazz);
-
-        /**
-         * @return a list of T constraining the given bounds
-         */
-        public abstract <T extends Annotation> Collection<T> getCovered(int start, int end, Class<T> clazz);
-
-        public abstract <T extends Annotation> Collection<T> getCollisions(int start, int end, Class<T> clazz);
-    }
-
-
-    private static class AnnotationNode extends AnnotationTree {
-
-        private static int MIN_LEAF_SIZE = 20;
-
-        private AnnotationTree left;
-        private AnnotationTree right;
-        private int split;
-
-        public AnnotationNode(int start, int end) {
-            split = (start + end) / 2;
-            if ((split - start) > MIN_LEAF_SIZE) {
-                left = new AnnotationNode(start, split);
-                right = new AnnotationNode(split + 1, end);
-            } else {
-                left = new AnnotationLeaf();
-                right = new AnnotationLeaf();
-            }
+        entry.size = index.size();
+        RESIDENT_ANNOTATIONS.addAndGet(entry.size);
+        ENTRIES.add(entry);
+        entry.index.complete(index);
+        if (ANN_CACHE.get(entry.key) != entry) { // Removed while being built
+            remove(entry);
         }
-
-        @Override
-        public void insert(Annotation ann) {
-            if (ann.getBegin() <= split) {
-                left.insert(ann);
-            }
-            if (ann.getEnd() > split) {
-                right.insert(ann);
-            }
-        }
-
-        @Override
-        public void remove(Annotation ann) {
-            if (ann.getBegin() <= split) {
-                left.remove(ann);
-            }
-            if (ann.getEnd() > split) {
-                right.remove(ann);
+        // Bound memory usage
+        while (ANN_CACHE.size() > MAX_ENTRIES) {
+            Entry eldest = ENTRIES.peek();
+            if (eldest == null) {
+                break;
             }
+            remove(eldest);
         }
+        return index;
+    }
 
-        @Override
-        public <T extends Annotation> Collection<T> getCovering(int start, int end, Class<T> clazz) {
-            LinkedHashSet<T> build = new LinkedHashSet<>();
-            if (start <= split) {
-                build.addAll(left.getCovering(start, end, clazz));
-            }
-            if (end > split) {
-                build.addAll(right.getCovering(start, end, clazz));
-            }
-            return build;
+    private static void remove(Entry entry) {
+        ANN_CACHE.remove(entry.key, entry);
+        if (ENTRIES.remove(entry)) {
+            RESIDENT_ANNOTATIONS.addAndGet(-entry.size);
         }
+    }
 
-        @Override
-        public <T extends Annotation> Collection<T> getCovered(int start, int end, Class<T> clazz) {
-            LinkedHashSet<T> build = new LinkedHashSet<>();
-            if (start <= split) {
-                build.addAll(left.getCovered(start, end, clazz));
-            }
-            if (end > split) {
-                build.addAll(right.getCovered(start, end, clazz));
-            }
-            return build;
+    public static void removeAnnotationCache(String meta) {
+        Entry entry = ANN_CACHE.get(meta);
+        if (entry != null) {
+            remove(entry);
         }
+    }
 
-        @Override
-        public <T extends Annotation> Collection<T> getCollisions(int start, int end, Class<T> clazz) {
-            LinkedHashSet<T> build = new LinkedHashSet<>();
-            if (start <= split) {
-                build.addAll(left.getCollisions(start, end, clazz));
-            }
-            if (end > split) {
-                build.addAll(right.getCollisions(start, end, clazz));
+    /**
+     * Removes all entries built from the given CAS view
+     */
+    public static void removeAnnotationCaches(JCas cas) {
+        for (Entry entry : ANN_CACHE.values()) {
+            if (entry.cas == cas) {
+                remove(entry);
             }
-            return build;
         }
     }
 
+    /**
+     * @return The number of indexes currently held
+     */
+    public static int getResidentEntries() {
+        return ANN_CACHE.size();
+    }
 
-    private static class AnnotationLeaf extends AnnotationTree {
-
-        private LinkedList<Annotation> annColl;
-
-        public AnnotationLeaf() {
-            annColl = new LinkedList<>();
-        }
-
-        @Override
-        public void insert(Annotation ann) {
-            annColl.add(ann);
-        }
-
-        @Override
-        public void remove(Annotation ann) {
-            annColl.remove(ann);
-        }
-
-        @Override
-        public <T extends Annotation> Collection<T> getCovering(int start, int end, Class<T> clazz) {
-            return null;
-        }
+    /**
+     * @return The total number of annotations across all indexes currently held
+     */
+    public static long getResidentAnnotations() {
+        return RESIDENT_ANNOTATIONS.get();
+    }
 
-        @Override
-        public <T extends Annotation> Collection<T> getCovered(int start, int end, Class<T> clazz) {
-            return null;
+    private static class Entry {
+        private final String key;
+        private final JCas cas;
+        private final String documentText;
+        private final CompletableFuture<AnnotationIndex> index = new CompletableFuture<>();
+        private volatile int size;
+
+        Entry(String key, JCas cas) {
+            this.key = key;
+            this.cas = cas;
+            this.documentText = cas == null ? null : cas.getDocumentText();
         }
 
-        @Override
-        public <T extends Annotation> Collection<T> getCollisions(int start, int end, Class<T> clazz) {
-            LinkedList<T> ret = new LinkedList<>();
-            for (Annotation ann : annColl) {
-                if ((ann.getBegin() <= start && ann.getEnd() > start) || (ann.getBegin() >= start
-                        && ann.getBegin() <= end)) {
-                    if (clazz.isInstance(ann)) {
-                        ret.add((T) ann);
-                    }
-                }
-            }
-            return ret;
+        boolean isFor(JCas cas) {
+            return cas == null || (this.cas == cas && this.documentText == cas.getDocumentText());
         }
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package edu.mayo.bsi.nlp2fhir.performance.structs;
+
+import org.apache.uima.jcas.tcas.Annotation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable interval index over a document's annotations supporting collision, covering, and covered queries in
+ * O(log n + k).
+ * <p>
+ * Annotations are held in parallel primitive arrays sorted by begin ascending, end descending (i.e. annotation index
+ * order), which double as an implicit augmented interval tree: every element additionally stores the maximum end
+ * offset within the subtree it roots. The layout follows H. Li's cgranges, and avoids per-node objects, duplicate
+ * insertion of long annotations, and intermediate collections during queries.
+ * <p>
+ * Queries for a specific type are answered from a per-class sub-index, built on first use, containing only annotations
+ * of that type. All query results are returned in index order. Instances are safe for use by multiple threads.
+ *
+ * @see AnnotationCache
+ */
+public class AnnotationIndex {
+
+    // Subtrees with at most this level are scanned linearly
+    private static final int SCAN_LEVEL = 3;
+
+    private final Annotation[] annotations;
+    private final int[] begins;
+    private final int[] ends;
+    private final int[] maxEnds;
+    private final int rootLevel;
+    private final ConcurrentHashMap<Class<?>, AnnotationIndex> typedIndexes;
+
+    /**
+     * @param items The annotations to index, in any order
+     */
+    public AnnotationIndex(Collection<? extends Annotation> items) {
+        this(sort(items));
+    }
+
+    private AnnotationIndex(Annotation[] sorted) {
+        int n = sorted.length;
+        this.annotations = sorted;
+        this.begins = new int[n];
+        this.ends = new int[n];
+        this.maxEnds = new int[n];
+        for (int i = 0; i < n; i++) {
+            begins[i] = sorted[i].getBegin();
+            ends[i] = sorted[i].getEnd();
+        }
+        this.rootLevel = buildTree();
+        this.typedIndexes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The number of annotations in this index
+     */
+    public int size() {
+        return annotations.length;
+    }
+
+    /**
+     * @return A view of this index restricted to instances of clazz
+     */
+    @SuppressWarnings("unchecked")
+    public AnnotationIndex getTypedIndex(Class<? extends Annotation> clazz) {
+        if (clazz.equals(Annotation.class)) {
+            return this;
+        }
+        return typedIndexes.computeIfAbsent(clazz, c -> {
+            List<Annotation> filtered = new ArrayList<>();
+            for (Annotation ann : annotations) {
+                if (c.isInstance(ann)) {
+                    filtered.add(ann);
+                }
+            }
+            return new AnnotationIndex(filtered.toArray(new Annotation[0])); // Already sorted
+        });
+    }
+
+    /**
+     * @return All T that begin within [start, end] or span start, i.e. that begin at or before end and either end after
+     * start or begin at or after it
+     */
+    public <T extends Annotation> List<T> getCollisions(int start, int end, Class<T> clazz) {
+        AnnotationIndex idx = getTypedIndex(clazz);
+        IntBuffer spanning = new IntBuffer();
+        idx.search(end, start + 1, spanning);
+        // Zero length annotations located exactly at start do not end after it, and must be found separately
+        IntBuffer empty = new IntBuffer();
+        for (int i = idx.lowerBound(start); i < idx.begins.length && idx.begins[i] == start; i++) {
+            if (idx.ends[i] == start) {
+                empty.add(i);
+            }
+        }
+        return idx.collect(IntBuffer.merge(spanning, empty), clazz);
+    }
+
+    /**
+     * @return All T that cover the given bounds, i.e. begin at or before start and end at or after end
+     */
+    public <T extends Annotation> List<T> getCovering(int start, int end, Class<T> clazz) {
+        AnnotationIndex idx = getTypedIndex(clazz);
+        IntBuffer ret = new IntBuffer();
+        idx.search(start, end, ret);
+        return idx.collect(ret, clazz);
+    }
+
+    /**
+     * @return All T that are covered by the given bounds, i.e. begin at or after start and end at or before end
+     */
+    public <T extends Annotation> List<T> getCovered(int start, int end, Class<T> clazz) {
+        AnnotationIndex idx = getTypedIndex(clazz);
+        IntBuffer ret = new IntBuffer();
+        for (int i = idx.lowerBound(start); i < idx.begins.length && idx.begins[i] <= end; i++) {
+            if (idx.ends[i] <= end) {
+                ret.add(i);
+            }
+        }
+        return idx.collect(ret, clazz);
+    }
+
+    private <T extends Annotation> List<T> collect(IntBuffer indices, Class<T> clazz) {
+        List<T> ret = new ArrayList<>(indices.size);
+        for (int i = 0; i < indices.size; i++) {
+            ret.add(clazz.cast(annotations[indices.values[i]]));
+        }
+        return ret;
+    }
+
+    /**
+     * Computes {@link #maxEnds} for every node of the implicit tree. Leaves are the even indices; a node at level k has
+     * its lowest k bits set, and children at index &plusmn; 2<sup>k-1</sup>
+     *
+     * @return The level of the root node, or -1 if empty
+     */
+    private int buildTree() {
+        int n = begins.length;
+        if (n == 0) {
+            return -1;
+        }
+        int lastIdx = 0;
+        int last = 0;
+        for (int i = 0; i < n; i += 2) {
+            lastIdx = i;
+            last = maxEnds[i] = ends[i];
+        }
+        int k;
+        for (k = 1; (1L << k) <= n; k++) {
+            int x = 1 << (k - 1);
+            int step = x << 2;
+            for (int i = (x << 1) - 1; i < n; i += step) {
+                int left = maxEnds[i - x];
+                int right = i + x < n ? maxEnds[i + x] : last;
+                maxEnds[i] = Math.max(ends[i], Math.max(left, right));
+            }
+            lastIdx = ((lastIdx >> k) & 1) != 0 ? lastIdx - x : lastIdx + x;
+            if (lastIdx < n && maxEnds[lastIdx] > last) {
+                last = maxEnds[lastIdx];
+            }
+        }
+        return k - 1;
+    }
+
+    /**
+     * Appends, in index order, the indices of all annotations beginning at or before maxBegin and ending at or after
+     * minEnd
+     */
+    private void search(int maxBegin, int minEnd, IntBuffer out) {
+        if (rootLevel < 0) {
+            return;
+        }
+        int n = begins.length;
+        // Explicit stack of (node, level, left child visited)
+        int[] nodes = new int[64];
+        int[] levels = new int[64];
+        boolean[] visited = new boolean[64];
+        int t = 0;
+        nodes[t] = (1 << rootLevel) - 1;
+        levels[t] = rootLevel;
+        visited[t++] = false;
+        while (t > 0) {
+            t--;
+            int x = nodes[t];
+            int k = levels[t];
+            if (k <= SCAN_LEVEL) {
+                int i0 = x >> k << k;
+                int i1 = Math.min(n, i0 + (1 << (k + 1)) - 1);
+                for (int i = i0; i < i1 && begins[i] <= maxBegin; i++) {
+                    if (ends[i] >= minEnd) {
+                        out.add(i);
+                    }
+                }
+            } else if (!visited[t]) {
+                int y = x - (1 << (k - 1));
+                visited[t++] = true; // Revisit this node once its left subtree is done
+                if (y >= n || maxEnds[y] >= minEnd) {
+                    nodes[t] = y;
+                    levels[t] = k - 1;
+                    visited[t++] = false;
+                }
+            } else if (x < n && begins[x] <= maxBegin) {
+                if (ends[x] >= minEnd) {
+                    out.add(x);
+                }
+                nodes[t] = x + (1 << (k - 1));
+                levels[t] = k - 1;
+                visited[t++] = false;
+            }
+        }
+    }
+
+    /**
+     * @return The first index whose begin is at or after offset
+     */
+    private int lowerBound(int offset) {
+        int low = 0;
+        int high = begins.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (begins[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Annotation[] sort(Collection<? extends Annotation> items) {
+        Annotation[] ret = items.toArray(new Annotation[0]);
+        Arrays.sort(ret, (a1, a2) -> a1.getBegin() != a2.getBegin()
+                ? Integer.compare(a1.getBegin(), a2.getBegin())
+                : Integer.compare(a2.getEnd(), a1.getEnd()));
+        return ret;
+    }
+
+    /**
+     * Minimal growable int array used to gather query results
+     */
+    private static class IntBuffer {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        static IntBuffer merge(IntBuffer a, IntBuffer b) {
+            if (b.size == 0) {
+                return a;
+            }
+            IntBuffer ret = new IntBuffer();
+            int i = 0;
+            int j = 0;
+            while (i < a.size || j < b.size) {
+                if (j >= b.size || (i < a.size && a.values[i] < b.values[j])) {
+                    ret.add(a.values[i++]);
+                } else {
+                    ret.add(b.values[j++]);
+                }
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups of cTAKES analysis engines that are added to (or omitted from) a pipeline as a whole, declared in the order
+ * they are run in.<br>
+ * <br>
+ * Each stage lists the stages whose output it consumes; such dependencies always precede the stage itself. Stages are
+ * section-local if they relate text within a sentence (or section) only, such that they can be run on the sections of
+ * a document separately, see {@link SectionParallelAnnotator}.
+ *
+ * @see PipelineDependency#stages()
+ */
+public enum CTAKESStage {
+    BASE_TOKENS(true, "Segmentation, sentence detection, tokenization, LVG, and part of speech tagging"),
+    DICTIONARY(true, "Named entity recognition via SNOMED CT/RxNorm dictionary lookup", BASE_TOKENS),
+    CONSTITUENCY_PARSE(true, "Constituency parsing", BASE_TOKENS),
+    COREFERENCE(false, "Markable detection, salience, and mention-cluster coreference resolution", CONSTITUENCY_PARSE, DICTIONARY),
+    CHUNKING(true, "Phrase chunking", BASE_TOKENS),
+    DEPENDENCY_PARSE(true, "ClearNLP dependency parsing", BASE_TOKENS),
+    SEMANTIC_ROLES(true, "ClearNLP semantic role labeling", DEPENDENCY_PARSE),
+    CONTEXT_ASSERTION(true, "ConTexT negation, uncertainty, history, and subject detection", DICTIONARY),
+    RELATIONS(true, "Modifier, degree of, and location of relation extraction", DICTIONARY, CHUNKING, DEPENDENCY_PARSE),
+    ASSERTION(true, "ClearTK polarity, uncertainty, history, conditional, generic, and subject assertion", DICTIONARY, CONSTITUENCY_PARSE, DEPENDENCY_PARSE, SEMANTIC_ROLES);
+
+    private final boolean sectionLocal;
+    private final String description;
+    private final List<CTAKESStage> dependencies;
+
+    CTAKESStage(boolean sectionLocal, String description, CTAKESStage... dependencies) {
+        this.sectionLocal = sectionLocal;
+        this.description = description;
+        this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+    }
+
+    /**
+     * @return Whether the stage relates text within a sentence only, and may therefore be run per section
+     */
+    public boolean isSectionLocal() {
+        return sectionLocal;
+    }
+
+    /**
+     * @return A human readable description of the engines within this stage
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The stages whose output this stage directly consumes
+     */
+    public List<CTAKESStage> getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,398 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContext;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.analysis_engine.metadata.AnalysisEngineMetaData;
+import org.apache.uima.analysis_engine.metadata.FixedFlow;
+import org.apache.uima.analysis_engine.metadata.SofaMapping;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.component.CasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.resource.Resource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.metadata.ConfigurationParameterDeclarations;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.resource.metadata.ResourceManagerConfiguration;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.InvalidXMLException;
+import org.apache.uima.util.Level;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the components of a pipeline in order, as the aggregate it was created from would, but instantiates them
+ * concurrently on a bounded pool of threads rather than one after another. Instantiation of the pipelines built by
+ * {@link edu.mayo.bsi.nlp2fhir.pipelines.resources.ResourcePipelineBuilder} is dominated by independent model and
+ * dictionary loads, which therefore overlap.<br>
+ * <br>
+ * Components may instead be deferred, in which case they are instantiated when they first process a CAS. The time taken
+ * to instantiate each component, the memory it allocated while doing so, and the heap in use thereafter are logged.<br>
+ * <br>
+ * Created via {@link #createEngineDescription(AnalysisEngineDescription, int, String...)}, which flattens nested fixed
+ * flow aggregates into their components. Aggregates with sofa mappings, configuration parameters, external resource
+ * bindings or custom flow controllers of their own are retained as single components. Component descriptions are held
+ * in memory rather than in the created description, which can therefore only be instantiated within the JVM that
+ * created it, and only until all engines instantiated from it have been destroyed.
+ */
+public class ConcurrentInitializationAnnotator extends CasAnnotator_ImplBase {
+
+    public static final String PARAM_PIPELINE_ID = "PIPELINE_ID";
+    public static final String PARAM_INITIALIZATION_THREADS = "INITIALIZATION_THREADS";
+    public static final String PARAM_DEFERRED_COMPONENTS = "DEFERRED_COMPONENTS";
+
+    private static final DescriptionRegistry<List<Component>> PIPELINES = new DescriptionRegistry<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @ConfigurationParameter(
+            name = PARAM_PIPELINE_ID,
+            description = "Identifies the components to run, as registered by createEngineDescription"
+    )
+    private String pipelineId;
+
+    @ConfigurationParameter(
+            name = PARAM_INITIALIZATION_THREADS,
+            description = "The maximum number of components instantiated concurrently",
+            mandatory = false,
+            defaultValue = "4"
+    )
+    private int initializationThreads;
+
+    @ConfigurationParameter(
+            name = PARAM_DEFERRED_COMPONENTS,
+            description = "Components instantiated when first used rather than on initialization, by key or "
+                    + "(simple) implementation class name",
+            mandatory = false,
+            defaultValue = {}
+    )
+    private String[] deferredComponents;
+
+    private List<LazyEngine> engines;
+    private boolean acquired;
+
+    @Override
+    public void initialize(UimaContext context) throws ResourceInitializationException {
+        super.initialize(context);
+        List<Component> components = PIPELINES.acquire(pipelineId);
+        if (components == null) {
+            throw new ResourceInitializationException(new IllegalStateException("Pipeline " + pipelineId
+                    + " was not created within this JVM, or all engines instantiated from it have been destroyed"));
+        }
+        acquired = true;
+        // Components see the view this engine is mapped to as their initial view, as they would within the aggregate
+        UimaContextAdmin admin = (UimaContextAdmin) context;
+        Map<String, String> sofaMappings = Collections.singletonMap(CAS.NAME_DEFAULT_SOFA,
+                context.mapToSofaID(CAS.NAME_DEFAULT_SOFA).getSofaID());
+        Set<String> deferred = new HashSet<>(Arrays.asList(deferredComponents));
+        engines = new ArrayList<>(components.size());
+        List<LazyEngine> eager = new ArrayList<>();
+        for (Component component : components) {
+            LazyEngine engine = new LazyEngine(component, admin.createChild(component.key, sofaMappings));
+            engines.add(engine);
+            if (!component.matches(deferred)) {
+                eager.add(engine);
+            }
+        }
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(initializationThreads, eager.size())),
+                new InitializationThreadFactory());
+        Throwable failure = null;
+        try {
+            List<Future<?>> loads = new ArrayList<>(eager.size());
+            for (LazyEngine engine : eager) {
+                loads.add(pool.submit(() -> {
+                    engine.load();
+                    return null;
+                }));
+            }
+            for (Future<?> load : loads) {
+                load.get();
+            }
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failure != null) {
+            try { // Let remaining loads settle such that all instantiated components are destroyed
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            destroy();
+            if (failure instanceof ResourceInitializationException) {
+                throw (ResourceInitializationException) failure;
+            }
+            throw new ResourceInitializationException(failure);
+        }
+        UIMAFramework.getLogger(ConcurrentInitializationAnnotator.class).log(Level.INFO,
+                describeLoads(eager, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    @Override
+    public void process(CAS cas) throws AnalysisEngineProcessException {
+        for (LazyEngine engine : engines) {
+            engine.get().process(cas);
+        }
+    }
+
+    @Override
+    public void batchProcessComplete() throws AnalysisEngineProcessException {
+        super.batchProcessComplete();
+        for (LazyEngine engine : engines) {
+            if (engine.engine != null) {
+                engine.engine.batchProcessComplete();
+            }
+        }
+    }
+
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+        super.collectionProcessComplete();
+        for (LazyEngine engine : engines) {
+            if (engine.engine != null) {
+                engine.engine.collectionProcessComplete();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (engines != null) {
+            for (LazyEngine engine : engines) {
+                if (engine.engine != null) {
+                    engine.engine.destroy();
+                    engine.engine = null;
+                }
+            }
+        }
+        if (acquired) {
+            PIPELINES.release(pipelineId);
+            acquired = false;
+        }
+        super.destroy();
+    }
+
+    private static String describeLoads(List<LazyEngine> loaded, long elapsedMillis) {
+        long cumulativeMillis = 0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Instantiated ").append(loaded.size()).append(" components:\n");
+        for (LazyEngine engine : loaded) {
+            cumulativeMillis += engine.loadMillis;
+            sb.append(engine.describeLoad()).append('\n');
+        }
+        sb.append(String.format("%dms elapsed for %dms of component initialization, %dMB of heap in use",
+                elapsedMillis, cumulativeMillis, getUsedHeap() >> 20));
+        return sb.toString();
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far, or -1 if not supported by the JVM
+     */
+    private static long getAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a description running the components of pipeline in order, instantiating them concurrently
+     *
+     * @param pipeline           The pipeline to run
+     * @param threads            The maximum number of components instantiated concurrently
+     * @param deferredComponents Components to instantiate when first used, by key or (simple) implementation class name
+     * @return The description, or pipeline itself if it is not a fixed flow aggregate that can be flattened
+     * @throws ResourceInitializationException If the descriptions of components could not be resolved
+     * @throws IllegalArgumentException        If a deferred component matches no component of pipeline
+     */
+    public static AnalysisEngineDescription createEngineDescription(AnalysisEngineDescription pipeline, int threads,
+                                                                    String... deferredComponents) throws ResourceInitializationException {
+        Map<String, ResourceSpecifier> flattened = getComponents(pipeline);
+        if (flattened == null) {
+            return pipeline;
+        }
+        List<Component> components = new ArrayList<>();
+        for (Map.Entry<String, ResourceSpecifier> e : flattened.entrySet()) {
+            components.add(new Component(e.getKey(), e.getValue()));
+        }
+        List<String> unknown = new ArrayList<>();
+        for (String name : deferredComponents) {
+            if (components.stream().noneMatch(component -> component.matches(Collections.singleton(name)))) {
+                unknown.add(name);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Set<String> known = new LinkedHashSet<>();
+            for (Component component : components) {
+                known.add(component.getSimpleName());
+            }
+            throw new IllegalArgumentException("Unknown deferred components " + unknown + ", expected one of " + known);
+        }
+        ProcessingResourceMetaData merged = CasCreationUtils.mergeDelegateAnalysisEngineMetaData(pipeline,
+                UIMAFramework.newDefaultResourceManager(), null, null);
+        String pipelineId = PIPELINES.register(Collections.unmodifiableList(components));
+        return AnalysisEngineFactory.createEngineDescription(ConcurrentInitializationAnnotator.class,
+                merged.getTypeSystem(), merged.getTypePriorities(), merged.getFsIndexCollection(), null,
+                PARAM_PIPELINE_ID, pipelineId,
+                PARAM_INITIALIZATION_THREADS, threads,
+                PARAM_DEFERRED_COMPONENTS, deferredComponents);
+    }
+
+    /**
+     * Flattens nested fixed flow aggregates of a pipeline into the components they run, see the class description
+     *
+     * @param pipeline The pipeline
+     * @return The components of pipeline by unique key, in the order they are run, or null if pipeline is not a fixed
+     * flow aggregate that can be flattened
+     * @throws ResourceInitializationException If the descriptions of components could not be resolved
+     */
+    public static Map<String, ResourceSpecifier> getComponents(AnalysisEngineDescription pipeline) throws ResourceInitializationException {
+        if (!isFlattenable(pipeline)) {
+            return null;
+        }
+        Map<String, ResourceSpecifier> ret = new LinkedHashMap<>();
+        try {
+            flatten(pipeline, UIMAFramework.newDefaultResourceManager(), ret);
+        } catch (InvalidXMLException e) {
+            throw new ResourceInitializationException(e);
+        }
+        return ret;
+    }
+
+    private static void flatten(AnalysisEngineDescription aggregate, ResourceManager resMgr,
+                                Map<String, ResourceSpecifier> out) throws InvalidXMLException {
+        Map<String, ResourceSpecifier> delegates = aggregate.getDelegateAnalysisEngineSpecifiers(resMgr);
+        for (String key : ((FixedFlow) aggregate.getAnalysisEngineMetaData().getFlowConstraints()).getFixedFlow()) {
+            ResourceSpecifier delegate = delegates.get(key);
+            if (isFlattenable(delegate)) {
+                flatten((AnalysisEngineDescription) delegate, resMgr, out);
+            } else {
+                // Keys of nested aggregates may collide, but are used to name the contexts of the components
+                String uniqueKey = key;
+                for (int i = 2; out.containsKey(uniqueKey); i++) {
+                    uniqueKey = key + "-" + i;
+                }
+                out.put(uniqueKey, delegate);
+            }
+        }
+    }
+
+    /**
+     * @return Whether spec is an aggregate whose components can be run in its stead, i.e. one that only defines the
+     * order in which they are run
+     */
+    private static boolean isFlattenable(ResourceSpecifier spec) {
+        if (!(spec instanceof AnalysisEngineDescription) || ((AnalysisEngineDescription) spec).isPrimitive()) {
+            return false;
+        }
+        AnalysisEngineDescription desc = (AnalysisEngineDescription) spec;
+        AnalysisEngineMetaData meta = desc.getAnalysisEngineMetaData();
+        SofaMapping[] sofaMappings = meta.getSofaMappings();
+        ConfigurationParameterDeclarations params = meta.getConfigurationParameterDeclarations();
+        ResourceManagerConfiguration resources = desc.getResourceManagerConfiguration();
+        return meta.getFlowConstraints() instanceof FixedFlow
+                && desc.getFlowControllerDeclaration() == null
+                && (sofaMappings == null || sofaMappings.length == 0)
+                && (params == null || (params.getConfigurationParameters().length == 0 && params.getConfigurationGroups().length == 0))
+                && (resources == null || resources.getExternalResourceBindings().length == 0);
+    }
+
+    private static class Component {
+        private final String key;
+        private final ResourceSpecifier specifier;
+        private final String implementationName;
+
+        Component(String key, ResourceSpecifier specifier) {
+            this.key = key;
+            this.specifier = specifier;
+            String name = null;
+            if (specifier instanceof AnalysisEngineDescription) {
+                AnalysisEngineDescription desc = (AnalysisEngineDescription) specifier;
+                name = desc.isPrimitive() ? desc.getAnnotatorImplementationName() : desc.getMetaData().getName();
+            }
+            this.implementationName = name == null ? key : name;
+        }
+
+        boolean matches(Set<String> names) {
+            return names.contains(key) || names.contains(implementationName) || names.contains(getSimpleName());
+        }
+
+        String getSimpleName() {
+            return implementationName.substring(implementationName.lastIndexOf('.') + 1);
+        }
+    }
+
+    private static class LazyEngine {
+        private final Component component;
+        private final UimaContextAdmin context;
+        private volatile AnalysisEngine engine;
+        private long loadMillis;
+        private long allocatedBytes;
+
+        LazyEngine(Component component, UimaContextAdmin context) {
+            this.component = component;
+            this.context = context;
+        }
+
+        void load() throws ResourceInitializationException {
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            Map<String, Object> params = new HashMap<>();
+            params.put(Resource.PARAM_UIMA_CONTEXT, context);
+            engine = UIMAFramework.produceAnalysisEngine(component.specifier, params);
+            loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            allocatedBytes = allocatedBefore < 0 ? -1 : getAllocatedBytes() - allocatedBefore;
+        }
+
+        AnalysisEngine get() throws AnalysisEngineProcessException {
+            if (engine == null) { // Deferred until now
+                try {
+                    load();
+                } catch (ResourceInitializationException e) {
+                    throw new AnalysisEngineProcessException(e);
+                }
+                UIMAFramework.getLogger(ConcurrentInitializationAnnotator.class).log(Level.INFO,
+                        "Instantiated deferred component on first use: " + describeLoad().trim());
+            }
+            return engine;
+        }
+
+        String describeLoad() {
+            return String.format("  %-60s %8dms %8s", component.key, loadMillis,
+                    allocatedBytes < 0 ? "n/a" : (allocatedBytes >> 20) + "MB");
+        }
+    }
+
+    private static class InitializationThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread ret = new Thread(r, "nlp2fhir-initialization-" + count.incrementAndGet());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds objects the descriptions created within this JVM refer to by identifier, e.g. the components of the pipelines
+ * run by {@link ConcurrentInitializationAnnotator}, for as long as engines instantiated from these descriptions use
+ * them.<br>
+ * <br>
+ * An object is held from its registration until released by the last engine having acquired it: a description may
+ * therefore be instantiated any number of times, e.g. once per processing thread, but not once all engines instantiated
+ * from it have been destroyed.
+ *
+ * @param <T> The type of objects held
+ */
+final class DescriptionRegistry<T> {
+
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+
+    /**
+     * @return The identifier of value, to be acquired by engines via {@link #acquire(String)}
+     */
+    synchronized String register(T value) {
+        String id = UUID.randomUUID().toString();
+        entries.put(id, new Entry<>(value));
+        return id;
+    }
+
+    /**
+     * @return The object registered under id, which must be {@link #release(String) released} once no longer used, or
+     * null if none is registered, in which case nothing is acquired
+     */
+    synchronized T acquire(String id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        entry.references++;
+        return entry.value;
+    }
+
+    /**
+     * Releases an object acquired via {@link #acquire(String)}, discarding it once released by all engines having
+     * acquired it
+     */
+    synchronized void release(String id) {
+        Entry<T> entry = entries.get(id);
+        if (entry != null && --entry.references <= 0) {
+            entries.remove(id);
+        }
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private int references;
+
+        Entry(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import org.apache.uima.cas.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies feature structures from a view of one CAS into a view of another, shifting the offsets of copied annotations
+ * by a fixed amount, e.g. between a document and the CAS holding one of its sections. Types and features are matched by
+ * name, such that the CASes may differ in type system; feature structures of types unknown to the target, and features
+ * unknown to the target type, are dropped.<br>
+ * <br>
+ * Referenced feature structures are copied along with those referencing them, once per copier: copies may be seeded
+ * via {@link #map(FeatureStructure, FeatureStructure)} such that references to a feature structure resolve to one
+ * already present in the target rather than to a new copy. Document annotations always map to that of the target, and
+ * sofa references are never copied. Copies are not added to the target's indexes.
+ */
+final class OffsetCasCopier {
+
+    private final CAS source;
+    private final CAS target;
+    private final int offset;
+    private final LowLevelCAS sourceLowLevel;
+    private final TypeSystem targetTypeSystem;
+    // By address within the source, null if dropped
+    private final Map<Integer, FeatureStructure> copies;
+    private final Set<Integer> mapped;
+    private final Deque<FeatureStructure[]> unfilled;
+
+    /**
+     * @param source The view to copy from
+     * @param target The view to copy into
+     * @param offset The amount added to the begin and end of copied annotations
+     */
+    OffsetCasCopier(CAS source, CAS target, int offset) {
+        this.source = source;
+        this.target = target;
+        this.offset = offset;
+        this.sourceLowLevel = source.getLowLevelCAS();
+        this.targetTypeSystem = target.getTypeSystem();
+        this.copies = new HashMap<>();
+        this.mapped = new HashSet<>();
+        this.unfilled = new ArrayDeque<>();
+        map(source.getDocumentAnnotation(), target.getDocumentAnnotation());
+    }
+
+    /**
+     * Resolves references to a source feature structure to the given target feature structure instead of a copy
+     */
+    void map(FeatureStructure sourceFs, FeatureStructure targetFs) {
+        int ref = sourceLowLevel.ll_getFSRef(sourceFs);
+        copies.put(ref, targetFs);
+        mapped.add(ref);
+    }
+
+    /**
+     * Seeds this copier with the inverse of another, such that copies made by other resolve to their originals
+     *
+     * @param other A copier whose target is the source of this copier, and whose source is the target of this copier
+     */
+    void mapInverse(OffsetCasCopier other) {
+        LowLevelCAS originals = other.source.getLowLevelCAS();
+        for (Map.Entry<Integer, FeatureStructure> e : other.copies.entrySet()) {
+            if (e.getValue() != null) {
+                map(e.getValue(), originals.ll_getFSForRef(e.getKey()));
+            }
+        }
+    }
+
+    /**
+     * @return Whether the given source feature structure was mapped to one present in the target, rather than copied
+     */
+    boolean isMapped(FeatureStructure fs) {
+        return mapped.contains(sourceLowLevel.ll_getFSRef(fs));
+    }
+
+    /**
+     * @param fs A feature structure of the source view
+     * @return Its copy within the target view, or null if its type is unknown to the target
+     */
+    FeatureStructure copy(FeatureStructure fs) {
+        FeatureStructure ret = getOrCreate(fs);
+        while (!unfilled.isEmpty()) {
+            FeatureStructure[] pair = unfilled.poll();
+            fill(pair[0], pair[1]);
+        }
+        return ret;
+    }
+
+    private FeatureStructure getOrCreate(FeatureStructure fs) {
+        int ref = sourceLowLevel.ll_getFSRef(fs);
+        if (copies.containsKey(ref)) {
+            return copies.get(ref);
+        }
+        Type type = targetTypeSystem.getType(fs.getType().getName());
+        FeatureStructure ret = null;
+        if (type != null && !type.getName().equals(CAS.TYPE_NAME_SOFA)) {
+            ret = type.isArray() ? createArray(fs, type) : target.createFS(type);
+        }
+        copies.put(ref, ret);
+        if (ret != null && (!type.isArray() || ret instanceof ArrayFS)) {
+            unfilled.add(new FeatureStructure[]{fs, ret});
+        }
+        return ret;
+    }
+
+    /**
+     * Creates a copy of an array, including its elements if these are primitive
+     */
+    private FeatureStructure createArray(FeatureStructure fs, Type type) {
+        int size = ((CommonArrayFS) fs).size();
+        CommonArrayFS ret;
+        switch (type.getName()) {
+            case CAS.TYPE_NAME_FS_ARRAY:
+                return target.createArrayFS(size);
+            case CAS.TYPE_NAME_INTEGER_ARRAY:
+                ret = target.createIntArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_FLOAT_ARRAY:
+                ret = target.createFloatArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_STRING_ARRAY:
+                ret = target.createStringArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_BOOLEAN_ARRAY:
+                ret = target.createBooleanArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_BYTE_ARRAY:
+                ret = target.createByteArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_SHORT_ARRAY:
+                ret = target.createShortArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_LONG_ARRAY:
+                ret = target.createLongArrayFS(size);
+                break;
+            case CAS.TYPE_NAME_DOUBLE_ARRAY:
+                ret = target.createDoubleArrayFS(size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown array type " + type.getName());
+        }
+        ret.copyFromArray(((CommonArrayFS) fs).toStringArray(), 0, 0, size);
+        return ret;
+    }
+
+    private void fill(FeatureStructure fs, FeatureStructure copy) {
+        if (copy instanceof ArrayFS) {
+            ArrayFS elements = (ArrayFS) fs;
+            for (int i = 0; i < elements.size(); i++) {
+                FeatureStructure element = elements.get(i);
+                ((ArrayFS) copy).set(i, element == null ? null : getOrCreate(element));
+            }
+            return;
+        }
+        Type type = copy.getType();
+        for (Feature feature : fs.getType().getFeatures()) {
+            Feature targetFeature = type.getFeatureByBaseName(feature.getShortName());
+            if (targetFeature == null || feature.getName().equals(CAS.FEATURE_FULL_NAME_SOFA)) {
+                continue;
+            }
+            if (feature.getName().equals(CAS.FEATURE_FULL_NAME_BEGIN) || feature.getName().equals(CAS.FEATURE_FULL_NAME_END)) {
+                copy.setIntValue(targetFeature, fs.getIntValue(feature) + offset);
+            } else if (feature.getRange().isPrimitive()) {
+                copy.setFeatureValueFromString(targetFeature, fs.getFeatureValueAsString(feature));
+            } else {
+                FeatureStructure value = fs.getFeatureValue(feature);
+                copy.setFeatureValue(targetFeature, value == null ? null : getOrCreate(value));
+            }
+        }
+    }
+}
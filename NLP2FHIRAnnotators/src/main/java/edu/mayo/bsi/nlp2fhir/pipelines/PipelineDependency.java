@@ -8,4 +8,9 @@ import java.lang.annotation.*;
 public @interface PipelineDependency {
     SourceNLPSystem[] required();
     SourceNLPSystem[] recommended() default {};
+
+    /**
+     * @return The cTAKES stages whose output is consumed, if cTAKES is used. Stages these depend on need not be listed.
+     */
+    CTAKESStage[] stages() default {};
 }
@@ -0,0 +1,437 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import edu.mayo.bsi.nlp2fhir.nlp.Section;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.UimaContext;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.component.CasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.resource.Resource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
+import org.apache.uima.util.CasCreationUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a pipeline of sentence-local analysis engines on the sections of a document concurrently rather than on the
+ * document as a whole, such that the longest documents no longer occupy a single thread for the entirety of their
+ * processing.<br>
+ * <br>
+ * Documents are split into chunks at the beginning of each {@link Section}, as produced by the section extractor or
+ * the composition readers, with adjacent chunks combined until they reach a minimum length. Each chunk is copied into
+ * a CAS of its own along with the annotations it contains, processed by one of a pool of pipeline instances, and the
+ * feature structures added by the pipeline are then merged back into the document with their offsets remapped. Merges
+ * happen in document order on the calling thread, such that the merged result does not depend on which chunk finished
+ * first. Token and sentence numbers, which pipelines start anew within each chunk, are continued across chunks such
+ * that they follow document order as if the document had been processed as a whole. Chunk CASes share the type system
+ * of the document. Documents not split into multiple chunks, e.g. those
+ * shorter than twice the minimum length, are processed in place.<br>
+ * <br>
+ * The pipeline must therefore not relate text across section boundaries, and must only add feature structures: changes
+ * it makes to annotations present beforehand are not merged. Document-global engines, e.g. coreference resolution,
+ * are to follow this engine instead. Engines creating a single annotation covering the document, e.g. segmentation,
+ * create one per chunk. Each pipeline instance holds its own copy of the models loaded by its engines.<br>
+ * <br>
+ * Created via {@link #createEngineDescription(AnalysisEngineDescription, int, int)}. As with
+ * {@link ConcurrentInitializationAnnotator}, the pipeline description is held in memory rather than in the created
+ * description, which can therefore only be instantiated within the JVM that created it, and only until all engines
+ * instantiated from it have been destroyed.
+ */
+public class SectionParallelAnnotator extends CasAnnotator_ImplBase {
+
+    public static final String PARAM_PIPELINE_ID = "PIPELINE_ID";
+    public static final String PARAM_THREADS = "THREADS";
+    public static final String PARAM_MIN_CHUNK_LENGTH = "MIN_CHUNK_LENGTH";
+
+    private static final DescriptionRegistry<AnalysisEngineDescription> PIPELINES = new DescriptionRegistry<>();
+
+    @ConfigurationParameter(
+            name = PARAM_PIPELINE_ID,
+            description = "Identifies the pipeline to run, as registered by createEngineDescription"
+    )
+    private String pipelineId;
+
+    @ConfigurationParameter(
+            name = PARAM_THREADS,
+            description = "The number of chunks processed concurrently, each by its own pipeline instance",
+            mandatory = false,
+            defaultValue = "4"
+    )
+    private int threads;
+
+    @ConfigurationParameter(
+            name = PARAM_MIN_CHUNK_LENGTH,
+            description = "The minimum number of characters per chunk, shorter sections are combined with adjacent ones",
+            mandatory = false,
+            defaultValue = "2000"
+    )
+    private int minChunkLength;
+
+    private BlockingQueue<Worker> idle;
+    private List<Worker> workers;
+    private ExecutorService pool;
+    private boolean acquired;
+
+    @Override
+    public void initialize(UimaContext context) throws ResourceInitializationException {
+        super.initialize(context);
+        if (threads < 1) {
+            throw new ResourceInitializationException(new IllegalArgumentException("At least one thread is required"));
+        }
+        AnalysisEngineDescription pipeline = PIPELINES.acquire(pipelineId);
+        if (pipeline == null) {
+            throw new ResourceInitializationException(new IllegalStateException("Pipeline " + pipelineId
+                    + " was not created within this JVM, or all engines instantiated from it have been destroyed"));
+        }
+        acquired = true;
+        UimaContextAdmin admin = (UimaContextAdmin) context;
+        pool = Executors.newFixedThreadPool(threads, new SectionThreadFactory());
+        workers = new ArrayList<>(threads);
+        idle = new ArrayBlockingQueue<>(threads);
+        Throwable failure = null;
+        try {
+            // Instances load the same models, so instantiate them concurrently as well
+            List<Future<Worker>> loads = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                UimaContextAdmin child = admin.createChild("SectionPipeline-" + (i + 1), Collections.emptyMap());
+                loads.add(pool.submit(() -> new Worker(pipeline, child)));
+            }
+            for (Future<Worker> load : loads) {
+                try {
+                    Worker worker = load.get();
+                    workers.add(worker);
+                    idle.add(worker);
+                } catch (ExecutionException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        }
+        if (failure != null) {
+            destroy();
+            if (failure instanceof ResourceInitializationException) {
+                throw (ResourceInitializationException) failure;
+            }
+            throw new ResourceInitializationException(failure);
+        }
+    }
+
+    @Override
+    public void process(CAS cas) throws AnalysisEngineProcessException {
+        String text = cas.getDocumentText();
+        List<int[]> chunks = text == null ? Collections.emptyList() : getChunks(cas, text.length());
+        if (chunks.size() < 2) {
+            workers.get(0).engine.process(cas);
+            return;
+        }
+        List<Numbering> numberings = Numbering.create(cas.getTypeSystem());
+        Deque<Chunk> running = new ArrayDeque<>();
+        try {
+            for (int[] span : chunks) {
+                Worker worker = idle.poll();
+                if (worker == null) {
+                    // Merge the oldest chunk first, as merges happen in document order
+                    merge(cas, running.poll(), numberings);
+                    worker = idle.poll();
+                }
+                Chunk chunk = new Chunk(worker, span[0], span[1]);
+                running.add(chunk);
+                CAS chunkCas = worker.getCas(cas.getTypeSystem());
+                chunk.copyIn(cas);
+                chunk.result = pool.submit(() -> {
+                    chunk.worker.engine.process(chunkCas);
+                    return null;
+                });
+            }
+            while (!running.isEmpty()) {
+                merge(cas, running.poll(), numberings);
+            }
+        } finally {
+            // Let chunks still running on failure finish, such that their pipelines are not reused while busy
+            for (Chunk chunk : running) {
+                try {
+                    if (chunk.result != null) {
+                        chunk.result.get();
+                    }
+                } catch (ExecutionException ignored) {
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                idle.add(chunk.worker);
+            }
+        }
+    }
+
+    /**
+     * Waits for a chunk to be processed and merges its results into the document, releasing its pipeline
+     */
+    private void merge(CAS cas, Chunk chunk, List<Numbering> numberings) throws AnalysisEngineProcessException {
+        try {
+            chunk.result.get();
+            chunk.copyOut(cas, numberings);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalysisEngineProcessException) {
+                throw (AnalysisEngineProcessException) e.getCause();
+            }
+            throw new AnalysisEngineProcessException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException(e);
+        } finally {
+            idle.add(chunk.worker);
+        }
+    }
+
+    /**
+     * @return The spans of the chunks to process the document in, in document order, covering the entire document
+     */
+    private List<int[]> getChunks(CAS cas, int length) {
+        Type sectionType = cas.getTypeSystem().getType(Section.class.getName());
+        if (sectionType == null) {
+            return Collections.emptyList();
+        }
+        // Annotation indexes are sorted by begin
+        List<int[]> ret = new ArrayList<>();
+        int begin = 0;
+        for (AnnotationFS section : cas.getAnnotationIndex(sectionType)) {
+            if (section.getBegin() - begin >= minChunkLength && length - section.getBegin() >= minChunkLength) {
+                ret.add(new int[]{begin, section.getBegin()});
+                begin = section.getBegin();
+            }
+        }
+        ret.add(new int[]{begin, length});
+        return ret;
+    }
+
+    @Override
+    public void batchProcessComplete() throws AnalysisEngineProcessException {
+        super.batchProcessComplete();
+        for (Worker worker : workers) {
+            worker.engine.batchProcessComplete();
+        }
+    }
+
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+        super.collectionProcessComplete();
+        for (Worker worker : workers) {
+            worker.engine.collectionProcessComplete();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        if (workers != null) {
+            for (Worker worker : workers) {
+                worker.engine.destroy();
+            }
+            workers.clear();
+        }
+        if (acquired) {
+            PIPELINES.release(pipelineId);
+            acquired = false;
+        }
+        super.destroy();
+    }
+
+    /**
+     * Creates a description running a pipeline on the sections of each document concurrently
+     *
+     * @param pipeline       The pipeline to run, consisting of sentence-local engines only
+     * @param threads        The number of chunks processed concurrently, each by its own instance of pipeline
+     * @param minChunkLength The minimum number of characters per chunk
+     * @return The description
+     * @throws ResourceInitializationException If the type system of pipeline could not be resolved
+     */
+    public static AnalysisEngineDescription createEngineDescription(AnalysisEngineDescription pipeline, int threads,
+                                                                    int minChunkLength) throws ResourceInitializationException {
+        ProcessingResourceMetaData merged = CasCreationUtils.mergeDelegateAnalysisEngineMetaData(pipeline,
+                UIMAFramework.newDefaultResourceManager(), null, null);
+        String pipelineId = PIPELINES.register(pipeline);
+        return AnalysisEngineFactory.createEngineDescription(SectionParallelAnnotator.class,
+                merged.getTypeSystem(), merged.getTypePriorities(), merged.getFsIndexCollection(), null,
+                PARAM_PIPELINE_ID, pipelineId,
+                PARAM_THREADS, threads,
+                PARAM_MIN_CHUNK_LENGTH, minChunkLength);
+    }
+
+    private static class Worker {
+        private final AnalysisEngine engine;
+        private CAS cas;
+
+        Worker(AnalysisEngineDescription pipeline, UimaContextAdmin context) throws ResourceInitializationException {
+            Map<String, Object> params = new HashMap<>();
+            params.put(Resource.PARAM_UIMA_CONTEXT, context);
+            this.engine = UIMAFramework.produceAnalysisEngine(pipeline, params);
+        }
+
+        /**
+         * @return The CAS to process chunks in, created anew whenever the type system of documents changes
+         */
+        CAS getCas(TypeSystem typeSystem) throws AnalysisEngineProcessException {
+            if (cas == null || cas.getTypeSystem() != typeSystem) {
+                ProcessingResourceMetaData meta = engine.getProcessingResourceMetaData();
+                try {
+                    cas = CasCreationUtils.createCas(typeSystem, meta.getTypePriorities(),
+                            meta.getFsIndexCollection() == null ? null : meta.getFsIndexCollection().getFsIndexes(), null);
+                } catch (ResourceInitializationException e) {
+                    throw new AnalysisEngineProcessException(e);
+                }
+            }
+            return cas;
+        }
+    }
+
+    private static class Chunk {
+        private final Worker worker;
+        private final int begin;
+        private final int end;
+        private OffsetCasCopier in;
+        private Future<?> result;
+
+        Chunk(Worker worker, int begin, int end) {
+            this.worker = worker;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        /**
+         * Prepares the chunk's CAS with the chunk's text, the annotations within it, and all other indexed feature
+         * structures of the document, e.g. its identifier
+         */
+        void copyIn(CAS document) {
+            CAS cas = worker.cas;
+            cas.reset();
+            cas.setDocumentText(document.getDocumentText().substring(begin, end));
+            cas.setDocumentLanguage(document.getDocumentLanguage());
+            in = new OffsetCasCopier(document, cas, -begin);
+            Type annotationType = document.getTypeSystem().getType(CAS.TYPE_NAME_ANNOTATION);
+            FSIterator<FeatureStructure> it = document.getIndexRepository().getAllIndexedFS(document.getTypeSystem().getTopType());
+            while (it.hasNext()) {
+                FeatureStructure fs = it.next();
+                if (in.isMapped(fs)) { // The document annotation
+                    continue;
+                }
+                if (document.getTypeSystem().subsumes(annotationType, fs.getType())) {
+                    AnnotationFS annotation = (AnnotationFS) fs;
+                    if (annotation.getBegin() < begin || annotation.getEnd() > end) {
+                        continue;
+                    }
+                }
+                FeatureStructure copy = in.copy(fs);
+                if (copy != null) {
+                    cas.addFsToIndexes(copy);
+                }
+            }
+        }
+
+        /**
+         * Copies the feature structures added to the chunk's CAS into the document, continuing the given numberings
+         * from the chunks merged before
+         */
+        void copyOut(CAS document, List<Numbering> numberings) {
+            CAS cas = worker.cas;
+            OffsetCasCopier out = new OffsetCasCopier(cas, document, begin);
+            out.mapInverse(in);
+            FSIterator<FeatureStructure> it = cas.getIndexRepository().getAllIndexedFS(cas.getTypeSystem().getTopType());
+            while (it.hasNext()) {
+                FeatureStructure fs = it.next();
+                if (out.isMapped(fs)) { // Present in the document beforehand
+                    continue;
+                }
+                FeatureStructure copy = out.copy(fs);
+                if (copy != null) {
+                    for (Numbering numbering : numberings) {
+                        numbering.renumber(copy);
+                    }
+                    document.addFsToIndexes(copy);
+                }
+            }
+            for (Numbering numbering : numberings) {
+                numbering.endChunk();
+            }
+        }
+    }
+
+    /**
+     * Continues a numbering feature of the feature structures added by the pipeline, e.g. token numbers, across the
+     * chunks of a document: numbers within each chunk are offset by one past the highest number of the chunks merged
+     * before it
+     */
+    private static class Numbering {
+        private final TypeSystem typeSystem;
+        private final Type type;
+        private final Feature feature;
+        private int offset;
+        private int next;
+
+        private Numbering(TypeSystem typeSystem, Type type, Feature feature) {
+            this.typeSystem = typeSystem;
+            this.type = type;
+            this.feature = feature;
+        }
+
+        /**
+         * @return The numberings to continue across chunks, for token and sentence numbers, where known to the type
+         * system
+         */
+        static List<Numbering> create(TypeSystem typeSystem) {
+            List<Numbering> ret = new ArrayList<>(2);
+            add(ret, typeSystem, BaseToken.class.getName(), "tokenNumber");
+            add(ret, typeSystem, Sentence.class.getName(), "sentenceNumber");
+            return ret;
+        }
+
+        private static void add(List<Numbering> numberings, TypeSystem typeSystem, String typeName, String featureName) {
+            Type type = typeSystem.getType(typeName);
+            Feature feature = type == null ? null : type.getFeatureByBaseName(featureName);
+            if (feature != null) {
+                numberings.add(new Numbering(typeSystem, type, feature));
+            }
+        }
+
+        void renumber(FeatureStructure fs) {
+            if (typeSystem.subsumes(type, fs.getType())) {
+                int number = fs.getIntValue(feature) + offset;
+                fs.setIntValue(feature, number);
+                next = Math.max(next, number + 1);
+            }
+        }
+
+        void endChunk() {
+            offset = next;
+        }
+    }
+
+    private static class SectionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread ret = new Thread(r, "nlp2fhir-section-" + count.incrementAndGet());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+}
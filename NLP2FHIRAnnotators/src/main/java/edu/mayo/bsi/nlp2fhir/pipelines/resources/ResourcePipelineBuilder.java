@@ -7,8 +7,14 @@ import edu.mayo.bsi.nlp2fhir.transformers.CTAKESToFHIRFamilyMemberHistory;
 import edu.mayo.bsi.nlp2fhir.transformers.CTAKESToFHIRMedications;
 import edu.mayo.bsi.nlp2fhir.transformers.MedExtractorsToFHIRMedications;
 import edu.mayo.bsi.nlp2fhir.transformers.MedTimeToFHIRMedications;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.MetricsProbe;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.PipelineMetrics;
+import edu.mayo.bsi.nlp2fhir.pipelines.CTAKESStage;
+import edu.mayo.bsi.nlp2fhir.pipelines.ConcurrentInitializationAnnotator;
 import edu.mayo.bsi.nlp2fhir.pipelines.PipelineDependency;
+import edu.mayo.bsi.nlp2fhir.pipelines.SectionParallelAnnotator;
 import edu.mayo.bsi.nlp2fhir.pipelines.SourceNLPSystem;
+import edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndex;
 import edu.mayo.bsi.nlp2fhir.transformers.*;
 import org.apache.ctakes.assertion.medfacts.cleartk.*;
 import org.apache.ctakes.chunker.ae.Chunker;
@@ -30,11 +36,13 @@ import org.apache.ctakes.dictionary.lookup2.ae.DefaultJCasTermAnnotator;
 import org.apache.ctakes.lvg.ae.LvgAnnotator;
 import org.apache.ctakes.postagger.POSTagger;
 import org.apache.ctakes.relationextractor.ae.*;
+import org.apache.uima.analysis_component.AnalysisComponent;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.fit.factory.AggregateBuilder;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.ExternalResourceFactory;
 import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ExternalResourceDescription;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.CleartkAnnotator;
 import org.cleartk.ml.jar.DefaultDataWriterFactory;
@@ -46,45 +54,188 @@ import org.ohnlp.medtime.ae.MedTimeAnnotator;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.net.MalformedURLException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Builds pipelines producing FHIR resources from the output of the given source NLP systems.<br>
+ * <br>
+ * Source NLP systems and cTAKES stages are planned rather than added up front: the pipeline built contains only those
+ * that the requested resource and NLP steps declare a {@link PipelineDependency} on, such that e.g. a pipeline producing
+ * medication resources only does not run the cTAKES parsers. Steps whose dependencies are unknown (miscellaneous engines
+ * added without declared stages), as well as builders to which no steps are added at all, cause all given source NLP
+ * systems and cTAKES stages to be included. {@link #describePlan()} reports the chosen stages without building the
+ * pipeline.<br>
+ * <br>
+ * Long documents may additionally be processed section by section, see {@link #withSectionParallelism(int)}.
+ */
 public class ResourcePipelineBuilder {
 
-    private AggregateBuilder pipeline;
+    public static final int DEFAULT_MIN_SECTION_CHUNK_LENGTH = 2000;
+
     private Set<SourceNLPSystem> systems;
     private boolean isTraining;
+    private ExternalResourceDescription snomedCTClosureIndex;
+    // Engines added by resource and NLP steps, run after those of the source NLP systems
+    private List<PlannedEngine> engines;
+    // Why each system and stage is needed, by first step requiring it
+    private Map<SourceNLPSystem, String> requiredSystems;
+    private Map<CTAKESStage, String> requiredStages;
+    private boolean requiresAllStages;
+    // Zero if engines are instantiated sequentially by the aggregate itself
+    private int initializationThreads;
+    private String[] deferredComponents;
+    // Zero if documents are processed as a whole
+    private int sectionThreads;
+    private int minSectionChunkLength;
+    private boolean instrumented;
+    private boolean countAnnotations;
 
     private ResourcePipelineBuilder(boolean isTraining, SourceNLPSystem... nlpSystems) {
-        this.systems = new HashSet<>();
+        this.systems = EnumSet.noneOf(SourceNLPSystem.class);
         this.systems.addAll(Arrays.asList(nlpSystems));
-        this.pipeline = new AggregateBuilder();
         this.isTraining = isTraining;
-        try {
-            initializeSourceSystems();
-        } catch (Exception e) {
-            // Wrap runtime exception, errors should not occur assuming all resources present
-            // but we don't want to ignore if one does occur
-            throw new RuntimeException(e);
+        this.engines = new ArrayList<>();
+        this.requiredSystems = new EnumMap<>(SourceNLPSystem.class);
+        this.requiredStages = new EnumMap<>(CTAKESStage.class);
+        this.requiresAllStages = false;
+        this.initializationThreads = 0;
+        this.deferredComponents = new String[0];
+        this.sectionThreads = 0;
+        this.minSectionChunkLength = DEFAULT_MIN_SECTION_CHUNK_LENGTH;
+        this.instrumented = true;
+    }
+
+    private void addSourceSystems(AggregateBuilder pipeline) throws Exception {
+        Set<SourceNLPSystem> planned = getPlannedSystems();
+        if (sectionThreads > 0) {
+            addSectionParallelSourceSystems(pipeline, planned);
+            return;
+        }
+        if (planned.contains(SourceNLPSystem.MEDXN)) {
+            pipeline.add(createMedXNDescription());
+        }
+        if (planned.contains(SourceNLPSystem.MEDTIME)) {
+            pipeline.add(createMedTimeDescription());
+        }
+        if (planned.contains(SourceNLPSystem.CTAKES)) {
+            for (CTAKESStage stage : getPlannedStages()) {
+                addCTAKESStage(pipeline, stage);
+            }
         }
     }
 
-    private void initializeSourceSystems() throws Exception {
-        if (systems.contains(SourceNLPSystem.MEDXN)) {
-            pipeline.add(AnalysisEngineFactory.createEngineDescription("medxndesc.aggregate_analysis_engine.MedXNAggregateTAE"));
+    /**
+     * Adds the source NLP systems in the same order as when processing documents as a whole, with the section-local
+     * ones, MedXN and cTAKES stages, run per section by {@link SectionParallelAnnotator}s. MedTime anchors relative
+     * times to dates found elsewhere in the document and is therefore run on the whole document, in between MedXN and
+     * the cTAKES stages, which are thus run by separate section-parallel engines. cTAKES stages not run per section
+     * follow.
+     */
+    private void addSectionParallelSourceSystems(AggregateBuilder pipeline, Set<SourceNLPSystem> planned) throws Exception {
+        AggregateBuilder local = new AggregateBuilder();
+        boolean empty = true;
+        if (planned.contains(SourceNLPSystem.MEDXN)) {
+            local.add(createMedXNDescription());
+            empty = false;
         }
-        if (systems.contains(SourceNLPSystem.MEDTIME)) {
-            pipeline.add(AnalysisEngineFactory.createEngineDescription(MedTimeAnnotator.class,
-                    "Date", true, "Duration", true, "Time", true, "Set", true, "reportFormat", "i2b2", "Resource_dir", "resources/medtimeresources"
-            ));
+        if (planned.contains(SourceNLPSystem.MEDTIME)) {
+            if (!empty) {
+                addSectionParallel(pipeline, local);
+                local = new AggregateBuilder();
+                empty = true;
+            }
+            pipeline.add(createMedTimeDescription());
         }
-        if (systems.contains(SourceNLPSystem.CTAKES)) {
-            initializeCTAKESPipeline();
+        Set<CTAKESStage> localStages = getSectionParallelStages();
+        for (CTAKESStage stage : localStages) {
+            addCTAKESStage(local, stage);
+            empty = false;
+        }
+        if (!empty) {
+            addSectionParallel(pipeline, local);
+        }
+        for (CTAKESStage stage : getPlannedStages()) {
+            if (!localStages.contains(stage)) {
+                addCTAKESStage(pipeline, stage);
+            }
+        }
+    }
+
+    private void addSectionParallel(AggregateBuilder pipeline, AggregateBuilder local) throws ResourceInitializationException {
+        AnalysisEngineDescription desc = local.createAggregateDescription();
+        if (instrumented) {
+            desc = MetricsProbe.instrument(desc, countAnnotations);
         }
+        pipeline.add(SectionParallelAnnotator.createEngineDescription(desc, sectionThreads, minSectionChunkLength));
     }
 
-    private void initializeCTAKESPipeline() throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
+    private static AnalysisEngineDescription createMedXNDescription() throws Exception {
+        return AnalysisEngineFactory.createEngineDescription("medxndesc.aggregate_analysis_engine.MedXNAggregateTAE");
+    }
+
+    private static AnalysisEngineDescription createMedTimeDescription() throws ResourceInitializationException {
+        return AnalysisEngineFactory.createEngineDescription(MedTimeAnnotator.class,
+                "Date", true, "Duration", true, "Time", true, "Set", true, "reportFormat", "i2b2", "Resource_dir", "resources/medtimeresources"
+        );
+    }
+
+    /**
+     * @return The planned cTAKES stages run per section, i.e. those that are section-local and depend on no stage that
+     * is not. Empty unless processing documents per section.
+     */
+    private Set<CTAKESStage> getSectionParallelStages() {
+        Set<CTAKESStage> ret = EnumSet.noneOf(CTAKESStage.class);
+        if (sectionThreads <= 0) {
+            return ret;
+        }
+        for (CTAKESStage stage : getPlannedStages()) {
+            if (stage.isSectionLocal() && ret.containsAll(stage.getDependencies())) {
+                ret.add(stage);
+            }
+        }
+        return ret;
+    }
+
+    private void addCTAKESStage(AggregateBuilder pipeline, CTAKESStage stage) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
+        switch (stage) {
+            case BASE_TOKENS:
+                addBaseTokenStage(pipeline);
+                break;
+            case DICTIONARY:
+                addDictionaryStage(pipeline);
+                break;
+            case CONSTITUENCY_PARSE:
+                pipeline.add(ConstituencyParser.createAnnotatorDescription());
+                break;
+            case COREFERENCE:
+                addCoreferenceStage(pipeline);
+                break;
+            case CHUNKING:
+                pipeline.add(ChunkAdjuster.createAnnotatorDescription(new String[]{"NP", "NP"}, 1));
+                pipeline.add(ChunkAdjuster.createAnnotatorDescription(new String[]{"NP", "PP", "NP"}, 2));
+                pipeline.add(Chunker.createAnnotatorDescription());
+                break;
+            case DEPENDENCY_PARSE:
+                pipeline.add(ClearNLPDependencyParserAE.createAnnotatorDescription());
+                break;
+            case SEMANTIC_ROLES:
+                pipeline.add(AnalysisEngineFactory.createEngineDescription(ClearNLPSemanticRoleLabelerAE.class));
+                break;
+            case CONTEXT_ASSERTION:
+                addContextAssertionStage(pipeline);
+                break;
+            case RELATIONS:
+                addRelationStage(pipeline);
+                break;
+            case ASSERTION:
+                addAssertionStage(pipeline);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cTAKES stage " + stage);
+        }
+    }
+
+    private void addBaseTokenStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
         // -- Base Token Processing
         pipeline.add(SimpleSegmentAnnotator.createAnnotatorDescription());
         pipeline.add(SentenceDetector.createAnnotatorDescription());
@@ -92,6 +243,9 @@ public class ResourcePipelineBuilder {
         pipeline.add(LvgAnnotator.createAnnotatorDescription());
         pipeline.add(ContextDependentTokenizerAnnotator.createAnnotatorDescription());
         pipeline.add(POSTagger.createAnnotatorDescription());
+    }
+
+    private void addDictionaryStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
         // -- Bundled Dictionary
 //        if (!this.isTraining) { // If we're training mentions already loaded in via gold standard
             pipeline.add(AnalysisEngineFactory.createEngineDescription(DefaultJCasTermAnnotator.class,
@@ -112,19 +266,17 @@ public class ResourcePipelineBuilder {
 
 //        }
 //        pipeline.add(AnalysisEngineFactory.createEngineDescription(SideEffectAnnotator.class));
-        // -- Coreference Processing
-        pipeline.add(ConstituencyParser.createAnnotatorDescription());
+    }
+
+    private void addCoreferenceStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
+        // -- Coreference Processing, following the constituency parser
         pipeline.add(AnalysisEngineFactory.createEngineDescription(DeterministicMarkableAnnotator.class));
         pipeline.add(AnalysisEngineFactory.createEngineDescription(MarkableHeadTreeCreator.class));
         pipeline.add(MarkableSalienceAnnotator.createAnnotatorDescription("/org/apache/ctakes/temporal/ae/salience/model.jar"));
         pipeline.add(MentionClusterCoreferenceAnnotator.createAnnotatorDescription("/org/apache/ctakes/coreference/models/mention-cluster/model.jar"));
-        // -- Chunking
-        pipeline.add(ChunkAdjuster.createAnnotatorDescription(new String[]{"NP", "NP"}, 1));
-        pipeline.add(ChunkAdjuster.createAnnotatorDescription(new String[]{"NP", "PP", "NP"}, 2));
-        pipeline.add(Chunker.createAnnotatorDescription());
-        // -- Dependency Parsing
-        pipeline.add(ClearNLPDependencyParserAE.createAnnotatorDescription());
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(ClearNLPSemanticRoleLabelerAE.class));
+    }
+
+    private void addContextAssertionStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
 //        // -- Status and Negation
 //        pipeline.add(AnalysisEngineFactory.createEngineDescription(ContextAnnotator.class,
 //                ContextAnnotator.MAX_LEFT_SCOPE_SIZE_PARAM, 10,
@@ -141,6 +293,9 @@ public class ResourcePipelineBuilder {
 //                "PrintErrors", false
 //        ));
         pipeline.add(AnalysisEngineFactory.createEngineDescription(ConTexTAssertionAnnotator.class));
+    }
+
+    private void addRelationStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
         // -- Relations
         pipeline.add(AnalysisEngineFactory.createEngineDescription(ModifierExtractorAnnotator.class,
                 "classifierJarPath", "/org/apache/ctakes/relationextractor/models/modifier_extractor/model.jar",
@@ -159,6 +314,9 @@ public class ResourcePipelineBuilder {
                 DefaultDataWriterFactory.PARAM_DATA_WRITER_CLASS_NAME, LibSvmStringOutcomeDataWriter.class.getName(),
                 DirectoryDataWriterFactory.PARAM_OUTPUT_DIRECTORY, new File("models_location"),
                 CleartkAnnotator.PARAM_IS_TRAINING, false));
+    }
+
+    private void addAssertionStage(AggregateBuilder pipeline) throws MalformedURLException, ResourceInitializationException, FileNotFoundException {
         // -- Assertions/Attributes
         pipeline.add(PolarityCleartkAnalysisEngine.createAnnotatorDescription());
         pipeline.add(UncertaintyCleartkAnalysisEngine.createAnnotatorDescription());
@@ -173,8 +331,26 @@ public class ResourcePipelineBuilder {
      */
 
     public ResourcePipelineBuilder addGenericRelationExtractor(Class<? extends Annotation> arg1, Class<? extends Annotation> arg2, String relName, String modelJarPath) throws ResourceInitializationException {
+        return addGenericRelationExtractor(arg1, arg2, relName, modelJarPath, GenericFHIRElementRelationExtractor.CandidateScope.DOCUMENT, -1);
+    }
+
+    /**
+     * Adds a relation extractor considering only argument pairs within the given scope and token distance of each other
+     *
+     * @param scope            The span both arguments of a candidate pair must lie within
+     * @param maxTokenDistance The maximum number of tokens between the arguments of a candidate pair, or -1 for no limit
+     * @return The builder instance
+     */
+    @PipelineDependency(
+            required = {SourceNLPSystem.CTAKES},
+            stages = {CTAKESStage.DICTIONARY, CTAKESStage.CONSTITUENCY_PARSE, CTAKESStage.DEPENDENCY_PARSE}
+    )
+    public ResourcePipelineBuilder addGenericRelationExtractor(Class<? extends Annotation> arg1, Class<? extends Annotation> arg2, String relName, String modelJarPath,
+                                                               GenericFHIRElementRelationExtractor.CandidateScope scope, int maxTokenDistance) throws ResourceInitializationException {
         // TODO validate not after resources are added to pipeline
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(GenericFHIRElementRelationExtractor.class,
+        require("addGenericRelationExtractor", Class.class, Class.class, String.class, String.class,
+                GenericFHIRElementRelationExtractor.CandidateScope.class, int.class);
+        addEngine(AnalysisEngineFactory.createEngineDescription(GenericFHIRElementRelationExtractor.class,
                 LocationOfRelationExtractorAnnotator.PARAM_PROBABILITY_OF_KEEPING_A_NEGATIVE_EXAMPLE, 0.5f,
                 "classifierJarPath", modelJarPath,
                 DefaultDataWriterFactory.PARAM_DATA_WRITER_CLASS_NAME, LibSvmBooleanOutcomeDataWriter.class.getName(),
@@ -182,12 +358,128 @@ public class ResourcePipelineBuilder {
                 CleartkAnnotator.PARAM_IS_TRAINING, this.isTraining,
                 GenericFHIRElementRelationExtractor.RELATION_NAME_PARAM, relName,
                 GenericFHIRElementRelationExtractor.RELATION_ARG1_CLASS_PARAM, arg1,
-                GenericFHIRElementRelationExtractor.RELATION_ARG2_CLASS_PARAM, arg2));
+                GenericFHIRElementRelationExtractor.RELATION_ARG2_CLASS_PARAM, arg2,
+                GenericFHIRElementRelationExtractor.CANDIDATE_SCOPE_PARAM, scope.name(),
+                GenericFHIRElementRelationExtractor.MAX_TOKEN_DISTANCE_PARAM, maxTokenDistance));
         return this;
     }
 
+    /**
+     * Adds an engine whose dependencies are unknown, such that all source NLP systems and cTAKES stages are included in
+     * the pipeline
+     *
+     * @return The builder instance
+     */
     public ResourcePipelineBuilder addMiscellaneousPipelineEngine(AnalysisEngineDescription desc) {
-        pipeline.add(desc);
+        requiresAllStages = true;
+        addEngine(desc);
+        return this;
+    }
+
+    /**
+     * Adds an engine consuming the output of the given cTAKES stages only
+     *
+     * @param stages The cTAKES stages the engine depends on, if cTAKES is used
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder addMiscellaneousPipelineEngine(AnalysisEngineDescription desc, CTAKESStage... stages) {
+        String step = "addMiscellaneousPipelineEngine(" + getEngineName(desc) + ")";
+        if (stages.length > 0) {
+            requiredSystems.putIfAbsent(SourceNLPSystem.CTAKES, "required by " + step);
+        }
+        for (CTAKESStage stage : stages) {
+            requireStage(stage, "required by " + step);
+        }
+        addEngine(desc);
+        return this;
+    }
+
+    /**
+     * Uses a precomputed SNOMED CT closure index for hierarchy checks in resource pipelines added after this call,
+     * falling back to the UMLS database for any hierarchy root not contained in the index
+     *
+     * @param indexFile An index file as produced by {@link edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndexBuilder}
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withSnomedCTClosureIndex(File indexFile) {
+        this.snomedCTClosureIndex = ExternalResourceFactory.createExternalResourceDescription(
+                SnomedCTClosureIndex.class, indexFile);
+        return this;
+    }
+
+    /**
+     * Instantiates the analysis engines of the built pipeline concurrently rather than one after another, see
+     * {@link ConcurrentInitializationAnnotator}
+     *
+     * @param threads            The maximum number of engines instantiated concurrently
+     * @param deferredComponents Engines to instantiate when they first process a document rather than on pipeline
+     *                           initialization, by (simple) implementation class name. {@link #build()} fails if any
+     *                           matches no engine of the built pipeline.
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withConcurrentInitialization(int threads, String... deferredComponents) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one initialization thread is required");
+        }
+        this.initializationThreads = threads;
+        this.deferredComponents = deferredComponents;
+        return this;
+    }
+
+    /**
+     * Processes the sections of documents concurrently through the section-local source NLP systems and cTAKES stages,
+     * as by {@link #withSectionParallelism(int, int)} with sections combined into chunks of at least
+     * {@link #DEFAULT_MIN_SECTION_CHUNK_LENGTH} characters
+     *
+     * @param threads The number of sections processed concurrently per document
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withSectionParallelism(int threads) {
+        return withSectionParallelism(threads, DEFAULT_MIN_SECTION_CHUNK_LENGTH);
+    }
+
+    /**
+     * Processes the sections of documents concurrently through the section-local source NLP systems (MedXN) and cTAKES
+     * stages, see {@link SectionParallelAnnotator}. Document-global systems (MedTime) and stages (coreference) are run
+     * on the merged document, in the same order relative to the section-local ones as when processing documents as a
+     * whole, followed by the resource and NLP steps. Each thread holds its own instance of the section-local engines.
+     *
+     * @param threads        The number of sections processed concurrently per document
+     * @param minChunkLength The minimum number of characters processed as a unit, shorter sections being combined
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withSectionParallelism(int threads, int minChunkLength) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one section thread is required");
+        }
+        this.sectionThreads = threads;
+        this.minSectionChunkLength = minChunkLength;
+        return this;
+    }
+
+    /**
+     * Whether to record the timing and throughput of each analysis engine of the built pipeline within the
+     * {@link PipelineMetrics}, enabled by default
+     *
+     * @param instrumented Whether to instrument the pipeline, see {@link MetricsProbe}
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withInstrumentation(boolean instrumented) {
+        return withInstrumentation(instrumented, false);
+    }
+
+    /**
+     * Whether to record the timing and throughput of each analysis engine of the built pipeline within the
+     * {@link PipelineMetrics}, and optionally the annotations each engine adds
+     *
+     * @param instrumented     Whether to instrument the pipeline, see {@link MetricsProbe}
+     * @param countAnnotations Whether to also count the annotations of each type added by each engine, which costs a
+     *                         pass over the annotation indexes between engines
+     * @return The builder instance
+     */
+    public ResourcePipelineBuilder withInstrumentation(boolean instrumented, boolean countAnnotations) {
+        this.instrumented = instrumented;
+        this.countAnnotations = countAnnotations;
         return this;
     }
 
@@ -203,17 +495,19 @@ public class ResourcePipelineBuilder {
      */
     @PipelineDependency(
             required = {SourceNLPSystem.MEDXN, SourceNLPSystem.MEDTIME},
-            recommended = {SourceNLPSystem.CTAKES}
+            recommended = {SourceNLPSystem.CTAKES},
+            stages = {CTAKESStage.DICTIONARY}
     )
     public ResourcePipelineBuilder addMedicationListResources() throws ResourceInitializationException {
+        require("addMedicationListResources");
         // - MedXN and Resource Initialization Annotator
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(MedExtractorsToFHIRMedications.class));
+        addEngine(AnalysisEngineFactory.createEngineDescription(MedExtractorsToFHIRMedications.class));
         // - MedTime effective as of annotator
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(MedTimeToFHIRMedications.class));
+        addEngine(AnalysisEngineFactory.createEngineDescription(MedTimeToFHIRMedications.class));
         // -- Snomed NER for Dosage Instructions
         if (systems.contains(SourceNLPSystem.CTAKES)) {
             try {
-                pipeline.add(AnalysisEngineFactory.createEngineDescription(DefaultJCasTermAnnotator.class,
+                addEngine(AnalysisEngineFactory.createEngineDescription(DefaultJCasTermAnnotator.class,
                         "windowAnnotations", "org.apache.ctakes.typesystem.type.textspan.Sentence",
                         "DictionaryDescriptor", ExternalResourceFactory.createExternalResourceDescription(
                                 FileResourceImpl.class,
@@ -224,8 +518,8 @@ public class ResourcePipelineBuilder {
                 var2.printStackTrace();
                 throw new ResourceInitializationException(var2);
             }
-            pipeline.add(AnalysisEngineFactory.createEngineDescription(CTAKESToFHIRMedications.class));
-            pipeline.add(AnalysisEngineFactory.createEngineDescription(SnomedCTDictionaryLookupExtractor.class));
+            addEngine(createTerminologyEngineDescription(CTAKESToFHIRMedications.class));
+            addEngine(createTerminologyEngineDescription(SnomedCTDictionaryLookupExtractor.class));
         }
         return this;
     }
@@ -237,10 +531,12 @@ public class ResourcePipelineBuilder {
      * @return The builder instance that the problem list pipeline was added to
      */
     @PipelineDependency(
-            required = {SourceNLPSystem.CTAKES}
+            required = {SourceNLPSystem.CTAKES},
+            stages = {CTAKESStage.DICTIONARY, CTAKESStage.CONTEXT_ASSERTION, CTAKESStage.RELATIONS, CTAKESStage.ASSERTION}
     )
     public ResourcePipelineBuilder addProblemListResources() throws ResourceInitializationException {
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(CTAKESToFHIRProblemList.class));
+        require("addProblemListResources");
+        addEngine(createTerminologyEngineDescription(CTAKESToFHIRProblemList.class));
         return this;
     }
 
@@ -251,17 +547,178 @@ public class ResourcePipelineBuilder {
      * @return The builder instance that the problem list pipeline was added to
      */
     @PipelineDependency(
-            required = {SourceNLPSystem.CTAKES}
+            required = {SourceNLPSystem.CTAKES},
+            stages = {CTAKESStage.DICTIONARY, CTAKESStage.CONTEXT_ASSERTION, CTAKESStage.RELATIONS, CTAKESStage.ASSERTION}
     )
     public ResourcePipelineBuilder addFamilyHistoryResources() throws ResourceInitializationException {
-        pipeline.add(AnalysisEngineFactory.createEngineDescription(CTAKESToFHIRFamilyMemberHistory.class));
+        require("addFamilyHistoryResources");
+        addEngine(createTerminologyEngineDescription(CTAKESToFHIRFamilyMemberHistory.class));
         return this;
     }
 
+    /**
+     * Creates a description for an engine performing SNOMED CT hierarchy checks, binding the closure index if one was
+     * set via {@link #withSnomedCTClosureIndex(File)}
+     */
+    private AnalysisEngineDescription createTerminologyEngineDescription(Class<? extends AnalysisComponent> clazz) throws ResourceInitializationException {
+        if (snomedCTClosureIndex == null) {
+            return AnalysisEngineFactory.createEngineDescription(clazz);
+        }
+        return AnalysisEngineFactory.createEngineDescription(clazz, SnomedCTClosureIndex.RESOURCE_KEY, snomedCTClosureIndex);
+    }
+
+    /*
+     * Pipeline Planning
+     */
+
+    /**
+     * Records the dependencies declared by the {@link PipelineDependency} annotation of a step of this builder
+     *
+     * @param step           The name of the annotated method
+     * @param parameterTypes The parameter types of the annotated method
+     */
+    private void require(String step, Class<?>... parameterTypes) {
+        PipelineDependency dependency;
+        try {
+            dependency = ResourcePipelineBuilder.class.getMethod(step, parameterTypes).getAnnotation(PipelineDependency.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        for (SourceNLPSystem system : dependency.required()) {
+            requiredSystems.putIfAbsent(system, "required by " + step);
+        }
+        for (SourceNLPSystem system : dependency.recommended()) {
+            requiredSystems.putIfAbsent(system, "recommended by " + step);
+        }
+        for (CTAKESStage stage : dependency.stages()) {
+            requireStage(stage, "required by " + step);
+        }
+    }
+
+    private void requireStage(CTAKESStage stage, String reason) {
+        if (requiredStages.containsKey(stage)) {
+            return;
+        }
+        requiredStages.put(stage, reason);
+        for (CTAKESStage dependency : stage.getDependencies()) {
+            requireStage(dependency, "needed by " + stage);
+        }
+    }
+
+    private void addEngine(AnalysisEngineDescription desc) {
+        engines.add(new PlannedEngine(getEngineName(desc), desc));
+    }
+
+    private static String getEngineName(AnalysisEngineDescription desc) {
+        String name = desc.getAnnotatorImplementationName();
+        if (name == null) { // Aggregate
+            name = desc.getMetaData().getName();
+        }
+        return name == null ? "unnamed engine" : name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @return Whether the pipeline must include everything, as the dependencies of its steps are unknown
+     */
+    private boolean isPlanningAll() {
+        return requiresAllStages || engines.isEmpty();
+    }
+
+    /**
+     * @return The source NLP systems to be included in the pipeline, in the order they are run
+     */
+    public Set<SourceNLPSystem> getPlannedSystems() {
+        Set<SourceNLPSystem> ret = EnumSet.noneOf(SourceNLPSystem.class);
+        ret.addAll(systems);
+        if (!isPlanningAll()) {
+            ret.retainAll(requiredSystems.keySet());
+        }
+        return ret;
+    }
+
+    /**
+     * @return The cTAKES stages to be included in the pipeline, in the order they are run. Empty if cTAKES is not
+     * included.
+     */
+    public Set<CTAKESStage> getPlannedStages() {
+        Set<CTAKESStage> ret = EnumSet.noneOf(CTAKESStage.class);
+        if (getPlannedSystems().contains(SourceNLPSystem.CTAKES)) {
+            ret.addAll(isPlanningAll() ? EnumSet.allOf(CTAKESStage.class) : requiredStages.keySet());
+        }
+        return ret;
+    }
+
+    /**
+     * Describes the pipeline that would be built by {@link #build()} without building it: which source NLP systems and
+     * cTAKES stages are included and why, the dependencies between stages, and the engines run thereafter
+     *
+     * @return A human readable report of the planned pipeline
+     */
+    public String describePlan() {
+        Set<SourceNLPSystem> plannedSystems = getPlannedSystems();
+        Set<CTAKESStage> plannedStages = getPlannedStages();
+        String allReason = requiresAllStages ? "included as an engine with undeclared dependencies was added" : "included as no steps were added";
+        StringBuilder sb = new StringBuilder();
+        sb.append("Source NLP systems:\n");
+        for (SourceNLPSystem system : SourceNLPSystem.values()) {
+            String reason;
+            if (plannedSystems.contains(system)) {
+                reason = isPlanningAll() ? allReason : requiredSystems.get(system);
+            } else if (requiredSystems.containsKey(system)) {
+                reason = "NOT AVAILABLE, " + requiredSystems.get(system);
+            } else {
+                reason = systems.contains(system) ? "skipped, not required by any step" : "not available";
+            }
+            sb.append(String.format("  [%s] %-20s %s\n", plannedSystems.contains(system) ? "x" : " ", system, reason));
+        }
+        sb.append("cTAKES stages:\n");
+        for (CTAKESStage stage : CTAKESStage.values()) {
+            String reason;
+            if (plannedStages.contains(stage)) {
+                reason = isPlanningAll() ? allReason : requiredStages.get(stage);
+            } else {
+                reason = plannedSystems.contains(SourceNLPSystem.CTAKES) ? "skipped, not required by any step" : "skipped, cTAKES not included";
+            }
+            sb.append(String.format("  [%s] %-20s %s\n", plannedStages.contains(stage) ? "x" : " ", stage, reason));
+            sb.append(String.format("      %s", stage.getDescription()));
+            if (!stage.getDependencies().isEmpty()) {
+                sb.append(", after ").append(stage.getDependencies());
+            }
+            sb.append('\n');
+        }
+        if (sectionThreads > 0) {
+            List<Object> perSection = new ArrayList<>();
+            if (plannedSystems.contains(SourceNLPSystem.MEDXN)) {
+                perSection.add(SourceNLPSystem.MEDXN);
+            }
+            perSection.addAll(getSectionParallelStages());
+            sb.append(String.format("Run per section on %d threads, in chunks of at least %d characters:\n  %s\n",
+                    sectionThreads, minSectionChunkLength, perSection));
+        }
+        sb.append("Followed by:\n");
+        for (PlannedEngine engine : engines) {
+            sb.append("  ").append(engine.name).append('\n');
+        }
+        return sb.toString();
+    }
 
     public AnalysisEngineDescription build() {
         try {
-            return pipeline.createAggregateDescription();
+            AggregateBuilder pipeline = new AggregateBuilder();
+            addSourceSystems(pipeline);
+            for (PlannedEngine engine : engines) {
+                pipeline.add(engine.description);
+            }
+            AnalysisEngineDescription ret = pipeline.createAggregateDescription();
+            if (instrumented) {
+                ret = MetricsProbe.instrument(ret, countAnnotations);
+            }
+            if (initializationThreads > 0) {
+                ret = ConcurrentInitializationAnnotator.createEngineDescription(ret, initializationThreads, deferredComponents);
+            }
+            return ret;
+        } catch (IllegalArgumentException e) {
+            throw e; // Unknown deferred components
         } catch (Exception e) {
             throw new RuntimeException(e); // Errors should not be possible, so don't force explicit handling
         }
@@ -275,4 +732,14 @@ public class ResourcePipelineBuilder {
         return new ResourcePipelineBuilder(train, nlpSystems);
     }
 
+    private static class PlannedEngine {
+        private final String name;
+        private final AnalysisEngineDescription description;
+
+        PlannedEngine(String name, AnalysisEngineDescription description) {
+            this.name = name;
+            this.description = description;
+        }
+    }
+
 }
@@ -2,8 +2,12 @@ package edu.mayo.bsi.nlp2fhir.pipelines.serialization;
 
 //import edu.mayo.bsi.nlp2fhir.anafora.serialization.CAS2AnaforaAnalysisEngine;
 //import edu.mayo.bsi.nlp2fhir.knowtator.KnowtatorFHIROntologyClassdefGenerator;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.MetricsProbe;
+import edu.mayo.bsi.nlp2fhir.performance.metrics.PipelineMetrics;
 import edu.mayo.bsi.nlp2fhir.postprocessors.CAS2FHIRJSONPostProcessor;
+import edu.mayo.bsi.nlp2fhir.postprocessors.CasFileFormat;
 import edu.mayo.bsi.nlp2fhir.postprocessors.DocumentTextContentPostProcessor;
+import edu.mayo.bsi.nlp2fhir.postprocessors.OutputManifest;
 //import edu.mayo.bsi.nlp2fhir.postprocessors.FHIR2KnowtatorPostProcessor;
 import edu.mayo.bsi.nlp2fhir.postprocessors.XMIWriterPostProcessor;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
@@ -13,13 +17,26 @@ import org.apache.uima.resource.ResourceInitializationException;
 
 import java.io.File;
 
+/**
+ * Builds pipelines writing processed documents to an output directory. All outputs record the documents they have
+ * written within an {@link OutputManifest} in that directory ({@link #MANIFEST_FILE_NAME}), such that an interrupted
+ * run can be resumed by passing the manifest to the reader.
+ */
 public class SerializationPipelineBuilder {
+    public static final String MANIFEST_FILE_NAME = "manifest.tsv";
+
     private AggregateBuilder pipeline;
     private File outputDirectory;
+    private File manifest;
+    private boolean resume;
+    private boolean instrumented;
 
-    private SerializationPipelineBuilder(File outputDirectory) {
+    private SerializationPipelineBuilder(File outputDirectory, boolean resume) {
         this.outputDirectory = outputDirectory;
+        this.manifest = new File(outputDirectory, MANIFEST_FILE_NAME);
+        this.resume = resume;
         this.pipeline = new AggregateBuilder();
+        this.instrumented = true;
         if (!outputDirectory.exists()) {
             if (!outputDirectory.mkdirs()) {
                 throw new IllegalArgumentException("Could not create output directory!");
@@ -28,12 +45,42 @@ public class SerializationPipelineBuilder {
     }
 
     public static SerializationPipelineBuilder newBuilder(File outputDir) {
-        return new SerializationPipelineBuilder(outputDir);
+        return newBuilder(outputDir, false);
+    }
+
+    /**
+     * @param outputDir The directory to write to
+     * @param resume    Whether a previous, interrupted run into the same directory is resumed, in which case the
+     *                  manifest and outputs shared by all documents (NDJSON files) are appended to rather than replaced
+     * @return The builder instance
+     */
+    public static SerializationPipelineBuilder newBuilder(File outputDir, boolean resume) {
+        return new SerializationPipelineBuilder(outputDir, resume);
+    }
+
+    /**
+     * @return The manifest written by the built pipeline
+     */
+    public File getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Whether to record the timing and throughput of each serializer of the built pipeline within the
+     * {@link PipelineMetrics}, enabled by default
+     *
+     * @param instrumented Whether to instrument the pipeline, see {@link MetricsProbe}
+     * @return The builder instance
+     */
+    public SerializationPipelineBuilder withInstrumentation(boolean instrumented) {
+        this.instrumented = instrumented;
+        return this;
     }
 
     public AnalysisEngineDescription build() {
         try {
-            return pipeline.createAggregateDescription();
+            AnalysisEngineDescription ret = pipeline.createAggregateDescription();
+            return instrumented ? MetricsProbe.instrument(ret) : ret;
         } catch (ResourceInitializationException e) {
             throw new RuntimeException(e);
         }
@@ -80,6 +127,19 @@ public class SerializationPipelineBuilder {
 //    }
 
     public SerializationPipelineBuilder addFHIRJSONOutput() {
+        return addFHIRJSONOutput(false, false, true);
+    }
+
+    /**
+     * Adds FHIR JSON resource and bundle output
+     *
+     * @param streamBundle Whether to stream resources into the bundle as they are produced rather than building it in
+     *                     memory first. Bundle entries other than the composition are then not sorted.
+     * @param ndjson       Whether to write individual resources to one NDJSON file per resource type rather than one
+     *                     file per resource
+     * @param prettyPrint  Whether to pretty print JSON output
+     */
+    public SerializationPipelineBuilder addFHIRJSONOutput(boolean streamBundle, boolean ndjson, boolean prettyPrint) {
         File out = new File(outputDirectory, "fhir_resources");
         if (!out.exists()) {
             if (!out.mkdirs()) {
@@ -88,7 +148,12 @@ public class SerializationPipelineBuilder {
         }
         try {
             pipeline.add(AnalysisEngineFactory.createEngineDescription(CAS2FHIRJSONPostProcessor.class,
-                    CAS2FHIRJSONPostProcessor.PARAM_OUTPUT_DIR, out));
+                    CAS2FHIRJSONPostProcessor.PARAM_OUTPUT_DIR, out,
+                    CAS2FHIRJSONPostProcessor.PARAM_STREAM_BUNDLE, streamBundle,
+                    CAS2FHIRJSONPostProcessor.PARAM_NDJSON, ndjson,
+                    CAS2FHIRJSONPostProcessor.PARAM_PRETTY_PRINT, prettyPrint,
+                    CAS2FHIRJSONPostProcessor.PARAM_MANIFEST, manifest,
+                    CAS2FHIRJSONPostProcessor.PARAM_APPEND, resume));
             return this;
         } catch (ResourceInitializationException e) {
             throw new RuntimeException(e);
@@ -96,9 +161,25 @@ public class SerializationPipelineBuilder {
     }
 
     public SerializationPipelineBuilder addXMIOutput() {
+        return addXMIOutput(CasFileFormat.XMI, false);
+    }
+
+    /**
+     * Saves processed CASes, e.g. for later reprocessing via {@link edu.mayo.bsi.nlp2fhir.preprocessors.FHIRXMIFileSystemReader}
+     *
+     * @param format   The format to save CASes in. {@link CasFileFormat#BINARY} CASes are written to a "bcas" rather than
+     *                 "xmi" subdirectory
+     * @param compress Whether to additionally GZIP compress saved CASes
+     * @return The builder instance
+     */
+    public SerializationPipelineBuilder addXMIOutput(CasFileFormat format, boolean compress) {
         try {
             pipeline.add(AnalysisEngineFactory.createEngineDescription(XMIWriterPostProcessor.class,
-                    XMIWriterPostProcessor.PARAM_OUTPUT_DIR, outputDirectory // Don't need to create an output subdir, consumer does for us already
+                    XMIWriterPostProcessor.PARAM_OUTPUT_DIR, outputDirectory, // Don't need to create an output subdir, consumer does for us already
+                    XMIWriterPostProcessor.PARAM_FORMAT, format.name(),
+                    XMIWriterPostProcessor.PARAM_COMPRESS, compress,
+                    XMIWriterPostProcessor.PARAM_MANIFEST, manifest,
+                    XMIWriterPostProcessor.PARAM_APPEND, resume
             ));
             return this;
         } catch (ResourceInitializationException e) {
@@ -115,7 +196,9 @@ public class SerializationPipelineBuilder {
         }
         try {
             pipeline.add(AnalysisEngineFactory.createEngineDescription(DocumentTextContentPostProcessor.class,
-                    DocumentTextContentPostProcessor.PARAM_OUTPUT_DIR, out));
+                    DocumentTextContentPostProcessor.PARAM_OUTPUT_DIR, out,
+                    DocumentTextContentPostProcessor.PARAM_MANIFEST, manifest,
+                    DocumentTextContentPostProcessor.PARAM_APPEND, resume));
             return this;
         } catch (ResourceInitializationException e) {
             throw new RuntimeException(e);
@@ -1,6 +1,9 @@
 package edu.mayo.bsi.nlp2fhir.postprocessors;
 
+import ca.uhn.fhir.parser.IParser;
+import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.NDJSONResourceWriter;
 import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.ResourceProducers;
+import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.StreamingBundleWriter;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasConsumer_ImplBase;
@@ -12,11 +15,35 @@ import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.dstu3.model.Composition;
 import org.hl7.fhir.dstu3.model.Resource;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
 
+/**
+ * Produces FHIR resources from a CAS and writes them out as JSON, both individually (one file per resource within a
+ * directory per resource type) and as a document bundle per CAS (in the ResourceBundle directory).<br>
+ * <br>
+ * Optionally:
+ * <ul>
+ * <li>{@link #PARAM_STREAM_BUNDLE}: writes each resource into the bundle as it is produced instead of building and
+ * sorting an in-memory {@link Bundle}. The composition remains the first entry, other entries are in CAS index
+ * order. The bundle is written to a temporary file that replaces the bundle file once complete, such that a failure
+ * midway through a document does not leave a truncated bundle behind.</li>
+ * <li>{@link #PARAM_NDJSON}: writes individual resources to one newline delimited JSON file per resource type
+ * instead of one file per resource. Resources are then only encoded compactly, streamed bundles embed that
+ * encoding.</li>
+ * <li>{@link #PARAM_PRETTY_PRINT}: whether to pretty print resource and bundle files, default true</li>
+ * <li>{@link #PARAM_MANIFEST}: an {@link OutputManifest} recording each document once its bundle (and NDJSON output)
+ * has been written, with the checksum of the bundle</li>
+ * <li>{@link #PARAM_APPEND}: whether to append to existing NDJSON files and manifest rather than replacing them, when
+ * resuming an interrupted run</li>
+ * </ul>
+ */
 public class CAS2FHIRJSONPostProcessor extends JCasConsumer_ImplBase {
 
     @SuppressWarnings("WeakerAccess")
@@ -25,99 +52,297 @@ public class CAS2FHIRJSONPostProcessor extends JCasConsumer_ImplBase {
     )
     public File outDir;
     public static final String PARAM_OUTPUT_DIR = "OUTPUT_DIR";
-    private File compositionsDir;
+
+    @ConfigurationParameter(
+            name = "STREAM_BUNDLE",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean streamBundle;
+    public static final String PARAM_STREAM_BUNDLE = "STREAM_BUNDLE";
+
+    @ConfigurationParameter(
+            name = "NDJSON",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean ndjson;
+    public static final String PARAM_NDJSON = "NDJSON";
+
+    @ConfigurationParameter(
+            name = "PRETTY_PRINT",
+            mandatory = false,
+            defaultValue = "true"
+    )
+    private boolean prettyPrint;
+    public static final String PARAM_PRETTY_PRINT = "PRETTY_PRINT";
+
+    @ConfigurationParameter(
+            name = "MANIFEST",
+            mandatory = false
+    )
+    private File manifestFile;
+    public static final String PARAM_MANIFEST = "MANIFEST";
+
+    @ConfigurationParameter(
+            name = "APPEND",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean append;
+    public static final String PARAM_APPEND = "APPEND";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private IParser parser;
+    private IParser ndjsonParser;
+    private NDJSONResourceWriter ndjsonWriter;
+    private Map<String, File> typeDirs;
     private List<Resource> producedResources;
+    private OutputManifest manifest;
+    private String consumerName;
 
     @Override
     public void initialize(UimaContext context) throws ResourceInitializationException {
         super.initialize(context);
-        compositionsDir = new File(outDir, "Composition");
-        if (!compositionsDir.exists()) {
-            if (!compositionsDir.mkdirs()) {
+        parser = ResourceProducers.FHIRCONTEXT.newJsonParser().setPrettyPrint(prettyPrint);
+        ndjsonParser = prettyPrint ? ResourceProducers.FHIRCONTEXT.newJsonParser().setPrettyPrint(false) : parser;
+        typeDirs = new HashMap<>();
+        if (ndjson) {
+            if (!outDir.exists() && !outDir.mkdirs()) {
+                throw new IllegalStateException("Could not create NDJSON write directory!");
+            }
+            try {
+                ndjsonWriter = NDJSONResourceWriter.open(outDir, append);
+            } catch (IOException e) {
+                throw new ResourceInitializationException(e);
+            }
+        } else {
+            try {
+                getTypeDir("Composition");
+            } catch (AnalysisEngineProcessException e) {
                 throw new IllegalStateException("Could not create composition write directory!");
             }
         }
-        producedResources = new LinkedList<>();
+        producedResources = new ArrayList<>();
+        if (manifestFile != null) {
+            consumerName = getClass().getSimpleName() + "/" + outDir.getName();
+            try {
+                manifest = OutputManifest.open(manifestFile, append);
+                manifest.register(consumerName);
+            } catch (IOException e) {
+                throw new ResourceInitializationException(e);
+            }
+        }
     }
+
     @Override
     public void process(JCas cas) throws AnalysisEngineProcessException {
         // Start by producing a composition
         Composition composition = ResourceProducers.COMPOSITION.produce(cas).get(0); // Should always be 1 TODO validate this
-        producedResources.add(composition);
-        File outFile = new File(compositionsDir, composition.getId().split("/")[1] + ".json");
-        if (!outFile.getParentFile().exists()) {
-            if (!outFile.getParentFile().mkdirs()) {
-                throw new IllegalStateException("Could not create parent directory");
+        String documentId = composition.getId().split("/")[1];
+        if (streamBundle) {
+            File bundleFile = new File(getTypeDir("ResourceBundle"), documentId + ".json");
+            File partialFile = new File(bundleFile.getPath() + ".tmp");
+            CRC32 checksum = new CRC32();
+            boolean completed = false;
+            try {
+                try (StreamingBundleWriter bundle = new StreamingBundleWriter(newWriter(partialFile, checksum),
+                        UUID.randomUUID().toString(), Bundle.BundleType.DOCUMENT, prettyPrint)) {
+                    bundle.addEntry(composition.getId(), writeResource(composition, "Composition", documentId));
+                    for (Resource outRes : produceResources(cas, documentId)) {
+                        String[] parsed = outRes.getId().split("/");
+                        bundle.addEntry(outRes.getId(), writeResource(outRes, parsed[0], parsed[1]));
+                    }
+                }
+                Files.move(partialFile.toPath(), bundleFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                completed = true;
+            } catch (IOException e) {
+                throw new AnalysisEngineProcessException(e);
+            } finally {
+                if (!completed && partialFile.exists() && !partialFile.delete()) {
+                    partialFile.deleteOnExit();
+                }
             }
+            recordCompleted(documentId, bundleFile, checksum);
+            return;
         }
-        try (FileWriter out = new FileWriter(outFile)) {
-            ResourceProducers.FHIRPARSER.encodeResourceToWriter(composition, out);
-            out.flush();
+        try {
+            producedResources.add(composition);
+            writeResource(composition, "Composition", documentId);
+            // Produce resources
+            for (Resource outRes : produceResources(cas, documentId)) {
+                producedResources.add(outRes);
+                String[] parsed = outRes.getId().split("/");
+                writeResource(outRes, parsed[0], parsed[1]);
+            }
+            Bundle bundle = new Bundle();
+            bundle.setId("Bundle/" + UUID.randomUUID().toString());
+            producedResources.sort((o1, o2) -> {
+                // Always have Composition first
+                if (o1 instanceof Composition) {
+                    if (o2 instanceof Composition) {
+                        return o1.getId().compareTo(o2.getId());
+                    } else {
+                        return -1;
+                    }
+                } else if (o2 instanceof Composition) {
+                    // Implies o1 is not a composition
+                    return 1;
+                } else {
+                    return o1.getId().compareTo(o2.getId());
+                }
+            });
+            for (Resource resource : producedResources) {
+                Bundle.BundleEntryComponent entry = bundle.addEntry();
+                entry.setResource(resource);
+                entry.setFullUrl(resource.getId());
+            }
+            bundle.setType(Bundle.BundleType.DOCUMENT);
+            File bundleFile = new File(getTypeDir("ResourceBundle"), documentId + ".json");
+            CRC32 checksum = new CRC32();
+            try (Writer out = newWriter(bundleFile, checksum)) {
+                parser.encodeResourceToWriter(bundle, out);
+            }
+            recordCompleted(documentId, bundleFile, checksum);
         } catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
+        } finally {
+            producedResources.clear();
         }
-        // Produce resources
-        for (org.hl7.fhir.Resource resource : JCasUtil.select(cas, org.hl7.fhir.Resource.class)) {
-            if (resource instanceof org.hl7.fhir.Composition) {
-                continue;
-            }
-            Resource outRes = ResourceProducers.parseResourceFromCasAnn(composition.getId().split("/")[1], resource);
-            if (outRes == null) { // Unsupported resource output
-                continue;
-            }
-            producedResources.add(outRes);
-            String id = outRes.getId();
-            String[] parsed = id.split("/");
-            String type = parsed[0];
-            File typeOutDir = new File(outDir, type);
-            if (!typeOutDir.exists()) {
-                if (!typeOutDir.mkdirs()) {
-                    throw new AnalysisEngineProcessException(new RuntimeException("Could not create out dir for " + type));
-                }
-            }
-            try (FileWriter out = new FileWriter(new File(typeOutDir, parsed[1] + ".json"))) {
-                ResourceProducers.FHIRPARSER.encodeResourceToWriter(outRes, out);
-                out.flush();
+    }
+
+    @Override
+    public void collectionProcessComplete() throws AnalysisEngineProcessException {
+        super.collectionProcessComplete();
+        if (ndjsonWriter != null) {
+            try {
+                ndjsonWriter.flush();
             } catch (IOException e) {
                 throw new AnalysisEngineProcessException(e);
             }
         }
-        Bundle bundle = new Bundle();
-        bundle.setId("Bundle/" + UUID.randomUUID().toString());
-        producedResources.sort((o1, o2) -> {
-            // Always have Composition first
-            if (o1 instanceof Composition) {
-                if (o2 instanceof Composition) {
-                    return o1.getId().compareTo(o2.getId());
-                } else {
-                    return -1;
-                }
-            } else if (o2 instanceof Composition) {
-                // Implies o1 is not a composition
-                return 1;
-            } else {
-                return o1.getId().compareTo(o2.getId());
-            }
-        });
-        for (Resource resource : producedResources) {
-            Bundle.BundleEntryComponent entry = bundle.addEntry();
-            entry.setResource(resource);
-            entry.setFullUrl(resource.getId());
+    }
+
+    @Override
+    public void destroy() {
+        if (ndjsonWriter != null) {
+            try {
+                ndjsonWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            ndjsonWriter = null;
         }
-        bundle.setType(Bundle.BundleType.DOCUMENT);
-        File typeOutDir = new File(outDir, "ResourceBundle");
-        if (!typeOutDir.exists()) {
-            if (!typeOutDir.mkdirs()) {
-                throw new AnalysisEngineProcessException(new RuntimeException("Could not create out dir for Resource Bundles"));
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+            manifest = null;
+        }
+        super.destroy();
+    }
+
+    /**
+     * Records a document within the manifest, if any, once all of its output has been flushed
+     */
+    private void recordCompleted(String documentId, File bundleFile, CRC32 checksum) throws AnalysisEngineProcessException {
+        if (manifest == null) {
+            return;
         }
-        try (FileWriter out = new FileWriter(new File(typeOutDir, composition.getId().split("/")[1] + ".json"))) {
-            ResourceProducers.FHIRPARSER.encodeResourceToWriter(bundle, out);
-            out.flush();
+        try {
+            if (ndjsonWriter != null) {
+                ndjsonWriter.flush();
+            }
+            manifest.record(documentId, consumerName, checksum.getValue(), bundleFile);
         } catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
         }
-        producedResources.clear();
     }
 
+    /**
+     * Lazily produces the non-composition resources contained within the CAS
+     */
+    private Iterable<Resource> produceResources(JCas cas, String documentId) {
+        Iterator<org.hl7.fhir.Resource> annotations = JCasUtil.select(cas, org.hl7.fhir.Resource.class).iterator();
+        return () -> new Iterator<Resource>() {
+            private Resource next = advance();
+
+            private Resource advance() {
+                while (annotations.hasNext()) {
+                    org.hl7.fhir.Resource resource = annotations.next();
+                    if (resource instanceof org.hl7.fhir.Composition) {
+                        continue;
+                    }
+                    Resource outRes = ResourceProducers.parseResourceFromCasAnn(documentId, resource);
+                    if (outRes != null) { // Otherwise unsupported resource output
+                        return outRes;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Resource next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Resource ret = next;
+                next = advance();
+                return ret;
+            }
+        };
+    }
+
+    /**
+     * Writes a resource to its individual output, i.e. either its own file or the NDJSON file for its type. Resources
+     * are encoded once, compactly if written as NDJSON.
+     *
+     * @return The resource as encoded for its individual output
+     */
+    private String writeResource(Resource resource, String type, String id) throws IOException, AnalysisEngineProcessException {
+        String encoded = (ndjson ? ndjsonParser : parser).encodeResourceToString(resource);
+        if (ndjson) {
+            ndjsonWriter.write(type, encoded);
+        } else {
+            try (Writer out = newWriter(new File(getTypeDir(type), id + ".json"))) {
+                out.write(encoded);
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * @return The output directory for the given resource type, created on first use
+     */
+    private File getTypeDir(String type) throws AnalysisEngineProcessException {
+        File dir = typeDirs.get(type);
+        if (dir == null) {
+            dir = new File(outDir, type);
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new AnalysisEngineProcessException(new RuntimeException("Could not create out dir for " + type));
+            }
+            typeDirs.put(type, dir);
+        }
+        return dir;
+    }
+
+    private static Writer newWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @return A writer updating checksum with the bytes written
+     */
+    private static Writer newWriter(File file, Checksum checksum) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(new FileOutputStream(file), checksum),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
 }
@@ -0,0 +1,154 @@
+package edu.mayo.bsi.nlp2fhir.postprocessors;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.XMLSerializer;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The formats in which CASes are saved by {@link XMIWriterPostProcessor} and read by the XMI readers. Files of either
+ * format may additionally be GZIP compressed, as denoted by a trailing ".gz" extension.
+ */
+public enum CasFileFormat {
+    /**
+     * XML Metadata Interchange, readable by other tools but verbose and slow to parse
+     */
+    XMI(".xmi") {
+        @Override
+        void serialize(CAS cas, OutputStream out) throws IOException {
+            try {
+                new XmiCasSerializer(cas.getTypeSystem()).serialize(cas, new XMLSerializer(out, false).getContentHandler());
+            } catch (SAXException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        void deserialize(InputStream in, CAS cas, boolean lenient) throws IOException {
+            try {
+                XmiCasDeserializer.deserialize(in, cas, lenient);
+            } catch (SAXException e) {
+                throw new IOException(e);
+            }
+        }
+    },
+    /**
+     * UIMA compressed binary (form 6) with the type system embedded as a header, such that CASes can be read into CASes
+     * of a differing type system, with features and types absent from the latter dropped
+     */
+    BINARY(".bcas") {
+        @Override
+        void serialize(CAS cas, OutputStream out) throws IOException {
+            CasIOUtils.save(cas, out, SerialFormat.COMPRESSED_FILTERED_TSI);
+        }
+
+        @Override
+        void deserialize(InputStream in, CAS cas, boolean lenient) throws IOException {
+            CasIOUtils.load(in, cas);
+        }
+    };
+
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
+    private final String extension;
+
+    CasFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract void serialize(CAS cas, OutputStream out) throws IOException;
+
+    /**
+     * @param lenient Whether to ignore types and features unknown to the type system of cas, otherwise failing
+     */
+    abstract void deserialize(InputStream in, CAS cas, boolean lenient) throws IOException;
+
+    /**
+     * Saves a CAS in this format
+     *
+     * @param cas      The CAS to save
+     * @param file     The file to save to, expected to carry the extension of this format (and ".gz" if compressed)
+     * @param compress Whether to GZIP compress the file
+     * @return The CRC32 checksum of the written file
+     * @throws IOException If the CAS could not be saved
+     */
+    public long write(CAS cas, File file, boolean compress) throws IOException {
+        CRC32 checksum = new CRC32();
+        OutputStream fileOut = new CheckedOutputStream(new FileOutputStream(file), checksum);
+        try (OutputStream out = compress
+                ? new GZIPOutputStream(fileOut, 65536)
+                : new BufferedOutputStream(fileOut, 65536)) {
+            serialize(cas, out);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * @param documentName The name of the document, without extensions
+     * @param compress     Whether the file is GZIP compressed
+     * @return The name of the file a document is saved to in this format
+     */
+    public String getFileName(String documentName, boolean compress) {
+        return documentName + extension + (compress ? COMPRESSED_EXTENSION : "");
+    }
+
+    /**
+     * Loads a CAS saved in any of the formats, by the extension of the given file
+     *
+     * @param file    The file to load from
+     * @param cas     The CAS to load into
+     * @param lenient Whether to ignore types and features unknown to the type system of cas, otherwise failing. CASes
+     *                saved as {@link #BINARY} are always read leniently.
+     * @throws IOException If the file is not a saved CAS, or could not be read
+     */
+    public static void read(File file, CAS cas, boolean lenient) throws IOException {
+        CasFileFormat format = forFile(file);
+        if (format == null) {
+            throw new IOException(file + " is not a saved CAS");
+        }
+        try (InputStream in = file.getName().endsWith(COMPRESSED_EXTENSION)
+                ? new GZIPInputStream(new FileInputStream(file), 65536)
+                : new BufferedInputStream(new FileInputStream(file), 65536)) {
+            format.deserialize(in, cas, lenient);
+        }
+    }
+
+    /**
+     * @return The format of the given file by its extension, or null if it is not a saved CAS
+     */
+    public static CasFileFormat forFile(File file) {
+        String name = stripCompressedExtension(file.getName());
+        for (CasFileFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The name of the document saved within the given file, i.e. its name without format extensions
+     */
+    public static String getDocumentName(File file) {
+        String name = stripCompressedExtension(file.getName());
+        CasFileFormat format = forFile(file);
+        return format == null ? name : name.substring(0, name.length() - format.extension.length());
+    }
+
+    private static String stripCompressedExtension(String name) {
+        return name.endsWith(COMPRESSED_EXTENSION) ? name.substring(0, name.length() - COMPRESSED_EXTENSION.length()) : name;
+    }
+}
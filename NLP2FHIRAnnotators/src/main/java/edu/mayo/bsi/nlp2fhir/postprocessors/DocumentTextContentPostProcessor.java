@@ -1,15 +1,18 @@
 package edu.mayo.bsi.nlp2fhir.postprocessors;
 
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class DocumentTextContentPostProcessor extends JCasAnnotator_ImplBase {
     @SuppressWarnings("WeakerAccess")
@@ -20,14 +23,67 @@ public class DocumentTextContentPostProcessor extends JCasAnnotator_ImplBase {
 
     public static final String PARAM_OUTPUT_DIR = "OUTPUT_DIR";
 
+    @ConfigurationParameter(
+            name = "MANIFEST",
+            mandatory = false
+    )
+    private File manifestFile;
+    public static final String PARAM_MANIFEST = "MANIFEST";
+
+    @ConfigurationParameter(
+            name = "APPEND",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean append;
+    public static final String PARAM_APPEND = "APPEND";
+
+    private OutputManifest manifest;
+    private String consumerName;
+
+    @Override
+    public void initialize(UimaContext context) throws ResourceInitializationException {
+        super.initialize(context);
+        if (manifestFile != null) {
+            consumerName = getClass().getSimpleName() + "/" + outDir.getName();
+            try {
+                manifest = OutputManifest.open(manifestFile, append);
+                manifest.register(consumerName);
+            } catch (IOException e) {
+                throw new ResourceInitializationException(e);
+            }
+        }
+    }
+
     @Override
     public void process(JCas cas) throws AnalysisEngineProcessException {
-        try {
-            FileWriter out = new FileWriter(new File(outDir, JCasUtil.selectSingle(cas, DocumentID.class).getDocumentID()));
+        String documentId = JCasUtil.selectSingle(cas, DocumentID.class).getDocumentID();
+        File file = new File(outDir, documentId);
+        CRC32 checksum = new CRC32();
+        try (Writer out = new OutputStreamWriter(new CheckedOutputStream(new FileOutputStream(file), checksum), Charset.defaultCharset())) {
             out.write(cas.getDocumentText());
-            out.flush();
         } catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
         }
+        if (manifest != null) {
+            try {
+                manifest.record(documentId, consumerName, checksum.getValue(), file);
+            } catch (IOException e) {
+                throw new AnalysisEngineProcessException(e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            manifest = null;
+        }
+        super.destroy();
     }
 }
@@ -0,0 +1,245 @@
+package edu.mayo.bsi.nlp2fhir.postprocessors;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * An append-only log of the documents each serialization consumer has completely written, such that an interrupted run
+ * can be resumed by skipping those documents. Each consumer registers itself once, and records each document once its
+ * output has been flushed, along with the CRC32 checksum of that output:
+ * <pre>
+ * #consumer    XMIWriterPostProcessor/xmi
+ * doc1.txt     XMIWriterPostProcessor/xmi    1c291ca3    xmi/doc1.txt.xmi
+ * </pre>
+ * A document is complete once it has been recorded by every consumer ever registered within the manifest. Lines are
+ * tab separated and flushed as they are written; an incomplete last line, as left by a killed run, is ignored and
+ * truncated once the manifest is next appended to. A run that is not resumed replaces the manifest.<br>
+ * <br>
+ * Consumers and replicas writing to the same manifest share one instance, see {@link #open(File, boolean)}.
+ */
+public class OutputManifest implements Closeable {
+    private static final Map<File, OutputManifest> OPEN_MANIFESTS = new HashMap<>();
+    private static final String CONSUMER_PREFIX = "#consumer";
+
+    private final File file;
+    private final Set<String> consumers;
+    private Writer out;
+    private int references;
+
+    private OutputManifest(File file) {
+        this.file = file;
+        this.consumers = new HashSet<>();
+        this.references = 0;
+    }
+
+    /**
+     * @param file   The manifest file
+     * @param append Whether to append to the manifest if it exists, when resuming the run that wrote it, rather than
+     *               replacing it. Only applies to the first consumer opening the manifest, later consumers share its
+     *               instance until closed by all of them.
+     * @return The manifest, which must be closed once no longer in use
+     * @throws IOException If the manifest could not be read or opened for writing
+     */
+    public static OutputManifest open(File file, boolean append) throws IOException {
+        File key = file.getCanonicalFile();
+        synchronized (OPEN_MANIFESTS) {
+            OutputManifest manifest = OPEN_MANIFESTS.get(key);
+            if (manifest == null) {
+                manifest = new OutputManifest(key);
+                File parent = key.getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Could not create directory for manifest " + key);
+                }
+                if (append) {
+                    manifest.consumers.addAll(read(key).consumers);
+                    truncateIncompleteLine(key);
+                }
+                manifest.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(key, append), StandardCharsets.UTF_8));
+                OPEN_MANIFESTS.put(key, manifest);
+            }
+            manifest.references++;
+            return manifest;
+        }
+    }
+
+    /**
+     * Registers a consumer, such that documents are only complete once recorded by it. Consumers register on
+     * initialization, i.e. before recording any document.
+     *
+     * @param consumer A name unique to the consumer and its output location
+     */
+    public synchronized void register(String consumer) throws IOException {
+        if (consumers.add(consumer)) {
+            writeLine(CONSUMER_PREFIX, consumer);
+        }
+    }
+
+    /**
+     * Records a document as completely written by a consumer. Its output must have been flushed beforehand.
+     *
+     * @param documentId The document's {@link org.apache.ctakes.typesystem.type.structured.DocumentID}
+     * @param consumer   The consumer, as registered
+     * @param checksum   The CRC32 checksum of the written output
+     * @param output     The written output, relative to the manifest's directory where possible
+     */
+    public synchronized void record(String documentId, String consumer, long checksum, File output) throws IOException {
+        writeLine(documentId, consumer, String.format("%08x", checksum), relativize(output));
+    }
+
+    private String relativize(File output) {
+        String dir = file.getParentFile() == null ? "" : file.getParentFile().getAbsolutePath() + File.separator;
+        String path = output.getAbsolutePath();
+        return path.startsWith(dir) ? path.substring(dir.length()) : path;
+    }
+
+    private void writeLine(String... columns) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (String column : columns) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            escape(line, column);
+        }
+        line.append('\n');
+        out.write(line.toString());
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN_MANIFESTS) {
+            if (--references > 0) {
+                return;
+            }
+            OPEN_MANIFESTS.remove(file);
+        }
+        synchronized (this) {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the documents to skip when resuming an interrupted run
+     *
+     * @param file A manifest file, or null
+     * @return The ids of the documents completely written by all registered consumers, empty if there is no manifest
+     * @throws IOException If the manifest could not be read
+     */
+    public static Set<String> readCompletedDocuments(File file) throws IOException {
+        if (file == null || !file.exists()) {
+            return Collections.emptySet();
+        }
+        Contents contents = read(file);
+        Set<String> ret = new HashSet<>();
+        for (Map.Entry<String, Set<String>> e : contents.documents.entrySet()) {
+            if (e.getValue().containsAll(contents.consumers)) {
+                ret.add(e.getKey());
+            }
+        }
+        UIMAFramework.getLogger(OutputManifest.class).log(Level.INFO,
+                "Resuming from " + file + ", skipping " + ret.size() + " completed documents");
+        return ret;
+    }
+
+    private static Contents read(File file) throws IOException {
+        Contents ret = new Contents();
+        if (!file.exists()) {
+            return ret;
+        }
+        boolean complete = getCompleteLength(file) == file.length();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            String next = in.readLine();
+            while ((line = next) != null) {
+                next = in.readLine();
+                if (next == null && !complete) {
+                    break;
+                }
+                String[] columns = line.split("\t", -1);
+                if (columns.length == 2 && columns[0].equals(CONSUMER_PREFIX)) {
+                    ret.consumers.add(unescape(columns[1]));
+                } else if (columns.length == 4) {
+                    ret.documents.computeIfAbsent(unescape(columns[0]), k -> new HashSet<>()).add(unescape(columns[1]));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The length of the file up to and including its last line break
+     */
+    private static long getCompleteLength(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long pos = raf.length();
+            while (pos > 0) {
+                raf.seek(pos - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                pos--;
+            }
+            return pos;
+        }
+    }
+
+    private static void truncateIncompleteLine(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long length = getCompleteLength(file);
+        if (length != file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(length);
+            }
+        }
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Contents {
+        private final Set<String> consumers = new HashSet<>();
+        private final Map<String, Set<String>> documents = new HashMap<>();
+    }
+}
@@ -3,20 +3,18 @@ package edu.mayo.bsi.nlp2fhir.postprocessors;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
-import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.TypeSystemUtil;
-import org.apache.uima.util.XMLSerializer;
-import org.xml.sax.SAXException;
 
 import java.io.*;
 
 /**
- * Converts CAS to xml format and writes to disk
+ * Converts CAS to xml format and writes to disk. CASes may instead be written in a compact binary format, and/or GZIP
+ * compressed, see {@link CasFileFormat}.
  */
 public class XMIWriterPostProcessor extends JCasAnnotator_ImplBase {
 
@@ -26,6 +24,44 @@ public class XMIWriterPostProcessor extends JCasAnnotator_ImplBase {
             name = "OUTPUT_DIR"
     )
     private File outputDir;
+
+    public static final String PARAM_FORMAT = "FORMAT";
+    @ConfigurationParameter(
+            name = PARAM_FORMAT,
+            description = "The format CASes are written in, XMI or BINARY",
+            mandatory = false,
+            defaultValue = "XMI"
+    )
+    private CasFileFormat format;
+
+    public static final String PARAM_COMPRESS = "COMPRESS";
+    @ConfigurationParameter(
+            name = PARAM_COMPRESS,
+            description = "Whether to GZIP compress written CASes",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean compress;
+
+    public static final String PARAM_MANIFEST = "MANIFEST";
+    @ConfigurationParameter(
+            name = PARAM_MANIFEST,
+            description = "An output manifest recording each document once written, see OutputManifest",
+            mandatory = false
+    )
+    private File manifestFile;
+
+    public static final String PARAM_APPEND = "APPEND";
+    @ConfigurationParameter(
+            name = PARAM_APPEND,
+            description = "Whether to append to an existing manifest rather than replacing it, when resuming an interrupted run",
+            mandatory = false,
+            defaultValue = "false"
+    )
+    private boolean append;
+    private OutputManifest manifest;
+    private String consumerName;
+
     private File outputSubDir = null;
     private File typeSystemFile = null;
     private boolean typeSystemFlag = false;
@@ -33,19 +69,28 @@ public class XMIWriterPostProcessor extends JCasAnnotator_ImplBase {
     @Override
     public void initialize(UimaContext context) throws ResourceInitializationException {
         super.initialize(context);
-        if (outputSubDir == null) outputSubDir = new File(outputDir, "xmi");
+        if (outputSubDir == null) outputSubDir = new File(outputDir, format == CasFileFormat.XMI ? "xmi" : "bcas");
         if (!outputSubDir.exists()) {
             if (!outputSubDir.mkdirs()) {
                 throw new ResourceInitializationException();
             }
         }
         typeSystemFile = new File(this.outputDir, "TypeSystem.xml");
+        if (manifestFile != null) {
+            consumerName = getClass().getSimpleName() + "/" + outputSubDir.getName();
+            try {
+                manifest = OutputManifest.open(manifestFile, append);
+                manifest.register(consumerName);
+            } catch (IOException e) {
+                throw new ResourceInitializationException(e);
+            }
+        }
     }
 
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         DocumentID id = JCasUtil.selectSingle(jCas, DocumentID.class);
-        File out = new File(outputSubDir, id.getDocumentID() + ".xmi");
+        File out = new File(outputSubDir, format.getFileName(id.getDocumentID(), compress));
         if (!out.getParentFile().exists()) {
             if (!out.getParentFile().mkdirs()) {
                 throw new IllegalStateException("Could not make parent dir");
@@ -68,20 +113,26 @@ public class XMIWriterPostProcessor extends JCasAnnotator_ImplBase {
                 }
             }
         }
-        FileOutputStream fs = null;
         try {
-            fs = new FileOutputStream(out);
-            XmiCasSerializer serializer = new XmiCasSerializer(jCas.getTypeSystem());
-            XMLSerializer xmlSerializer = new XMLSerializer(fs, false);
-            serializer.serialize(jCas.getCas(), xmlSerializer.getContentHandler());
-        } catch (FileNotFoundException | SAXException e) {
+            long checksum = format.write(jCas.getCas(), out, compress);
+            if (manifest != null) {
+                manifest.record(id.getDocumentID(), consumerName, checksum, out);
+            }
+        } catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
-        } finally {
-            if (fs != null) {
-                try {
-                    fs.close();
-                } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+            manifest = null;
         }
+        super.destroy();
     }
 }
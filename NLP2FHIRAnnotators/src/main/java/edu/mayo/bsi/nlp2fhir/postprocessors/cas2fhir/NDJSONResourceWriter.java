@@ -0,0 +1,103 @@
+package edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes resources as newline delimited JSON, one <code>&lt;ResourceType&gt;.ndjson</code> file per resource type as
+ * in FHIR bulk data exports.<br>
+ * <br>
+ * Instances are shared by all consumers writing to the same directory (e.g. the replicas of a multi-threaded
+ * pipeline), obtained via {@link #open(File)}, and closed once every consumer that opened them has closed them.
+ * Each resource is written as a single, uninterrupted line.
+ */
+public class NDJSONResourceWriter implements Closeable {
+    private static final Map<File, NDJSONResourceWriter> OPEN_WRITERS = new HashMap<>();
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File outDir;
+    private final Map<String, Writer> writers;
+    private final boolean append;
+    private int references;
+
+    private NDJSONResourceWriter(File outDir, boolean append) {
+        this.outDir = outDir;
+        this.writers = new HashMap<>();
+        this.append = append;
+        this.references = 0;
+    }
+
+    /**
+     * @param outDir The directory to write resource files to
+     * @return The writer for the given directory, which must be closed once no longer in use
+     * @throws IOException If the directory could not be resolved
+     */
+    public static NDJSONResourceWriter open(File outDir) throws IOException {
+        return open(outDir, false);
+    }
+
+    /**
+     * @param outDir The directory to write resource files to
+     * @param append Whether to append to existing resource files, e.g. when resuming an interrupted run, rather than
+     *               replacing them. Decided by the first opener of a directory.
+     * @return The writer for the given directory, which must be closed once no longer in use
+     * @throws IOException If the directory could not be resolved
+     */
+    public static NDJSONResourceWriter open(File outDir, boolean append) throws IOException {
+        File key = outDir.getCanonicalFile();
+        synchronized (OPEN_WRITERS) {
+            NDJSONResourceWriter writer = OPEN_WRITERS.computeIfAbsent(key, dir -> new NDJSONResourceWriter(dir, append));
+            writer.references++;
+            return writer;
+        }
+    }
+
+    /**
+     * @param type            The resource type
+     * @param encodedResource The resource, encoded as JSON without line breaks
+     * @throws IOException If the resource could not be written
+     */
+    public synchronized void write(String type, String encodedResource) throws IOException {
+        Writer out = writers.get(type);
+        if (out == null) {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(outDir, type + ".ndjson"), append), StandardCharsets.UTF_8), BUFFER_SIZE);
+            writers.put(type, out);
+        }
+        out.write(encodedResource);
+        out.write('\n');
+    }
+
+    public synchronized void flush() throws IOException {
+        for (Writer out : writers.values()) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN_WRITERS) {
+            if (--references > 0) {
+                flush();
+                return;
+            }
+            OPEN_WRITERS.remove(outDir);
+        }
+        synchronized (this) {
+            IOException ex = null;
+            for (Writer out : writers.values()) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+            writers.clear();
+            if (ex != null) {
+                throw ex;
+            }
+        }
+    }
+}
@@ -8,7 +8,8 @@ import org.hl7.fhir.*;
 import org.hl7.fhir.dstu3.model.Resource;
 
 public interface ResourceProducers {
-    IParser FHIRPARSER = FhirContext.forDstu3().newJsonParser().setPrettyPrint(true);
+    FhirContext FHIRCONTEXT = FhirContext.forDstu3();
+    IParser FHIRPARSER = FHIRCONTEXT.newJsonParser().setPrettyPrint(true);
     CompositionResourceProducer COMPOSITION = new CompositionResourceProducer();
     ConditionResourceProducer CONDITION = new ConditionResourceProducer();
     ProcedureResourceProducer PROCEDURE = new ProcedureResourceProducer();
@@ -0,0 +1,197 @@
+package edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir;
+
+import org.hl7.fhir.dstu3.model.Bundle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a FHIR JSON {@link Bundle} incrementally, one entry at a time, such that the bundle's resources do not have to
+ * be held in memory (or in a {@link Bundle} instance) until all of them have been produced.<br>
+ * <br>
+ * Entries are supplied as already encoded resources, so that a resource that is also written elsewhere only needs to
+ * be encoded once. Pretty printed bundles accept both pretty printed and compact resources, the latter being indented
+ * as they are written. Compact bundles expect compact resources.
+ */
+public class StreamingBundleWriter implements Closeable {
+    private static final String INDENT = "  ";
+
+    private final Writer out;
+    private final boolean prettyPrint;
+    private boolean hasEntries;
+
+    /**
+     * Writes the bundle header
+     *
+     * @param out         The writer to write to, closed when this bundle writer is closed
+     * @param id          The bundle id, without the resource type
+     * @param type        The bundle type
+     * @param prettyPrint Whether to pretty print the bundle
+     * @throws IOException If the header could not be written
+     */
+    public StreamingBundleWriter(Writer out, String id, Bundle.BundleType type, boolean prettyPrint) throws IOException {
+        this.out = out;
+        this.prettyPrint = prettyPrint;
+        this.hasEntries = false;
+        out.write('{');
+        writeProperty(1, "resourceType");
+        writeString("Bundle");
+        out.write(',');
+        writeProperty(1, "id");
+        writeString(id);
+        out.write(',');
+        writeProperty(1, "type");
+        writeString(type.toCode());
+    }
+
+    /**
+     * Appends an entry to the bundle
+     *
+     * @param fullUrl         The full url of the entry
+     * @param encodedResource The JSON encoded resource of the entry
+     * @throws IOException If the entry could not be written
+     */
+    public void addEntry(String fullUrl, String encodedResource) throws IOException {
+        if (!hasEntries) {
+            out.write(',');
+            writeProperty(1, "entry");
+            out.write('[');
+            hasEntries = true;
+        } else {
+            out.write(',');
+        }
+        newLine(2);
+        out.write('{');
+        writeProperty(3, "fullUrl");
+        writeString(fullUrl);
+        out.write(',');
+        writeProperty(3, "resource");
+        if (prettyPrint && encodedResource.indexOf('\n') < 0) {
+            // Compactly encoded, e.g. for NDJSON output, line breaks only occur escaped within strings
+            writeIndented(encodedResource, 3);
+        } else if (prettyPrint) {
+            // Shift the resource's own indentation to its depth within the bundle
+            out.write(encodedResource.trim().replace("\n", "\n" + INDENT + INDENT + INDENT));
+        } else {
+            out.write(encodedResource);
+        }
+        newLine(2);
+        out.write('}');
+    }
+
+    /**
+     * Writes the bundle footer and closes the underlying writer
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (hasEntries) {
+                newLine(1);
+                out.write(']');
+            }
+            newLine(0);
+            out.write('}');
+            if (prettyPrint) {
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes compact JSON pretty printed, starting at the given depth
+     */
+    private void writeIndented(String json, int depth) throws IOException {
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                out.write(c);
+                if (c == '\\') {
+                    out.write(json.charAt(++i));
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    out.write(c);
+                    break;
+                case '{':
+                case '[':
+                    out.write(c);
+                    if (i + 1 < json.length() && (json.charAt(i + 1) == '}' || json.charAt(i + 1) == ']')) {
+                        out.write(json.charAt(++i));
+                    } else {
+                        newLine(++depth);
+                    }
+                    break;
+                case '}':
+                case ']':
+                    newLine(--depth);
+                    out.write(c);
+                    break;
+                case ',':
+                    out.write(c);
+                    newLine(depth);
+                    break;
+                case ':':
+                    out.write(": ");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+    private void writeProperty(int depth, String name) throws IOException {
+        newLine(depth);
+        writeString(name);
+        out.write(prettyPrint ? ": " : ":");
+    }
+
+    private void newLine(int depth) throws IOException {
+        if (!prettyPrint) {
+            return;
+        }
+        out.write('\n');
+        for (int i = 0; i < depth; i++) {
+            out.write(INDENT);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
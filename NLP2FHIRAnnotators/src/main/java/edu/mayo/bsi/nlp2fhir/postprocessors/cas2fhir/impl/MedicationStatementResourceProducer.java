@@ -1,6 +1,6 @@
 package edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.impl;
 
-import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
 import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.Cas2FHIRUtils;
 import edu.mayo.bsi.nlp2fhir.postprocessors.cas2fhir.ResourceProducer;
 import org.apache.uima.cas.FeatureStructure;
@@ -191,7 +191,7 @@ public class MedicationStatementResourceProducer implements ResourceProducer<Med
                 if (di.getDoseSimpleQuantity() != null) {
                     SimpleQuantity quantityOut = new SimpleQuantity();
                     if (di.getDoseSimpleQuantity().getValue() != null) {
-                        quantityOut.setValue(Double.valueOf(Util.normalizeNumber(di.getDoseSimpleQuantity().getValue().getValue())));
+                        quantityOut.setValue(NumberNormalizer.parse(di.getDoseSimpleQuantity().getValue().getValue()));
                     }
                     if (di.getDoseSimpleQuantity().getUnit() != null) {
                         quantityOut.setUnit(di.getDoseSimpleQuantity().getUnit().getValue());
@@ -1,11 +1,15 @@
 package edu.mayo.bsi.nlp2fhir.preprocessors;
 
+import edu.mayo.bsi.nlp2fhir.postprocessors.OutputManifest;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.collection.CollectionException;
-import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.FileUtils;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
 import org.hl7.fhir.Composition;
 import org.hl7.fhir.FHIRString;
 import org.ohnlp.medtagger.cr.FileSystemReader;
@@ -13,18 +17,61 @@ import org.ohnlp.typesystem.type.structured.Document;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Performs essentially same function as FileSystemReader that it extends but also appends metadata so as to be
- * standards-compliant with FHIR
+ * standards-compliant with FHIR. Documents recorded as complete within the {@link OutputManifest} given by
+ * {@link #PARAM_MANIFEST}, if any, are skipped: files are therefore listed and read by this reader rather than the
+ * superclass, which does not expose its file list.
  */
 public class FHIRFileSystemReader extends FileSystemReader {
+
+    public static final String PARAM_MANIFEST = "Manifest";
+
+    private List<File> files;
+    private int currentIndex;
+    private String encoding;
+    private String language;
+
+    @Override
+    public void initialize() throws ResourceInitializationException {
+        super.initialize();
+        encoding = (String) getConfigParameterValue(PARAM_ENCODING);
+        language = (String) getConfigParameterValue(PARAM_LANGUAGE);
+        files = new ArrayList<>();
+        currentIndex = 0;
+        String manifest = (String) getConfigParameterValue(PARAM_MANIFEST);
+        Set<String> completed;
+        try {
+            completed = OutputManifest.readCompletedDocuments(manifest == null ? null : new File(manifest.trim()));
+        } catch (IOException e) {
+            throw new ResourceInitializationException(e);
+        }
+        File[] candidates = new File(((String) getConfigParameterValue(PARAM_INPUTDIR)).trim()).listFiles();
+        if (candidates != null) {
+            for (File f : candidates) {
+                if (!f.isDirectory() && !completed.contains(f.getName())) {
+                    files.add(f);
+                }
+            }
+        }
+    }
+
     @Override
     public void getNext(CAS cas) throws IOException, CollectionException {
-        super.getNext(cas);
+        File f = files.get(currentIndex++);
         try {
             JCas jCas = cas.getJCas();
-            File f = new File(JCasUtil.selectSingle(jCas, Document.class).getFileLoc());
+            jCas.setDocumentText(FileUtils.file2String(f, encoding));
+            if (language != null) {
+                jCas.setDocumentLanguage(language);
+            }
+            Document document = new Document(jCas);
+            document.setFileLoc(f.getAbsolutePath());
+            document.addToIndexes();
             jCas.createView("UriView").setSofaDataURI(f.toURI().toString(), "text");
             Composition fhirDocRepresentaiton = new Composition(jCas, 0, jCas.getDocumentText().length());
             FHIRString string = new FHIRString(jCas, 0, jCas.getDocumentText().length());
@@ -39,4 +86,14 @@ public class FHIRFileSystemReader extends FileSystemReader {
             e.printStackTrace();
         }
     }
+
+    @Override
+    public boolean hasNext() {
+        return currentIndex < files.size();
+    }
+
+    @Override
+    public Progress[] getProgress() {
+        return new Progress[]{new ProgressImpl(currentIndex, files.size(), Progress.ENTITIES)};
+    }
 }
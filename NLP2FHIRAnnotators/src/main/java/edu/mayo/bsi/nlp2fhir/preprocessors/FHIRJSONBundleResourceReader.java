@@ -2,9 +2,9 @@ package edu.mayo.bsi.nlp2fhir.preprocessors;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
-import edu.mayo.bsi.nlp2fhir.Util;
 import edu.mayo.bsi.nlp2fhir.nlp.Section;
 import edu.mayo.bsi.nlp2fhir.nlp.metadata.CompositionResource;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
 import org.apache.uima.UimaContext;
 import org.apache.uima.fit.component.JCasCollectionReader_ImplBase;
@@ -13,7 +13,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
-import org.hl7.fhir.FHIRString;
 import org.hl7.fhir.dstu3.model.Composition;
 import org.hl7.fhir.dstu3.model.Extension;
 import org.hl7.fhir.dstu3.model.StringType;
@@ -97,7 +96,7 @@ public class FHIRJSONBundleResourceReader extends JCasCollectionReader_ImplBase
         res.addToIndexes();
         // TODO better to populate this instead of using modified output json above
         org.hl7.fhir.Composition composition = new org.hl7.fhir.Composition(jCas, 0, text.toString().length());
-        composition.setTitle(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, id.getDocumentID(), composition.getBegin(), composition.getEnd()));
+        composition.setTitle(FHIRPrimitives.STRING.create(jCas, id.getDocumentID(), composition.getBegin(), composition.getEnd()));
         composition.addToIndexes();
     }
 
@@ -2,9 +2,10 @@ package edu.mayo.bsi.nlp2fhir.preprocessors;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
-import edu.mayo.bsi.nlp2fhir.Util;
 import edu.mayo.bsi.nlp2fhir.nlp.Section;
 import edu.mayo.bsi.nlp2fhir.nlp.metadata.CompositionResource;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.postprocessors.OutputManifest;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
 import org.apache.uima.UimaContext;
 import org.apache.uima.fit.component.JCasCollectionReader_ImplBase;
@@ -13,7 +14,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
-import org.hl7.fhir.FHIRString;
 import org.hl7.fhir.dstu3.model.Composition;
 import org.hl7.fhir.dstu3.model.Extension;
 import org.hl7.fhir.dstu3.model.StringType;
@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Set;
 import java.util.UUID;
 
 /**
- * Reads in FHIR Composition resource JSONs from a parameter directory and prepares them for further processing
+ * Reads in FHIR Composition resource JSONs from a parameter directory and prepares them for further processing.
+ * Compositions recorded as complete within the {@link OutputManifest} given by {@link #PARAM_MANIFEST}, if any, are
+ * skipped.
  */
 public class FHIRJSONCompositionResourceReader extends JCasCollectionReader_ImplBase {
 
@@ -35,13 +38,22 @@ public class FHIRJSONCompositionResourceReader extends JCasCollectionReader_Impl
      * files.
      */
     public static final String PARAM_INPUTDIR = "InputDirectory";
+    public static final String PARAM_MANIFEST = "Manifest";
 
     @ConfigurationParameter(
             name=PARAM_INPUTDIR
     )
     private File inputDir;
+    @ConfigurationParameter(
+            name = PARAM_MANIFEST,
+            description = "An output manifest listing the documents to skip, if resuming",
+            mandatory = false
+    )
+    private File manifest;
     private File[] docs;
     private int currFileIdx;
+    private Set<String> completed;
+    private Composition next;
     private FhirContext context = FhirContext.forDstu3();
     private IParser parser = context.newJsonParser();
 
@@ -49,16 +61,28 @@ public class FHIRJSONCompositionResourceReader extends JCasCollectionReader_Impl
         super.initialize(context);
         docs = inputDir.listFiles();
         currFileIdx = 0;
+        try {
+            completed = OutputManifest.readCompletedDocuments(manifest);
+        } catch (IOException e) {
+            throw new ResourceInitializationException(e);
+        }
     }
 
-    @Override
-    public void getNext(JCas jCas) throws IOException {
-        File currFile = docs[currFileIdx++];
+    private Composition parse(File file) throws IOException {
         StringBuilder sB = new StringBuilder();
-        for (String s : Files.readAllLines(currFile.toPath())) {
+        for (String s : Files.readAllLines(file.toPath())) {
             sB.append(s); //JSON so we don't overly care about spacing
         }
-        Composition curr = parser.parseResource(Composition.class, sB.toString());
+        return parser.parseResource(Composition.class, sB.toString());
+    }
+
+    @Override
+    public void getNext(JCas jCas) throws IOException {
+        Composition curr = next;
+        next = null;
+        if (curr == null) {
+            curr = parse(docs[currFileIdx++]);
+        }
         DocumentID id = new DocumentID(jCas);
         id.setDocumentID(curr.getId().split("/")[1]); // Composition resources are stored as "Composition/docId"
         id.addToIndexes();
@@ -96,13 +120,24 @@ public class FHIRJSONCompositionResourceReader extends JCasCollectionReader_Impl
         res.addToIndexes();
         // TODO better to populate this instead of using modified output json above
         org.hl7.fhir.Composition composition = new org.hl7.fhir.Composition(jCas, 0, text.toString().length());
-        composition.setTitle(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, id.getDocumentID(), composition.getBegin(), composition.getEnd()));
+        composition.setTitle(FHIRPrimitives.STRING.create(jCas, id.getDocumentID(), composition.getBegin(), composition.getEnd()));
         composition.addToIndexes();
     }
 
     @Override
-    public boolean hasNext()  {
-        return currFileIdx < docs.length;
+    public boolean hasNext() throws IOException {
+        if (completed.isEmpty() || next != null) {
+            return next != null || currFileIdx < docs.length;
+        }
+        // Parse ahead to skip completed compositions, as their ids are only known once parsed
+        while (currFileIdx < docs.length) {
+            Composition curr = parse(docs[currFileIdx++]);
+            if (!completed.contains(curr.getId().split("/")[1])) {
+                next = curr;
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
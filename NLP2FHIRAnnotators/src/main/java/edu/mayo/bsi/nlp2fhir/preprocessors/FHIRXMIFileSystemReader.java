@@ -1,43 +1,73 @@
 package edu.mayo.bsi.nlp2fhir.preprocessors;
 
+import edu.mayo.bsi.nlp2fhir.postprocessors.CasFileFormat;
+import edu.mayo.bsi.nlp2fhir.postprocessors.OutputManifest;
 import org.apache.ctakes.core.cr.XmiCollectionReaderCtakes;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.collection.CollectionException;
-import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Progress;
+import org.apache.uima.util.ProgressImpl;
 import org.hl7.fhir.Composition;
 import org.hl7.fhir.FHIRString;
-import org.ohnlp.typesystem.type.structured.Document;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
+/**
+ * Reads CASes saved by {@link edu.mayo.bsi.nlp2fhir.postprocessors.XMIWriterPostProcessor} in any
+ * {@link CasFileFormat}, compressed or not, from the input directory. Documents recorded as complete within the
+ * {@link OutputManifest} given by {@link #PARAM_MANIFEST}, if any, are skipped.
+ */
 public class FHIRXMIFileSystemReader extends XmiCollectionReaderCtakes {
+
+    public static final String PARAM_MANIFEST = "Manifest";
+
+    private List<File> files;
+    private int currentIndex;
+    private boolean lenient;
+
+    @Override
+    public void initialize() throws ResourceInitializationException {
+        super.initialize();
+        Boolean failOnUnknownType = (Boolean) getConfigParameterValue(PARAM_FAILUNKNOWN);
+        lenient = failOnUnknownType != null && !failOnUnknownType;
+        files = new ArrayList<>();
+        currentIndex = 0;
+        String manifest = (String) getConfigParameterValue(PARAM_MANIFEST);
+        Set<String> completed;
+        try {
+            completed = OutputManifest.readCompletedDocuments(manifest == null ? null : new File(manifest.trim()));
+        } catch (IOException e) {
+            throw new ResourceInitializationException(e);
+        }
+        File[] candidates = new File(((String) getConfigParameterValue(PARAM_INPUTDIR)).trim()).listFiles();
+        if (candidates != null) {
+            for (File f : candidates) {
+                if (!f.isDirectory() && CasFileFormat.forFile(f) != null
+                        && !completed.contains(CasFileFormat.getDocumentName(f))) {
+                    files.add(f);
+                }
+            }
+        }
+    }
+
     @Override
     public void getNext(CAS cas) throws IOException, CollectionException {
-        super.getNext(cas);
+        File f = files.get(currentIndex++);
+        CasFileFormat.read(f, cas, lenient);
         try {
             JCas jCas = cas.getJCas();
             Composition fhirDocRepresentaiton = new Composition(jCas, 0, jCas.getDocumentText().length());
             FHIRString string = new FHIRString(jCas, 0, jCas.getDocumentText().length());
-            File f;
-            try {
-                Field filesField = XmiCollectionReaderCtakes.class.getDeclaredField("mFiles");
-                filesField.setAccessible(true);
-                ArrayList<File> value = (ArrayList<File>) filesField.get(this);
-                Field index = XmiCollectionReaderCtakes.class.getDeclaredField("mCurrentIndex");
-                index.setAccessible(true);
-                int idx = index.getInt(this) - 1;
-                f = value.get(idx);
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
             DocumentID docID = new DocumentID(jCas);
-            docID.setDocumentID(f.getName().substring(0, f.getName().length() - 4));
+            docID.setDocumentID(CasFileFormat.getDocumentName(f));
             docID.addToIndexes();
             string.setValue(f.getName());
             string.addToIndexes();
@@ -47,4 +77,14 @@ public class FHIRXMIFileSystemReader extends XmiCollectionReaderCtakes {
             e.printStackTrace();
         }
     }
+
+    @Override
+    public boolean hasNext() {
+        return currentIndex < files.size();
+    }
+
+    @Override
+    public Progress[] getProgress() {
+        return new Progress[]{new ProgressImpl(currentIndex, files.size(), Progress.ENTITIES)};
+    }
 }
@@ -0,0 +1,169 @@
+package edu.mayo.bsi.nlp2fhir.terminology;
+
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A memory-mapped, precomputed SNOMED CT transitive closure for a fixed set of hierarchy roots, as produced by
+ * {@link SnomedCTClosureIndexBuilder}.<br>
+ * <br>
+ * The index file consists of a header (magic, version, concept count N, root count R), the N concepts that descend
+ * from at least one root as a sorted array of longs, followed by, for each root, the root's concept id and a bitset of
+ * N bits in which bit i is set iff concept i descends from that root. Hierarchy checks are therefore a binary search
+ * and a bit test over the mapped file, with no database access.<br>
+ * <br>
+ * Can be bound to analysis engines as an external resource under {@link #RESOURCE_KEY}
+ */
+public class SnomedCTClosureIndex implements SharedResourceObject {
+
+    public static final String RESOURCE_KEY = "SnomedCTClosureIndex";
+
+    static final int MAGIC = 0x534E4358; // SNCX
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private File file;
+    private LongBuffer concepts;
+    private Map<Long, LongBuffer> bitsets;
+
+    /**
+     * Opens an existing index file
+     *
+     * @param file The index file
+     * @return The memory-mapped index
+     * @throws IOException If the file could not be read or is not a valid index
+     */
+    public static SnomedCTClosureIndex open(File file) throws IOException {
+        SnomedCTClosureIndex ret = new SnomedCTClosureIndex();
+        ret.map(file);
+        return ret;
+    }
+
+    @Override
+    public void load(DataResource data) throws ResourceInitializationException {
+        try {
+            map(data.getUri() != null ? new File(data.getUri()) : new File(data.getUrl().toURI()));
+        } catch (IOException | URISyntaxException e) {
+            throw new ResourceInitializationException(e);
+        }
+    }
+
+    private void map(File file) throws IOException {
+        ByteBuffer buf;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC) {
+            throw new IOException(file.getAbsolutePath() + " is not a SNOMED CT closure index");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Unsupported SNOMED CT closure index version " + buf.getInt(4) + " in " + file.getAbsolutePath());
+        }
+        int conceptCount = buf.getInt(8);
+        int rootCount = buf.getInt(12);
+        int words = wordCount(conceptCount);
+        long expected = HEADER_BYTES + 8L * conceptCount + (long) rootCount * 8L * (words + 1);
+        if (buf.limit() != expected) {
+            throw new IOException("Truncated SNOMED CT closure index " + file.getAbsolutePath());
+        }
+        buf.position(HEADER_BYTES);
+        LongBuffer longs = buf.slice().asLongBuffer();
+        this.concepts = slice(longs, 0, conceptCount);
+        this.bitsets = new HashMap<>();
+        int offset = conceptCount;
+        for (int i = 0; i < rootCount; i++) {
+            long root = longs.get(offset);
+            bitsets.put(root, slice(longs, offset + 1, words));
+            offset += words + 1;
+        }
+        this.file = file;
+    }
+
+    /**
+     * @param root A SNOMED CT concept id
+     * @return Whether descendants of root are contained in this index
+     */
+    public boolean hasRoot(String root) {
+        Long rootId = parse(root);
+        return rootId != null && bitsets.containsKey(rootId);
+    }
+
+    /**
+     * @param code A SNOMED CT concept id
+     * @param root A SNOMED CT concept id of a hierarchy root
+     * @return Whether code is a (transitive) descendant of root, or null if this index cannot answer the question, i.e.
+     * if root is not one of the indexed roots or either of the codes is not a valid concept id
+     */
+    public Boolean isChild(String code, String root) {
+        Long rootId = parse(root);
+        Long codeId = parse(code);
+        if (rootId == null || codeId == null) {
+            return null;
+        }
+        LongBuffer bitset = bitsets.get(rootId);
+        if (bitset == null) {
+            return null;
+        }
+        int idx = indexOf(codeId);
+        if (idx < 0) {
+            return false;
+        }
+        return (bitset.get(idx >>> 6) & (1L << idx)) != 0;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private int indexOf(long concept) {
+        int low = 0;
+        int high = concepts.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long val = concepts.get(mid);
+            if (val < concept) {
+                low = mid + 1;
+            } else if (val > concept) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static LongBuffer slice(LongBuffer buf, int offset, int length) {
+        LongBuffer dup = buf.duplicate();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice();
+    }
+
+    private static Long parse(String code) {
+        if (code == null || code.isEmpty() || code.length() > 18) {
+            return null;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        return Long.parseLong(code);
+    }
+}
@@ -0,0 +1,144 @@
+package edu.mayo.bsi.nlp2fhir.terminology;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Offline build step for {@link SnomedCTClosureIndex}: computes the descendants of a set of hierarchy roots from the
+ * active IS-A relationships in a SNOMED CT RF2 relationship snapshot file (sct2_Relationship_Snapshot_*.txt) and writes
+ * them out in index format.<br>
+ * <br>
+ * Usage: <code>SnomedCTClosureIndexBuilder &lt;relationship snapshot file&gt; &lt;output file&gt; [root ...]</code>.
+ * If no roots are given, {@link #DEFAULT_ROOTS} is used.
+ */
+public class SnomedCTClosureIndexBuilder {
+
+    private static final String IS_A = "116680003";
+
+    /**
+     * The hierarchy roots checked by the transformers and extractors bundled with NLP2FHIR
+     */
+    public static final String[] DEFAULT_ROOTS = {
+            "419492006", // Additional dosage instructions
+            "422096002", // Dosing instruction fragment (administration method)
+            "91723000", // Anatomical structure (approach site)
+            "404684003", // Clinical finding (condition, manifestation or symptom)
+            "442083009", // Anatomical or acquired body structure (body site)
+            "71388002" // Procedure
+    };
+
+    private final Map<Long, long[]> children = new HashMap<>();
+
+    /**
+     * Loads the IS-A hierarchy from an RF2 relationship snapshot file
+     *
+     * @param relationships The relationship snapshot file
+     * @throws IOException If the file could not be read
+     */
+    public SnomedCTClosureIndexBuilder(File relationships) throws IOException {
+        Map<Long, List<Long>> build = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(relationships), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Header
+            while ((line = reader.readLine()) != null) {
+                // id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId, ...
+                String[] fields = line.split("\t");
+                if (fields.length < 8 || !fields[2].equals("1") || !fields[7].equals(IS_A)) {
+                    continue;
+                }
+                build.computeIfAbsent(Long.parseLong(fields[5]), k -> new ArrayList<>()).add(Long.parseLong(fields[4]));
+            }
+        }
+        for (Map.Entry<Long, List<Long>> e : build.entrySet()) {
+            long[] arr = new long[e.getValue().size()];
+            for (int i = 0; i < arr.length; i++) {
+                arr[i] = e.getValue().get(i);
+            }
+            children.put(e.getKey(), arr);
+        }
+    }
+
+    /**
+     * @param root The root concept id
+     * @return All transitive descendants of root, excluding root itself
+     */
+    public Set<Long> getDescendants(long root) {
+        Set<Long> ret = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            long[] next = children.get(queue.poll());
+            if (next == null) {
+                continue;
+            }
+            for (long child : next) {
+                if (child != root && ret.add(child)) {
+                    queue.add(child);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Writes an index containing the closures of the given roots
+     *
+     * @param roots  The root concept ids to index
+     * @param output The file to write the index to
+     * @throws IOException If the index could not be written
+     */
+    public void write(long[] roots, File output) throws IOException {
+        List<Set<Long>> closures = new ArrayList<>(roots.length);
+        TreeSet<Long> all = new TreeSet<>();
+        for (long root : roots) {
+            Set<Long> descendants = getDescendants(root);
+            closures.add(descendants);
+            all.addAll(descendants);
+        }
+        long[] concepts = new long[all.size()];
+        int i = 0;
+        for (long concept : all) {
+            concepts[i++] = concept;
+        }
+        int words = SnomedCTClosureIndex.wordCount(concepts.length);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(SnomedCTClosureIndex.MAGIC);
+            out.writeInt(SnomedCTClosureIndex.VERSION);
+            out.writeInt(concepts.length);
+            out.writeInt(roots.length);
+            for (long concept : concepts) {
+                out.writeLong(concept);
+            }
+            for (int r = 0; r < roots.length; r++) {
+                long[] bitset = new long[words];
+                for (long descendant : closures.get(r)) {
+                    int idx = Arrays.binarySearch(concepts, descendant);
+                    bitset[idx >>> 6] |= 1L << idx;
+                }
+                out.writeLong(roots[r]);
+                for (long word : bitset) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SnomedCTClosureIndexBuilder <relationship snapshot file> <output file> [root ...]");
+            System.exit(1);
+        }
+        String[] rootArgs = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : DEFAULT_ROOTS;
+        long[] roots = new long[rootArgs.length];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = Long.parseLong(rootArgs[i]);
+        }
+        SnomedCTClosureIndexBuilder builder = new SnomedCTClosureIndexBuilder(new File(args[0]));
+        builder.write(roots, new File(args[1]));
+        SnomedCTClosureIndex index = SnomedCTClosureIndex.open(new File(args[1]));
+        for (String root : rootArgs) {
+            System.out.println(root + ": " + builder.getDescendants(Long.parseLong(root)).size() + " descendants");
+        }
+        System.out.println("Wrote " + index.getFile().getAbsolutePath());
+    }
+}
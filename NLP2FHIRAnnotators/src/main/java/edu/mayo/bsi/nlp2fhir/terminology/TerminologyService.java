@@ -0,0 +1,282 @@
+package edu.mayo.bsi.nlp2fhir.terminology;
+
+import edu.mayo.bsi.nlp.vts.SNOMEDCT;
+import edu.mayo.bsi.nlp.vts.UMLS;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Shared, memoizing front-end to the UMLS and SNOMEDCT lookups used by the transformers. Each lookup is backed by a
+ * bounded LRU cache so that concepts and hierarchy roots recurring across documents are only retrieved from the
+ * database once.<br>
+ * <br>
+ * Configured through system properties:
+ * <ul>
+ * <li>{@value #CACHE_SIZE_PROPERTY}: maximum number of entries held per lookup type, default
+ * {@value #DEFAULT_CACHE_SIZE}</li>
+ * <li>{@value #SNAPSHOT_PROPERTY}: if set, a file that the caches are loaded from on first use and saved to on
+ * shutdown, so that warm caches survive restarts</li>
+ * </ul>
+ * Hierarchy checks are first answered from the {@link SnomedCTClosureIndex} passed by the caller, typically bound to
+ * its analysis engine as an external resource and thus scoped to its pipeline, then from any globally registered
+ * index, using the database only for roots not contained in an index.
+ */
+public class TerminologyService {
+
+    public static final String CACHE_SIZE_PROPERTY = "nlp2fhir.terminology.cache.size";
+    public static final String SNAPSHOT_PROPERTY = "nlp2fhir.terminology.snapshot";
+    public static final int DEFAULT_CACHE_SIZE = 100000;
+
+    private static TerminologyService INSTANCE;
+
+    private final LookupCache<ArrayList<String>> sourceCodes;
+    private final LookupCache<ArrayList<String>> preferredText;
+    private final LookupCache<Boolean> isChild;
+    private final CopyOnWriteArrayList<SnomedCTClosureIndex> closureIndexes = new CopyOnWriteArrayList<>();
+    private final AtomicLong closureIndexHits = new AtomicLong();
+    private final File snapshot;
+
+    private TerminologyService(int cacheSize, File snapshot) {
+        this.sourceCodes = new LookupCache<>("UMLS Source Codes", cacheSize);
+        this.preferredText = new LookupCache<>("UMLS Preferred Text", cacheSize);
+        this.isChild = new LookupCache<>("SNOMEDCT Hierarchy", cacheSize);
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The shared terminology service, initialized (and populated from a snapshot, if configured) on first use
+     */
+    public static synchronized TerminologyService getInstance() {
+        if (INSTANCE == null) {
+            int cacheSize = Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
+            String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+            TerminologyService service = new TerminologyService(cacheSize, snapshotPath == null ? null : new File(snapshotPath));
+            if (service.snapshot != null) {
+                if (service.snapshot.exists()) {
+                    service.loadSnapshot();
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(service::saveSnapshot, "terminology-snapshot"));
+            }
+            INSTANCE = service;
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a precomputed closure index to be used by all hierarchy checks for the roots it contains, for the
+     * lifetime of the JVM. Analysis engines should instead pass their own index to
+     * {@link #isChild(String, String, SnomedCTClosureIndex)}.
+     *
+     * @param index The index to register. Registering an index of an already registered file has no effect.
+     */
+    public synchronized void addClosureIndex(SnomedCTClosureIndex index) {
+        File file = index.getFile().getAbsoluteFile();
+        for (SnomedCTClosureIndex registered : closureIndexes) {
+            if (registered == index || registered.getFile().getAbsoluteFile().equals(file)) {
+                return;
+            }
+        }
+        closureIndexes.add(index);
+    }
+
+    /**
+     * Cached equivalent of {@link UMLS#getSourceCodesForVocab(UMLS.UMLSSourceVocabulary, String)}
+     *
+     * @param vocab The source vocabulary to retrieve codes for
+     * @param cui   The UMLS concept unique identifier
+     * @return The (unmodifiable) source codes of the given concept within vocab
+     * @throws SQLException If the lookup could not be performed. Failed lookups are not cached.
+     */
+    public Collection<String> getSourceCodesForVocab(UMLS.UMLSSourceVocabulary vocab, String cui) throws SQLException {
+        String key = vocab + "|" + cui;
+        ArrayList<String> ret = sourceCodes.get(key);
+        if (ret == null) {
+            ret = new ArrayList<>();
+            for (String code : UMLS.getSourceCodesForVocab(vocab, cui)) {
+                ret.add(code);
+            }
+            sourceCodes.put(key, ret);
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Cached equivalent of {@link UMLS#getSourceTermPreferredText(UMLS.UMLSSourceVocabulary, String)}
+     *
+     * @param vocab The source vocabulary of code
+     * @param code  The vocabulary specific code
+     * @return The (unmodifiable) preferred text(s) for the given code
+     * @throws SQLException If the lookup could not be performed. Failed lookups are not cached.
+     */
+    public Collection<String> getSourceTermPreferredText(UMLS.UMLSSourceVocabulary vocab, String code) throws SQLException {
+        String key = vocab + "|" + code;
+        ArrayList<String> ret = preferredText.get(key);
+        if (ret == null) {
+            ret = new ArrayList<>(UMLS.getSourceTermPreferredText(vocab, code));
+            preferredText.put(key, ret);
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Cached equivalent of {@link SNOMEDCT#isChild(String, String)}, answered from a globally registered
+     * {@link SnomedCTClosureIndex} where possible
+     *
+     * @param code The SNOMEDCT code to check
+     * @param root The SNOMEDCT code of the hierarchy root
+     * @return Whether code is a descendant of root
+     */
+    public boolean isChild(String code, String root) {
+        return isChild(code, root, null);
+    }
+
+    /**
+     * Cached equivalent of {@link SNOMEDCT#isChild(String, String)}, answered from the given or a globally registered
+     * {@link SnomedCTClosureIndex} where possible
+     *
+     * @param code  The SNOMEDCT code to check
+     * @param root  The SNOMEDCT code of the hierarchy root
+     * @param index The closure index of the caller, consulted first, or null if none
+     * @return Whether code is a descendant of root
+     */
+    public boolean isChild(String code, String root, SnomedCTClosureIndex index) {
+        if (code == null || root == null) {
+            return SNOMEDCT.isChild(code, root);
+        }
+        if (!code.equals(root)) { // Closure indexes do not contain the roots themselves
+            Boolean indexed = index == null ? null : index.isChild(code, root);
+            for (Iterator<SnomedCTClosureIndex> it = closureIndexes.iterator(); indexed == null && it.hasNext(); ) {
+                indexed = it.next().isChild(code, root);
+            }
+            if (indexed != null) {
+                closureIndexHits.incrementAndGet();
+                return indexed;
+            }
+        }
+        String key = code + "|" + root;
+        Boolean ret = isChild.get(key);
+        if (ret == null) {
+            ret = SNOMEDCT.isChild(code, root);
+            isChild.put(key, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * @return Total cache and closure index hits across all lookup types
+     */
+    public long getHits() {
+        return sourceCodes.hits.get() + preferredText.hits.get() + isChild.hits.get() + closureIndexHits.get();
+    }
+
+    /**
+     * @return Total cache misses (i.e. database lookups) across all lookup types
+     */
+    public long getMisses() {
+        return sourceCodes.misses.get() + preferredText.misses.get() + isChild.misses.get();
+    }
+
+    /**
+     * @return A human readable summary of resident entries and hit/miss counts for each lookup type
+     */
+    public String getStatistics() {
+        return sourceCodes + System.lineSeparator() + preferredText + System.lineSeparator() + isChild
+                + System.lineSeparator() + "SNOMEDCT Closure Index: " + closureIndexes.size() + " registered indexes, "
+                + closureIndexHits.get() + " hits";
+    }
+
+    /**
+     * Writes the current cache contents to the configured snapshot file, if any
+     */
+    public synchronized void saveSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        File tmp = new File(snapshot.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(tmp)))) {
+            out.writeObject(sourceCodes.copy());
+            out.writeObject(preferredText.copy());
+            out.writeObject(isChild.copy());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (snapshot.exists() && !snapshot.delete() || !tmp.renameTo(snapshot)) {
+            System.err.println("Could not replace terminology snapshot " + snapshot.getAbsolutePath());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadSnapshot() {
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(snapshot)))) {
+            sourceCodes.putAll((Map<String, ArrayList<String>>) in.readObject());
+            preferredText.putAll((Map<String, ArrayList<String>>) in.readObject());
+            isChild.putAll((Map<String, Boolean>) in.readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("Could not load terminology snapshot " + snapshot.getAbsolutePath() + ", starting cold");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A synchronized, access ordered LRU map with hit and miss counters
+     */
+    private static class LookupCache<V extends Serializable> {
+        private final String name;
+        private final LinkedHashMap<String, V> entries;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        LookupCache(String name, final int maxSize) {
+            this.name = name;
+            this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        V get(String key) {
+            V ret;
+            synchronized (entries) {
+                ret = entries.get(key);
+            }
+            (ret == null ? misses : hits).incrementAndGet();
+            return ret;
+        }
+
+        void put(String key, V value) {
+            synchronized (entries) {
+                entries.put(key, value);
+            }
+        }
+
+        void putAll(Map<String, V> values) {
+            synchronized (entries) {
+                entries.putAll(values);
+            }
+        }
+
+        HashMap<String, V> copy() {
+            synchronized (entries) {
+                return new HashMap<>(entries);
+            }
+        }
+
+        @Override
+        public String toString() {
+            int size;
+            synchronized (entries) {
+                size = entries.size();
+            }
+            return name + ": " + size + " entries, " + hits.get() + " hits, " + misses.get() + " misses";
+        }
+    }
+}
@@ -3,6 +3,7 @@ package edu.mayo.bsi.nlp2fhir.transformers;
 import edu.mayo.bsi.nlp.vts.SNOMEDCT;
 import edu.mayo.bsi.nlp.vts.UMLS;
 import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
 import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.textsem.EntityMention;
 import org.apache.uima.UimaContext;
@@ -30,7 +31,7 @@ public class CTAKESGenericToFHIRObservation  extends JCasAnnotator_ImplBase {
             Observation constructed = new Observation(jCas, mention.getBegin(), mention.getEnd());
             if (mention.getOntologyConceptArr() != null) {
                 CodeableConcept concept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
-                concept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
+                concept.setText(FHIRPrimitives.STRING.create(jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
                 FSArray conceptArr = mention.getOntologyConceptArr();
                 for (int j = 0; j < conceptArr.size(); j++) {
                     FeatureStructure fs = conceptArr.get(j);
@@ -44,9 +45,9 @@ public class CTAKESGenericToFHIRObservation  extends JCasAnnotator_ImplBase {
                         concept.setCoding(new FSArray(jCas, 1));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://www.nlm.nih.gov/research/umls/", mention.getBegin(), mention.getEnd()));
-                        coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, mention.getBegin(), mention.getEnd()));
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://www.nlm.nih.gov/research/umls/", mention.getBegin(), mention.getEnd()));
+                        coding.setCode(FHIRPrimitives.CODE.create(jCas, code, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         concept.setCoding(0, coding);
                         break;
                     }
@@ -1,9 +1,11 @@
 package edu.mayo.bsi.nlp2fhir.transformers;
 
-import edu.mayo.bsi.nlp.vts.SNOMEDCT;
 import edu.mayo.bsi.nlp.vts.UMLS;
 import edu.mayo.bsi.nlp2fhir.nlp.GenericRelation;
 import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndex;
+import edu.mayo.bsi.nlp2fhir.terminology.TerminologyService;
 import edu.mayo.bsi.nlp2fhir.nlp.Section;
 import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.textsem.DiseaseDisorderMention;
@@ -14,6 +16,7 @@ import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
@@ -26,6 +29,11 @@ import java.util.List;
 
 public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
     public static String RELATIONSHIP_TYPE = "FMH_RELATIONSHIP";
+    private final TerminologyService terminology = TerminologyService.getInstance();
+
+    @ExternalResource(key = SnomedCTClosureIndex.RESOURCE_KEY, mandatory = false)
+    private SnomedCTClosureIndex closureIndex;
+
     @Override
     public void process(JCas cas) throws AnalysisEngineProcessException {
         Set<Span> constructed = new HashSet<>();
@@ -55,7 +63,7 @@ public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
             FamilyMemberHistoryCondition condition = new FamilyMemberHistoryCondition(cas, mention.getBegin(), mention.getEnd());
             if (mention.getOntologyConceptArr() != null) {
                 CodeableConcept concept = new CodeableConcept(cas, mention.getBegin(), mention.getEnd());
-                concept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
+                concept.setText(FHIRPrimitives.STRING.create(cas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
                 FSArray conceptArr = mention.getOntologyConceptArr();
                 for (int j = 0; j < conceptArr.size(); j++) {
                     FeatureStructure fs = conceptArr.get(j);
@@ -68,11 +76,11 @@ public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
                     String rootItem = "404684003"; // As defined in https://www.hl7.org/fhir/valueset-condition-code.html
                     try {
                         boolean hasInterestedParent = false;
-                        for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                        for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                             code = snomedCode;
-                            hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                            hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                             if (hasInterestedParent) {
-                                Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                 if (!preferred.isEmpty()) {
                                     term = preferred.iterator().next();
                                 }
@@ -89,9 +97,9 @@ public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
                         concept.setCoding(new FSArray(cas, 1));
                         Coding coding = new Coding(cas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, cas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
-                        coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, cas, code, mention.getBegin(), mention.getEnd()));
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(cas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setCode(FHIRPrimitives.CODE.create(cas, code, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(cas, term, mention.getBegin(), mention.getEnd()));
                         concept.setCoding(0, coding);
                         break;
                     }
@@ -125,14 +133,14 @@ public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
                     if (target != null) {
                         String text = target.getCoveredText();
                         CodeableConcept relConcept = new CodeableConcept(cas, target.getBegin(), target.getEnd());
-                        relConcept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, text, target.getBegin(), target.getEnd()));
+                        relConcept.setText(FHIRPrimitives.STRING.create(cas, text, target.getBegin(), target.getEnd()));
                         relConcept.addToIndexes();
                         fmh.setRelationship(relConcept);
                     }
                 }
                 boolean negated = mention.getPolarity() == -1;
                 Annotation noteAnn = new Annotation(cas, mention.getBegin(), mention.getEnd());
-                noteAnn.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, negated + "", mention.getBegin(), mention.getEnd()));
+                noteAnn.setText(FHIRPrimitives.STRING.create(cas, negated + "", mention.getBegin(), mention.getEnd()));
                 noteAnn.addToIndexes();
                 condition.setNote(noteAnn);
                 // Uncertainty
@@ -142,9 +150,9 @@ public class CTAKESToFHIRFamilyMemberHistory extends JCasAnnotator_ImplBase {
                 condition.getExtension(0).addToIndexes();
                 condition.getExtension(0).setUrl("uncertainty");
                 if (mention.getUncertainty() == 1) {
-                    condition.getExtension(0).setValueString(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, "uncertain", mention.getBegin(), mention.getEnd()));
+                    condition.getExtension(0).setValueString(FHIRPrimitives.STRING.create(cas, "uncertain", mention.getBegin(), mention.getEnd()));
                 } else {
-                    condition.getExtension(0).setValueString(Util.instantiatePrimitiveWithValue(FHIRString.class, cas, "certain", mention.getBegin(), mention.getEnd()));
+                    condition.getExtension(0).setValueString(FHIRPrimitives.STRING.create(cas, "certain", mention.getBegin(), mention.getEnd()));
                 }
                 condition.addToIndexes();
                 fmh.setCondition(new FSArray(cas, 1));
@@ -1,28 +1,27 @@
 package edu.mayo.bsi.nlp2fhir.transformers;
 
-import edu.mayo.bsi.nlp.vts.SNOMEDCT;
 import edu.mayo.bsi.nlp.vts.UMLS;
 import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndex;
+import edu.mayo.bsi.nlp2fhir.terminology.TerminologyService;
 import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.textsem.AnatomicalSiteMention;
 import org.apache.ctakes.typesystem.type.textsem.DiseaseDisorderMention;
 import org.apache.ctakes.typesystem.type.textsem.SignSymptomMention;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
-import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
-import org.apache.uima.resource.ResourceInitializationException;
 import org.hl7.fhir.Code;
 import org.hl7.fhir.CodeableConcept;
 import org.hl7.fhir.Coding;
 import org.hl7.fhir.DosageInstruction;
-import org.hl7.fhir.FHIRString;
 import org.hl7.fhir.MedicationStatement;
-import org.hl7.fhir.Uri;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -35,10 +34,10 @@ import java.util.Map;
  */
 public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
 
-    @Override
-    public void initialize(UimaContext context) throws ResourceInitializationException {
-        super.initialize(context);
-    }
+    private final TerminologyService terminology = TerminologyService.getInstance();
+
+    @ExternalResource(key = SnomedCTClosureIndex.RESOURCE_KEY, mandatory = false)
+    private SnomedCTClosureIndex closureIndex;
 
     @Override// TODO: code here could be a LOT cleaner, optimization
     public void process(JCas jCas) throws AnalysisEngineProcessException {
@@ -66,14 +65,14 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         String code = c.getCode(); // Vocab specific
                         String term = c.getPreferredText();
                         String rootItem = "91723000"; // As defined in http://hl7.org/fhir/valueset-approach-site-codes.html
-                        if (code == null || term == null || !SNOMEDCT.isChild(code, rootItem)) {
+                        if (code == null || term == null || !terminology.isChild(code, rootItem, closureIndex)) {
                             try {
                                 boolean hasInterestedParent = false;
-                                for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                                for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                     code = snomedCode;
-                                    hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                    hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                     if (hasInterestedParent) {
-                                        Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                        Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                         if (!preferred.isEmpty()) {
                                             term = preferred.iterator().next();
                                         }
@@ -99,15 +98,15 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         }
                         CodeableConcept siteConcept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
                         siteConcept.addToIndexes();
-                        siteConcept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        siteConcept.setText(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
                         Code fhirCode = new Code(jCas, mention.getBegin(), mention.getEnd());
                         fhirCode.addToIndexes();
                         fhirCode.setValue(code);
                         coding.setCode(fhirCode);
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         siteConcept.setCoding(new FSArray(jCas, 1));
                         siteConcept.setCoding(0, coding);
                         di.setSite(siteConcept);
@@ -139,14 +138,14 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         String code = c.getCode(); // Vocab specific
                         String term = c.getPreferredText();
                         String rootItem = "404684003"; // As defined in https://www.hl7.org/fhir/valueset-condition-code.html
-                        if (code == null || term == null || !SNOMEDCT.isChild(code, rootItem)) {
+                        if (code == null || term == null || !terminology.isChild(code, rootItem, closureIndex)) {
                             try {
                                 boolean hasInterestedParent = false;
-                                for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                                for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                     code = snomedCode;
-                                    hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                    hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                     if (hasInterestedParent) {
-                                        Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                        Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                         if (!preferred.isEmpty()) {
                                             term = preferred.iterator().next();
                                         }
@@ -172,15 +171,15 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         }
                         CodeableConcept reasonConcept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
                         reasonConcept.addToIndexes();
-                        reasonConcept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        reasonConcept.setText(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
                         Code fhirCode = new Code(jCas, mention.getBegin(), mention.getEnd());
                         fhirCode.addToIndexes();
                         fhirCode.setValue(code);
                         coding.setCode(fhirCode);
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         reasonConcept.setCoding(new FSArray(jCas, 1));
                         reasonConcept.setCoding(0, coding);
                         statement.setReasonForUseCodeableConcept(0, reasonConcept);
@@ -226,14 +225,14 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         String code = c.getCode(); // Vocab specific
                         String term = c.getPreferredText();
                         String rootItem = "404684003"; // As defined in https://www.hl7.org/fhir/valueset-condition-code.html
-                        if (code == null || term == null || !SNOMEDCT.isChild(code, rootItem)) {
+                        if (code == null || term == null || !terminology.isChild(code, rootItem, closureIndex)) {
                             try {
                                 boolean hasInterestedParent = false;
-                                for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                                for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                     code = snomedCode;
-                                    hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                    hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                     if (hasInterestedParent) {
-                                        Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                        Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                         if (!preferred.isEmpty()) {
                                             term = preferred.iterator().next();
                                         }
@@ -259,15 +258,15 @@ public class CTAKESToFHIRMedications extends JCasAnnotator_ImplBase {
                         }
                         CodeableConcept reasonConcept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
                         reasonConcept.addToIndexes();
-                        reasonConcept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        reasonConcept.setText(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
                         Code fhirCode = new Code(jCas, mention.getBegin(), mention.getEnd());
                         fhirCode.addToIndexes();
                         fhirCode.setValue(code);
                         coding.setCode(fhirCode);
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         reasonConcept.setCoding(new FSArray(jCas, 1));
                         reasonConcept.setCoding(0, coding);
                         statement.setReasonForUseCodeableConcept(0, reasonConcept);
@@ -2,18 +2,21 @@ package edu.mayo.bsi.nlp2fhir.transformers;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import edu.mayo.bsi.nlp.vts.SNOMEDCT;
 import edu.mayo.bsi.nlp.vts.UMLS;
 import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.terminology.SnomedCTClosureIndex;
+import edu.mayo.bsi.nlp2fhir.terminology.TerminologyService;
 import edu.mayo.bsi.nlp2fhir.nlp.Section;
 import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.relation.DegreeOfTextRelation;
 import org.apache.ctakes.typesystem.type.relation.LocationOfTextRelation;
 import org.apache.ctakes.typesystem.type.relation.ManifestationOfTextRelation;
 import org.apache.ctakes.typesystem.type.textsem.*;
-import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
@@ -30,6 +33,11 @@ import java.util.*;
  */
 public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
 
+    private final TerminologyService terminology = TerminologyService.getInstance();
+
+    @ExternalResource(key = SnomedCTClosureIndex.RESOURCE_KEY, mandatory = false)
+    private SnomedCTClosureIndex closureIndex;
+
     @Override
     public void process(JCas jCas) throws AnalysisEngineProcessException {
 //        Section s = new Section(jCas, 0, jCas.getDocumentText().length());
@@ -111,7 +119,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
             Util.expand(condition, mention.getBegin(), mention.getEnd());
             if (mention.getOntologyConceptArr() != null) {
                 CodeableConcept concept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
-                concept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
+                concept.setText(FHIRPrimitives.STRING.create(jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
                 FSArray conceptArr = mention.getOntologyConceptArr();
                 for (int j = 0; j < conceptArr.size(); j++) {
                     FeatureStructure fs = conceptArr.get(j);
@@ -124,11 +132,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                     String rootItem = "404684003"; // As defined in http://hl7.org/fhir/ValueSet/condition-code
                     try {
                         boolean hasInterestedParent = false;
-                        for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                        for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                             code = snomedCode;
-                            hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                            hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                             if (hasInterestedParent) {
-                                Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                 if (!preferred.isEmpty()) {
                                     term = preferred.iterator().next();
                                 }
@@ -145,9 +153,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         concept.setCoding(new FSArray(jCas, 1));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
-                        coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, mention.getBegin(), mention.getEnd()));
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setCode(FHIRPrimitives.CODE.create(jCas, code, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         concept.setCoding(0, coding);
                         break;
                     }
@@ -170,7 +178,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                 for (AnatomicalSiteMention site : sites) {
                     CodeableConcept concept = new CodeableConcept(jCas, site.getBegin(), site.getEnd());
                     concept.setText(
-                            Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, site.getCoveredText(), site.getBegin(), site.getEnd()));
+                            FHIRPrimitives.STRING.create(jCas, site.getCoveredText(), site.getBegin(), site.getEnd()));
                     FSArray conceptArr = site.getOntologyConceptArr();
                     for (int j = 0; j < conceptArr.size(); j++) {
                         FeatureStructure fs = conceptArr.get(j);
@@ -183,11 +191,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         String rootItem = "442083009"; // As defined in http://hl7.org/fhir/ValueSet/body-site
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
-                                hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -204,9 +212,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                             concept.setCoding(new FSArray(jCas, 1));
                             Coding coding = new Coding(jCas, site.getBegin(), site.getEnd());
                             coding.addToIndexes();
-                            coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", site.getBegin(), site.getEnd()));
-                            coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, site.getBegin(), site.getEnd()));
-                            coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, site.getBegin(), site.getEnd()));
+                            coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", site.getBegin(), site.getEnd()));
+                            coding.setCode(FHIRPrimitives.CODE.create(jCas, code, site.getBegin(), site.getEnd()));
+                            coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, site.getBegin(), site.getEnd()));
                             concept.setCoding(0, coding);
                             break;
                         }
@@ -226,7 +234,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                 for (DiseaseDisorderMention manifestation : manifestations) {
                     CodeableConcept concept = new CodeableConcept(jCas, manifestation.getBegin(), manifestation.getEnd());
                     concept.setText(
-                            Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, manifestation.getCoveredText(), manifestation.getBegin(), manifestation.getEnd()));
+                            FHIRPrimitives.STRING.create(jCas, manifestation.getCoveredText(), manifestation.getBegin(), manifestation.getEnd()));
                     FSArray conceptArr = manifestation.getOntologyConceptArr();
                     for (int j = 0; j < conceptArr.size(); j++) {
                         FeatureStructure fs = conceptArr.get(j);
@@ -239,11 +247,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         String rootItem = "404684003"; // As defined in http://hl7.org/fhir/ValueSet/manifestation-or-symptom
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
-                                hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -260,9 +268,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                             concept.setCoding(new FSArray(jCas, 1));
                             Coding coding = new Coding(jCas, manifestation.getBegin(), manifestation.getEnd());
                             coding.addToIndexes();
-                            coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", manifestation.getBegin(), manifestation.getEnd()));
-                            coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, manifestation.getBegin(), manifestation.getEnd()));
-                            coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, manifestation.getBegin(), manifestation.getEnd()));
+                            coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", manifestation.getBegin(), manifestation.getEnd()));
+                            coding.setCode(FHIRPrimitives.CODE.create(jCas, code, manifestation.getBegin(), manifestation.getEnd()));
+                            coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, manifestation.getBegin(), manifestation.getEnd()));
                             concept.setCoding(0, coding);
                             break;
                         }
@@ -278,7 +286,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
             if (degreeOfMap.containsKey(mention)) {
                 Modifier severity = degreeOfMap.get(mention);
                 CodeableConcept concept = new CodeableConcept(jCas, severity.getBegin(), severity.getEnd());
-                concept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, severity.getCoveredText(), severity.getBegin(), severity.getEnd()));
+                concept.setText(FHIRPrimitives.STRING.create(jCas, severity.getCoveredText(), severity.getBegin(), severity.getEnd()));
                 FSArray conceptArr = severity.getOntologyConceptArr();
                 if (conceptArr != null) {
                     for (int j = 0; j < conceptArr.size(); j++) {
@@ -295,11 +303,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         valueSet.add("255604002");
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
                                 hasInterestedParent = valueSet.contains(snomedCode);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -316,9 +324,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                             concept.setCoding(new FSArray(jCas, 1));
                             Coding coding = new Coding(jCas, severity.getBegin(), severity.getEnd());
                             coding.addToIndexes();
-                            coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", severity.getBegin(), severity.getEnd()));
-                            coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, severity.getBegin(), severity.getEnd()));
-                            coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, severity.getBegin(), severity.getEnd()));
+                            coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", severity.getBegin(), severity.getEnd()));
+                            coding.setCode(FHIRPrimitives.CODE.create(jCas, code, severity.getBegin(), severity.getEnd()));
+                            coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, severity.getBegin(), severity.getEnd()));
                             concept.setCoding(0, coding);
                             break;
                         }
@@ -331,9 +339,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
             }
             // Negation/abatement
             if (mention.getPolarity() == -1) {
-                condition.setAbatementString(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, "negative", mention.getBegin(), mention.getEnd()));
+                condition.setAbatementString(FHIRPrimitives.STRING.create(jCas, "negative", mention.getBegin(), mention.getEnd()));
             } else {
-                condition.setAbatementString(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, "positive", mention.getBegin(), mention.getEnd()));
+                condition.setAbatementString(FHIRPrimitives.STRING.create(jCas, "positive", mention.getBegin(), mention.getEnd()));
             }
             // Uncertainty
             condition.setExtension(new FSArray(jCas, 1));
@@ -342,9 +350,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
             condition.getExtension(0).addToIndexes();
             condition.getExtension(0).setUrl("uncertainty");
             if (mention.getUncertainty() == 1) {
-                condition.getExtension(0).setValueString(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, "uncertain", mention.getBegin(), mention.getEnd()));
+                condition.getExtension(0).setValueString(FHIRPrimitives.STRING.create(jCas, "uncertain", mention.getBegin(), mention.getEnd()));
             } else {
-                condition.getExtension(0).setValueString(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, "certain", mention.getBegin(), mention.getEnd()));
+                condition.getExtension(0).setValueString(FHIRPrimitives.STRING.create(jCas, "certain", mention.getBegin(), mention.getEnd()));
             }
             condition.addToIndexes();
         }
@@ -381,7 +389,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
             Util.expand(procedure, mention.getBegin(), mention.getEnd());
             if (mention.getOntologyConceptArr() != null) {
                 CodeableConcept concept = new CodeableConcept(jCas, mention.getBegin(), mention.getEnd());
-                concept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
+                concept.setText(FHIRPrimitives.STRING.create(jCas, mention.getCoveredText(), mention.getBegin(), mention.getEnd()));
                 FSArray conceptArr = mention.getOntologyConceptArr();
                 for (int j = 0; j < conceptArr.size(); j++) {
                     FeatureStructure fs = conceptArr.get(j);
@@ -394,11 +402,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                     String rootItem = "71388002"; // As defined in http://hl7.org/fhir/ValueSet/procedure-code
                     try {
                         boolean hasInterestedParent = false;
-                        for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                        for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                             code = snomedCode;
-                            hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                            hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                             if (hasInterestedParent) {
-                                Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                 if (!preferred.isEmpty()) {
                                     term = preferred.iterator().next();
                                 }
@@ -415,9 +423,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         concept.setCoding(new FSArray(jCas, 1));
                         Coding coding = new Coding(jCas, mention.getBegin(), mention.getEnd());
                         coding.addToIndexes();
-                        coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
-                        coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, mention.getBegin(), mention.getEnd()));
-                        coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, mention.getBegin(), mention.getEnd()));
+                        coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", mention.getBegin(), mention.getEnd()));
+                        coding.setCode(FHIRPrimitives.CODE.create(jCas, code, mention.getBegin(), mention.getEnd()));
+                        coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, mention.getBegin(), mention.getEnd()));
                         concept.setCoding(0, coding);
                         break;
                     }
@@ -440,7 +448,7 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                 for (AnatomicalSiteMention site : sites) {
                     CodeableConcept concept = new CodeableConcept(jCas, site.getBegin(), site.getEnd());
                     concept.setText(
-                            Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, site.getCoveredText(), site.getBegin(), site.getEnd()));
+                            FHIRPrimitives.STRING.create(jCas, site.getCoveredText(), site.getBegin(), site.getEnd()));
                     FSArray conceptArr = site.getOntologyConceptArr();
                     for (int j = 0; j < conceptArr.size(); j++) {
                         FeatureStructure fs = conceptArr.get(j);
@@ -453,11 +461,11 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                         String rootItem = "442083009"; // As defined in http://hl7.org/fhir/ValueSet/body-site
                         try {
                             boolean hasInterestedParent = false;
-                            for (String snomedCode : UMLS.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
+                            for (String snomedCode : terminology.getSourceCodesForVocab(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, c.getCui())) {
                                 code = snomedCode;
-                                hasInterestedParent = SNOMEDCT.isChild(snomedCode, rootItem);
+                                hasInterestedParent = terminology.isChild(snomedCode, rootItem, closureIndex);
                                 if (hasInterestedParent) {
-                                    Collection<String> preferred = UMLS.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
+                                    Collection<String> preferred = terminology.getSourceTermPreferredText(UMLS.UMLSSourceVocabulary.SNOMEDCT_US, snomedCode);
                                     if (!preferred.isEmpty()) {
                                         term = preferred.iterator().next();
                                     }
@@ -474,9 +482,9 @@ public class CTAKESToFHIRProblemList extends JCasAnnotator_ImplBase {
                             concept.setCoding(new FSArray(jCas, 1));
                             Coding coding = new Coding(jCas, site.getBegin(), site.getEnd());
                             coding.addToIndexes();
-                            coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://snomed.info/sct", site.getBegin(), site.getEnd()));
-                            coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, code, site.getBegin(), site.getEnd()));
-                            coding.setDisplay(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, term, site.getBegin(), site.getEnd()));
+                            coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://snomed.info/sct", site.getBegin(), site.getEnd()));
+                            coding.setCode(FHIRPrimitives.CODE.create(jCas, code, site.getBegin(), site.getEnd()));
+                            coding.setDisplay(FHIRPrimitives.STRING.create(jCas, term, site.getBegin(), site.getEnd()));
                             concept.setCoding(0, coding);
                             break;
                         }
@@ -1,7 +1,10 @@
 package edu.mayo.bsi.nlp2fhir.transformers;
 
-import edu.mayo.bsi.nlp2fhir.RegexpStatements;
 import edu.mayo.bsi.nlp2fhir.Util;
+import edu.mayo.bsi.nlp2fhir.performance.NumberNormalizer;
+import edu.mayo.bsi.nlp2fhir.performance.FHIRPrimitives;
+import edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser;
+import edu.mayo.bsi.nlp2fhir.transformers.timing.TimingPhraseParser;
 import edu.mayo.bsi.nlp2fhir.valuesets.TimingAbbreviation;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -13,7 +16,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.hl7.fhir.*;
-import org.hl7.fhir.Boolean;
 import org.hl7.fhir.Integer;
 import org.ohnlp.medtagger.type.ConceptMention;
 import org.ohnlp.medtime.type.MedTimex3;
@@ -27,6 +29,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -97,8 +100,8 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
         // - Set frequency information
         MedAttr freqAttr = getMedAttr("frequency", drug.getAttrs());
         if (freqAttr != null) {
-            Matcher m = RegexpStatements.FREQPERIOD.matcher(freqAttr.getCoveredText());
-            if (m.find()) {
+            MatchResult m = FrequencyPeriodParser.find(freqAttr.getCoveredText());
+            if (m != null) {
                 ret.setBegin(freqAttr.getBegin());
                 ret.setEnd(freqAttr.getEnd());
                 // see regex string documentation
@@ -146,39 +149,33 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 }
                 // Populate CAS with Data
                 if (freq1 != null) {
-                    repeatObject.setFrequency(Util.instantiatePrimitiveWithValue(Integer.class, jCas, Util.normalizeNumber(freq1), freqStart, freqEnd));
+                    repeatObject.setFrequency(FHIRPrimitives.INTEGER.create(jCas, Util.normalizeNumber(freq1), freqStart, freqEnd));
                 }
                 if (freq2 != null) {
-                    repeatObject.setFrequencyMax(Util.instantiatePrimitiveWithValue(Integer.class, jCas, Util.normalizeNumber(freq2), freqRangeStart, freqRangeEnd));
+                    repeatObject.setFrequencyMax(FHIRPrimitives.INTEGER.create(jCas, Util.normalizeNumber(freq2), freqRangeStart, freqRangeEnd));
                 }
                 boolean periodModify = (freq4 != null && freq4.toLowerCase().contains("other")) || everyOther != null;
                 // While period unit is checked for in this block, a FHIR representation is not created until later
                 if (period1 != null && period1.length() > 0 && periodUnit != null) {
-                    period1 = Util.normalizeNumber(period1);
-                    if (periodModify) period1 = 2 * java.lang.Integer.valueOf(period1) + "";
-                    repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, period1, perStart, perEnd));
+                    double period = NumberNormalizer.parse(period1);
+                    if (periodModify) period *= 2;
+                    repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, NumberNormalizer.toString(period), perStart, perEnd));
                     if (rangeIndicator != null) {
-                        repeatObject.setPeriodMax(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(period2), perMaxStart, perMaxEnd));
+                        repeatObject.setPeriodMax(FHIRPrimitives.DECIMAL.create(jCas, Util.normalizeNumber(period2), perMaxStart, perMaxEnd));
                     }
                 } else if (periodUnit != null) { // Empty period/period not specified but unit present, assume 1 or 2
-                    repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, periodModify ? "2" : "1", periodModify ? freqAttr.getBegin() + m.start(4) : perUnitStart, perUnitEnd));
+                    repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, periodModify ? "2" : "1", periodModify ? freqAttr.getBegin() + m.start(4) : perUnitStart, perUnitEnd));
                 }
                 if (periodUnit != null) {
-                    repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime(periodUnit), perUnitStart, perUnitEnd));
+                    repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime(periodUnit), perUnitStart, perUnitEnd));
                 }
-                // Do special case postprocessing // TODO positions areslightly off due to removal of multiple spaces
-                String covered = freqAttr.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                if (covered.contains("as needed") || covered.contains("prn")) { // As needed
-                    int start = covered.indexOf("as needed");
-                    int end;
-                    if (start != -1) {
-                        start += freqAttr.getBegin();
-                        end = start + 9;
-                    } else {
-                        start = freqAttr.getBegin() + covered.indexOf("prn");
-                        end = start + 3;
-                    }
-                    ret.setAsNeededBoolean(Util.instantiatePrimitiveWithValue(Boolean.class, jCas, true + "", start, end));
+                // Do special case postprocessing
+                String covered = freqAttr.getCoveredText();
+                TimingPhraseParser.PhraseMatch asNeeded = TimingPhraseParser.findAsNeeded(covered);
+                if (asNeeded != null) { // As needed
+                    int start = freqAttr.getBegin() + asNeeded.getBegin();
+                    int end = freqAttr.getBegin() + asNeeded.getEnd();
+                    ret.setAsNeededBoolean(FHIRPrimitives.BOOLEAN.create(jCas, true + "", start, end));
                     if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                         ret.setBegin(Math.min(ret.getBegin(), start));
                         ret.setEnd(Math.max(ret.getEnd(), end));
@@ -190,11 +187,11 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 // on weekday1, weekday2, weekday3
                 Collection<Sentence> coveringSents = attributeToSentenceLookup.getOrDefault(freqAttr, new LinkedList<>());
                 for (Sentence sentence : coveringSents) {
-                    covered = sentence.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                    Matcher m2 = RegexpStatements.PERIOD_WEEKDAYS.matcher(covered);
-                    if (m2.find()) {
-                        int start = sentence.getBegin() + m2.toMatchResult().start();
-                        int end = sentence.getBegin() + m2.toMatchResult().end();
+                    covered = sentence.getCoveredText();
+                    TimingPhraseParser.WeekdayMatch weekdays = TimingPhraseParser.findWeekdays(covered);
+                    if (weekdays != null) {
+                        int start = sentence.getBegin() + weekdays.getBegin();
+                        int end = sentence.getBegin() + weekdays.getEnd();
                         if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                             ret.setBegin(Math.min(ret.getBegin(), start));
                             ret.setEnd(Math.max(ret.getEnd(), end));
@@ -202,41 +199,33 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             ret.setBegin(start);
                             ret.setEnd(end);
                         }
-                        String other = m2.group(1);
-                        String days = m2.group(2).trim().replaceAll(",", "").replace("and", "").replaceAll(" {2}", " ");
-                        String[] daysParsed = days.split("[, -]");
-                        int freq = daysParsed.length;
-                        int period = (other == null) ? 1 : 2;
+                        int freq = weekdays.getDayCount();
+                        int period = weekdays.isEveryOther() ? 2 : 1;
                         int existingFreq = repeatObject.getFrequency() != null ? java.lang.Integer.valueOf(repeatObject.getFrequency().getValue()) : 1;
                         int existingFreqUpper = repeatObject.getFrequencyMax() != null ? java.lang.Integer.valueOf(repeatObject.getFrequencyMax().getValue()) : 1;
                         freq *= existingFreq;
                         int freqMax = freq * existingFreqUpper;
-                        repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, period + "", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, "wk", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setFrequency(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freq + "", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setFrequencyMax(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
-                        FSArray weekdayArray = new FSArray(jCas, daysParsed.length);
+                        repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, period + "", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, "wk", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setFrequency(FHIRPrimitives.INTEGER.create(jCas, freq + "", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setFrequencyMax(FHIRPrimitives.INTEGER.create(jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
+                        FSArray weekdayArray = new FSArray(jCas, weekdays.getDayCount());
                         weekdayArray.addToIndexes();
                         repeatObject.setDayOfWeek(weekdayArray);
-                        for (int i = 0; i < daysParsed.length; i++) {
+                        for (int i = 0; i < weekdays.getDayCount(); i++) {
                             Code dayCode = new Code(jCas,
-                                    sentence.getBegin() + m2.start(2), sentence.getBegin() + m2.end(2));
-                            Matcher m3 = RegexpStatements.WEEKDAY_PARSER.matcher(daysParsed[i].toLowerCase());
-                            if (!m3.find()) {
-                                // Guaranteed true but just in case
-                                continue;
-                            }
-                            dayCode.setValue(m3.group(1).substring(0, 3));
+                                    sentence.getBegin() + weekdays.getDayBegin(i), sentence.getBegin() + weekdays.getDayEnd(i));
+                            dayCode.setValue(weekdays.getDayCode(i));
                             dayCode.addToIndexes();
                             repeatObject.setDayOfWeek(i, dayCode);
                         }
                     }
                 }
                 // Meals
-                Matcher m2 = RegexpStatements.TIMING_EVENTS.matcher(covered);
-                if (m2.find()) {
-                    String operator = m2.group(1);
-                    String meal = m2.group(2);
+                TimingPhraseParser.PhraseMatch timingEvent = TimingPhraseParser.findEventTiming(covered);
+                if (timingEvent != null) {
+                    String operator = timingEvent.getOperator();
+                    String meal = timingEvent.getValue();
                     int op;
                     switch (operator) {
                         case "before":
@@ -286,8 +275,8 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     }
                 }
                 // Times of day
-                m2 = RegexpStatements.TIME_OF_DAY.matcher(covered);
-                if (m2.find()) {
+                TimingPhraseParser.PhraseMatch timeOfDay = TimingPhraseParser.findTimeOfDay(covered);
+                if (timeOfDay != null) {
                     int start = freqAttr.getBegin();
                     int end = freqAttr.getEnd();
                     if (ret.getBegin() != 0 || ret.getEnd() != 0) {
@@ -300,7 +289,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     EventTiming event = new EventTiming(jCas);
                     event.setBegin(ret.getBegin());
                     event.setEnd(ret.getEnd());
-                    event.setValue(Util.getHL7EventTimingCode(0, m2.group(1)));
+                    event.setValue(Util.getHL7EventTimingCode(0, timeOfDay.getValue()));
                     event.addToIndexes();
                     repeatObject.setWhen(event);
                     if (repeatObject.getFrequency() != null) { // Hard rule match and MutEx, assume when is correct
@@ -333,13 +322,13 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             ret.setBegin(time.getBegin());
                             ret.setEnd(time.getEnd());
                             String[] parsed = fromConvertedISO8601(timestamp);
-                            if (Double.valueOf(Util.normalizeNumber(parsed[0])) % 24 == 0 && parsed[1].equalsIgnoreCase("h")) {
+                            if (NumberNormalizer.parse(parsed[0]) % 24 == 0 && parsed[1].equalsIgnoreCase("h")) {
                                 // Common pattern in MedTime
-                                repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Double.valueOf(Util.normalizeNumber(parsed[0]))/24 + "", time.getBegin(), time.getEnd()));
-                                repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime("day"), time.getBegin(), time.getEnd()));
+                                repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, NumberNormalizer.toString(NumberNormalizer.parse(parsed[0]) / 24), time.getBegin(), time.getEnd()));
+                                repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime("day"), time.getBegin(), time.getEnd()));
                             } else {
-                                repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parsed[0]), time.getBegin(), time.getEnd()));
-                                repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, parsed[1], time.getBegin(), time.getEnd()));
+                                repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, Util.normalizeNumber(parsed[0]), time.getBegin(), time.getEnd()));
+                                repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, parsed[1], time.getBegin(), time.getEnd()));
                             }
                             flag = true;
                             break;
@@ -347,18 +336,12 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     }
                 }
                 // Check for special cases via rule based methods TODO cleanup/abstractify
-                String covered = freqAttr.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                if (covered.contains("as needed") || covered.contains("prn")) { // As needed
-                    int start = covered.indexOf("as needed");
-                    int end;
-                    if (start != -1) {
-                        start += freqAttr.getBegin();
-                        end = start + 9;
-                    } else {
-                        start = freqAttr.getBegin() + covered.indexOf("prn");
-                        end = start + 3;
-                    }
-                    ret.setAsNeededBoolean(Util.instantiatePrimitiveWithValue(Boolean.class, jCas, true + "", start, end));
+                String covered = freqAttr.getCoveredText();
+                TimingPhraseParser.PhraseMatch asNeeded = TimingPhraseParser.findAsNeeded(covered);
+                if (asNeeded != null) { // As needed
+                    int start = freqAttr.getBegin() + asNeeded.getBegin();
+                    int end = freqAttr.getBegin() + asNeeded.getEnd();
+                    ret.setAsNeededBoolean(FHIRPrimitives.BOOLEAN.create(jCas, true + "", start, end));
                     if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                         ret.setBegin(Math.min(ret.getBegin(), start));
                         ret.setEnd(Math.max(ret.getEnd(), end));
@@ -371,11 +354,11 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 // on weekday1, weekday2, weekday3
                 Collection<Sentence> coveringSents = attributeToSentenceLookup.getOrDefault(freqAttr, new LinkedList<>());
                 for (Sentence sentence : coveringSents) {
-                    covered = sentence.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                    Matcher m2 = RegexpStatements.PERIOD_WEEKDAYS.matcher(covered);
-                    if (m2.find()) {
-                        int start = sentence.getBegin() + m2.toMatchResult().start();
-                        int end = sentence.getBegin() + m2.toMatchResult().end();
+                    covered = sentence.getCoveredText();
+                    TimingPhraseParser.WeekdayMatch weekdays = TimingPhraseParser.findWeekdays(covered);
+                    if (weekdays != null) {
+                        int start = sentence.getBegin() + weekdays.getBegin();
+                        int end = sentence.getBegin() + weekdays.getEnd();
                         if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                             ret.setBegin(Math.min(ret.getBegin(), start));
                             ret.setEnd(Math.max(ret.getEnd(), end));
@@ -383,32 +366,24 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             ret.setBegin(start);
                             ret.setEnd(end);
                         }
-                        String other = m2.group(1);
-                        String days = m2.group(2).trim().replaceAll(",", "").replace("and", "").replaceAll(" {2}", " ");
-                        String[] daysParsed = days.split("[, -]");
-                        int freq = daysParsed.length;
-                        int period = (other == null) ? 1 : 2;
+                        int freq = weekdays.getDayCount();
+                        int period = weekdays.isEveryOther() ? 2 : 1;
                         int existingFreq = repeatObject.getFrequency() != null ? java.lang.Integer.valueOf(repeatObject.getFrequency().getValue()) : 1;
                         int existingFreqUpper = repeatObject.getFrequencyMax() != null ? java.lang.Integer.valueOf(repeatObject.getFrequencyMax().getValue()) : 1;
                         freq *= existingFreq;
                         int freqMax = freq * existingFreqUpper;
-                        repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, period + "", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, "wk", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setFrequency(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freq + "", ret.getBegin(), ret.getEnd()));
-                        repeatObject.setFrequencyMax(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
-                        FSArray weekdayArray = new FSArray(jCas, daysParsed.length);
+                        repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, period + "", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, "wk", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setFrequency(FHIRPrimitives.INTEGER.create(jCas, freq + "", ret.getBegin(), ret.getEnd()));
+                        repeatObject.setFrequencyMax(FHIRPrimitives.INTEGER.create(jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
+                        FSArray weekdayArray = new FSArray(jCas, weekdays.getDayCount());
                         weekdayArray.addToIndexes();
                         repeatObject.setDayOfWeek(weekdayArray);
-                        for (int i = 0; i < daysParsed.length; i++) {
+                        for (int i = 0; i < weekdays.getDayCount(); i++) {
                             Code dayCode = new Code(jCas);
-                            dayCode.setBegin(sentence.getBegin() + m2.start(2));
-                            dayCode.setEnd(sentence.getBegin() + m2.end(2));
-                            Matcher m3 = RegexpStatements.WEEKDAY_PARSER.matcher(daysParsed[i].toLowerCase());
-                            if (!m3.find()) {
-                                // Guaranteed true
-                                continue;
-                            }
-                            dayCode.setValue(m3.group(1).substring(0, 3));
+                            dayCode.setBegin(sentence.getBegin() + weekdays.getDayBegin(i));
+                            dayCode.setEnd(sentence.getBegin() + weekdays.getDayEnd(i));
+                            dayCode.setValue(weekdays.getDayCode(i));
                             dayCode.addToIndexes();
                             repeatObject.setDayOfWeek(i, dayCode);
                         }
@@ -416,10 +391,10 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     }
                 }
                 // Meals
-                Matcher m2 = RegexpStatements.TIMING_EVENTS.matcher(covered);
-                if (m2.find()) {
-                    String operator = m2.group(1);
-                    String meal = m2.group(2);
+                TimingPhraseParser.PhraseMatch timingEvent = TimingPhraseParser.findEventTiming(covered);
+                if (timingEvent != null) {
+                    String operator = timingEvent.getOperator();
+                    String meal = timingEvent.getValue();
                     int op;
                     switch (operator) {
                         case "before":
@@ -470,8 +445,8 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     flag = true;
                 }
                 // Times of day
-                m2 = RegexpStatements.TIME_OF_DAY.matcher(covered);
-                if (m2.find()) {
+                TimingPhraseParser.PhraseMatch timeOfDay = TimingPhraseParser.findTimeOfDay(covered);
+                if (timeOfDay != null) {
                     int start = freqAttr.getBegin();
                     int end = freqAttr.getEnd();
                     if (ret.getBegin() != 0 || ret.getEnd() != 0) {
@@ -484,7 +459,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     EventTiming event = new EventTiming(jCas);
                     event.setBegin(ret.getBegin());
                     event.setEnd(ret.getEnd());
-                    event.setValue(Util.getHL7EventTimingCode(0, m2.group(1)));
+                    event.setValue(Util.getHL7EventTimingCode(0, timeOfDay.getValue()));
                     event.addToIndexes();
                     repeatObject.setWhen(event);
                     if (repeatObject.getFrequency() != null) { // Hard rule match and MutEx, assume when is correct
@@ -506,7 +481,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 }
                 // - No special cases
                 if (!flag) {
-                    ret.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, freqAttr.getCoveredText(), freqAttr.getBegin(), freqAttr.getEnd()));
+                    ret.setText(FHIRPrimitives.STRING.create(jCas, freqAttr.getCoveredText(), freqAttr.getBegin(), freqAttr.getEnd()));
                 }
             }
         } else {
@@ -521,27 +496,21 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                         ret.setBegin(time.getBegin());
                         ret.setEnd(time.getEnd());
                         String[] parsed = fromConvertedISO8601(timestamp);
-                        if (Double.valueOf(Util.normalizeNumber(parsed[0])) % 24 == 0 && parsed[1].equalsIgnoreCase("h")) {
+                        if (NumberNormalizer.parse(parsed[0]) % 24 == 0 && parsed[1].equalsIgnoreCase("h")) {
                             // Common pattern in MedTime
-                            repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Double.valueOf(Util.normalizeNumber(parsed[0]))/24 + "", time.getBegin(), time.getEnd()));
-                            repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime("day"), time.getBegin(), time.getEnd()));
+                            repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, NumberNormalizer.toString(NumberNormalizer.parse(parsed[0]) / 24), time.getBegin(), time.getEnd()));
+                            repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime("day"), time.getBegin(), time.getEnd()));
                         } else {
-                            repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parsed[0]), time.getBegin(), time.getEnd()));
-                            repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, parsed[1], time.getBegin(), time.getEnd()));
+                            repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, Util.normalizeNumber(parsed[0]), time.getBegin(), time.getEnd()));
+                            repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, parsed[1], time.getBegin(), time.getEnd()));
                         }
                         // Check for special cases via rule based methods TODO cleanup/abstractify
-                        String covered = time.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                        if (covered.contains("as needed") || covered.contains("prn")) { // As needed
-                            int start = covered.indexOf("as needed");
-                            int end;
-                            if (start != -1) {
-                                start += freqAttr.getBegin();
-                                end = start + 9;
-                            } else {
-                                start = freqAttr.getBegin() + covered.indexOf("prn");
-                                end = start + 3;
-                            }
-                            ret.setAsNeededBoolean(Util.instantiatePrimitiveWithValue(Boolean.class, jCas, true + "", start, end));
+                        String covered = time.getCoveredText();
+                        TimingPhraseParser.PhraseMatch asNeeded = TimingPhraseParser.findAsNeeded(covered);
+                        if (asNeeded != null) { // As needed
+                            int start = time.getBegin() + asNeeded.getBegin();
+                            int end = time.getBegin() + asNeeded.getEnd();
+                            ret.setAsNeededBoolean(FHIRPrimitives.BOOLEAN.create(jCas, true + "", start, end));
                             if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                                 ret.setBegin(Math.min(ret.getBegin(), start));
                                 ret.setEnd(Math.max(ret.getEnd(), end));
@@ -553,11 +522,11 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                         // on weekday1, weekday2, weekday3
                         Collection<Sentence> coveringSents = attributeToSentenceLookup.getOrDefault(freqAttr, new LinkedList<>());
                         for (Sentence sentence : coveringSents) {
-                            covered = sentence.getCoveredText().toLowerCase().replaceAll("-", " ").replaceAll(" {2}", " ");
-                            Matcher m2 = RegexpStatements.PERIOD_WEEKDAYS.matcher(covered);
-                            if (m2.find()) {
-                                int start = sentence.getBegin() + m2.toMatchResult().start();
-                                int end = sentence.getBegin() + m2.toMatchResult().end();
+                            covered = sentence.getCoveredText();
+                            TimingPhraseParser.WeekdayMatch weekdays = TimingPhraseParser.findWeekdays(covered);
+                            if (weekdays != null) {
+                                int start = sentence.getBegin() + weekdays.getBegin();
+                                int end = sentence.getBegin() + weekdays.getEnd();
                                 if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                                     ret.setBegin(Math.min(ret.getBegin(), start));
                                     ret.setEnd(Math.max(ret.getEnd(), end));
@@ -565,42 +534,34 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                                     ret.setBegin(start);
                                     ret.setEnd(end);
                                 }
-                                String other = m2.group(1);
-                                String days = m2.group(2).trim().replaceAll(",", "").replace("and", "").replaceAll(" {2}", " ");
-                                String[] daysParsed = days.split("[, -]");
-                                int freq = daysParsed.length;
-                                int period = (other == null) ? 1 : 2;
+                                int freq = weekdays.getDayCount();
+                                int period = weekdays.isEveryOther() ? 2 : 1;
                                 int existingFreq = repeatObject.getFrequency() != null ? java.lang.Integer.valueOf(repeatObject.getFrequency().getValue()) : 1;
                                 int existingFreqUpper = repeatObject.getFrequencyMax() != null ? java.lang.Integer.valueOf(repeatObject.getFrequencyMax().getValue()) : 1;
                                 freq *= existingFreq;
                                 int freqMax = freq * existingFreqUpper;
-                                repeatObject.setPeriod(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, period + "", ret.getBegin(), ret.getEnd()));
-                                repeatObject.setPeriodUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, "wk", ret.getBegin(), ret.getEnd()));
-                                repeatObject.setFrequency(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freq + "", ret.getBegin(), ret.getEnd()));
-                                repeatObject.setFrequencyMax(Util.instantiatePrimitiveWithValue(Integer.class, jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
-                                FSArray weekdayArray = new FSArray(jCas, daysParsed.length);
+                                repeatObject.setPeriod(FHIRPrimitives.DECIMAL.create(jCas, period + "", ret.getBegin(), ret.getEnd()));
+                                repeatObject.setPeriodUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, "wk", ret.getBegin(), ret.getEnd()));
+                                repeatObject.setFrequency(FHIRPrimitives.INTEGER.create(jCas, freq + "", ret.getBegin(), ret.getEnd()));
+                                repeatObject.setFrequencyMax(FHIRPrimitives.INTEGER.create(jCas, freqMax + "", ret.getBegin(), ret.getEnd()));
+                                FSArray weekdayArray = new FSArray(jCas, weekdays.getDayCount());
                                 weekdayArray.addToIndexes();
                                 repeatObject.setDayOfWeek(weekdayArray);
-                                for (int i = 0; i < daysParsed.length; i++) {
+                                for (int i = 0; i < weekdays.getDayCount(); i++) {
                                     Code dayCode = new Code(jCas);
-                                    dayCode.setBegin(sentence.getBegin() + m2.start(2));
-                                    dayCode.setEnd(sentence.getBegin() + m2.end(2));
-                                    Matcher m3 = RegexpStatements.WEEKDAY_PARSER.matcher(daysParsed[i].toLowerCase());
-                                    if (!m3.find()) {
-                                        // Guaranteed true
-                                        continue;
-                                    }
-                                    dayCode.setValue(m3.group(1).substring(0, 3));
+                                    dayCode.setBegin(sentence.getBegin() + weekdays.getDayBegin(i));
+                                    dayCode.setEnd(sentence.getBegin() + weekdays.getDayEnd(i));
+                                    dayCode.setValue(weekdays.getDayCode(i));
                                     dayCode.addToIndexes();
                                     repeatObject.setDayOfWeek(i, dayCode);
                                 }
                             }
                         }
                         // Meals
-                        Matcher m2 = RegexpStatements.TIMING_EVENTS.matcher(covered);
-                        if (m2.find()) {
-                            String operator = m2.group(1);
-                            String meal = m2.group(2);
+                        TimingPhraseParser.PhraseMatch timingEvent = TimingPhraseParser.findEventTiming(covered);
+                        if (timingEvent != null) {
+                            String operator = timingEvent.getOperator();
+                            String meal = timingEvent.getValue();
                             int op;
                             switch (operator) {
                                 case "before":
@@ -651,8 +612,8 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             }
                         }
                         // Times of day
-                        m2 = RegexpStatements.TIME_OF_DAY.matcher(covered);
-                        if (m2.find()) {
+                        TimingPhraseParser.PhraseMatch timeOfDay = TimingPhraseParser.findTimeOfDay(covered);
+                        if (timeOfDay != null) {
                             if (ret.getBegin() != 0 || ret.getEnd() != 0) {
                                 ret.setBegin(Math.min(ret.getBegin(), time.getBegin()));
                                 ret.setEnd(Math.max(ret.getEnd(), time.getEnd()));
@@ -663,7 +624,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             EventTiming event = new EventTiming(jCas);
                             event.setBegin(ret.getBegin());
                             event.setEnd(ret.getEnd());
-                            event.setValue(Util.getHL7EventTimingCode(0, m2.group(1)));
+                            event.setValue(Util.getHL7EventTimingCode(0, timeOfDay.getValue()));
                             event.addToIndexes();
                             repeatObject.setWhen(event);
                             if (repeatObject.getFrequency() != null) { // Hard rule match and MutEx, assume when is correct
@@ -698,8 +659,8 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
             }
             try {
                 String[] parsed = durationAttr.getCoveredText().split("[ -]"); // All supplied examples follow this format, but could be more comprehensive TODO
-                Decimal dObj = Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parsed[0]), durationAttr.getBegin(), durationAttr.getEnd());
-                FHIRString unitString = Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, Util.transformUnitOfTime(parsed[1]), durationAttr.getBegin(), durationAttr.getEnd());
+                Decimal dObj = FHIRPrimitives.DECIMAL.create(jCas, Util.normalizeNumber(parsed[0]), durationAttr.getBegin(), durationAttr.getEnd());
+                FHIRString unitString = FHIRPrimitives.STRING.create(jCas, Util.transformUnitOfTime(parsed[1]), durationAttr.getBegin(), durationAttr.getEnd());
                 if (freqAttr != null) { // If a frequency is present this is a bounded duration instead
                     Duration d = new Duration(jCas, durationAttr.getBegin(), durationAttr.getEnd());
                     d.setValue(dObj);
@@ -708,7 +669,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     repeatObject.setBoundsDuration(d);
                 } else {
                     repeatObject.setDuration(dObj); //TODO does not support ranges but it doesn't seem to be a valid input case
-                    repeatObject.setDurationUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime(parsed[1]), durationAttr.getBegin(), durationAttr.getEnd()));
+                    repeatObject.setDurationUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime(parsed[1]), durationAttr.getBegin(), durationAttr.getEnd()));
                 }
             } catch (IndexOutOfBoundsException e) {
                 // Unmatched - see if MedTime has an associated identification
@@ -725,14 +686,14 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                             if (freqAttr != null) {// If a frequency is present this is a bounded duration instead
                                 Duration d = new Duration(jCas, time.getBegin(), time.getEnd());
                                 String[] parsed = fromConvertedISO8601(timestamp);
-                                d.setValue(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, parsed[0], time.getBegin(), time.getEnd()));
-                                d.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
+                                d.setValue(FHIRPrimitives.DECIMAL.create(jCas, parsed[0], time.getBegin(), time.getEnd()));
+                                d.setUnit(FHIRPrimitives.STRING.create(jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
                                 d.addToIndexes();
                                 repeatObject.setBoundsDuration(d);
                             } else {
                                 String[] parsed = fromConvertedISO8601(timestamp);
-                                repeatObject.setDuration(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, parsed[0], time.getBegin(), time.getEnd()));
-                                repeatObject.setDurationUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
+                                repeatObject.setDuration(FHIRPrimitives.DECIMAL.create(jCas, parsed[0], time.getBegin(), time.getEnd()));
+                                repeatObject.setDurationUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
                             }
                             flag = true;
                             break;
@@ -767,14 +728,14 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                         if (freqAttr != null) {
                             Duration d = new Duration(jCas, time.getBegin(), time.getEnd());
                             String[] parsed = fromConvertedISO8601(timestamp);
-                            d.setValue(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, parsed[0], time.getBegin(), time.getEnd()));
-                            d.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, parsed[1], time.getBegin(), time.getEnd()));
+                            d.setValue(FHIRPrimitives.DECIMAL.create(jCas, parsed[0], time.getBegin(), time.getEnd()));
+                            d.setUnit(FHIRPrimitives.STRING.create(jCas, parsed[1], time.getBegin(), time.getEnd()));
                             d.addToIndexes();
                             repeatObject.setBoundsDuration(d);
                         } else {
                             String[] parsed = fromConvertedISO8601(timestamp);
-                            repeatObject.setDuration(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, parsed[0], time.getBegin(), time.getEnd()));
-                            repeatObject.setDurationUnit(Util.instantiatePrimitiveWithValue(UnitsOfTime.class, jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
+                            repeatObject.setDuration(FHIRPrimitives.DECIMAL.create(jCas, parsed[0], time.getBegin(), time.getEnd()));
+                            repeatObject.setDurationUnit(FHIRPrimitives.UNITS_OF_TIME.create(jCas, Util.transformUnitOfTime(parsed[1]), time.getBegin(), time.getEnd()));
                         }
                         break;
                     }
@@ -793,13 +754,13 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 int end = Math.max(Math.max(repeatObject.getFrequency().getEnd(), repeatObject.getPeriod().getEnd()), repeatObject.getPeriodUnit().getEnd());
                 CodeableConcept c = new CodeableConcept(jCas, start, end);
                 c.addToIndexes();
-                c.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, abbv.name(), start, end));
+                c.setText(FHIRPrimitives.STRING.create(jCas, abbv.name(), start, end));
                 c.setCoding(new FSArray(jCas, 1));
                 Coding coding = new Coding(jCas, start, end);
                 coding.addToIndexes();
                 c.setCoding(0, coding);
-                coding.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://hl7.org/fhir/v3/GTSAbbreviation", start, end));
-                coding.setCode(Util.instantiatePrimitiveWithValue(Code.class, jCas, abbv.name(), start, end));
+                coding.setSystem(FHIRPrimitives.URI.create(jCas, "http://hl7.org/fhir/v3/GTSAbbreviation", start, end));
+                coding.setCode(FHIRPrimitives.CODE.create(jCas, abbv.name(), start, end));
                 timing.setCode(c);
             }
         }
@@ -815,7 +776,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
         MedAttr routeAttr = getMedAttr("route", drug.getAttrs());
         if (routeAttr != null) {
             CodeableConcept routeConcept = new CodeableConcept(jCas, routeAttr.getBegin(), routeAttr.getEnd());
-            routeConcept.setText(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, routeAttr.getCoveredText(), routeAttr.getBegin(), routeAttr.getEnd()));
+            routeConcept.setText(FHIRPrimitives.STRING.create(jCas, routeAttr.getCoveredText(), routeAttr.getBegin(), routeAttr.getEnd()));
             routeConcept.addToIndexes();
             ret.setRoute(routeConcept);
             Util.expand(ret, routeAttr.getBegin(), routeAttr.getEnd());
@@ -831,23 +792,25 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                         unit = parsed[1].split("[- ]")[1];
                         parsed[1] = parsed[1].split("[- ]")[0];
                     }
-                    if (Double.valueOf(Util.normalizeNumber(parsed[0].trim())) > Double.valueOf(Util.normalizeNumber(parsed[1].trim()))) {
-                        String temp = parsed[0];
-                        parsed[0] = parsed[1];
-                        parsed[1] = temp;
+                    double lowValue = NumberNormalizer.parse(parsed[0]);
+                    double highValue = NumberNormalizer.parse(parsed[1]);
+                    if (lowValue > highValue) {
+                        double temp = lowValue;
+                        lowValue = highValue;
+                        highValue = temp;
                     }
                     Range rangeObj = new Range(jCas, dosageAttr.getBegin(), dosageAttr.getEnd());
                     Quantity low = new Quantity(jCas, dosageAttr.getBegin(), dosageAttr.getEnd());
 
-                    low.setValue(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parsed[0].trim()), dosageAttr.getBegin(), dosageAttr.getEnd()));
+                    low.setValue(FHIRPrimitives.DECIMAL.create(jCas, NumberNormalizer.toString(lowValue), dosageAttr.getBegin(), dosageAttr.getEnd()));
                     if (unit != null) {
-                        low.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, unit, dosageAttr.getBegin(), dosageAttr.getEnd()));
+                        low.setUnit(FHIRPrimitives.STRING.create(jCas, unit, dosageAttr.getBegin(), dosageAttr.getEnd()));
                     }
                     low.addToIndexes();
                     Quantity high = new Quantity(jCas, dosageAttr.getBegin(), dosageAttr.getEnd());
-                    high.setValue(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parsed[1]), dosageAttr.getBegin(), dosageAttr.getEnd()));
+                    high.setValue(FHIRPrimitives.DECIMAL.create(jCas, NumberNormalizer.toString(highValue), dosageAttr.getBegin(), dosageAttr.getEnd()));
                     if (unit != null) {
-                        high.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, unit, dosageAttr.getBegin(), dosageAttr.getEnd()));
+                        high.setUnit(FHIRPrimitives.STRING.create(jCas, unit, dosageAttr.getBegin(), dosageAttr.getEnd()));
                     }
                     high.addToIndexes();
                     rangeObj.setLow(low);
@@ -856,15 +819,15 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                     rangeObj.setBegin(dosageAttr.getBegin());
                     rangeObj.setEnd(dosageAttr.getEnd());
                     ret.setDoseRange(rangeObj);
-                } catch (IndexOutOfBoundsException e) {
+                } catch (IndexOutOfBoundsException | NumberFormatException e) {
                     getLogger().warn("Could not process dosage range " + dosageAttr.getCoveredText());
                 }
             } else {
                 Quantity dosage = new Quantity(jCas, dosageAttr.getBegin(), dosageAttr.getEnd());
                 String[] parse = dosageAttr.getCoveredText().split("[- ]");
-                dosage.setValue(Util.instantiatePrimitiveWithValue(Decimal.class, jCas, Util.normalizeNumber(parse[0]), dosageAttr.getBegin(), dosageAttr.getEnd()));
+                dosage.setValue(FHIRPrimitives.DECIMAL.create(jCas, Util.normalizeNumber(parse[0]), dosageAttr.getBegin(), dosageAttr.getEnd()));
                 if (parse.length > 1) {
-                    dosage.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, parse[1], dosageAttr.getBegin(), dosageAttr.getEnd()));
+                    dosage.setUnit(FHIRPrimitives.STRING.create(jCas, parse[1], dosageAttr.getBegin(), dosageAttr.getEnd()));
                 }
                 dosage.addToIndexes();
                 ret.setDoseSimpleQuantity(dosage);
@@ -884,7 +847,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 periodQuant.setValue(periodToUse);
                 UnitsOfTime uot = ret.getTiming().getRepeat().getPeriodUnit();
                 if (uot != null) {
-                    periodQuant.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, uot.getValue(), uot.getBegin(), uot.getEnd()));
+                    periodQuant.setUnit(FHIRPrimitives.STRING.create(jCas, uot.getValue(), uot.getBegin(), uot.getEnd()));
                 }
                 r.setDenominator(periodQuant);
                 ret.setMaxDosePerPeriod(r);
@@ -900,7 +863,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
                 periodQuant.setValue(periodToUse);
                 UnitsOfTime uot = ret.getTiming().getRepeat().getPeriodUnit();
                 if (uot != null) {
-                    periodQuant.setUnit(Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, uot.getValue(), uot.getBegin(), uot.getEnd()));
+                    periodQuant.setUnit(FHIRPrimitives.STRING.create(jCas, uot.getValue(), uot.getBegin(), uot.getEnd()));
                 }
                 r.setDenominator(periodQuant);
                 ret.setMaxDosePerPeriod(r);
@@ -1043,7 +1006,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
         String name = concept.getNormTarget();
         // - Populate Ingredient FHIR Concept
         CodeableConcept fhirConcept = new CodeableConcept(jCas, concept.getBegin(), concept.getEnd());
-        FHIRString nameString = Util.instantiatePrimitiveWithValue(FHIRString.class, jCas, name, concept.getBegin(), concept.getEnd());
+        FHIRString nameString = FHIRPrimitives.STRING.create(jCas, name, concept.getBegin(), concept.getEnd());
         nameString.addToIndexes();
         FSArray coding = new FSArray(jCas, 1);
         coding.addToIndexes();
@@ -1059,7 +1022,7 @@ public class MedExtractorsToFHIRMedications extends JCasAnnotator_ImplBase {
         code.setValue(cui);
         code.addToIndexes();
         codingObj.setCode(code);
-        codingObj.setSystem(Util.instantiatePrimitiveWithValue(Uri.class, jCas, "http://www.nlm.nih.gov/research/umls/rxnorm", concept.getBegin(), concept.getEnd()));
+        codingObj.setSystem(FHIRPrimitives.URI.create(jCas, "http://www.nlm.nih.gov/research/umls/rxnorm", concept.getBegin(), concept.getEnd()));
         codingObj.addToIndexes();
         fhirConcept.setText(nameString);
         fhirConcept.setCoding(coding);
@@ -0,0 +1,399 @@
+package edu.mayo.bsi.nlp2fhir.transformers.timing;
+
+import edu.mayo.bsi.nlp2fhir.RegexpStatements;
+
+import java.util.Arrays;
+import java.util.regex.MatchResult;
+
+/**
+ * A hand-written equivalent of {@link RegexpStatements#FREQPERIOD}, used to parse frequency and period expressions
+ * (e.g. "2-3 times a day", "twice daily", "every other week", "q 4-6 hours") out of MedXN frequency attributes.<br>
+ * <br>
+ * {@link #find(CharSequence)} returns the same match, with the same groups at the same offsets, as
+ * <code>FREQPERIOD.matcher(text).find()</code> would: candidate parses are tried in the order the regular expression
+ * engine would try them, but without its repeated backtracking over the number and unit alternations. See
+ * {@link RegexpStatements#FREQPERIOD} for the meaning of each group.
+ */
+public final class FrequencyPeriodParser {
+
+    // Group numbers, as documented for FREQPERIOD
+    private static final int FREQUENCY = 1;
+    private static final int FREQUENCY_MAX = 2;
+    private static final int FREQUENCY_LY = 3;
+    private static final int EVERY = 4;
+    private static final int EVERY_OTHER = 5;
+    private static final int PERIOD_EXPRESSION = 6;
+    private static final int PERIOD = 7;
+    private static final int PERIOD_RANGE = 8;
+    private static final int PERIOD_MAX = 9;
+    private static final int PERIOD_UNIT = 10;
+    private static final int PERIOD_LY = 11;
+    private static final int GROUPS = 11;
+
+    private static final String[] NUMBER_WORDS = {"one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten"};
+    private static final String[] MULTIPLIERS = {"once", "twice", "thrice"};
+    private static final String[] UNITS = {"hourly", "daily", "monthly", "weekly", "yearly", "day", "hour", "week",
+            "month", "year", "second", "minute", "monday", "tuesday", "wednesday", "thursday", "friday", "saturday",
+            "sunday"};
+    // Single letter units, which must be followed by a word boundary
+    private static final String UNIT_LETTERS = "dmyshw";
+    private static final String[] LY_UNITS = {"hourly", "daily", "monthly", "weekly", "yearly"};
+    // The letters a match can begin with, besides digits
+    private static final String INITIALS = "otfsenhdmwy";
+
+    private FrequencyPeriodParser() {
+    }
+
+    /**
+     * @param text The text to search
+     * @return The first frequency/period expression within text, or null if there is none
+     */
+    public static MatchResult find(CharSequence text) {
+        // Groups are only ever set once a match has succeeded, so need not be reset between positions
+        int[] groups = new int[(GROUPS + 1) * 2];
+        Arrays.fill(groups, -1);
+        for (int p = 0; p < text.length(); p++) {
+            char c = text.charAt(p);
+            if (!isNumeric(c) && INITIALS.indexOf(toLowerCase(c)) < 0) {
+                continue;
+            }
+            if (matchFrequencyPeriod(text, p, groups) || matchLy(text, p, groups)) {
+                groups[0] = p;
+                return new Match(text, groups);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches a frequency header followed by a separator and a period
+     */
+    private static boolean matchFrequencyPeriod(CharSequence text, int p, int[] groups) {
+        // Number or number range followed by "time(s)"
+        for (int freqEnd = numberEnd(text, p); freqEnd >= 0; freqEnd = shorterNumberEnd(text, p, freqEnd)) {
+            if (charAt(text, freqEnd) == '-') {
+                for (int maxEnd = numberEnd(text, freqEnd + 1); maxEnd >= 0; maxEnd = shorterNumberEnd(text, freqEnd + 1, maxEnd)) {
+                    if (matchTimes(text, maxEnd, groups)) {
+                        setGroup(groups, FREQUENCY, p, freqEnd);
+                        setGroup(groups, FREQUENCY_MAX, freqEnd + 1, maxEnd);
+                        return true;
+                    }
+                }
+            }
+            if (matchTimes(text, freqEnd, groups)) {
+                setGroup(groups, FREQUENCY, p, freqEnd);
+                return true;
+            }
+        }
+        // Once, twice, thrice, optionally followed by " - "
+        int lyEnd = matchAny(text, p, MULTIPLIERS);
+        if (lyEnd >= 0) {
+            for (int i = 0; i < 2; i++) {
+                int a = optional(text, lyEnd, ' ', i);
+                for (int j = 0; a >= 0 && j < 2; j++) {
+                    int b = optional(text, a, '-', j);
+                    for (int k = 0; b >= 0 && k < 2; k++) {
+                        int c = optional(text, b, ' ', k);
+                        if (c >= 0 && matchSeparatorAndPeriod(text, c, groups)) {
+                            setGroup(groups, FREQUENCY_LY, p, lyEnd);
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        // A single digit
+        if (isNumeric(charAt(text, p)) && matchSeparatorAndPeriod(text, p + 1, groups)) {
+            return true;
+        }
+        // Every (other)
+        if (regionMatches(text, p, "every")) {
+            int everyEnd = p + 5;
+            if (isSpaceOrDash(charAt(text, everyEnd)) && regionMatches(text, everyEnd + 1, "other")
+                    && matchSeparatorAndPeriod(text, everyEnd + 6, groups)) {
+                setGroup(groups, EVERY, p, everyEnd + 6);
+                return true;
+            }
+            if (matchSeparatorAndPeriod(text, everyEnd, groups)) {
+                setGroup(groups, EVERY, p, everyEnd);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches " time" or " times" followed by a separator and period
+     */
+    private static boolean matchTimes(CharSequence text, int p, int[] groups) {
+        if (charAt(text, p) != ' ' || !regionMatches(text, p + 1, "time")) {
+            return false;
+        }
+        int end = p + 5;
+        return (equalsIgnoreCase(charAt(text, end), 's') && matchSeparatorAndPeriod(text, end + 1, groups))
+                || matchSeparatorAndPeriod(text, end, groups);
+    }
+
+    private static boolean matchSeparatorAndPeriod(CharSequence text, int p, int[] groups) {
+        boolean spaced = isSpaceOrDash(charAt(text, p));
+        // " a "
+        if (spaced && equalsIgnoreCase(charAt(text, p + 1), 'a') && isSpaceOrDash(charAt(text, p + 2))
+                && matchPeriod(text, p + 3, groups)) {
+            return true;
+        }
+        // " / "
+        for (int i = 0; i < 2; i++) {
+            int a = optional(text, p, ' ', i);
+            if (a >= 0 && charAt(text, a) == '/') {
+                for (int j = 0; j < 2; j++) {
+                    int b = optional(text, a + 1, ' ', j);
+                    if (b >= 0 && matchPeriod(text, b, groups)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        // " every (other) "
+        if (spaced && regionMatches(text, p + 1, "every") && isSpaceOrDash(charAt(text, p + 6))) {
+            int other = p + 7;
+            if (regionMatches(text, other, "other") && isSpaceOrDash(charAt(text, other + 5))
+                    && matchPeriod(text, other + 6, groups)) {
+                setGroup(groups, EVERY_OTHER, other, other + 6);
+                return true;
+            }
+            if (matchPeriod(text, other, groups)) {
+                return true;
+            }
+        }
+        // " per "
+        if (spaced && regionMatches(text, p + 1, "per") && isSpaceOrDash(charAt(text, p + 4))
+                && matchPeriod(text, p + 5, groups)) {
+            return true;
+        }
+        return (spaced && matchPeriod(text, p + 1, groups)) || matchPeriod(text, p, groups);
+    }
+
+    /**
+     * Matches an optional period length or length range followed by a period unit
+     */
+    private static boolean matchPeriod(CharSequence text, int p, int[] groups) {
+        for (int first = numberEnd(text, p); ; first = shorterNumberEnd(text, p, first)) {
+            int afterFirst = first >= 0 ? first : p;
+            for (int i = 0; i < 2; i++) {
+                int afterRange = optional(text, afterFirst, '-', i);
+                if (afterRange < 0) {
+                    continue;
+                }
+                for (int second = numberEnd(text, afterRange); second >= 0; second = shorterNumberEnd(text, afterRange, second)) {
+                    for (int j = 0; j < 2; j++) {
+                        int unit = optional(text, second, ' ', j);
+                        if (unit >= 0 && matchUnit(text, p, unit, groups)) {
+                            if (first >= 0) {
+                                setGroup(groups, PERIOD, p, first);
+                            }
+                            if (afterRange > afterFirst) {
+                                setGroup(groups, PERIOD_RANGE, afterFirst, afterRange);
+                            }
+                            setGroup(groups, PERIOD_MAX, afterRange, second);
+                            return true;
+                        }
+                    }
+                }
+            }
+            if (first < 0) {
+                break;
+            }
+        }
+        return matchUnit(text, p, p, groups);
+    }
+
+    /**
+     * Matches a period unit at unitStart, completing a period expression begun at periodStart
+     */
+    private static boolean matchUnit(CharSequence text, int periodStart, int unitStart, int[] groups) {
+        int unitEnd = matchAny(text, unitStart, UNITS);
+        if (unitEnd < 0) {
+            char c = charAt(text, unitStart);
+            if (UNIT_LETTERS.indexOf(toLowerCase(c)) >= 0 && isWordBoundary(text, unitStart + 1)) {
+                unitEnd = unitStart + 1;
+            } else {
+                return false;
+            }
+        }
+        int end = equalsIgnoreCase(charAt(text, unitEnd), 's') ? unitEnd + 1 : unitEnd;
+        setGroup(groups, PERIOD_EXPRESSION, periodStart, end);
+        setGroup(groups, PERIOD_UNIT, unitStart, unitEnd);
+        groups[1] = end;
+        return true;
+    }
+
+    /**
+     * Matches a standalone -ly period (e.g. "daily")
+     */
+    private static boolean matchLy(CharSequence text, int p, int[] groups) {
+        int end = matchAny(text, p, LY_UNITS);
+        if (end < 0) {
+            return false;
+        }
+        setGroup(groups, PERIOD_LY, p, end);
+        groups[1] = end;
+        return true;
+    }
+
+    /**
+     * @return The end of the longest number (word or digits) starting at p, or -1 if none
+     */
+    private static int numberEnd(CharSequence text, int p) {
+        int end = matchAny(text, p, NUMBER_WORDS);
+        if (end >= 0) {
+            return end;
+        }
+        end = p;
+        while (isNumeric(charAt(text, end))) {
+            end++;
+        }
+        return end > p ? end : -1;
+    }
+
+    /**
+     * @return The end of the next shorter number starting at p after one ending at end, or -1 if none. Only digit
+     * sequences can be shortened, number words are matched in whole.
+     */
+    private static int shorterNumberEnd(CharSequence text, int p, int end) {
+        return isNumeric(charAt(text, p)) && end - 1 > p ? end - 1 : -1;
+    }
+
+    /**
+     * @return The end of the first of words matching (case insensitively) at p, or -1 if none
+     */
+    static int matchAny(CharSequence text, int p, String[] words) {
+        for (String word : words) {
+            if (regionMatches(text, p, word)) {
+                return p + word.length();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param word A lower case word
+     * @return Whether text contains word at p, ignoring (ASCII) case
+     */
+    static boolean regionMatches(CharSequence text, int p, String word) {
+        if (p < 0 || p + word.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (toLowerCase(text.charAt(p + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A greedy optional character: choice 0 consumes c if present, choice 1 skips it
+     *
+     * @return The position after the choice, or -1 if the choice is not possible
+     */
+    private static int optional(CharSequence text, int p, char c, int choice) {
+        if (choice == 0) {
+            return equalsIgnoreCase(charAt(text, p), c) ? p + 1 : -1;
+        }
+        return p;
+    }
+
+    private static void setGroup(int[] groups, int group, int start, int end) {
+        groups[group * 2] = start;
+        groups[group * 2 + 1] = end;
+    }
+
+    /**
+     * @return The character at p, or 0 if out of bounds
+     */
+    static char charAt(CharSequence text, int p) {
+        return p >= 0 && p < text.length() ? text.charAt(p) : 0;
+    }
+
+    static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean equalsIgnoreCase(char c, char lower) {
+        return toLowerCase(c) == lower;
+    }
+
+    private static boolean isNumeric(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    static boolean isSpaceOrDash(char c) {
+        return c == ' ' || c == '-';
+    }
+
+    /**
+     * @return Whether p, preceded by a word character, is a word boundary (as per <code>\b</code>)
+     */
+    private static boolean isWordBoundary(CharSequence text, int p) {
+        if (p >= text.length()) {
+            return true;
+        }
+        int c = Character.codePointAt(text, p);
+        return !(Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK);
+    }
+
+    private static final class Match implements MatchResult {
+        private final CharSequence text;
+        private final int[] groups;
+
+        private Match(CharSequence text, int[] groups) {
+            this.text = text;
+            this.groups = groups;
+        }
+
+        @Override
+        public int start() {
+            return groups[0];
+        }
+
+        @Override
+        public int start(int group) {
+            checkGroup(group);
+            return groups[group * 2];
+        }
+
+        @Override
+        public int end() {
+            return groups[1];
+        }
+
+        @Override
+        public int end(int group) {
+            checkGroup(group);
+            return groups[group * 2 + 1];
+        }
+
+        @Override
+        public String group() {
+            return group(0);
+        }
+
+        @Override
+        public String group(int group) {
+            checkGroup(group);
+            int start = groups[group * 2];
+            return start < 0 ? null : text.subSequence(start, groups[group * 2 + 1]).toString();
+        }
+
+        @Override
+        public int groupCount() {
+            return GROUPS;
+        }
+
+        private static void checkGroup(int group) {
+            if (group < 0 || group > GROUPS) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package edu.mayo.bsi.nlp2fhir.transformers.timing;
+
+import edu.mayo.bsi.nlp2fhir.RegexpStatements;
+
+import java.util.Arrays;
+
+import static edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser.charAt;
+import static edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser.isSpaceOrDash;
+import static edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser.regionMatches;
+import static edu.mayo.bsi.nlp2fhir.transformers.timing.FrequencyPeriodParser.toLowerCase;
+
+/**
+ * Finds the timing phrases accompanying dosing frequencies (weekdays, event timings, times of day and as needed
+ * statements) in a single pass over the original text, equivalent to {@link RegexpStatements#PERIOD_WEEKDAYS},
+ * {@link RegexpStatements#TIMING_EVENTS} and {@link RegexpStatements#TIME_OF_DAY} as applied to lower cased text with
+ * dashes replaced by spaces.<br>
+ * <br>
+ * Matching is case insensitive, and a space within a phrase matches any run of spaces and dashes. As the text is not
+ * rewritten prior to matching, all returned offsets are exact offsets within the original text.
+ */
+public final class TimingPhraseParser {
+
+    private static final String[] EVENT_OPERATORS = {"before", "after", "at", "during", "every", "with", "on"};
+    private static final String[] EVENTS = {"breakfast", "lunch", "dinner", "meals", "meal", "sleep", "bedtime", "waking"};
+    private static final String[] TIME_OF_DAY_OPERATORS = {"at", "in the", "every", "during the"};
+    private static final String[] TIMES_OF_DAY = {"morning", "afternoon", "evening", "night"};
+    private static final String WEEKDAY_LETTERS = "montuewdhfrisa";
+    private static final int MAX_WEEKDAY_PREFIX = 6;
+
+    private TimingPhraseParser() {
+    }
+
+    /**
+     * Finds a list of days of the week a medication is taken on, e.g. "on mondays, wednesdays and fridays" or "every
+     * other tuesday"
+     *
+     * @param text The text to search
+     * @return The first such list within text, or null if there is none
+     */
+    public static WeekdayMatch findWeekdays(CharSequence text) {
+        WeekdayMatch match = new WeekdayMatch();
+        for (int p = 0; p < text.length(); p++) {
+            char c = toLowerCase(text.charAt(p));
+            if (c == 'o' && regionMatches(text, p, "on") && matchWeekdays(text, p + 2, match)) {
+                match.begin = p;
+                return match;
+            }
+            if (c == 'e' && regionMatches(text, p, "every")) {
+                int every = skipGap(text, p + 5);
+                if (every < 0) {
+                    continue;
+                }
+                if (regionMatches(text, every, "other") && matchWeekdays(text, every + 5, match)) {
+                    match.begin = p;
+                    match.everyOther = true;
+                    return match;
+                }
+                if (matchWeekdays(text, every, match)) {
+                    match.begin = p;
+                    return match;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds an event relative to which a medication is taken, e.g. "before breakfast" or "at bedtime"
+     *
+     * @param text The text to search
+     * @return The first such event within text, or null if there is none. The operator is one of before, after, at,
+     * during, every, with, or on, and the value the lower cased event.
+     */
+    public static PhraseMatch findEventTiming(CharSequence text) {
+        return find(text, EVENT_OPERATORS, EVENTS);
+    }
+
+    /**
+     * Finds a time of day at which a medication is taken, e.g. "in the morning"
+     *
+     * @param text The text to search
+     * @return The first such time of day within text, or null if there is none. The value is one of morning,
+     * afternoon, evening or night.
+     */
+    public static PhraseMatch findTimeOfDay(CharSequence text) {
+        return find(text, TIME_OF_DAY_OPERATORS, TIMES_OF_DAY);
+    }
+
+    /**
+     * Finds an "as needed" statement, preferring "as needed" to "prn" if both are present
+     *
+     * @param text The text to search
+     * @return The first such statement within text, or null if there is none
+     */
+    public static PhraseMatch findAsNeeded(CharSequence text) {
+        for (String phrase : new String[]{"as needed", "prn"}) {
+            for (int p = 0; p < text.length(); p++) {
+                int end = matchPhrase(text, p, phrase);
+                if (end >= 0) {
+                    return new PhraseMatch(p, end, null, phrase);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static PhraseMatch find(CharSequence text, String[] operators, String[] values) {
+        for (int p = 0; p < text.length(); p++) {
+            for (String operator : operators) {
+                int operatorEnd = matchPhrase(text, p, operator);
+                if (operatorEnd < 0) {
+                    continue;
+                }
+                int valueStart = skipGap(text, operatorEnd);
+                if (valueStart < 0) {
+                    continue;
+                }
+                for (String value : values) {
+                    if (regionMatches(text, valueStart, value)) {
+                        return new PhraseMatch(p, valueStart + value.length(), operator, value);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches a (comma, space, dash and/or "and" separated) list of weekdays at p, each of which must be preceded by
+     * a separator
+     *
+     * @return Whether at least one weekday was matched
+     */
+    private static boolean matchWeekdays(CharSequence text, int p, WeekdayMatch match) {
+        match.days = 0;
+        int next = p;
+        while (true) {
+            int dayStart = next;
+            while (charAt(text, dayStart) == ',' || isSpaceOrDash(charAt(text, dayStart))) {
+                dayStart++;
+            }
+            if (dayStart == next) {
+                break;
+            }
+            int dayEnd = -1;
+            if (regionMatches(text, dayStart, "and")) {
+                int afterAnd = skipGap(text, dayStart + 3);
+                if (afterAnd >= 0 && (dayEnd = matchWeekday(text, afterAnd)) >= 0) {
+                    dayStart = afterAnd;
+                }
+            }
+            if (dayEnd < 0 && (dayEnd = matchWeekday(text, dayStart)) < 0) {
+                break;
+            }
+            match.addDay(text, dayStart, dayEnd);
+            next = dayEnd;
+        }
+        match.end = next;
+        return match.days > 0;
+    }
+
+    /**
+     * Matches a weekday as per {@link RegexpStatements#WEEKDAY_PARSER}, i.e. 3 to 6 letters followed by "day(s)"
+     *
+     * @return The end of the weekday, or -1 if none
+     */
+    private static int matchWeekday(CharSequence text, int p) {
+        int letters = 0;
+        while (letters < MAX_WEEKDAY_PREFIX && WEEKDAY_LETTERS.indexOf(toLowerCase(charAt(text, p + letters))) >= 0) {
+            letters++;
+        }
+        for (; letters >= 3; letters--) {
+            if (regionMatches(text, p + letters, "day")) {
+                int end = p + letters + 3;
+                return toLowerCase(charAt(text, end)) == 's' ? end + 1 : end;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param phrase A lower case phrase
+     * @return The end of phrase if present at p, with each space matching any run of spaces and dashes, or -1 if not
+     */
+    private static int matchPhrase(CharSequence text, int p, String phrase) {
+        int i = p;
+        for (int j = 0; j < phrase.length(); j++) {
+            char c = phrase.charAt(j);
+            if (c == ' ') {
+                i = skipGap(text, i);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (toLowerCase(charAt(text, i++)) != c) {
+                return -1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return The end of a run of one or more spaces and dashes starting at p, or -1 if there is none
+     */
+    private static int skipGap(CharSequence text, int p) {
+        int i = p;
+        while (isSpaceOrDash(charAt(text, i))) {
+            i++;
+        }
+        return i > p ? i : -1;
+    }
+
+    /**
+     * An operator (e.g. "before") and value (e.g. "breakfast") found within a text
+     */
+    public static final class PhraseMatch {
+        private final int begin;
+        private final int end;
+        private final String operator;
+        private final String value;
+
+        private PhraseMatch(int begin, int end, String operator, String value) {
+            this.begin = begin;
+            this.end = end;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public int getBegin() {
+            return begin;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A list of weekdays found within a text
+     */
+    public static final class WeekdayMatch {
+        private int begin;
+        private int end;
+        private boolean everyOther;
+        private int days;
+        private int[] dayBegins = new int[7];
+        private int[] dayEnds = new int[7];
+        private String[] dayCodes = new String[7];
+
+        private WeekdayMatch() {
+        }
+
+        private void addDay(CharSequence text, int dayBegin, int dayEnd) {
+            if (days == dayBegins.length) {
+                dayBegins = Arrays.copyOf(dayBegins, days * 2);
+                dayEnds = Arrays.copyOf(dayEnds, days * 2);
+                dayCodes = Arrays.copyOf(dayCodes, days * 2);
+            }
+            dayBegins[days] = dayBegin;
+            dayEnds[days] = dayEnd;
+            dayCodes[days++] = new String(new char[]{toLowerCase(text.charAt(dayBegin)),
+                    toLowerCase(text.charAt(dayBegin + 1)), toLowerCase(text.charAt(dayBegin + 2))});
+        }
+
+        /**
+         * @return The begin of the entire list, including its leading "on" or "every"
+         */
+        public int getBegin() {
+            return begin;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return Whether the list is preceded by "every other", i.e. has a period of two weeks
+         */
+        public boolean isEveryOther() {
+            return everyOther;
+        }
+
+        public int getDayCount() {
+            return days;
+        }
+
+        /**
+         * @return The first three letters of the i-th day, in lower case
+         */
+        public String getDayCode(int i) {
+            return dayCodes[i];
+        }
+
+        public int getDayBegin(int i) {
+            return dayBegins[i];
+        }
+
+        public int getDayEnd(int i) {
+            return dayEnds[i];
+        }
+    }
+}
@@ -25,8 +25,6 @@ package org.ohnlp.medtime.ae;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
@@ -61,6 +59,20 @@ import org.ohnlp.typesystem.type.syntax.BaseToken;
  */
 public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
 
+    // PATTERNS USED DURING EXTRACTION AND NORMALIZATION
+    private static final Pattern PA_YEAR_MONTH = Pattern.compile("([0-9][0-9])-([0-9]?[0-9])-");
+    private static final Pattern PA_CENTURY_MONTH = Pattern.compile("(19|20)([0-9])([0-9])-([0-9]?[0-9])-");
+    private static final Pattern PA_UNDEF_CALCULATION = Pattern.compile("^(UNDEF-(this|REFUNIT|REF)-(.*?)-(MINUS|PLUS)-(.*))");
+    // normalization functions + group information
+    private static final Pattern PA_NORM = Pattern.compile("%([A-Za-z0-9]+?)\\(group\\(([0-9]+)\\)\\)");
+    // group information
+    private static final Pattern PA_GROUP = Pattern.compile("group\\(([0-9]+)\\)");
+    private static final Pattern PA_SUBSTRING = Pattern.compile("%SUBSTRING%\\((.*?),([0-9]+),([0-9]+)\\)");
+    private static final Pattern PA_LOWERCASE = Pattern.compile("%LOWERCASE%\\((.*?)\\)");
+    private static final Pattern PA_UPPERCASE = Pattern.compile("%UPPERCASE%\\((.*?)\\)");
+    private static final Pattern PA_SUM = Pattern.compile("%SUM%\\((.*?),(.*?)\\)");
+    private static final Pattern PA_NORM_NO_GROUP = Pattern.compile("%([A-Za-z0-9]+?)\\((.*?)\\)");
+
     // TOOL NAME (may be used as componentId)
     private Class<?> component = this.getClass();
 
@@ -93,6 +105,12 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
     // lowercase will transform the sentence to lower case for pattern matching
     private Boolean lowerCase = true;
 
+    // Extraction rules, sorted and indexed once at initialization
+    private TimexRuleSet dateRules;
+    private TimexRuleSet timeRules;
+    private TimexRuleSet durationRules;
+    private TimexRuleSet setRules;
+
     @SuppressWarnings("unused")
     public void initialize(UimaContext aContext) throws ResourceInitializationException {
 
@@ -133,6 +151,10 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
         // READ RULE RESOURCES FROM FILES AND STORE THEM //
         // /////////////////////////////////////////////////
         RuleManager rulem = RuleManager.getInstance();
+        dateRules = TimexRuleSet.forType("DATE", rulem, lowerCase);
+        timeRules = TimexRuleSet.forType("TIME", rulem, lowerCase);
+        durationRules = TimexRuleSet.forType("DURATION", rulem, lowerCase);
+        setRules = TimexRuleSet.forType("SET", rulem, lowerCase);
 
         // ///////////////////////////
         // PRINT WHAT WILL BE DONE //
@@ -153,28 +175,26 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
      */
     public void process(JCas jcas) {
         try {
-            RuleManager rulem = RuleManager.getInstance();
             // //////////////////////////////////////////
             // CHECK SENTENCE BY SENTENCE FOR TIMEXES //
             // //////////////////////////////////////////
             FSIterator<? extends Annotation> sentIter = jcas.getAnnotationIndex(Sentence.type).iterator();
             while (sentIter.hasNext()) {
                 Sentence s = (Sentence) sentIter.next();
+                String sen = s.getCoveredText();
+                if (lowerCase) sen = sen.toLowerCase();
+                SentenceTokenIndex tokens = new SentenceTokenIndex(jcas, s);
                 if (find_dates) {
-                    findTimexes("DATE", rulem.getHmDatePattern(), rulem.getHmDateOffset(),
-                            rulem.getHmDateNormalization(), rulem.getHmDateQuant(), s, jcas);
+                    findTimexes("DATE", dateRules, s, sen, tokens, jcas);
                 }
                 if (find_times) {
-                    findTimexes("TIME", rulem.getHmTimePattern(), rulem.getHmTimeOffset(),
-                            rulem.getHmTimeNormalization(), rulem.getHmTimeQuant(), s, jcas);
+                    findTimexes("TIME", timeRules, s, sen, tokens, jcas);
                 }
                 if (find_durations) {
-                    findTimexes("DURATION", rulem.getHmDurationPattern(), rulem.getHmDurationOffset(),
-                            rulem.getHmDurationNormalization(), rulem.getHmDurationQuant(), s, jcas);
+                    findTimexes("DURATION", durationRules, s, sen, tokens, jcas);
                 }
                 if (find_sets) {
-                    findTimexes("SET", rulem.getHmSetPattern(), rulem.getHmSetOffset(),
-                            rulem.getHmSetNormalization(), rulem.getHmSetQuant(), s, jcas);
+                    findTimexes("SET", setRules, s, sen, tokens, jcas);
                 }
             }
 
@@ -271,7 +291,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
         }
         annotation.addToIndexes();
         if (annotation.getContextSentence().getSegment().getValue().indexOf("date") >= 0) {
-            for (Object mr : Toolbox.findMatches(Pattern.compile("([0-9][0-9])-([0-9]?[0-9])-"), annotation.getTimexValue())) {
+            for (Object mr : Toolbox.findMatches(PA_YEAR_MONTH, annotation.getTimexValue())) {
                 cYear = Integer.parseInt((String) ((MatchResult) mr).group(1));
                 cMonth = Integer.parseInt((String) ((MatchResult) mr).group(2));
             }
@@ -397,7 +417,6 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
     public boolean updateTypes(JCas jcas) {
         boolean changed = false;
         List<MedTimex3> linearDates = new ArrayList<MedTimex3>();
-        RuleManager rulem = RuleManager.getInstance();
         FSIterator<? extends Annotation> iterTimex = jcas.getAnnotationIndex(MedTimex3.type).iterator();
 
         // Create List of all Timexes of types "date" and "time"
@@ -407,8 +426,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                 linearDates.add(timex);
             }
             if (cCentury == 0)
-                for (Object mr : Toolbox.findMatches(Pattern
-                        .compile("(19|20)([0-9])([0-9])-([0-9]?[0-9])-"), timex
+                for (Object mr : Toolbox.findMatches(PA_CENTURY_MONTH, timex
                         .getTimexValue())) {
                     cCentury = Integer.parseInt(((MatchResult) mr).group(1));
                 }
@@ -424,9 +442,10 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                 boolean updated = false;
                 if (prefix.endsWith("for")) {
                     if (find_durations) {
-                        updated = findTimexes("DURATION", rulem.getHmDurationPattern(),
-                                rulem.getHmDurationOffset(), rulem.getHmDurationNormalization(),
-                                rulem.getHmDurationQuant(), sentence, jcas);
+                        String sen = contextS;
+                        if (lowerCase) sen = sen.toLowerCase();
+                        updated = findTimexes("DURATION", durationRules, sentence, sen,
+                                new SentenceTokenIndex(jcas, sentence), jcas);
                     }
                     if (updated)
                         t_i.removeFromIndexes();
@@ -1077,7 +1096,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                         .matches("^UNDEF-(this|REFUNIT|REF)-(.*)-(MINUS|PLUS)-(.*)")
                         || t_i.getTimexType().indexOf("date_r19g") >= 0) {
                     for (Object mr : Toolbox.findMatches(
-                            Pattern.compile("^(UNDEF-(this|REFUNIT|REF)-(.*?)-(MINUS|PLUS)-(.*))"),
+                            PA_UNDEF_CALCULATION,
                             valueNew)) {
                         String checkUndef = ((MatchResult) mr).group(1);
                         String ltn = ((MatchResult) mr).group(2);
@@ -2363,25 +2382,15 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
      * Identify the part of speech (POS) of a MarchResult.
      *
      * @param tokBegin
-     * @param tokEnd
-     * @param s
-     * @param jcas
+     * @param tokens The token index of the sentence containing the match
      * @return
      */
 
-    public String getPosFromMatchResult(int tokBegin, int tokEnd, Sentence s,
-                                        JCas jcas) {
-        // get all tokens in sentence
-        HashMap<Integer, BaseToken> hmTokens = new HashMap<Integer, BaseToken>();
-        FSIterator<? extends Annotation> iterTok = jcas.getAnnotationIndex(BaseToken.type).subiterator(s);
-        while (iterTok.hasNext()) {
-            BaseToken token = (BaseToken) iterTok.next();
-            hmTokens.put(token.getBegin(), token);
-        }
+    public String getPosFromMatchResult(int tokBegin, SentenceTokenIndex tokens) {
         // get correct token
         String pos = "";
-        if (hmTokens.containsKey(tokBegin)) {
-            BaseToken tokenToCheck = hmTokens.get(tokBegin);
+        BaseToken tokenToCheck = tokens.getTokenAt(tokBegin);
+        if (tokenToCheck != null) {
             pos = tokenToCheck.getPartOfSpeech();
         }
         return pos;
@@ -2391,69 +2400,31 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
      * Apply the extraction rules, normalization rules
      *
      * @param timexType
-     * @param hmPattern
-     * @param hmOffset
-     * @param hmNormalization
-     * @param hmQuant
+     * @param rules
      * @param s
+     * @param sen       The covered text of s, lowercased if {@link #lowerCase} is set
+     * @param tokens    The token index of s
      * @param jcas
      */
-    public boolean findTimexes(String timexType,
-                               HashMap<Pattern, String> hmPattern,
-                               HashMap<String, String> hmOffset,
-                               HashMap<String, String> hmNormalization,
-                               HashMap<String, String> hmQuant, Sentence s, JCas jcas) {
+    public boolean findTimexes(String timexType, TimexRuleSet rules, Sentence s, String sen,
+                               SentenceTokenIndex tokens, JCas jcas) {
         boolean added = false;
-        RuleManager rm = RuleManager.getInstance();
-        HashMap<String, String> hmDatePosConstraint = rm
-                .getHmDatePosConstraint();
-        HashMap<String, String> hmDurationPosConstraint = rm
-                .getHmDurationPosConstraint();
-        HashMap<String, String> hmTimePosConstraint = rm
-                .getHmTimePosConstraint();
-        HashMap<String, String> hmSetPosConstraint = rm.getHmSetPosConstraint();
 
         // Iterator over the rules by sorted by the name of the rules
         // this is important since later, the timexId will be used to
         // decide which of two expressions shall be removed if both
-        // have the same offset
-        for (Iterator<Pattern> i = Toolbox.sortByValue(hmPattern).iterator(); i
-                .hasNext(); ) {
-            Pattern p = (Pattern) i.next();
-            String sen = s.getCoveredText();
-            if (lowerCase) sen = sen.toLowerCase();
+        // have the same offset. Rules whose literal anchors do not occur
+        // in the sentence cannot match and are skipped
+        for (TimexRule rule : rules.getCandidateRules(sen)) {
+            Pattern p = rule.getPattern();
+            String ruleName = rule.getName();
             for (Object o : Toolbox.findMatches(p, sen)) {
                 MatchResult mr = (MatchResult) o;
                 boolean infrontBehindOK = ContextAnalyzer.checkInfrontBehind(mr,
                         s);
 
-                boolean posConstraintOK = true;
                 // CHECK POS CONSTRAINTS
-                if (timexType.equals("DATE")) {
-                    if (hmDatePosConstraint.containsKey(hmPattern.get(p))) {
-                        posConstraintOK = checkPosConstraint(s,
-                                hmDatePosConstraint.get(hmPattern.get(p)), mr,
-                                jcas);
-                    }
-                } else if (timexType.equals("DURATION")) {
-                    if (hmDurationPosConstraint.containsKey(hmPattern.get(p))) {
-                        posConstraintOK = checkPosConstraint(s,
-                                hmDurationPosConstraint.get(hmPattern.get(p)),
-                                mr, jcas);
-                    }
-                } else if (timexType.equals("TIME")) {
-                    if (hmTimePosConstraint.containsKey(hmPattern.get(p))) {
-                        posConstraintOK = checkPosConstraint(s,
-                                hmTimePosConstraint.get(hmPattern.get(p)), mr,
-                                jcas);
-                    }
-                } else if (timexType.equals("SET")) {
-                    if (hmSetPosConstraint.containsKey(hmPattern.get(p))) {
-                        posConstraintOK = checkPosConstraint(s,
-                                hmSetPosConstraint.get(hmPattern.get(p)), mr,
-                                jcas);
-                    }
-                }
+                boolean posConstraintOK = checkPosConstraint(s, rule.getPosConstraints(), mr, tokens);
 
                 if ((infrontBehindOK == true) && (posConstraintOK == true)) {
 
@@ -2464,64 +2435,23 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                     // Normalization from Files:
 
                     // Any offset parameter?
-                    if (hmOffset.containsKey(hmPattern.get(p))) {
-                        String offset = hmOffset.get(hmPattern.get(p));
-
-                        // pattern for offset information
-                        Pattern paOffset = Pattern
-                                .compile("group\\(([0-9]+)\\)-group\\(([0-9]+)\\)");
-                        for (Object lo : Toolbox.findMatches(paOffset,
-                                offset)) {
-                            MatchResult lmr = (MatchResult) lo;
-                            int startOffset = Integer.parseInt(lmr.group(1));
-                            int endOffset = Integer.parseInt(lmr.group(2));
-                            timexStart = mr.start(startOffset);
-                            timexEnd = mr.end(endOffset);
-                        }
+                    if (rule.hasOffset()) {
+                        timexStart = mr.start(rule.getOffsetStartGroup());
+                        timexEnd = mr.end(rule.getOffsetEndGroup());
                     }
 
                     // Normalization Parameter
-                    if (hmNormalization.containsKey(hmPattern.get(p))) {
-                        String[] attributes = new String[4];
-                        if (timexType.equals("DATE")) {
-                            attributes = getAttributesForTimexFromFile(
-                                    hmPattern.get(p), rm
-                                            .getHmDateNormalization(), rm
-                                            .getHmDateQuant(), rm
-                                            .getHmDateFreq(),
-                                    rm.getHmDateMod(), mr, jcas);
-                            // System.out.println(attributes);
-                        } else if (timexType.equals("DURATION")) {
-                            attributes = getAttributesForTimexFromFile(
-                                    hmPattern.get(p), rm
-                                            .getHmDurationNormalization(), rm
-                                            .getHmDurationQuant(), rm
-                                            .getHmDurationFreq(), rm
-                                            .getHmDurationMod(), mr, jcas);
-                        } else if (timexType.equals("TIME")) {
-                            attributes = getAttributesForTimexFromFile(
-                                    hmPattern.get(p), rm
-                                            .getHmTimeNormalization(), rm
-                                            .getHmTimeQuant(), rm
-                                            .getHmTimeFreq(),
-                                    rm.getHmTimeMod(), mr, jcas);
-                        } else if (timexType.equals("SET")) {
-                            attributes = getAttributesForTimexFromFile(
-                                    hmPattern.get(p), rm
-                                            .getHmSetNormalization(), rm
-                                            .getHmSetQuant(),
-                                    rm.getHmSetFreq(), rm.getHmSetMod(), mr,
-                                    jcas);
-                        }
+                    if (rule.getValueNormalization() != null) {
+                        String[] attributes = getAttributesForTimex(rule, mr);
                         addTimexAnnotation(timexType,
                                 timexStart + s.getBegin(), timexEnd
                                         + s.getBegin(), s, attributes[0],
                                 attributes[1], attributes[2], attributes[3],
-                                "t" + timexID++, hmPattern.get(p), jcas);
+                                "t" + timexID++, ruleName, jcas);
                         added = true;
                     } else {
                         Logger.printError("SOMETHING REALLY WRONG HERE: "
-                                + hmPattern.get(p));
+                                + ruleName);
                     }
                 }
             }
@@ -2534,22 +2464,17 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
      * satisfied.
      *
      * @param s
-     * @param posConstraint
+     * @param posConstraints
      * @param m
-     * @param jcas
+     * @param tokens
      * @return
      */
-    public boolean checkPosConstraint(Sentence s, String posConstraint,
-                                      MatchResult m, JCas jcas) {
-        Pattern paConstraint = Pattern.compile("group\\(([0-9]+)\\):(.*?):");
-        for (Object o : Toolbox.findMatches(paConstraint, posConstraint)) {
-            MatchResult mr = (MatchResult) o;
-            int groupNumber = Integer.parseInt(mr.group(1));
-            int tokenBegin = s.getBegin() + m.start(groupNumber);
-            int tokenEnd = s.getBegin() + m.end(groupNumber);
-            String pos = mr.group(2);
-            String pos_as_is = getPosFromMatchResult(tokenBegin, tokenEnd, s,
-                    jcas);
+    public boolean checkPosConstraint(Sentence s, List<TimexRule.PosConstraint> posConstraints,
+                                      MatchResult m, SentenceTokenIndex tokens) {
+        for (TimexRule.PosConstraint constraint : posConstraints) {
+            int tokenBegin = s.getBegin() + m.start(constraint.getGroup());
+            String pos = constraint.getPos();
+            String pos_as_is = getPosFromMatchResult(tokenBegin, tokens);
             if (pos.equals(pos_as_is)) {
                 Logger.printDetail("POS CONSTRAINT IS VALID: pos should be "
                         + pos + " and is " + pos_as_is);
@@ -2560,17 +2485,29 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
         return true;
     }
 
+    /**
+     * Applies a parsed normalization template, falling back to {@link #applyRuleFunctions(String, MatchResult)} for
+     * templates that cannot be evaluated directly
+     *
+     * @param expression The normalization template
+     * @param m          The rule match
+     * @return The normalized value
+     */
+    public String applyRuleFunctions(NormalizationExpression expression, MatchResult m) {
+        String normalized = expression.evaluate(m);
+        if (normalized == null) {
+            normalized = applyRuleFunctions(expression.getTemplate(), m);
+        }
+        return normalized;
+    }
+
     public String applyRuleFunctions(String tonormalize, MatchResult m) {
         NormalizationManager norm = NormalizationManager.getInstance();
 
         String normalized = "";
-        // pattern for normalization functions + group information
-        // pattern for group information
-        Pattern paNorm = Pattern.compile("%([A-Za-z0-9]+?)\\(group\\(([0-9]+)\\)\\)");
-        Pattern paGroup = Pattern.compile("group\\(([0-9]+)\\)");
         while ((tonormalize.contains("%")) || (tonormalize.contains("group"))) {
             // replace normalization functions
-            for (Object mr : Toolbox.findMatches(paNorm, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_NORM, tonormalize)) {
                 Logger.printDetail("-----------------------------------");
                 Logger.printDetail("DEBUGGING: tonormalize:" + tonormalize);
                 Logger.printDetail("DEBUGGING: ((MatchResult) mr).group():" + ((MatchResult) mr).group());
@@ -2587,8 +2524,8 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
 
                 if (!(m.group(Integer.parseInt(((MatchResult) mr).group(2))) == null)) {
                     String partToReplace = m.group(
-                            Integer.parseInt(((MatchResult) mr).group(2))).replaceAll(
-                            "[\n\\s]+", " ");
+                            Integer.parseInt(((MatchResult) mr).group(2)));
+                    partToReplace = NormalizationExpression.WHITESPACE.matcher(partToReplace).replaceAll(" ");
                     if (!(norm.getFromHmAllNormalization(((MatchResult) mr).group(1))
                             .containsKey(partToReplace))) {
                         Logger
@@ -2610,7 +2547,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                 }
             }
             // replace other groups
-            for (Object mr : Toolbox.findMatches(paGroup, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_GROUP, tonormalize)) {
                 Logger.printDetail("-----------------------------------");
                 Logger.printDetail("DEBUGGING: tonormalize:" + tonormalize);
                 Logger.printDetail("DEBUGGING: ((MatchResult) mr).group():" + ((MatchResult) mr).group());
@@ -2625,28 +2562,24 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                         .parseInt(((MatchResult) mr).group(1))));
             }
             // replace substrings
-            Pattern paSubstring = Pattern.compile("%SUBSTRING%\\((.*?),([0-9]+),([0-9]+)\\)");
-            for (Object mr : Toolbox.findMatches(paSubstring, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_SUBSTRING, tonormalize)) {
                 String substring = ((MatchResult) mr).group(1).substring(
                         Integer.parseInt(((MatchResult) mr).group(2)),
                         Integer.parseInt(((MatchResult) mr).group(3)));
                 tonormalize = tonormalize.replace(((MatchResult) mr).group(), substring);
             }
             // replace lowercase
-            Pattern paLowercase = Pattern.compile("%LOWERCASE%\\((.*?)\\)");
-            for (Object mr : Toolbox.findMatches(paLowercase, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_LOWERCASE, tonormalize)) {
                 String substring = ((MatchResult) mr).group(1).toLowerCase();
                 tonormalize = tonormalize.replace(((MatchResult) mr).group(), substring);
             }
             // replace uppercase
-            Pattern paUppercase = Pattern.compile("%UPPERCASE%\\((.*?)\\)");
-            for (Object mr : Toolbox.findMatches(paUppercase, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_UPPERCASE, tonormalize)) {
                 String substring = ((MatchResult) mr).group(1).toUpperCase();
                 tonormalize = tonormalize.replace(((MatchResult) mr).group(), substring);
             }
             // replace sum, concatenation
-            Pattern paSum = Pattern.compile("%SUM%\\((.*?),(.*?)\\)");
-            for (Object mr : Toolbox.findMatches(paSum, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_SUM, tonormalize)) {
                 String first = ((MatchResult) mr).group(1);
                 String second = ((MatchResult) mr).group(1);
                 if (first.matches("-?[0-9]+") && second.matches("-?[0-9]+")) {
@@ -2659,8 +2592,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
                 }
             }
             // replace normalization function without group
-            Pattern paNormNoGroup = Pattern.compile("%([A-Za-z0-9]+?)\\((.*?)\\)");
-            for (Object mr : Toolbox.findMatches(paNormNoGroup, tonormalize)) {
+            for (Object mr : Toolbox.findMatches(PA_NORM_NO_GROUP, tonormalize)) {
                 tonormalize = tonormalize.replace(((MatchResult) mr).group(), (String) norm
                         .getFromHmAllNormalization(((MatchResult) mr).group(1))
                         .get(((MatchResult) mr).group(2)));
@@ -2670,10 +2602,7 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
         return normalized;
     }
 
-    public String[] getAttributesForTimexFromFile(String rule,
-                                                  HashMap<String, String> hmNormalization,
-                                                  HashMap<String, String> hmQuant, HashMap<String, String> hmFreq,
-                                                  HashMap<String, String> hmMod, MatchResult m, JCas jcas) {
+    public String[] getAttributesForTimex(TimexRule rule, MatchResult m) {
         String[] attributes = new String[4];
         String value = "";
         String quant = "";
@@ -2681,25 +2610,21 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
         String mod = "";
 
         // Normalize Value
-        String value_normalization_pattern = hmNormalization.get(rule);
-        value = applyRuleFunctions(value_normalization_pattern, m);
+        value = applyRuleFunctions(rule.getValueNormalization(), m);
 
         // get quant
-        if (hmQuant.containsKey(rule)) {
-            String quant_normalization_pattern = hmQuant.get(rule);
-            quant = applyRuleFunctions(quant_normalization_pattern, m);
+        if (rule.getQuantNormalization() != null) {
+            quant = applyRuleFunctions(rule.getQuantNormalization(), m);
         }
 
         // get freq
-        if (hmFreq.containsKey(rule)) {
-            String freq_normalization_pattern = hmFreq.get(rule);
-            freq = applyRuleFunctions(freq_normalization_pattern, m);
+        if (rule.getFreqNormalization() != null) {
+            freq = applyRuleFunctions(rule.getFreqNormalization(), m);
         }
 
         // get mod
-        if (hmMod.containsKey(rule)) {
-            String mod_normalization_pattern = hmMod.get(rule);
-            mod = applyRuleFunctions(mod_normalization_pattern, m);
+        if (rule.getModNormalization() != null) {
+            mod = applyRuleFunctions(rule.getModNormalization(), m);
         }
 
         // For example "P24H" -> "P1D"
@@ -2712,4 +2637,4 @@ public class MedTimeAnnotator extends JCasAnnotator_ImplBase {
 
         return attributes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,279 @@
+package org.ohnlp.medtime.ae;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+import org.ohnlp.medtime.resourcemanager.NormalizationManager;
+
+/**
+ * A normalization template from the rule resources (e.g. <code>UNDEF-year-%normMonth(group(2))</code>) parsed once
+ * into literal, group, and normalization function segments.<br>
+ * <br>
+ * Only templates consisting of literals, <code>group(n)</code>, <code>%normX(group(n))</code> and
+ * <code>%SUBSTRING%</code>/<code>%LOWERCASE%</code>/<code>%UPPERCASE%</code> applied directly to one of the latter two
+ * are compiled. For anything else, or whenever an intermediate value could be re-interpreted by the string rewriting
+ * done by {@link MedTimeAnnotator#applyRuleFunctions(String, MatchResult)}, {@link #evaluate(MatchResult)} returns
+ * null and that method must be used instead so that results stay identical.
+ */
+public class NormalizationExpression {
+
+    static final Pattern WHITESPACE = Pattern.compile("[\n\\s]+");
+
+    private final String template;
+    // Null if the template could not be compiled
+    private final Segment[] segments;
+
+    private NormalizationExpression(String template, Segment[] segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    /**
+     * @param template The normalization template, or null
+     * @return The parsed template, or null if template is null
+     */
+    public static NormalizationExpression compile(String template) {
+        if (template == null) {
+            return null;
+        }
+        return new NormalizationExpression(template, new Parser(template).parse());
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param m The rule match to normalize
+     * @return The normalized value, or null if this template must be evaluated through string rewriting instead
+     */
+    public String evaluate(MatchResult m) {
+        if (segments == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : segments) {
+            String value = segment.evaluate(m);
+            if (value == null) {
+                return null;
+            }
+            sb.append(value);
+        }
+        String ret = sb.toString();
+        if (ret.contains("%") || ret.contains("group")) {
+            // Substituted values would be rewritten again
+            return null;
+        }
+        return ret;
+    }
+
+    private interface Segment {
+        /**
+         * @return The value of this segment, or null if it cannot be guaranteed to match string rewriting semantics
+         */
+        String evaluate(MatchResult m);
+    }
+
+    private static class Literal implements Segment {
+        private final String text;
+
+        private Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String evaluate(MatchResult m) {
+            return text;
+        }
+    }
+
+    private static class GroupRef implements Segment {
+        private final int group;
+
+        private GroupRef(int group) {
+            this.group = group;
+        }
+
+        @Override
+        public String evaluate(MatchResult m) {
+            return m.group(group);
+        }
+    }
+
+    private static class NormalizationRef implements Segment {
+        private final String resource;
+        private final int group;
+
+        private NormalizationRef(String resource, int group) {
+            this.resource = resource;
+            this.group = group;
+        }
+
+        @Override
+        public String evaluate(MatchResult m) {
+            String part = m.group(group);
+            if (part == null) {
+                return "";
+            }
+            Map<?, ?> normalization = NormalizationManager.getInstance().getFromHmAllNormalization(resource);
+            if (normalization == null) {
+                return null;
+            }
+            return (String) normalization.get(WHITESPACE.matcher(part).replaceAll(" "));
+        }
+    }
+
+    private static class Substring implements Segment {
+        private final Segment arg;
+        private final int begin;
+        private final int end;
+
+        private Substring(Segment arg, int begin, int end) {
+            this.arg = arg;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        public String evaluate(MatchResult m) {
+            String value = arg.evaluate(m);
+            if (value == null || value.indexOf(',') >= 0 || end > value.length() || begin > end) {
+                // Rewriting may split arguments differently or fail
+                return null;
+            }
+            return value.substring(begin, end);
+        }
+    }
+
+    private static class ChangeCase implements Segment {
+        private final Segment arg;
+        private final boolean upper;
+
+        private ChangeCase(Segment arg, boolean upper) {
+            this.arg = arg;
+            this.upper = upper;
+        }
+
+        @Override
+        public String evaluate(MatchResult m) {
+            String value = arg.evaluate(m);
+            if (value == null || value.indexOf(')') >= 0) {
+                // Rewriting would stop at the first closing parenthesis
+                return null;
+            }
+            return upper ? value.toUpperCase() : value.toLowerCase();
+        }
+    }
+
+    private static class Parser {
+        private final String s;
+        private int pos;
+
+        private Parser(String s) {
+            this.s = s;
+            this.pos = 0;
+        }
+
+        private Segment[] parse() {
+            List<Segment> ret = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            while (pos < s.length()) {
+                Segment segment;
+                if (s.startsWith("%SUBSTRING%(", pos)) {
+                    pos += "%SUBSTRING%(".length();
+                    Segment arg = parseSimple();
+                    int begin = parseNumberAfter(',');
+                    int end = parseNumberAfter(',');
+                    if (arg == null || begin < 0 || end < 0 || !consume(")")) {
+                        return null;
+                    }
+                    segment = new Substring(arg, begin, end);
+                } else if (s.startsWith("%LOWERCASE%(", pos) || s.startsWith("%UPPERCASE%(", pos)) {
+                    boolean upper = s.charAt(pos + 1) == 'U';
+                    pos += "%LOWERCASE%(".length();
+                    Segment arg = parseSimple();
+                    if (arg == null || !consume(")")) {
+                        return null;
+                    }
+                    segment = new ChangeCase(arg, upper);
+                } else if (s.charAt(pos) == '%' || s.startsWith("group", pos)) {
+                    segment = parseSimple();
+                    if (segment == null) {
+                        return null;
+                    }
+                } else {
+                    literal.append(s.charAt(pos++));
+                    continue;
+                }
+                if (literal.length() > 0) {
+                    ret.add(new Literal(literal.toString()));
+                    literal.setLength(0);
+                }
+                ret.add(segment);
+            }
+            if (literal.length() > 0) {
+                ret.add(new Literal(literal.toString()));
+            }
+            return ret.toArray(new Segment[0]);
+        }
+
+        /**
+         * Parses either <code>group(n)</code> or <code>%resource(group(n))</code>
+         */
+        private Segment parseSimple() {
+            if (consume("%")) {
+                int nameStart = pos;
+                while (pos < s.length() && Character.isLetterOrDigit(s.charAt(pos)) && s.charAt(pos) < 128) {
+                    pos++;
+                }
+                if (pos == nameStart) {
+                    return null;
+                }
+                String resource = s.substring(nameStart, pos);
+                if (!consume("(")) {
+                    return null;
+                }
+                int group = parseGroup();
+                if (group < 0 || !consume(")")) {
+                    return null;
+                }
+                return new NormalizationRef(resource, group);
+            }
+            int group = parseGroup();
+            return group < 0 ? null : new GroupRef(group);
+        }
+
+        private int parseGroup() {
+            if (!consume("group")) {
+                return -1;
+            }
+            int group = parseNumberAfter('(');
+            return group >= 0 && consume(")") ? group : -1;
+        }
+
+        private int parseNumberAfter(char prefix) {
+            if (pos >= s.length() || s.charAt(pos) != prefix) {
+                return -1;
+            }
+            int start = ++pos;
+            while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+                pos++;
+            }
+            if (pos == start) {
+                return -1;
+            }
+            return Integer.parseInt(s.substring(start, pos));
+        }
+
+        private boolean consume(String token) {
+            if (s.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+    }
+}
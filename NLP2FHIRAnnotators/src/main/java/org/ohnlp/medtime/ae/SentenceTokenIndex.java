@@ -0,0 +1,60 @@
+package org.ohnlp.medtime.ae;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.ohnlp.typesystem.type.textspan.Sentence;
+import org.ohnlp.typesystem.type.syntax.BaseToken;
+
+/**
+ * Begin offset to token lookup for a single sentence, built on first use and shared by all rules applied to that
+ * sentence
+ */
+public class SentenceTokenIndex {
+    private final JCas jcas;
+    private final Sentence sentence;
+    private int[] begins;
+    private BaseToken[] tokens;
+
+    public SentenceTokenIndex(JCas jcas, Sentence sentence) {
+        this.jcas = jcas;
+        this.sentence = sentence;
+    }
+
+    /**
+     * @param begin The document offset to look up
+     * @return The token beginning at the given offset, or null if none exists. If several do, the one last in
+     * annotation index order is returned
+     */
+    public BaseToken getTokenAt(int begin) {
+        if (begins == null) {
+            build();
+        }
+        int idx = Arrays.binarySearch(begins, begin);
+        return idx < 0 ? null : tokens[idx];
+    }
+
+    private void build() {
+        List<BaseToken> sentenceTokens = new ArrayList<>();
+        FSIterator<? extends Annotation> iterTok = jcas.getAnnotationIndex(BaseToken.type).subiterator(sentence);
+        while (iterTok.hasNext()) {
+            BaseToken token = (BaseToken) iterTok.next();
+            int last = sentenceTokens.size() - 1;
+            if (last >= 0 && sentenceTokens.get(last).getBegin() == token.getBegin()) {
+                sentenceTokens.set(last, token);
+            } else {
+                sentenceTokens.add(token);
+            }
+        }
+        int[] begins = new int[sentenceTokens.size()];
+        for (int i = 0; i < begins.length; i++) {
+            begins[i] = sentenceTokens.get(i).getBegin();
+        }
+        this.tokens = sentenceTokens.toArray(new BaseToken[0]);
+        this.begins = begins;
+    }
+}
@@ -0,0 +1,146 @@
+package org.ohnlp.medtime.ae;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An extraction rule loaded from the MedTime rule resources, with its offset, part of speech constraint and
+ * normalization side-table entries parsed once at load time
+ */
+public class TimexRule {
+    private static final Pattern OFFSET_PATTERN = Pattern.compile("group\\(([0-9]+)\\)-group\\(([0-9]+)\\)");
+    private static final Pattern POS_CONSTRAINT_PATTERN = Pattern.compile("group\\(([0-9]+)\\):(.*?):");
+
+    private final String name;
+    private final Pattern pattern;
+    private final Set<String> anchors;
+    private final int offsetStartGroup;
+    private final int offsetEndGroup;
+    private final List<PosConstraint> posConstraints;
+    private final NormalizationExpression valueNormalization;
+    private final NormalizationExpression quantNormalization;
+    private final NormalizationExpression freqNormalization;
+    private final NormalizationExpression modNormalization;
+
+    TimexRule(String name, Pattern pattern, Set<String> anchors,
+              String offset, String posConstraint,
+              String value, String quant, String freq, String mod) {
+        this.name = name;
+        this.pattern = pattern;
+        this.anchors = anchors;
+        int start = -1;
+        int end = -1;
+        if (offset != null) {
+            // Last offset definition wins
+            Matcher m = OFFSET_PATTERN.matcher(offset);
+            while (m.find()) {
+                start = Integer.parseInt(m.group(1));
+                end = Integer.parseInt(m.group(2));
+            }
+        }
+        this.offsetStartGroup = start;
+        this.offsetEndGroup = end;
+        if (posConstraint != null) {
+            List<PosConstraint> constraints = new ArrayList<>();
+            Matcher m = POS_CONSTRAINT_PATTERN.matcher(posConstraint);
+            while (m.find()) {
+                constraints.add(new PosConstraint(Integer.parseInt(m.group(1)), m.group(2)));
+            }
+            this.posConstraints = Collections.unmodifiableList(constraints);
+        } else {
+            this.posConstraints = Collections.emptyList();
+        }
+        this.valueNormalization = NormalizationExpression.compile(value);
+        this.quantNormalization = NormalizationExpression.compile(quant);
+        this.freqNormalization = NormalizationExpression.compile(freq);
+        this.modNormalization = NormalizationExpression.compile(mod);
+    }
+
+    /**
+     * @return The name of this rule as defined in the rule resources
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return Literal strings, at least one of which must occur in a sentence for this rule to match, or null if this
+     * rule must always be applied
+     */
+    public Set<String> getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * @return Whether this rule narrows the extent of a match to a range of its groups
+     */
+    public boolean hasOffset() {
+        return offsetStartGroup >= 0;
+    }
+
+    /**
+     * @return The group whose start is the start of the timex, if {@link #hasOffset()}
+     */
+    public int getOffsetStartGroup() {
+        return offsetStartGroup;
+    }
+
+    /**
+     * @return The group whose end is the end of the timex, if {@link #hasOffset()}
+     */
+    public int getOffsetEndGroup() {
+        return offsetEndGroup;
+    }
+
+    public List<PosConstraint> getPosConstraints() {
+        return posConstraints;
+    }
+
+    /**
+     * @return The value normalization for this rule, or null if the rule has none
+     */
+    public NormalizationExpression getValueNormalization() {
+        return valueNormalization;
+    }
+
+    public NormalizationExpression getQuantNormalization() {
+        return quantNormalization;
+    }
+
+    public NormalizationExpression getFreqNormalization() {
+        return freqNormalization;
+    }
+
+    public NormalizationExpression getModNormalization() {
+        return modNormalization;
+    }
+
+    /**
+     * Requires the first token of a match group to have a given part of speech
+     */
+    public static class PosConstraint {
+        private final int group;
+        private final String pos;
+
+        PosConstraint(int group, String pos) {
+            this.group = group;
+            this.pos = pos;
+        }
+
+        public int getGroup() {
+            return group;
+        }
+
+        public String getPos() {
+            return pos;
+        }
+    }
+}
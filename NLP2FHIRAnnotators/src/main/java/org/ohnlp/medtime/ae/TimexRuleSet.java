@@ -0,0 +1,138 @@
+package org.ohnlp.medtime.ae;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import edu.mayo.bsi.nlp2fhir.performance.AhoCorasickAutomaton;
+import edu.mayo.bsi.nlp2fhir.performance.RegexLiteralAnchors;
+import org.ohnlp.medtime.resourcemanager.RuleManager;
+import org.ohnlp.medtime.util.Toolbox;
+
+/**
+ * The extraction rules for a single timex type, sorted once by rule name and indexed by their literal anchors so that
+ * rules which cannot match a given sentence are never run against it. Offset, part of speech constraint and
+ * normalization definitions are parsed into each {@link TimexRule} at construction
+ */
+public class TimexRuleSet {
+    // Sorted by name: the resulting timexIds are used to decide which of two expressions with the same offsets
+    // is removed
+    private final List<TimexRule> rules;
+    private final BitSet unanchoredRules;
+    private final AhoCorasickAutomaton anchorMatcher;
+    private final int[][] rulesByAnchor;
+
+    /**
+     * @param hmPattern         A pattern to rule name mapping as provided by {@link RuleManager}
+     * @param hmOffset          Rule name to offset definition
+     * @param hmPosConstraint   Rule name to part of speech constraint definition
+     * @param hmNormalization   Rule name to value normalization template
+     * @param hmQuant           Rule name to quant normalization template
+     * @param hmFreq            Rule name to freq normalization template
+     * @param hmMod             Rule name to mod normalization template
+     * @param lowerCaseInput    Whether sentences are lowercased before rules are applied to them
+     */
+    public TimexRuleSet(HashMap<Pattern, String> hmPattern,
+                        HashMap<String, String> hmOffset,
+                        HashMap<String, String> hmPosConstraint,
+                        HashMap<String, String> hmNormalization,
+                        HashMap<String, String> hmQuant,
+                        HashMap<String, String> hmFreq,
+                        HashMap<String, String> hmMod,
+                        boolean lowerCaseInput) {
+        List<?> sorted = Toolbox.sortByValue(hmPattern);
+        this.rules = new ArrayList<>(sorted.size());
+        this.unanchoredRules = new BitSet(sorted.size());
+        Map<String, List<Integer>> anchorToRules = new LinkedHashMap<>();
+        for (Object o : sorted) {
+            Pattern p = (Pattern) o;
+            int idx = rules.size();
+            Set<String> anchors = RegexLiteralAnchors.extract(p, lowerCaseInput);
+            String name = hmPattern.get(p);
+            rules.add(new TimexRule(name, p, anchors,
+                    hmOffset.get(name), hmPosConstraint.get(name),
+                    hmNormalization.get(name), hmQuant.get(name), hmFreq.get(name), hmMod.get(name)));
+            if (anchors == null) {
+                unanchoredRules.set(idx);
+                continue;
+            }
+            for (String anchor : anchors) {
+                anchorToRules.computeIfAbsent(anchor, k -> new ArrayList<>()).add(idx);
+            }
+        }
+        List<String> anchors = new ArrayList<>(anchorToRules.keySet());
+        this.rulesByAnchor = new int[anchors.size()][];
+        for (int i = 0; i < anchors.size(); i++) {
+            List<Integer> ruleIdxs = anchorToRules.get(anchors.get(i));
+            rulesByAnchor[i] = new int[ruleIdxs.size()];
+            for (int j = 0; j < ruleIdxs.size(); j++) {
+                rulesByAnchor[i][j] = ruleIdxs.get(j);
+            }
+        }
+        this.anchorMatcher = new AhoCorasickAutomaton(anchors);
+    }
+
+    /**
+     * Builds the rule set for a timex type from the rule resources loaded by {@link RuleManager}
+     *
+     * @param timexType      One of DATE, TIME, DURATION, or SET
+     * @param rm             The rule manager to retrieve rules from
+     * @param lowerCaseInput Whether sentences are lowercased before rules are applied to them
+     * @return The compiled rule set
+     */
+    public static TimexRuleSet forType(String timexType, RuleManager rm, boolean lowerCaseInput) {
+        switch (timexType) {
+            case "DATE":
+                return new TimexRuleSet(rm.getHmDatePattern(), rm.getHmDateOffset(), rm.getHmDatePosConstraint(),
+                        rm.getHmDateNormalization(), rm.getHmDateQuant(), rm.getHmDateFreq(), rm.getHmDateMod(),
+                        lowerCaseInput);
+            case "TIME":
+                return new TimexRuleSet(rm.getHmTimePattern(), rm.getHmTimeOffset(), rm.getHmTimePosConstraint(),
+                        rm.getHmTimeNormalization(), rm.getHmTimeQuant(), rm.getHmTimeFreq(), rm.getHmTimeMod(),
+                        lowerCaseInput);
+            case "DURATION":
+                return new TimexRuleSet(rm.getHmDurationPattern(), rm.getHmDurationOffset(),
+                        rm.getHmDurationPosConstraint(), rm.getHmDurationNormalization(), rm.getHmDurationQuant(),
+                        rm.getHmDurationFreq(), rm.getHmDurationMod(), lowerCaseInput);
+            case "SET":
+                return new TimexRuleSet(rm.getHmSetPattern(), rm.getHmSetOffset(), rm.getHmSetPosConstraint(),
+                        rm.getHmSetNormalization(), rm.getHmSetQuant(), rm.getHmSetFreq(), rm.getHmSetMod(),
+                        lowerCaseInput);
+            default:
+                throw new IllegalArgumentException("Unknown timex type " + timexType);
+        }
+    }
+
+    /**
+     * @return All rules in this set, in application order
+     */
+    public List<TimexRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * @param sentence The (already case-normalized) sentence text
+     * @return The rules that can possibly match within sentence, in application order
+     */
+    public List<TimexRule> getCandidateRules(CharSequence sentence) {
+        BitSet foundAnchors = new BitSet(rulesByAnchor.length);
+        anchorMatcher.findAll(sentence, foundAnchors);
+        BitSet candidates = (BitSet) unanchoredRules.clone();
+        for (int anchor = foundAnchors.nextSetBit(0); anchor >= 0; anchor = foundAnchors.nextSetBit(anchor + 1)) {
+            for (int rule : rulesByAnchor[anchor]) {
+                candidates.set(rule);
+            }
+        }
+        List<TimexRule> ret = new ArrayList<>(candidates.cardinality());
+        for (int rule = candidates.nextSetBit(0); rule >= 0; rule = candidates.nextSetBit(rule + 1)) {
+            ret.add(rules.get(rule));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,100 @@
+package edu.mayo.bsi.nlp2fhir.extractors.context;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConTexTSentenceTest {
+
+    // The sentences of the ConTexT benchmark, each along with the concept mentioned within it
+    private static final String[][] SENTENCES = {
+            {"Patient was started on metoprolol 25 mg by mouth twice daily on 03/14/2019.", "metoprolol"},
+            {"She denies chest pain, shortness of breath or palpitations.", "chest pain"},
+            {"No evidence of pneumonia on chest x-ray obtained this morning.", "pneumonia"},
+            {"Mother has a history of breast cancer diagnosed at age 45.", "breast cancer"},
+            {"Take lisinopril 10 mg once a day for hypertension.", "hypertension"},
+            {"He was admitted on January 3, 2018 with acute kidney injury.", "acute kidney injury"},
+            {"Continue albuterol inhaler 2 puffs every 4-6 hours as needed for wheezing.", "wheezing"},
+            {"Possible early appendicitis, surgery to evaluate in the next 24 hours.", "appendicitis"},
+            {"Father died of myocardial infarction in his sixties.", "myocardial infarction"},
+            {"Patient reports intermittent headaches over the past two weeks.", "headaches"},
+            {"Metformin 500 mg tablet, take one tablet by mouth three times daily with meals.", "metformin"},
+            {"Rule out deep vein thrombosis of the left lower extremity.", "deep vein thrombosis"},
+            {"Status post cholecystectomy in 2011 without complications.", "cholecystectomy"},
+            {"No known history of diabetes mellitus or thyroid disease.", "diabetes mellitus"},
+            {"Prednisone 40 mg daily for 5 days, then taper by 10 mg every other day.", "prednisone"},
+            {"The patient was seen in clinic on 2019-07-22 for follow up of atrial fibrillation.", "atrial fibrillation"},
+            {"Brother with a history of colon polyps, colonoscopy recommended every five years.", "colon polyps"},
+            {"Denies fever, chills, nausea, or vomiting since discharge.", "fever"},
+            {"Warfarin 5 mg at bedtime, INR to be checked weekly.", "warfarin"},
+            {"Findings are consistent with mild degenerative changes of the lumbar spine.", "degenerative changes"},
+            {"Patient quit smoking 10 years ago, previously one pack per day.", "smoking"},
+            {"Insulin glargine 20 units subcutaneously every night at 9 pm.", "insulin glargine"},
+            {"Recurrent urinary tract infections, most recently treated in March.", "urinary tract infections"},
+            {"There is no lymphadenopathy in the cervical or axillary regions.", "lymphadenopathy"},
+            {"Amoxicillin 875 mg q12h for ten days for acute otitis media.", "otitis media"},
+            {"Patient was discharged home on hospital day 4 in stable condition.", "stable condition"},
+            {"Sister is being evaluated for possible rheumatoid arthritis.", "rheumatoid arthritis"},
+            {"Ibuprofen 400-600 mg every 6 hours as needed for pain, not to exceed 3 days.", "pain"},
+            {"Blood pressure remains elevated despite two antihypertensive agents.", "blood pressure"},
+            {"Negative for stroke, seizure, or transient ischemic attack.", "stroke"},
+            {"Follow up in 3 months with repeat echocardiogram.", "echocardiogram"},
+            {"Aspirin 81 mg daily was held prior to the procedure on 11/02/2017.", "aspirin"}
+    };
+
+    @Test
+    public void testMatchesPerMentionTagging() throws Exception {
+        ConTexTSettings settings = createSettings();
+        for (String[] sentence : SENTENCES) {
+            assertMatchesPerMentionTagging(settings, sentence[0], sentence[1]);
+        }
+    }
+
+    @Test
+    public void testMatchesPerMentionTaggingForEveryMention() throws Exception {
+        // Every pair of words as a concept, some of which are only within the window of the trailing trigger once their
+        // words are counted as one, and some of which are attached to punctuation
+        ConTexTSettings settings = createSettings();
+        String[] sentences = {
+                "Patient denies fever chills cough sputum wheezing dizziness nausea vomiting diarrhea constipation rash "
+                        + "itching bruising swelling headache.",
+                "Pneumonia and effusion, atelectasis and edema and cardiomegaly and masses and nodules and fractures and "
+                        + "lines are ruled out."
+        };
+        for (String sentence : sentences) {
+            String[] words = sentence.toLowerCase().split(" ");
+            for (int i = 1; i < words.length; i++) {
+                assertMatchesPerMentionTagging(settings, sentence, words[i - 1] + " " + words[i]);
+            }
+        }
+        // Concepts the concept tag would separate from adjacent text
+        assertMatchesPerMentionTagging(settings, "Pneumonia: no.", "pneumonia");
+        assertMatchesPerMentionTagging(settings, "Painfree and painless, no pain", "pain");
+    }
+
+    @Test
+    public void testSkipsConceptsNotFound() throws Exception {
+        ConTexTSettings settings = createSettings();
+        String sentence = "She denies chest pain, shortness of breath or palpitations. ".toLowerCase();
+        assertNull(settings.preProcessSentence(sentence, "fever"));
+        assertNull(settings.prepareSentence(sentence).findMention("fever"));
+    }
+
+    private static ConTexTSettings createSettings() throws Exception {
+        return new ConTexTSettings(ConTexTSettings.class.getResourceAsStream("/edu/mayo/advance/context/context_rules.txt"));
+    }
+
+    /**
+     * Asserts that a concept is resolved as done by {@link ConTexTSettings#applyContext(String, String)}, the sentence
+     * being prepared in the same way as by the assertion annotator
+     */
+    private static void assertMatchesPerMentionTagging(ConTexTSettings settings, String sentence, String concept) {
+        String text = sentence.toLowerCase() + " ";
+        String[] words = settings.getWords(settings.preProcessSentence(text, concept));
+        ConTexTSentence.Mention mention = settings.prepareSentence(text).findMention(concept);
+        assertEquals(concept, settings.applyNegEx(words), mention.getNegationContext());
+        assertEquals(concept, settings.applyTemporality(words), mention.getTemporalityContext());
+        assertEquals(concept, settings.applyExperiencer(words), mention.getExperiencer());
+    }
+}
@@ -0,0 +1,190 @@
+package edu.mayo.bsi.nlp2fhir.extractors.features;
+
+import org.apache.ctakes.relationextractor.ae.features.DependencyParseUtils;
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cleartk.ml.Feature;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureContextTest {
+
+    // Token, part of speech and index of the head within the sentence (0 for the root) of each sentence
+    private static final String[][][] SENTENCES = {
+            {{"The", "DT", "2"}, {"patient", "NN", "3"}, {"denies", "VBZ", "0"}, {"chest", "NN", "5"},
+                    {"pain", "NN", "3"}, {".", ".", "3"}},
+            {{"Aspirin", "NN", "3"}, {"was", "VBD", "3"}, {"given", "VBN", "0"}, {"for", "IN", "3"},
+                    {"fever", "NN", "4"}, {".", ".", "3"}}
+    };
+
+    @Test
+    public void testDependencyFeaturesMatchCTakes() throws Exception {
+        JCas cas = createDocument();
+        List<Annotation> mentions = new ArrayList<>();
+        mentions.addAll(mention(cas, EntityMention.class, "patient"));
+        mentions.addAll(mention(cas, EventMention.class, "denies"));
+        mentions.addAll(mention(cas, EntityMention.class, "chest pain"));
+        mentions.addAll(mention(cas, EntityMention.class, "Aspirin"));
+        mentions.addAll(mention(cas, EventMention.class, "given"));
+        mentions.addAll(mention(cas, EntityMention.class, "fever"));
+        DependencyPathFeatureExtractor path = new DependencyPathFeatureExtractor();
+        DependencyTreeFeatureExtractor tree = new DependencyTreeFeatureExtractor();
+        for (Annotation arg1 : mentions) {
+            for (Annotation arg2 : mentions) {
+                String pair = arg1.getCoveredText() + " -> " + arg2.getCoveredText();
+                assertEquals(pair, toStrings(extractPath(cas, arg1, arg2)), toStrings(path.extract(cas, arg1, arg2)));
+                assertEquals(pair, toStrings(extractTree(cas, arg1, arg2)), toStrings(tree.extract(cas, arg1, arg2)));
+            }
+        }
+        FeatureContext.release(cas);
+    }
+
+    @Test
+    public void testAncestorsExcludeRoot() throws Exception {
+        JCas cas = createDocument();
+        FeatureContext context = FeatureContext.get(cas);
+        ConllDependencyNode pain = context.getHead(cas, mention(cas, EntityMention.class, "chest pain").get(0));
+        List<ConllDependencyNode> ancestors = context.getAncestors(pain);
+        assertEquals(2, ancestors.size());
+        assertEquals("pain", ancestors.get(0).getCoveredText());
+        assertEquals("denies", ancestors.get(1).getCoveredText());
+        assertTrue(context.getAncestors(ancestors.get(1).getHead()).isEmpty());
+        FeatureContext.release(cas);
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        JCas cas = createDocument();
+        FeatureContext context = FeatureContext.get(cas);
+        assertSame(context, FeatureContext.get(cas));
+        FeatureContext.release(cas);
+        assertNotSame(context, FeatureContext.get(cas));
+        FeatureContext.release(cas);
+    }
+
+    /**
+     * Creates a document of all sentences, each with a dependency tree headed by a root node covering the sentence
+     */
+    private static JCas createDocument() throws UIMAException {
+        StringBuilder text = new StringBuilder();
+        for (String[][] sentence : SENTENCES) {
+            for (String[] token : sentence) {
+                text.append(token[0]).append(' ');
+            }
+            text.append('\n');
+        }
+        JCas cas = JCasFactory.createJCas();
+        cas.setDocumentText(text.toString());
+        int begin = 0;
+        for (String[][] sentence : SENTENCES) {
+            int end = text.indexOf("\n", begin) - 1;
+            new Sentence(cas, begin, end).addToIndexes();
+            ConllDependencyNode root = new ConllDependencyNode(cas, begin, end);
+            root.setId(0);
+            root.addToIndexes();
+            List<ConllDependencyNode> nodes = new ArrayList<>();
+            int tokenBegin = begin;
+            for (int i = 0; i < sentence.length; i++) {
+                ConllDependencyNode node = new ConllDependencyNode(cas, tokenBegin, tokenBegin + sentence[i][0].length());
+                node.setId(i + 1);
+                node.setForm(sentence[i][0]);
+                node.setPostag(sentence[i][1]);
+                nodes.add(node);
+                tokenBegin = node.getEnd() + 1;
+            }
+            for (int i = 0; i < sentence.length; i++) {
+                int head = Integer.parseInt(sentence[i][2]);
+                nodes.get(i).setHead(head == 0 ? root : nodes.get(head - 1));
+                nodes.get(i).setDeprel(head == 0 ? "root" : "dep");
+                nodes.get(i).addToIndexes();
+            }
+            begin = end + 2;
+        }
+        return cas;
+    }
+
+    /**
+     * Annotates every occurrence of text
+     */
+    private static List<Annotation> mention(JCas cas, Class<? extends IdentifiedAnnotation> clazz, String text)
+            throws ReflectiveOperationException {
+        List<Annotation> ret = new ArrayList<>();
+        String document = cas.getDocumentText();
+        for (int begin = document.indexOf(text); begin >= 0; begin = document.indexOf(text, begin + 1)) {
+            IdentifiedAnnotation mention = clazz.getConstructor(JCas.class, int.class, int.class)
+                    .newInstance(cas, begin, begin + text.length());
+            mention.setTypeID(clazz == EventMention.class ? 1 : 2);
+            mention.addToIndexes();
+            ret.add(mention);
+        }
+        return ret;
+    }
+
+    private static List<String> toStrings(List<Feature> features) {
+        List<String> ret = new ArrayList<>();
+        for (Feature feature : features) {
+            ret.add(feature.getName() + "=" + feature.getValue());
+        }
+        return ret;
+    }
+
+    // The former implementations, computing all features from DependencyParseUtils
+
+    private static List<Feature> extractPath(JCas jCas, Annotation arg1, Annotation arg2) {
+        List<Feature> features = new ArrayList<Feature>();
+
+        ConllDependencyNode node1 = DependencyParseUtils.findAnnotationHead(jCas, arg1);
+        ConllDependencyNode node2 = DependencyParseUtils.findAnnotationHead(jCas, arg2);
+        if (node1 == null || node2 == null) { return features; }
+
+        List<LinkedList<ConllDependencyNode>> paths = DependencyParseUtils.getPathsToCommonAncestor(node1, node2);
+        LinkedList<ConllDependencyNode> path1 = paths.get(0);
+        LinkedList<ConllDependencyNode> path2 = paths.get(1);
+
+        features.add(new Feature("DEPENDENCY_PATH_MEAN_DISTANCE_TO_COMMON_ANCESTOR", (path1.size() + path2.size()) / 2.0));
+        features.add(new Feature("DEPENDENCY_PATH_MAX_DISTANCE_TO_COMMON_ANCESTOR", Math.max(path1.size(), path2.size())));
+        features.add(new Feature("DEPENDENCY_PATH_MIN_DISTANCE_TO_COMMON_ANCESTOR", Math.min(path1.size(), path2.size())));
+
+        LinkedList<ConllDependencyNode> node1ToNode2Path = DependencyParseUtils.getPathBetweenNodes(node1, node2);
+        features.add(new Feature("DEPENDENCY_PATH", DependencyParseUtils.pathToString(node1ToNode2Path)));
+
+        return features;
+    }
+
+    private static List<Feature> extractTree(JCas jCas, Annotation arg1, Annotation arg2) {
+        List<Feature> features = new ArrayList<Feature>();
+        features.addAll(extractForNode(jCas, arg1, "MENTION1"));
+        features.addAll(extractForNode(jCas, arg2, "MENTION2"));
+        return features;
+    }
+
+    private static List<Feature> extractForNode(JCas jCas, Annotation mention, String ftrPrefix) {
+        List<Feature> features = new ArrayList<Feature>();
+        ConllDependencyNode mentionHeadNode = DependencyParseUtils.findAnnotationHead(jCas, mention);
+
+        if (mentionHeadNode != null) {
+            ConllDependencyNode dependsOn = mentionHeadNode.getHead();
+            if (dependsOn != null) {
+                features.add(new Feature(ftrPrefix + "_DEPENDS_ON_WORD", dependsOn.getCoveredText()));
+                features.add(new Feature(ftrPrefix + "_DEPENDS_ON_POS", dependsOn.getPostag()));
+                features.add(new Feature(ftrPrefix + "_TYPE-GOVERNING_WORD", String.format("%d-%s", mention instanceof IdentifiedAnnotation ? ((IdentifiedAnnotation) mention).getTypeID() : -99999, dependsOn.getCoveredText())));
+                features.add(new Feature(ftrPrefix + "_HEAD_WORD-GOVERNING_WORD", String.format("%s-%s", mentionHeadNode.getCoveredText(), dependsOn.getCoveredText())));
+                features.add(new Feature(ftrPrefix + "_TYPE-GOVERNING_POS", String.format("%d-%s", mention instanceof IdentifiedAnnotation ? ((IdentifiedAnnotation) mention).getTypeID() : -99999, dependsOn.getPostag())));
+                features.add(new Feature(ftrPrefix + "_HEAD_POS-GOVERNING_POS", String.format("%s-%s", mentionHeadNode.getPostag(), dependsOn.getPostag())));
+            }
+        }
+        return features;
+    }
+}
@@ -0,0 +1,139 @@
+package edu.mayo.bsi.nlp2fhir.performance;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Pins {@link NumberNormalizer} to the results of the regex and split based Util#normalizeNumber it replaced, for the
+ * kinds of input the extractors pass to it
+ */
+public class NumberNormalizerTest {
+
+    @Test
+    public void matchesFormerImplementation() {
+        String[] inputs = {"2", "10", "1,000", "1,5", "2.5", "0.5", "1/2", "3/4", "10/5/2", "once", "twice", "thrice",
+                "three", "twelve", "twenty", "twenty one", "twenty-one", "one hundred", "two hundred and five",
+                "one thousand", "one million"};
+        for (String input : inputs) {
+            assertEquals(input, Double.parseDouble(formerNormalizeNumber(input)), NumberNormalizer.parse(input), 0);
+        }
+    }
+
+    @Test
+    public void parsesLeadingDotDecimals() {
+        // FREQPERIOD captures [.0-9]+
+        assertEquals(0.5, NumberNormalizer.parse(".5"), 0);
+        assertEquals(0.25, NumberNormalizer.parse(".25"), 0);
+        assertEquals(2, NumberNormalizer.parse(".5/.25"), 0);
+    }
+
+    @Test
+    public void parsesMixedNumbers() {
+        assertEquals(1.5, NumberNormalizer.parse("1 1/2"), 0);
+        assertEquals(2.75, NumberNormalizer.parse("2  3/4"), 0);
+    }
+
+    @Test
+    public void rejectsAdjacentNumbers() {
+        // The former implementation failed on these, or returned meaningless values
+        for (String input : new String[]{"1-2", "2 3", "1/2 1", "1.5 1/2", "1 1/2 1/2", "1-1/2", "1 .5", "twenty 1"}) {
+            try {
+                fail(input + " parsed as " + NumberNormalizer.parse(input));
+            } catch (NumberFormatException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void parsesWithinRange() {
+        assertEquals(1.5, NumberNormalizer.parse("take 1 1/2 tablets", 5, 10), 0);
+        assertEquals(0.5, NumberNormalizer.parse("q.5h", 1, 3), 0);
+    }
+
+    @Test
+    public void formatsParseably() {
+        // Doses are normalized to text via toString and parsed again when producing resources
+        for (String input : new String[]{"0.0005", "0.00012345", ".001", "2.5", "1/3", "12,500,000.5", "1,000", "0",
+                "100,000,000,000,000,000,000"}) {
+            double value = NumberNormalizer.parse(input);
+            String formatted = NumberNormalizer.toString(value);
+            assertEquals(formatted, value, NumberNormalizer.parse(formatted), 0);
+            assertEquals(formatted, value, Double.parseDouble(formatted), 0);
+        }
+        assertEquals("0.0005", NumberNormalizer.toString(NumberNormalizer.parse("0.0005")));
+        assertEquals("12500000.5", NumberNormalizer.toString(NumberNormalizer.parse("12,500,000.5")));
+        assertEquals("3", NumberNormalizer.toString(NumberNormalizer.parse("3.0")));
+    }
+
+    /**
+     * The former Util#normalizeNumber, up to and including the number words exercised above
+     */
+    private static String formerNormalizeNumber(String input) {
+        if (input.contains("/")) {
+            String[] split = input.split("/");
+            double val = Double.valueOf(formerNormalizeNumber(split[0]));
+            for (int i = 1; i < split.length; i++) {
+                val /= Double.valueOf(formerNormalizeNumber(split[i]));
+            }
+            return val + "";
+        }
+        input = input.replaceAll(",", "");
+        if (input.matches("[0-9]+")) {
+            return Integer.valueOf(input) + "";
+        }
+        if (input.matches("[0-9]+(.[0-9]+)?")) {
+            return Double.valueOf(input) + "";
+        }
+        int sum = 0;
+        for (String s : input.toLowerCase().split("[ -]")) {
+            if (s.equalsIgnoreCase("and")) {
+                continue;
+            }
+            if (s.equalsIgnoreCase("twenty")) {
+                sum += 20;
+                continue;
+            }
+            int temp = 0;
+            switch (s.substring(0, 3)) {
+                case "one":
+                case "onc":
+                    temp += 1;
+                    break;
+                case "two":
+                case "twi":
+                    temp += 2;
+                    break;
+                case "thr":
+                case "thi":
+                    temp += 3;
+                    break;
+                case "fiv":
+                case "fif":
+                    temp += 5;
+                    break;
+                case "twe":
+                    temp += 12;
+                    break;
+            }
+            if (s.endsWith("teen")) temp += 10;
+            if (s.endsWith("ty")) temp *= 10;
+            sum += temp;
+            if (s.equals("hundred")) {
+                if (sum == 0) sum += 100;
+                else sum *= 100;
+            }
+            if (s.equals("thousand")) {
+                if (sum == 0) sum += 1000;
+                else sum *= 1000;
+            }
+            if (s.equals("million")) {
+                if (sum == 0) sum += 1000000;
+                else sum *= 1000000;
+            }
+        }
+        return sum + "";
+    }
+}
@@ -0,0 +1,140 @@
+package edu.mayo.bsi.nlp2fhir.pipelines;
+
+import edu.mayo.bsi.nlp2fhir.nlp.Section;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SectionParallelAnnotatorTest {
+
+    private static final String[] SECTIONS = {
+            "HISTORY OF PRESENT ILLNESS:\nThe patient denies chest pain.\nShe reports fever since Monday.\n\n",
+            "MEDICATIONS:\nAspirin 81 mg daily.\nMetoprolol 25 mg twice daily.\n\n",
+            "ALLERGIES:\nNo known drug allergies.\n\n",
+            "PLAN:\nFollow up in two weeks.\nContinue current medications.\n"
+    };
+
+    @Test
+    public void testMatchesWholeDocument() throws Exception {
+        JCas whole = createDocument();
+        AnalysisEngine engine = AnalysisEngineFactory.createEngine(createPipeline());
+        engine.process(whole);
+        engine.destroy();
+
+        JCas sections = createDocument();
+        engine = AnalysisEngineFactory.createEngine(SectionParallelAnnotator.createEngineDescription(createPipeline(), 2, 40));
+        engine.process(sections);
+        engine.destroy();
+
+        // Each chunk is segmented on its own, sections shorter than the minimum length being combined
+        assertEquals(3, JCasUtil.select(sections, Segment.class).size());
+        assertEquals(describeTokens(whole), describeTokens(sections));
+        assertEquals(describeSentences(whole), describeSentences(sections));
+    }
+
+    private static JCas createDocument() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (String section : SECTIONS) {
+            text.append(section);
+        }
+        JCas cas = JCasFactory.createJCas();
+        cas.setDocumentText(text.toString());
+        int begin = 0;
+        for (String section : SECTIONS) {
+            new Section(cas, begin, begin + section.length()).addToIndexes();
+            begin += section.length();
+        }
+        return cas;
+    }
+
+    private static AnalysisEngineDescription createPipeline() throws Exception {
+        AggregateBuilder pipeline = new AggregateBuilder();
+        pipeline.add(AnalysisEngineFactory.createEngineDescription(Segmenter.class));
+        pipeline.add(AnalysisEngineFactory.createEngineDescription(LineSentenceDetector.class));
+        pipeline.add(AnalysisEngineFactory.createEngineDescription(WhitespaceTokenizer.class));
+        return pipeline.createAggregateDescription();
+    }
+
+    private static List<String> describeTokens(JCas cas) {
+        List<String> ret = new ArrayList<>();
+        for (BaseToken token : JCasUtil.select(cas, BaseToken.class)) {
+            ret.add(token.getTokenNumber() + ":" + token.getCoveredText() + "@" + token.getBegin());
+        }
+        return ret;
+    }
+
+    private static List<String> describeSentences(JCas cas) {
+        List<String> ret = new ArrayList<>();
+        for (Sentence sentence : JCasUtil.select(cas, Sentence.class)) {
+            ret.add(sentence.getSentenceNumber() + ":" + sentence.getCoveredText() + "@" + sentence.getBegin());
+        }
+        return ret;
+    }
+
+    // Minimal stand-ins for the cTAKES segmentation, sentence detection and tokenization stages, numbering sentences
+    // and tokens within the CAS they process
+
+    public static class Segmenter extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas cas) {
+            Segment segment = new Segment(cas, 0, cas.getDocumentText().length());
+            segment.setId("SIMPLE_SEGMENT");
+            segment.addToIndexes();
+        }
+    }
+
+    public static class LineSentenceDetector extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas cas) {
+            String text = cas.getDocumentText();
+            int number = 0;
+            int begin = 0;
+            while (begin < text.length()) {
+                int end = text.indexOf('\n', begin);
+                end = end < 0 ? text.length() : end;
+                if (end > begin) {
+                    Sentence sentence = new Sentence(cas, begin, end);
+                    sentence.setSentenceNumber(number++);
+                    sentence.addToIndexes();
+                }
+                begin = end + 1;
+            }
+        }
+    }
+
+    public static class WhitespaceTokenizer extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas cas) {
+            int number = 0;
+            for (Sentence sentence : JCasUtil.select(cas, Sentence.class)) {
+                String text = sentence.getCoveredText();
+                int begin = 0;
+                while (begin < text.length()) {
+                    int end = text.indexOf(' ', begin);
+                    end = end < 0 ? text.length() : end;
+                    if (end > begin) {
+                        WordToken token = new WordToken(cas, sentence.getBegin() + begin, sentence.getBegin() + end);
+                        token.setTokenNumber(number++);
+                        token.addToIndexes();
+                    }
+                    begin = end + 1;
+                }
+            }
+        }
+    }
+}